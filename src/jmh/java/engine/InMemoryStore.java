@@ -0,0 +1,73 @@
+package engine;
+
+import model.Account;
+import model.TransferEvent;
+import store.RecordWrites;
+import store.Store;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store keeping accounts as objects, so that benchmarks measure the engine rather than RocksDb and serialization
+ */
+class InMemoryStore implements Store {
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String accountId, Account account) {
+        accounts.put(accountId, account);
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts) {
+        this.accounts.putAll(accounts);
+    }
+
+    /**
+     * Events are not kept, the journal is a part of the persistent store
+     */
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+        this.accounts.putAll(accounts);
+    }
+
+    /**
+     * Events and records are not kept, they are a part of the persistent store
+     */
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+        this.accounts.putAll(accounts);
+    }
+
+    @Override
+    public Account get(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public Account getUnlocked(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public Map<String, Account> getAll(Collection<String> accountIds) {
+        Map<String, Account> found = new HashMap<>();
+        for (String accountId : accountIds) {
+            Account account = accounts.get(accountId);
+            if (account != null) {
+                found.put(accountId, account);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void delete(String accountId) {
+        accounts.remove(accountId);
+    }
+}
@@ -0,0 +1,68 @@
+package engine;
+
+import httpserver.OperationResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares MapLockManager (a lock per account behind a global monitor) with StripedLockManager
+ * under contention. By default all available cores are used; to compare 8 to 64 threads
+ * the benchmark can be launched with "-t 8", "-t 16", ..., "-t 64"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class LockManagerBenchmark {
+
+    private static final OperationResult RESULT = OperationResult.success();
+
+    @Param({"map", "striped"})
+    public String lockManagerType;
+
+    @Param({"16", "100000"})
+    public int numOfAccounts;
+
+    @Param({"1024"})
+    public int numOfStripes;
+
+    private LockManager lockManager;
+    private String[] accountIds;
+
+    @Setup
+    public void setUp() {
+        lockManager = "map".equals(lockManagerType) ? new MapLockManager() : new StripedLockManager(numOfStripes);
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+        }
+    }
+
+    @Benchmark
+    public OperationResult oneLock() {
+        return lockManager.executeOnOneLock(randomAccount(), LockManagerBenchmark::work);
+    }
+
+    @Benchmark
+    public OperationResult twoLocks() {
+        return lockManager.executeOnTwoLocks(randomAccount(), randomAccount(), LockManagerBenchmark::work);
+    }
+
+    private String randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    /**
+     * Imitates a short critical section
+     */
+    private static OperationResult work() {
+        Blackhole.consumeCPU(64);
+        return RESULT;
+    }
+}
@@ -0,0 +1,91 @@
+package engine;
+
+import config.LoggingSettings;
+import httpserver.OperationResult;
+import logging.AsyncLog;
+import model.Account;
+import model.Money;
+import org.openjdk.jmh.annotations.*;
+import store.Store;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures AccountManager.transferMoney with info logging on. "sync" writes lines on the calling threads
+ * (as slf4j-simple did before), "async" passes them to the background writer with the given drop policy.
+ * Lines go to /dev/null, so the benchmark measures formatting and the contention on the log stream
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=info",
+        "-Dorg.slf4j.simpleLogger.logFile=/dev/null"})
+public class LoggingBenchmark {
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    @Param({"drop", "block"})
+    public String dropPolicy;
+
+    @Param({"10000"})
+    public int numOfAccounts;
+
+    private AccountManager accountManager;
+    private String[] accountIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        AsyncLog.start(new LoggingSettings() {
+            @Override
+            public String mode() {
+                return mode;
+            }
+
+            @Override
+            public int queueSize() {
+                return 8192;
+            }
+
+            @Override
+            public String dropPolicy() {
+                return dropPolicy;
+            }
+
+            @Override
+            public int maxInfoLinesPerSecond() {
+                return 0;
+            }
+        });
+        Store store = new InMemoryStore();
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+            Account account = new Account();
+            account.setId(accountIds[i]);
+            account.setBalance(new BigDecimal("1000000000.00"));
+            store.put(accountIds[i], account);
+        }
+        accountManager = new AccountManager(store, new StripedLockManager(1024));
+        amount = Money.of(new BigDecimal("0.01"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        AsyncLog.stop();
+    }
+
+    @Benchmark
+    public OperationResult transferMoney() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(numOfAccounts);
+        int to = (from + 1 + random.nextInt(numOfAccounts - 1)) % numOfAccounts;
+        return accountManager.transferMoney(accountIds[from], accountIds[to], amount);
+    }
+}
@@ -0,0 +1,66 @@
+package engine;
+
+import fx.FxRates;
+import fx.FxSnapshot;
+import model.Account;
+import model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures AccountManager.getAccount on a few hot accounts while one thread keeps transferring between them.
+ * In "locked" mode readers take the account locks and wait for transfers, in "lock-free" mode they only read the store
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class ReadModeBenchmark {
+
+    @Param({"locked", "lock-free"})
+    public String readMode;
+
+    @Param({"16"})
+    public int numOfAccounts;
+
+    private AccountManager accountManager;
+    private String[] accountIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        InMemoryStore store = new InMemoryStore();
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+            Account account = new Account();
+            account.setId(accountIds[i]);
+            account.setBalance(new BigDecimal("1000000000.00"));
+            store.put(accountIds[i], account);
+        }
+        accountManager = new AccountManager(store, new StripedLockManager(1024), SplitAccounts.NONE,
+                new FxRates(FxSnapshot.NONE), ReadMode.fromConfig(readMode));
+        amount = Money.of(new BigDecimal("0.01"));
+    }
+
+    @Benchmark
+    @Group("hotAccounts")
+    @GroupThreads(3)
+    public Object getAccount() {
+        return accountManager.getAccount(accountIds[ThreadLocalRandom.current().nextInt(numOfAccounts)]);
+    }
+
+    @Benchmark
+    @Group("hotAccounts")
+    @GroupThreads(1)
+    public Object transferMoney() {
+        int from = ThreadLocalRandom.current().nextInt(numOfAccounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(numOfAccounts - 1)) % numOfAccounts;
+        return accountManager.transferMoney(accountIds[from], accountIds[to], amount);
+    }
+}
@@ -0,0 +1,143 @@
+package engine;
+
+import model.Account;
+import model.Money;
+import model.TransferEvent;
+import org.openjdk.jmh.annotations.*;
+import store.RecordWrites;
+import store.Store;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures AccountManager.transferMoney on a store whose writes take writeLatencyMicros, as when RocksDb
+ * waits for an fsync or a compaction stall. Concurrent transfers are executed either by a pool of
+ * availableProcessors platform threads ("platform", as the "executor" dispatch mode) or by a virtual thread
+ * per transfer ("virtual"). The write waits by parking, like a writer waiting for a group commit
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class SlowStoreBenchmark {
+
+    private static final int CONCURRENT_TRANSFERS = 256;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000"})
+    public int writeLatencyMicros;
+
+    @Param({"10000"})
+    public int numOfAccounts;
+
+    private AccountManager accountManager;
+    private ExecutorService executorService;
+    private String[] accountIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        Store store = new SlowStore(new InMemoryStore(), TimeUnit.MICROSECONDS.toNanos(writeLatencyMicros));
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+            Account account = new Account();
+            account.setId(accountIds[i]);
+            account.setBalance(new BigDecimal("1000000000.00"));
+            store.put(accountIds[i], account);
+        }
+        accountManager = new AccountManager(store, new StripedLockManager(1024));
+        executorService = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        amount = Money.of(new BigDecimal("0.01"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_TRANSFERS)
+    public void transferMoney() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[CONCURRENT_TRANSFERS];
+        for (int i = 0; i < CONCURRENT_TRANSFERS; i++) {
+            futures[i] = CompletableFuture.runAsync(this::transfer, executorService);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private void transfer() {
+        int from = ThreadLocalRandom.current().nextInt(numOfAccounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(numOfAccounts - 1)) % numOfAccounts;
+        accountManager.transferMoney(accountIds[from], accountIds[to], amount);
+    }
+
+    private static class SlowStore implements Store {
+
+        private final Store store;
+        private final long writeLatencyNanos;
+
+        SlowStore(Store store, long writeLatencyNanos) {
+            this.store = store;
+            this.writeLatencyNanos = writeLatencyNanos;
+        }
+
+        @Override
+        public void put(String accountId, Account account) {
+            store.put(accountId, account);
+        }
+
+        @Override
+        public void putAll(Map<String, Account> accounts) {
+            LockSupport.parkNanos(writeLatencyNanos);
+            store.putAll(accounts);
+        }
+
+        @Override
+        public void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+            LockSupport.parkNanos(writeLatencyNanos);
+            store.putAll(accounts, events);
+        }
+
+        @Override
+        public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+            LockSupport.parkNanos(writeLatencyNanos);
+            store.putAll(accounts, events, records);
+        }
+
+        @Override
+        public Account get(String accountId) {
+            return store.get(accountId);
+        }
+
+        @Override
+        public Account getUnlocked(String accountId) {
+            return store.getUnlocked(accountId);
+        }
+
+        @Override
+        public Map<String, Account> getAll(Collection<String> accountIds) {
+            return store.getAll(accountIds);
+        }
+
+        @Override
+        public void delete(String accountId) {
+            store.delete(accountId);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package engine;
+
+import httpserver.OperationResult;
+import model.Account;
+import model.Money;
+import org.openjdk.jmh.annotations.*;
+import store.Store;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures AccountManager.transferMoney on an in-memory store.
+ * "bigDecimalArithmetic" repeats the balance arithmetic of a transfer with BigDecimal balances
+ * as it was done before switching to fixed-point Money, "moneyArithmetic" is the same with Money.
+ * Should be launched with "-prof gc" to compare gc.alloc.rate.norm (bytes per transfer)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferAllocationBenchmark {
+
+    private static final String ACCOUNT_FROM = "from";
+    private static final String ACCOUNT_TO = "to";
+
+    private AccountManager accountManager;
+    private Money amount;
+
+    private BigDecimal bigDecimalFrom;
+    private BigDecimal bigDecimalTo;
+    private BigDecimal bigDecimalAmount;
+
+    private Account accountFrom;
+    private Account accountTo;
+
+    @Setup
+    public void setUp() {
+        Store store = new InMemoryStore();
+        Account from = new Account();
+        from.setId(ACCOUNT_FROM);
+        from.setBalance(new BigDecimal("1000000000.00"));
+        store.put(ACCOUNT_FROM, from);
+        Account to = new Account();
+        to.setId(ACCOUNT_TO);
+        to.setBalance(new BigDecimal("0.00"));
+        store.put(ACCOUNT_TO, to);
+        accountManager = new AccountManager(store, new StripedLockManager(1024));
+        amount = Money.of(new BigDecimal("0.01"));
+
+        bigDecimalFrom = new BigDecimal("1000000000.00");
+        bigDecimalTo = new BigDecimal("0.00");
+        bigDecimalAmount = new BigDecimal("0.01");
+        accountFrom = from.copy();
+        accountTo = to.copy();
+    }
+
+    @Benchmark
+    public OperationResult transferMoney() {
+        return accountManager.transferMoney(ACCOUNT_FROM, ACCOUNT_TO, amount);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalArithmetic() {
+        if (bigDecimalFrom.subtract(bigDecimalAmount).compareTo(BigDecimal.ZERO) < 0) {
+            return bigDecimalFrom;
+        }
+        bigDecimalFrom = bigDecimalFrom.subtract(bigDecimalAmount);
+        bigDecimalTo = bigDecimalTo.add(bigDecimalAmount);
+        return bigDecimalTo;
+    }
+
+    @Benchmark
+    public Account moneyArithmetic() {
+        if (!accountFrom.canSubtract(amount)) {
+            return accountFrom;
+        }
+        accountTo.canAdd(amount);
+        accountFrom.subtract(amount);
+        accountTo.add(amount);
+        return accountTo;
+    }
+}
@@ -0,0 +1,85 @@
+package engine;
+
+import httpserver.OperationResult;
+import model.Account;
+import model.Money;
+import org.openjdk.jmh.annotations.*;
+import store.Store;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures AccountManager.transferMoney on an in-memory store from all available cores.
+ * With "uniform" distribution accounts are picked uniformly, with "zipfian" a few hot accounts
+ * take most of the transfers, so threads contend for their locks.
+ * With splitParts greater than 1 the hot accounts are split accounts, their balances are spread evenly over parts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TransferBenchmark {
+
+    private static final double ZIPF_EXPONENT = 1.0;
+    private static final int HOT_ACCOUNTS = 16;
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    @Param({"10000"})
+    public int numOfAccounts;
+
+    @Param({"1", "8"})
+    public int splitParts;
+
+    private AccountManager accountManager;
+    private ZipfDistribution zipfDistribution;
+    private String[] accountIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        Store store = new InMemoryStore();
+        accountIds = new String[numOfAccounts];
+        Map<String, Integer> numOfParts = new HashMap<>();
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+            // the most popular indexes of the Zipfian distribution are the first ones
+            int parts = i < HOT_ACCOUNTS ? splitParts : 1;
+            numOfParts.put(accountIds[i], parts);
+            for (int part = 0; part < parts; part++) {
+                Account account = new Account();
+                account.setId(SplitAccounts.partKey(accountIds[i], part));
+                account.setBalance(new BigDecimal("1000000000.00").divide(BigDecimal.valueOf(parts)));
+                store.put(account.getId(), account);
+            }
+        }
+        accountManager = new AccountManager(store, new StripedLockManager(1024), new SplitAccounts(numOfParts));
+        zipfDistribution = "zipfian".equals(distribution) ? new ZipfDistribution(numOfAccounts, ZIPF_EXPONENT) : null;
+        amount = Money.of(new BigDecimal("0.01"));
+    }
+
+    @Benchmark
+    public OperationResult transferMoney() {
+        int from = nextAccount();
+        int to = nextAccount();
+        if (from == to) {
+            to = (to + 1) % numOfAccounts;
+        }
+        return accountManager.transferMoney(accountIds[from], accountIds[to], amount);
+    }
+
+    private int nextAccount() {
+        if (zipfDistribution == null) {
+            return ThreadLocalRandom.current().nextInt(numOfAccounts);
+        }
+        return zipfDistribution.next();
+    }
+}
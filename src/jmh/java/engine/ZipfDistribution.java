@@ -0,0 +1,32 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks indexes from [0, n) so that the k-th most popular index is picked with probability
+ * proportional to 1 / (k + 1)^exponent. Used by benchmarks to imitate hot accounts
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulativeProbabilities;
+
+    public ZipfDistribution(int n, double exponent) {
+        cumulativeProbabilities = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulativeProbabilities[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+    }
+
+    public int next() {
+        double value = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cumulativeProbabilities, value);
+        int result = index >= 0 ? index : -index - 1;
+        return Math.min(result, cumulativeProbabilities.length - 1);
+    }
+}
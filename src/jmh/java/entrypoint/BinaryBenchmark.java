@@ -0,0 +1,99 @@
+package entrypoint;
+
+import binaryserver.BinaryClient;
+import model.AccountSerializer;
+import model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures transfers through the binary protocol listener of the whole server, to be compared with HttpBenchmark:
+ * one request at a time per connection ("pipeline" 1) and pipelined requests, where a thread sends
+ * "pipeline" transfers before reading their responses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class BinaryBenchmark {
+
+    private static final int BINARY_PORT = 10102;
+    private static final int MAX_PIPELINE = 32;
+
+    @Param({"100"})
+    public int numOfAccounts;
+
+    private MoneyTransferFactory moneyTransferFactory;
+    private String[] accountIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() throws IOException {
+        moneyTransferFactory = new MoneyTransferFactory();
+        moneyTransferFactory.launch("config_benchmark.yaml");
+        AccountSerializer accountSerializer = new AccountSerializer();
+        accountIds = new String[numOfAccounts];
+        try (BinaryClient client = new BinaryClient("127.0.0.1", BINARY_PORT)) {
+            for (int i = 0; i < numOfAccounts; i++) {
+                client.addAccount("account-" + i);
+                accountIds[i] = accountSerializer.deserialize(client.readResponse().getText()).getId();
+                client.changeBalance(accountIds[i], Money.of(new BigDecimal(1_000_000_000)));
+                client.readResponse();
+            }
+        }
+        amount = Money.of(new BigDecimal("0.01"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        moneyTransferFactory.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        BinaryClient client;
+
+        @Setup
+        public void setUp() throws IOException {
+            client = new BinaryClient("127.0.0.1", BINARY_PORT);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public BinaryClient.Response transferMoney(Connection connection) throws IOException {
+        sendTransfer(connection.client);
+        return connection.client.readResponse();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAX_PIPELINE)
+    public BinaryClient.Response transferMoneyPipelined(Connection connection) throws IOException {
+        for (int i = 0; i < MAX_PIPELINE; i++) {
+            sendTransfer(connection.client);
+        }
+        BinaryClient.Response response = null;
+        for (int i = 0; i < MAX_PIPELINE; i++) {
+            response = connection.client.readResponse();
+        }
+        return response;
+    }
+
+    private void sendTransfer(BinaryClient client) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(numOfAccounts);
+        int to = (from + 1 + random.nextInt(numOfAccounts - 1)) % numOfAccounts;
+        client.transferMoney(accountIds[from], accountIds[to], amount);
+    }
+}
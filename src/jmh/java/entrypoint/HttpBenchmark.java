@@ -0,0 +1,93 @@
+package entrypoint;
+
+import model.Account;
+import model.AccountSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures requests going through the whole server: Jetty, request parsing, dispatching to worker threads,
+ * the engine and RocksDb. The server is launched in the benchmark JVM with config_benchmark.yaml
+ * and is called via keep-alive HTTP connections
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class HttpBenchmark {
+
+    private static final String URL_MAIN = "http://127.0.0.1:10002/accounts/";
+
+    @Param({"100"})
+    public int numOfAccounts;
+
+    private MoneyTransferFactory moneyTransferFactory;
+    private String[] accountIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        moneyTransferFactory = new MoneyTransferFactory();
+        moneyTransferFactory.launch("config_benchmark.yaml");
+        AccountSerializer accountSerializer = new AccountSerializer();
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            Account account = new Account();
+            account.setName("account-" + i);
+            String added = call("add?account=" + URLEncoder.encode(accountSerializer.serialize(account), "UTF-8"));
+            accountIds[i] = accountSerializer.deserialize(added).getId();
+            call("changeBalance?id=" + accountIds[i] + "&amount=1000000000");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        moneyTransferFactory.stop();
+    }
+
+    @Benchmark
+    public String transferMoney() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(numOfAccounts);
+        int to = (from + 1 + random.nextInt(numOfAccounts - 1)) % numOfAccounts;
+        return call("transferMoney?from=" + accountIds[from] + "&to=" + accountIds[to] + "&amount=0.01");
+    }
+
+    @Benchmark
+    public String getAccount() throws IOException {
+        return call("get?id=" + accountIds[ThreadLocalRandom.current().nextInt(numOfAccounts)]);
+    }
+
+    /**
+     * Reads the whole response, so that HttpURLConnection returns the connection to its keep-alive cache
+     */
+    private static String call(String request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(URL_MAIN + request).toURL().openConnection();
+        int status = connection.getResponseCode();
+        InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while (inputStream != null && (length = inputStream.read(buffer)) != -1) {
+            result.write(buffer, 0, length);
+        }
+        if (inputStream != null) {
+            inputStream.close();
+        }
+        if (status != 200) {
+            throw new IOException("Request " + request + " failed with status " + status + ": " + result);
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding of accounts by AccountSerializer (json stored as a String)
+ * with JsonAccountCodec and BinaryAccountCodec.
+ * The size of an encoded account in bytes is reported as the "bytesPerRecord" secondary result
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountCodecBenchmark {
+
+    @Param({"serializer", "json", "binary"})
+    public String codecType;
+
+    private AccountSerializer accountSerializer;
+    private AccountCodec accountCodec;
+    private Account account;
+    private byte[] encoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RecordSize {
+        public long bytesPerRecord;
+    }
+
+    @Setup
+    public void setUp() {
+        accountSerializer = new AccountSerializer();
+        accountCodec = "serializer".equals(codecType) ? null : AccountCodec.create(codecType, accountSerializer);
+        account = new Account();
+        account.setId(UUID.randomUUID().toString());
+        account.setName("Alice Smith");
+        account.setBalance(new BigDecimal("123456.78"));
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode(RecordSize recordSize) {
+        recordSize.bytesPerRecord = encoded.length;
+        return encode();
+    }
+
+    @Benchmark
+    public Account decode() {
+        if (accountCodec == null) {
+            return accountSerializer.deserialize(new String(encoded));
+        }
+        return accountCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public Account roundTrip() {
+        if (accountCodec == null) {
+            return accountSerializer.deserialize(new String(accountSerializer.serialize(account).getBytes()));
+        }
+        return accountCodec.decode(accountCodec.encode(account));
+    }
+
+    private byte[] encode() {
+        if (accountCodec == null) {
+            return accountSerializer.serialize(account).getBytes();
+        }
+        return accountCodec.encode(account);
+    }
+}
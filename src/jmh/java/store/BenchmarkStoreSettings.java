@@ -0,0 +1,107 @@
+package store;
+
+import config.StoreSettings;
+
+/**
+ * Store settings of benchmarks: a single RocksDbStore without group commit and cache,
+ * either with RocksDb default options or with the "point-lookup OLTP" tuning of config.yaml
+ */
+class BenchmarkStoreSettings implements StoreSettings {
+
+    private final String path;
+    private final String syncPolicy;
+    private final String codec;
+    private final boolean tuned;
+
+    BenchmarkStoreSettings(String path, String syncPolicy, String codec, boolean tuned) {
+        this.path = path;
+        this.syncPolicy = syncPolicy;
+        this.codec = codec;
+        this.tuned = tuned;
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String syncPolicy() {
+        return syncPolicy;
+    }
+
+    @Override
+    public int groupCommitMaxBatch() {
+        return 1;
+    }
+
+    @Override
+    public int groupCommitWindowMicros() {
+        return 0;
+    }
+
+    @Override
+    public int cacheSize() {
+        return 0;
+    }
+
+    @Override
+    public String codec() {
+        return codec;
+    }
+
+    @Override
+    public long blockCacheSizeMb() {
+        return tuned ? 256 : 0;
+    }
+
+    @Override
+    public int bloomFilterBitsPerKey() {
+        return tuned ? 10 : 0;
+    }
+
+    @Override
+    public boolean optimizeForPointLookup() {
+        return tuned;
+    }
+
+    @Override
+    public long writeBufferSizeMb() {
+        return tuned ? 64 : 0;
+    }
+
+    @Override
+    public int maxWriteBufferNumber() {
+        return tuned ? 4 : 0;
+    }
+
+    @Override
+    public String compactionStyle() {
+        return "level";
+    }
+
+    @Override
+    public int maxBackgroundJobs() {
+        return tuned ? 4 : 0;
+    }
+
+    @Override
+    public boolean useDirectReads() {
+        return false;
+    }
+
+    @Override
+    public boolean useDirectIoForFlushAndCompaction() {
+        return false;
+    }
+
+    @Override
+    public int scanThreads() {
+        return 0;
+    }
+
+    @Override
+    public long walTtlSeconds() {
+        return 0;
+    }
+}
@@ -0,0 +1,115 @@
+package store;
+
+import config.EngineSettings;
+import engine.AccountEngine;
+import engine.AccountManager;
+import engine.OptimisticAccountManager;
+import httpserver.OperationResult;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares transfers under striped account locks ("locking") with optimistic RocksDb transactions
+ * retried on conflicts ("optimistic") on a RocksDbStore in a temporary directory.
+ * The number of accounts sets the contention: 8 threads often meet on 16 accounts and rarely on 100000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class OptimisticTransferBenchmark {
+
+    @Param({"locking", "optimistic"})
+    public String mode;
+
+    @Param({"16", "100000"})
+    public int numOfAccounts;
+
+    private File directory;
+    private AccountEngine accountEngine;
+    private String[] accountIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("money_transfer_benchmark").toFile();
+        boolean optimistic = "optimistic".equals(mode);
+        RocksDbStore store = new RocksDbStore(new AccountSerializer(),
+                new BenchmarkStoreSettings(directory.getPath(), "no-sync", "binary", true), optimistic);
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+            Account account = new Account();
+            account.setId(accountIds[i]);
+            account.setBalance(new BigDecimal("1000000000.00"));
+            store.put(accountIds[i], account);
+        }
+        accountEngine = optimistic
+                ? new OptimisticAccountManager(store, Integer.MAX_VALUE)
+                : new AccountManager(store, new LockingSettings());
+        amount = Money.of(new BigDecimal("0.01"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walk(directory.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Benchmark
+    public OperationResult transferMoney() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(numOfAccounts);
+        int to = (from + 1 + random.nextInt(numOfAccounts - 1)) % numOfAccounts;
+        return accountEngine.transferMoney(accountIds[from], accountIds[to], amount);
+    }
+
+    private static class LockingSettings implements EngineSettings {
+
+        @Override
+        public String mode() {
+            return "locking";
+        }
+
+        @Override
+        public int shards() {
+            return 0;
+        }
+
+        @Override
+        public int lockStripes() {
+            return 1024;
+        }
+
+        @Override
+        public String splitAccounts() {
+            return "";
+        }
+
+        @Override
+        public String readMode() {
+            return "locked";
+        }
+
+        @Override
+        public int optimisticRetries() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package store;
+
+import model.Account;
+import model.AccountSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures RocksDbStore get and put of single accounts in a temporary directory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class RocksDbStoreBenchmark {
+
+    @Param({"no-sync", "sync-per-op"})
+    public String syncPolicy;
+
+    @Param({"binary"})
+    public String codec;
+
+    @Param({"100000"})
+    public int numOfAccounts;
+
+    private File directory;
+    private RocksDbStore store;
+    private String[] accountIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("money_transfer_benchmark").toFile();
+        store = new RocksDbStore(new AccountSerializer(),
+                new BenchmarkStoreSettings(directory.getPath(), syncPolicy, codec, false));
+        accountIds = new String[numOfAccounts];
+        for (int i = 0; i < numOfAccounts; i++) {
+            accountIds[i] = "account-" + i;
+            store.put(accountIds[i], createAccount(accountIds[i]));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walk(directory.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+        Account account;
+
+        @Setup
+        public void setUp() {
+            account = new Account();
+            account.setName("Alice Smith");
+        }
+    }
+
+    @Benchmark
+    public Account get() {
+        return store.get(randomAccount());
+    }
+
+    @Benchmark
+    public void put(ThreadAccount threadAccount) {
+        String accountId = randomAccount();
+        threadAccount.account.setId(accountId);
+        threadAccount.account.setBalance(ThreadLocalRandom.current().nextInt(1_000_000), 2);
+        store.put(accountId, threadAccount.account);
+    }
+
+    private String randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    private static Account createAccount(String accountId) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setName("Alice Smith");
+        account.setBalance(new BigDecimal("123456.78"));
+        return account;
+    }
+}
@@ -0,0 +1,98 @@
+package store;
+
+import model.Account;
+import model.AccountSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples latencies (including p99) of reading single accounts from table files with RocksDb default options
+ * and with the "point-lookup OLTP" tuning. Accounts are written in several flushed parts,
+ * so that a lookup has to consult several overlapping table files
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class RocksDbTuningBenchmark {
+
+    private static final int PARTS = 8;
+    private static final int WRITE_BATCH = 1000;
+
+    @Param({"default", "point-lookup-oltp"})
+    public String tuning;
+
+    @Param({"400000"})
+    public int numOfAccounts;
+
+    private File directory;
+    private RocksDbStore store;
+    private String[] accountIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("money_transfer_tuning_benchmark").toFile();
+        store = new RocksDbStore(new AccountSerializer(), new BenchmarkStoreSettings(directory.getPath(),
+                "no-sync", "binary", "point-lookup-oltp".equals(tuning)));
+        accountIds = new String[numOfAccounts];
+        Map<String, Account> batch = new HashMap<>();
+        for (int i = 0; i < numOfAccounts; i++) {
+            // parts interleave, so that the key ranges of the table files overlap
+            accountIds[i] = "account-" + (i % PARTS) + "-" + i;
+            batch.put(accountIds[i], createAccount(accountIds[i]));
+            if (batch.size() == WRITE_BATCH) {
+                store.putAll(batch);
+                batch.clear();
+            }
+            if ((i + 1) % (numOfAccounts / PARTS) == 0) {
+                store.putAll(batch);
+                batch.clear();
+                store.flush();
+            }
+        }
+        store.putAll(batch);
+        store.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walk(directory.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Benchmark
+    public Account get() {
+        return store.get(accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)]);
+    }
+
+    /**
+     * Lookups of unknown accounts, as for requests with mistyped ids
+     */
+    @Benchmark
+    public Account getMissing() {
+        return store.get("missing-" + ThreadLocalRandom.current().nextInt(numOfAccounts));
+    }
+
+    private static Account createAccount(String accountId) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setName("Alice Smith");
+        account.setBalance(new BigDecimal("123456.78"));
+        return account;
+    }
+}
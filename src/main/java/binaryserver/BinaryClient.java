@@ -0,0 +1,139 @@
+package binaryserver;
+
+import model.Money;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking client of the binary protocol. Requests are buffered and sent by flush() or by the first
+ * readResponse() after them, so several requests can be pipelined; responses are read in the order of requests.
+ * Not thread-safe
+ */
+public class BinaryClient implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer requests = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer responses = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    public BinaryClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        responses.flip();
+    }
+
+    public void getAccount(String accountId) throws IOException {
+        request(BinaryProtocol.GET, accountId, null, null);
+    }
+
+    public void addAccount(String name) throws IOException {
+        request(BinaryProtocol.ADD, name, null, null);
+    }
+
+    public void changeBalance(String accountId, Money amount) throws IOException {
+        request(BinaryProtocol.CHANGE_BALANCE, accountId, null, amount);
+    }
+
+    public void transferMoney(String accountFromId, String accountToId, Money amount) throws IOException {
+        request(BinaryProtocol.TRANSFER, accountFromId, accountToId, amount);
+    }
+
+    public void deleteAccount(String accountId) throws IOException {
+        request(BinaryProtocol.DELETE, accountId, null, null);
+    }
+
+    /**
+     * Sends buffered requests
+     */
+    public void flush() throws IOException {
+        requests.flip();
+        while (requests.hasRemaining()) {
+            channel.write(requests);
+        }
+        requests.clear();
+    }
+
+    /**
+     * Sends buffered requests and waits for the response of the oldest unanswered request
+     */
+    public Response readResponse() throws IOException {
+        flush();
+        while (responses.remaining() < BinaryProtocol.LENGTH_BYTES
+                || responses.remaining() < BinaryProtocol.LENGTH_BYTES + responses.getInt(responses.position())) {
+            readMore();
+        }
+        int length = responses.getInt();
+        byte status = responses.get();
+        byte[] text = new byte[length - 1];
+        responses.get(text);
+        return new Response(status, new String(text, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void request(byte opcode, String first, String second, Money amount) throws IOException {
+        if (requests.remaining() < BinaryProtocol.requestSize(opcode, first, second)) {
+            flush();
+        }
+        BinaryProtocol.writeRequest(requests, opcode, first, second, amount);
+    }
+
+    private void readMore() throws IOException {
+        responses.compact();
+        if (!responses.hasRemaining()) {
+            // a response larger than the buffer
+            ByteBuffer larger = ByteBuffer.allocateDirect(responses.capacity() * 2);
+            responses.flip();
+            larger.put(responses);
+            responses = larger;
+        }
+        int read = channel.read(responses);
+        responses.flip();
+        if (read < 0) {
+            throw new EOFException("Connection is closed by the server");
+        }
+    }
+
+    public static final class Response {
+        private final byte status;
+        private final String text;
+
+        Response(byte status, String text) {
+            this.status = status;
+            this.text = text;
+        }
+
+        public boolean isSuccess() {
+            return status == BinaryProtocol.STATUS_SUCCESS;
+        }
+
+        /**
+         * @return whether the operation was rejected, as with HTTP 422
+         */
+        public boolean isError() {
+            return status == BinaryProtocol.STATUS_ERROR;
+        }
+
+        /**
+         * @return whether the request could not be parsed, as with HTTP 400
+         */
+        public boolean isBadRequest() {
+            return status == BinaryProtocol.STATUS_BAD_REQUEST;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+}
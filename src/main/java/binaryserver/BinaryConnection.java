@@ -0,0 +1,81 @@
+package binaryserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State of one client connection. The read buffer, the batch chain and selection interests are used
+ * by the selector thread only; responses are queued by worker threads and written by the selector thread
+ */
+class BinaryConnection {
+
+    final SocketChannel channel;
+    final SelectionKey key;
+    // direct, so that the socket is read without copying, frames are parsed in place
+    final ByteBuffer readBuffer;
+    /**
+     * The last batch of requests, the next batch is executed after it
+     */
+    CompletableFuture<Void> lastBatch = CompletableFuture.completedFuture(null);
+
+    private final Queue<Responses> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    BinaryConnection(SocketChannel channel, SelectionKey key, int readBufferSize) {
+        this.channel = channel;
+        this.key = key;
+        this.readBuffer = ByteBuffer.allocateDirect(readBufferSize);
+    }
+
+    /**
+     * Counts requests which are read and not answered yet
+     * @return number of such requests
+     */
+    int addPendingRequests(int count) {
+        return pendingRequests.addAndGet(count);
+    }
+
+    /**
+     * Queues encoded responses of a batch, called by worker threads
+     */
+    void addResponses(ByteBuffer buffer, int count) {
+        responses.add(new Responses(buffer, count));
+    }
+
+    /**
+     * Writes queued responses as long as the socket accepts them
+     * @return number of requests still not answered
+     */
+    int writeResponses() throws IOException {
+        Responses next;
+        while ((next = responses.peek()) != null) {
+            channel.write(next.buffer);
+            if (next.buffer.hasRemaining()) {
+                break;
+            }
+            responses.poll();
+            pendingRequests.addAndGet(-next.count);
+        }
+        return pendingRequests.get();
+    }
+
+    boolean hasResponses() {
+        return !responses.isEmpty();
+    }
+
+    private static class Responses {
+        private final ByteBuffer buffer;
+        private final int count;
+
+        Responses(ByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package binaryserver;
+
+import model.AccountIds;
+import model.Money;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames of the binary protocol. Every frame is a 4-byte big-endian length followed by the payload.
+ * <pre>
+ * request   opcode byte, then arguments of the operation:
+ *           GET, DELETE       id
+ *           ADD               name
+ *           CHANGE_BALANCE    id, amount
+ *           TRANSFER          from, to, amount
+ * response  status byte, UTF-8 text up to the end of the frame (the same text as HTTP responses)
+ * string    unsigned 2-byte length, UTF-8 bytes
+ * amount    8-byte units, 1-byte scale (see Money)
+ * </pre>
+ * Responses of a connection are sent in the order of its requests
+ */
+final class BinaryProtocol {
+
+    static final byte GET = 1;
+    static final byte ADD = 2;
+    static final byte CHANGE_BALANCE = 3;
+    static final byte TRANSFER = 4;
+    static final byte DELETE = 5;
+
+    static final byte STATUS_SUCCESS = 0;
+    /**
+     * The operation was rejected, as with HTTP 422
+     */
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_BAD_REQUEST = 2;
+    static final byte STATUS_SERVER_ERROR = 3;
+
+    static final int LENGTH_BYTES = Integer.BYTES;
+
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Reads the request from the frame payload
+     * @return null if the payload is not a valid request
+     */
+    @Nullable
+    static Request decodeRequest(ByteBuffer payload) {
+        try {
+            Request request = new Request(payload.get());
+            switch (request.opcode) {
+                case GET:
+                case DELETE:
+                case ADD:
+                    request.first = readString(payload);
+                    break;
+                case CHANGE_BALANCE:
+                    request.first = readString(payload);
+                    request.amount = readAmount(payload);
+                    break;
+                case TRANSFER:
+                    request.first = readString(payload);
+                    request.second = readString(payload);
+                    request.amount = readAmount(payload);
+                    break;
+                default:
+                    return null;
+            }
+            // the part separator is reserved in account ids, an ADD carries a name
+            if ((request.opcode != ADD && !AccountIds.isValid(request.first))
+                    || (request.opcode == TRANSFER && !AccountIds.isValid(request.second))) {
+                return null;
+            }
+            return payload.hasRemaining() ? null : request;
+        } catch (BufferUnderflowException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    static int responseSize(byte[] text) {
+        return LENGTH_BYTES + 1 + text.length;
+    }
+
+    static void writeResponse(ByteBuffer buffer, byte status, byte[] text) {
+        buffer.putInt(1 + text.length);
+        buffer.put(status);
+        buffer.put(text);
+    }
+
+    /**
+     * @return size of the request frame including its length
+     */
+    static int requestSize(byte opcode, String first, String second) {
+        int size = LENGTH_BYTES + 1 + stringSize(first);
+        if (opcode == TRANSFER) {
+            size += stringSize(second);
+        }
+        if (opcode == CHANGE_BALANCE || opcode == TRANSFER) {
+            size += Long.BYTES + 1;
+        }
+        return size;
+    }
+
+    /**
+     * @param second the destination of TRANSFER, ignored by other operations
+     * @param amount the amount of CHANGE_BALANCE and TRANSFER, ignored by other operations
+     */
+    static void writeRequest(ByteBuffer buffer, byte opcode, String first, String second, Money amount) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(opcode);
+        writeString(buffer, first);
+        if (opcode == TRANSFER) {
+            writeString(buffer, second);
+        }
+        if (opcode == CHANGE_BALANCE || opcode == TRANSFER) {
+            buffer.putLong(amount.getUnits());
+            buffer.put((byte) amount.getScale());
+        }
+        buffer.putInt(start, buffer.position() - start - LENGTH_BYTES);
+    }
+
+    private static int stringSize(String str) {
+        int size = str.getBytes(StandardCharsets.UTF_8).length;
+        if (size > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String is longer than " + MAX_STRING_BYTES + " bytes");
+        }
+        return Short.BYTES + size;
+    }
+
+    private static void writeString(ByteBuffer buffer, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Money readAmount(ByteBuffer buffer) {
+        long units = buffer.getLong();
+        return Money.ofUnits(units, buffer.get());
+    }
+
+    static final class Request {
+        final byte opcode;
+        String first;
+        String second;
+        Money amount;
+
+        Request(byte opcode) {
+            this.opcode = opcode;
+        }
+    }
+}
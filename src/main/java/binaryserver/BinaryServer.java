@@ -0,0 +1,353 @@
+package binaryserver;
+
+import config.BinarySettings;
+import engine.AccountEngine;
+import httpserver.OperationResult;
+import metrics.LatencyRecorder;
+import metrics.Metrics;
+import model.Account;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Listener of the binary protocol (see BinaryProtocol) next to the HTTP server, sharing its AccountEngine.
+ * One selector thread accepts connections, reads and writes them. All complete frames of one read
+ * form a batch, which is executed by a worker thread after the previous batch of the same connection,
+ * so requests of a connection are executed and answered in order, and a pipelining client pays
+ * one thread handoff and one wakeup per batch rather than per request
+ */
+public final class BinaryServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryServer.class);
+    private static final LatencyRecorder REQUEST_LATENCY = Metrics.latency("binary_request_duration_seconds",
+            "Time from reading a binary request to its result");
+    private static final byte[] BAD_REQUEST_TEXT = "Invalid request".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SERVER_ERROR_TEXT = "Server error".getBytes(StandardCharsets.UTF_8);
+    private static final long STOP_TIMEOUT_MILLIS = 5_000;
+
+    private final AccountEngine accountEngine;
+    private final BinarySettings binarySettings;
+    private final ExecutorService executorService;
+    // connections with responses queued by worker threads
+    private final Queue<BinaryConnection> connectionsToWrite = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numOfConnections = new AtomicInteger();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public BinaryServer(AccountEngine accountEngine, BinarySettings binarySettings, int numOfThreads) {
+        this.accountEngine = accountEngine;
+        this.binarySettings = binarySettings;
+        ThreadPoolExecutor executorService = new ThreadPoolExecutor(numOfThreads, numOfThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), t -> new Thread(t, "binary-actions-thread"));
+        this.executorService = executorService;
+        Metrics.gauge("binary_connections", "Open connections of the binary protocol", numOfConnections::get);
+        Metrics.gauge("binary_queue_depth", "Batches of binary requests waiting for a worker thread",
+                () -> executorService.getQueue().size());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> stop()));
+    }
+
+    public void start() {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(binarySettings.port()));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not start binary server");
+        }
+        running = true;
+        selectorThread = new Thread(this::select, "binary-selector-thread");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        LOG.info("Binary server is listening on port {}", getPort());
+    }
+
+    /**
+     * Stops reading requests and waits until the requests already read are answered
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port the server listens on, useful when the configured port is 0
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                selector.select();
+                writeQueuedResponses();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handle((BinaryConnection) key.attachment(), key);
+                    }
+                }
+            }
+            answerReadRequests();
+        } catch (IOException e) {
+            LOG.error(e.getMessage(), e);
+        } finally {
+            executorService.shutdown();
+            closeAll();
+        }
+    }
+
+    /**
+     * Executed by the selector thread after a stop: nothing is accepted or read anymore,
+     * worker threads finish the batches already read and their responses are written
+     */
+    private void answerReadRequests() throws IOException {
+        serverChannel.close();
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+        // the executor is shut down by the only thread which submits batches, so no batch is rejected
+        executorService.shutdown();
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+        while (!executorService.isTerminated() || !connectionsToWrite.isEmpty() || hasUnwrittenResponses()) {
+            long timeout = deadline - System.currentTimeMillis();
+            if (timeout <= 0) {
+                LOG.info("Binary server is stopped with unanswered requests");
+                return;
+            }
+            selector.select(timeout);
+            writeQueuedResponses();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isValid() && key.attachment() instanceof BinaryConnection) {
+                    handle((BinaryConnection) key.attachment(), key);
+                }
+            }
+        }
+    }
+
+    private boolean hasUnwrittenResponses() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof BinaryConnection
+                    && ((BinaryConnection) key.attachment()).hasResponses()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new BinaryConnection(channel, key,
+                    BinaryProtocol.LENGTH_BYTES + binarySettings.maxFrameBytes()));
+            numOfConnections.incrementAndGet();
+        }
+    }
+
+    private void handle(BinaryConnection connection, SelectionKey key) {
+        try {
+            if (key.isWritable()) {
+                write(connection);
+            }
+            if (key.isValid() && key.isReadable()) {
+                read(connection);
+            }
+        } catch (IOException e) {
+            LOG.debug("Binary connection is closed: {}", e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void read(BinaryConnection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        if (connection.channel.read(buffer) < 0) {
+            close(connection);
+            return;
+        }
+        long readNanos = System.nanoTime();
+        buffer.flip();
+        List<BinaryProtocol.Request> batch = new ArrayList<>();
+        while (buffer.remaining() >= BinaryProtocol.LENGTH_BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 1 || length > binarySettings.maxFrameBytes()) {
+                LOG.info("Closing binary connection with a frame of {} bytes", length);
+                close(connection);
+                return;
+            }
+            if (buffer.remaining() < BinaryProtocol.LENGTH_BYTES + length) {
+                break;
+            }
+            // null stands for an invalid request, it is answered in its turn
+            batch.add(BinaryProtocol.decodeRequest(
+                    buffer.slice(buffer.position() + BinaryProtocol.LENGTH_BYTES, length)));
+            buffer.position(buffer.position() + BinaryProtocol.LENGTH_BYTES + length);
+        }
+        buffer.compact();
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (connection.addPendingRequests(batch.size()) >= binarySettings.maxPipelinedRequests()) {
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+        connection.lastBatch = connection.lastBatch.thenRunAsync(
+                () -> execute(connection, batch, readNanos), executorService);
+    }
+
+    /**
+     * Executes requests of the batch in order and queues their responses as one buffer
+     */
+    private void execute(BinaryConnection connection, List<BinaryProtocol.Request> batch, long readNanos) {
+        byte[] statuses = new byte[batch.size()];
+        byte[][] texts = new byte[batch.size()][];
+        int size = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            BinaryProtocol.Request request = batch.get(i);
+            if (request == null) {
+                statuses[i] = BinaryProtocol.STATUS_BAD_REQUEST;
+                texts[i] = BAD_REQUEST_TEXT;
+            } else {
+                try {
+                    OperationResult result = executeRequest(request);
+                    statuses[i] = result.isError() ? BinaryProtocol.STATUS_ERROR : BinaryProtocol.STATUS_SUCCESS;
+                    texts[i] = result.getText().getBytes(StandardCharsets.UTF_8);
+                } catch (Throwable e) {
+                    LOG.error(e.getMessage(), e);
+                    statuses[i] = BinaryProtocol.STATUS_SERVER_ERROR;
+                    texts[i] = SERVER_ERROR_TEXT;
+                }
+            }
+            REQUEST_LATENCY.recordSince(readNanos);
+            size += BinaryProtocol.responseSize(texts[i]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < batch.size(); i++) {
+            BinaryProtocol.writeResponse(buffer, statuses[i], texts[i]);
+        }
+        buffer.flip();
+        connection.addResponses(buffer, batch.size());
+        connectionsToWrite.add(connection);
+        selector.wakeup();
+    }
+
+    private OperationResult executeRequest(BinaryProtocol.Request request) {
+        switch (request.opcode) {
+            case BinaryProtocol.GET:
+                return accountEngine.getAccount(request.first);
+            case BinaryProtocol.ADD:
+                Account account = new Account();
+                account.setName(request.first);
+                return accountEngine.addAccount(account);
+            case BinaryProtocol.CHANGE_BALANCE:
+                return accountEngine.changeBalance(request.first, request.amount);
+            case BinaryProtocol.TRANSFER:
+                return accountEngine.transferMoney(request.first, request.second, request.amount);
+            case BinaryProtocol.DELETE:
+                return accountEngine.deleteAccount(request.first);
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + request.opcode);
+        }
+    }
+
+    private void writeQueuedResponses() {
+        BinaryConnection connection;
+        while ((connection = connectionsToWrite.poll()) != null) {
+            if (connection.key.isValid()) {
+                try {
+                    write(connection);
+                } catch (IOException e) {
+                    LOG.debug("Binary connection is closed: {}", e.getMessage());
+                    close(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes queued responses, waits for the socket to be writable if it does not take all of them,
+     * and resumes reading when the number of unanswered requests is below the limit, unless the server stops
+     */
+    private void write(BinaryConnection connection) throws IOException {
+        int pendingRequests = connection.writeResponses();
+        int interestOps = connection.hasResponses() ? SelectionKey.OP_WRITE : 0;
+        if (running && pendingRequests < binarySettings.maxPipelinedRequests()) {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        connection.key.interestOps(interestOps);
+    }
+
+    private void close(BinaryConnection connection) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOG.debug(e.getMessage(), e);
+        }
+        numOfConnections.decrementAndGet();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof BinaryConnection) {
+                close((BinaryConnection) key.attachment());
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            LOG.debug(e.getMessage(), e);
+        }
+    }
+}
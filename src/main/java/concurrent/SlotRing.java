@@ -0,0 +1,120 @@
+package concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock-free ring of preallocated slots shared by many producers and many consumers.
+ * A producer claims a free slot, fills it in and publishes it; a consumer takes a run of published slots,
+ * processes them and returns them to producers. Slots are never reallocated, so they should be mutable holders.
+ *
+ * Every slot has a sequence number: for the position p it is p when the slot is free,
+ * p + 1 when the slot is published and p + capacity when it is returned for the next lap
+ */
+public class SlotRing<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, a power of two
+     */
+    public SlotRing(int capacity, Supplier<T> slotFactory) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity should be a power of two " + capacity);
+        }
+        slots = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = slotFactory.get();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return position of a claimed slot, or -1 if the ring is full
+     */
+    public long tryClaim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get(index(position)) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the slot is still used by the previous lap
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T slot(long position) {
+        return (T) slots[index(position)];
+    }
+
+    /**
+     * Makes the claimed slot visible to consumers
+     */
+    public void publish(long position) {
+        sequences.lazySet(index(position), position + 1);
+    }
+
+    /**
+     * Takes up to maxBatch published slots, passes them to the consumer in order and returns them to producers
+     * @return number of processed slots, 0 if there are no published slots
+     */
+    public int drain(int maxBatch, Consumer<T> consumer) {
+        long position = head.get();
+        int count;
+        while (true) {
+            count = 0;
+            while (count < maxBatch && sequences.get(index(position + count)) == position + count + 1) {
+                count++;
+            }
+            if (count > 0 && head.compareAndSet(position, position + count)) {
+                break;
+            }
+            long currentHead = head.get();
+            if (count == 0 && currentHead == position) {
+                return 0;
+            }
+            position = currentHead;
+        }
+        for (int i = 0; i < count; i++) {
+            long slotPosition = position + i;
+            try {
+                consumer.accept(slot(slotPosition));
+            } finally {
+                sequences.lazySet(index(slotPosition), slotPosition + slots.length);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of claimed slots not yet returned by consumers, an estimate if the ring is in use
+     */
+    public int size() {
+        long head = this.head.get();
+        return (int) Math.max(0, Math.min(tail.get() - head, slots.length));
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    private int index(long position) {
+        return (int) position & mask;
+    }
+}
@@ -0,0 +1,57 @@
+package concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a consumer thread does when there is nothing to consume
+ */
+public enum WaitStrategy {
+
+    /**
+     * Keeps polling, the lowest latency at the cost of a fully busy core per consumer
+     */
+    BUSY_SPIN("busy-spin") {
+        @Override
+        public void idle() {
+        }
+    },
+
+    /**
+     * Gives the core to other threads between polls
+     */
+    YIELD("yield") {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Sleeps for a short time between polls, the lowest CPU usage
+     */
+    PARK("park") {
+        @Override
+        public void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final long PARK_NANOS = 50_000;
+
+    private final String configName;
+
+    WaitStrategy(String configName) {
+        this.configName = configName;
+    }
+
+    public abstract void idle();
+
+    public static WaitStrategy fromConfig(String configName) {
+        for (WaitStrategy waitStrategy : values()) {
+            if (waitStrategy.configName.equals(configName)) {
+                return waitStrategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown wait strategy " + configName);
+    }
+}
@@ -0,0 +1,20 @@
+package config;
+
+public interface BinarySettings {
+
+    /**
+     * Port of the binary protocol listener, 0 disables the listener
+     */
+    int port();
+
+    /**
+     * Maximal size of a request frame without its length, a connection sending a larger frame is closed
+     */
+    int maxFrameBytes();
+
+    /**
+     * Maximal number of requests of a connection which are read but not answered yet.
+     * Reading from the connection is paused until responses are sent
+     */
+    int maxPipelinedRequests();
+}
@@ -17,28 +17,58 @@ public class ConfigKeeper {
     private static final Logger LOG = LoggerFactory.getLogger(ConfigKeeper.class);
 
     private final HttpSettings httpSettings;
+    private final BinarySettings binarySettings;
     private final StoreSettings storeSettings;
+    private final EngineSettings engineSettings;
+    private final LoggingSettings loggingSettings;
+    private final FxSettings fxSettings;
+    private final ReplicationSettings replicationSettings;
 
 
 
     public ConfigKeeper(String filename) {
         ConfigurationProvider provider = fileSourceProvider(filename);
         httpSettings = provider.bind("httpserver", HttpSettings.class);
+        binarySettings = provider.bind("binaryserver", BinarySettings.class);
         storeSettings = provider.bind("store", StoreSettings.class);
+        engineSettings = provider.bind("engine", EngineSettings.class);
+        loggingSettings = provider.bind("logging", LoggingSettings.class);
+        fxSettings = provider.bind("fx", FxSettings.class);
+        replicationSettings = provider.bind("replication", ReplicationSettings.class);
     }
 
     public HttpSettings getHttpSettings() {
         return httpSettings;
     }
 
+    public BinarySettings getBinarySettings() {
+        return binarySettings;
+    }
+
     public StoreSettings getStoreSettings() {
         return storeSettings;
     }
 
+    public EngineSettings getEngineSettings() {
+        return engineSettings;
+    }
+
+    public LoggingSettings getLoggingSettings() {
+        return loggingSettings;
+    }
+
+    public FxSettings getFxSettings() {
+        return fxSettings;
+    }
+
+    public ReplicationSettings getReplicationSettings() {
+        return replicationSettings;
+    }
+
     private static ConfigurationProvider fileSourceProvider(final String filename) {
         ConfigurationSource source = new EmptyConfigurationSource() {
             private Properties properties = new YamlBasedPropertiesProvider()
-                    .getProperties(ClassLoader.class.getResourceAsStream("/" + filename));
+                    .getProperties(ConfigKeeper.class.getResourceAsStream("/" + filename));
 
             @Override
             public Properties getConfiguration(Environment environment) {
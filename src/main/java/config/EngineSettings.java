@@ -0,0 +1,40 @@
+package config;
+
+public interface EngineSettings {
+
+    /**
+     * "locking" - operations are executed by any thread under account locks,
+     * "sharded" - accounts are partitioned between single-threaded shards,
+     * "optimistic" - operations are executed by any thread as optimistic transactions retried on conflicts
+     */
+    String mode();
+
+    /**
+     * Number of shards in "sharded" mode, 0 means the number of available processors
+     */
+    int shards();
+
+    /**
+     * Number of lock stripes shared by accounts, 0 means a separate lock for every account
+     */
+    int lockStripes();
+
+    /**
+     * Hot accounts whose balance is split into parts with separate locks and keys in "locking" mode:
+     * comma-separated "[account id]:[number of parts]", empty for none. The number of parts of an account
+     * may only grow, since balances of dropped parts would not be seen
+     */
+    String splitAccounts();
+
+    /**
+     * How "locking" mode reads accounts: "locked" - under their account locks,
+     * "lock-free" - without locks from the store (see engine.ReadMode)
+     */
+    String readMode();
+
+    /**
+     * Maximal number of retries of an operation whose transaction conflicted in "optimistic" mode,
+     * after that the operation fails
+     */
+    int optimisticRetries();
+}
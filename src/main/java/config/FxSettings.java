@@ -0,0 +1,21 @@
+package config;
+
+public interface FxSettings {
+
+    /**
+     * Currency of accounts created without a currency, every rate of the rates file is the value
+     * of one unit of a currency in this currency
+     */
+    String defaultCurrency();
+
+    /**
+     * Path of the exchange rates file, empty for no rates: then only transfers between accounts
+     * of the same currency are possible
+     */
+    String ratesFile();
+
+    /**
+     * How often the rates file is checked for changes, 0 disables reloading
+     */
+    int reloadIntervalMillis();
+}
@@ -3,4 +3,32 @@ package config;
 public interface HttpSettings {
 
     int port();
+
+    /**
+     * How requests are passed to worker threads: "executor" (thread pool with unbounded queue),
+     * "ring" (bounded ring buffer, requests beyond its size are rejected with 503)
+     * or "virtual" (a new virtual thread per request)
+     */
+    String dispatchMode();
+
+    /**
+     * Number of slots in the ring buffer, must be a power of two
+     */
+    int ringSize();
+
+    /**
+     * What idle ring buffer workers do: "busy-spin", "yield" or "park"
+     */
+    String waitStrategy();
+
+    /**
+     * How long idempotency keys of transfers and balance changes are remembered, 0 disables idempotency keys
+     */
+    long idempotencyTtlSeconds();
+
+    /**
+     * Maximal number of idempotency keys kept in memory, the oldest keys are evicted first.
+     * Evicted keys are still found in the store until they expire
+     */
+    int idempotencyMaxKeys();
 }
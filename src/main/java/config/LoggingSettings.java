@@ -0,0 +1,25 @@
+package config;
+
+public interface LoggingSettings {
+
+    /**
+     * "sync" - lines are written by the calling thread, "async" - lines are passed to a background writer
+     */
+    String mode();
+
+    /**
+     * Number of lines the async writer queue holds, must be a power of two
+     */
+    int queueSize();
+
+    /**
+     * What to do with a line when the async queue is full: "drop" it, "block" until there is room
+     * or "write-through" by the calling thread. Errors are never dropped, they are always written synchronously
+     */
+    String dropPolicy();
+
+    /**
+     * Maximal number of info lines per second written by one logger, 0 means no limit
+     */
+    int maxInfoLinesPerSecond();
+}
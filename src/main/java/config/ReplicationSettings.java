@@ -0,0 +1,21 @@
+package config;
+
+public interface ReplicationSettings {
+
+    /**
+     * Port the leader streams checkpoints and updates of its store to followers on, 0 disables replication
+     */
+    int port();
+
+    /**
+     * "host:port" of the replication port of the leader, a non-empty value launches the node
+     * as a read-only follower of that leader
+     */
+    String leader();
+
+    /**
+     * How often the leader looks for new updates once a follower has caught up, which is also the interval
+     * of heartbeats and the delay of the follower before it reconnects
+     */
+    int pollIntervalMillis();
+}
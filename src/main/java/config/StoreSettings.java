@@ -3,4 +3,88 @@ package config;
 public interface StoreSettings {
 
     String path();
+
+    /**
+     * One of "no-sync", "sync-per-batch", "sync-per-op"
+     */
+    String syncPolicy();
+
+    /**
+     * Maximal number of writes committed in one group commit batch, 1 disables grouping
+     */
+    int groupCommitMaxBatch();
+
+    /**
+     * How long the group commit stage waits for more writes after the first one
+     */
+    int groupCommitWindowMicros();
+
+    /**
+     * Maximal number of accounts kept in the in-memory cache, 0 disables the cache
+     */
+    int cacheSize();
+
+    /**
+     * Encoding of accounts in RocksDb: "json" or "binary". Both encodings can be read regardless of this setting
+     */
+    String codec();
+
+    /**
+     * Size of the block cache shared by all column families, 0 keeps the RocksDb default (8 MB per column family)
+     */
+    long blockCacheSizeMb();
+
+    /**
+     * Bits per key of bloom filters in table files, 0 disables filters
+     */
+    int bloomFilterBitsPerKey();
+
+    /**
+     * Tunes the accounts column family for reads of single accounts: index and filter blocks are kept in
+     * the block cache (pinned for level 0), and the last level has no filters, since looked up accounts
+     * almost always exist
+     */
+    boolean optimizeForPointLookup();
+
+    /**
+     * Size of one memtable, 0 keeps the RocksDb default (64 MB)
+     */
+    long writeBufferSizeMb();
+
+    /**
+     * Maximal number of memtables of a column family, including the ones being flushed, 0 keeps the default (2)
+     */
+    int maxWriteBufferNumber();
+
+    /**
+     * "level" (lower space and read amplification) or "universal" (lower write amplification)
+     */
+    String compactionStyle();
+
+    /**
+     * Maximal number of concurrent flushes and compactions, 0 keeps the RocksDb default (2)
+     */
+    int maxBackgroundJobs();
+
+    /**
+     * Reads of table files bypass the OS page cache, so the block cache should be sized accordingly
+     */
+    boolean useDirectReads();
+
+    /**
+     * Flushes and compactions bypass the OS page cache
+     */
+    boolean useDirectIoForFlushAndCompaction();
+
+    /**
+     * Number of key ranges of the accounts column family read in parallel by aggregates over all accounts,
+     * 0 uses the number of processors
+     */
+    int scanThreads();
+
+    /**
+     * How long WAL files are kept after their memtables are flushed, so that followers which are behind
+     * can still read the updates from them. 0 deletes WAL files as soon as they are flushed
+     */
+    long walTtlSeconds();
 }
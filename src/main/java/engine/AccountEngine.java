@@ -0,0 +1,57 @@
+package engine;
+
+
+import httpserver.OperationResult;
+import model.Account;
+import model.Money;
+import model.Transfer;
+import org.jetbrains.annotations.Nullable;
+import store.RecordWrites;
+
+import java.util.List;
+
+/**
+ * API methods (add, get, getMany, changeBalance, transferMoney, transferBatch, delete)
+ */
+public interface AccountEngine {
+
+    /**
+     * @param sum amount in the currency of the source account, the destination account is credited
+     *            the amount converted to its currency by the current exchange rates
+     */
+    OperationResult transferMoney(String accountFromId, String accountToId, Money sum);
+
+    /**
+     * Transfers like transferMoney(accountFromId, accountToId, sum). If the transfer succeeds,
+     * the records are written in the same atomic write as the debited account
+     * @param records null if there are no records to write
+     */
+    OperationResult transferMoney(String accountFromId, String accountToId, Money sum, @Nullable RecordWrites records);
+
+    /**
+     * @return results in the order of transfers
+     */
+    List<OperationResult> transferBatch(List<Transfer> transfers);
+
+    OperationResult getAccount(String accountId);
+
+    /**
+     * Reads the accounts at one moment, so that both accounts of a transfer are seen either before
+     * or after it
+     * @return a json array of the accounts in the order of ids
+     */
+    OperationResult getAccounts(List<String> accountIds);
+
+    OperationResult changeBalance(String accountId, Money sum);
+
+    /**
+     * Changes the balance like changeBalance(accountId, sum). If the change succeeds,
+     * the records are written in the same atomic write as the account
+     * @param records null if there are no records to write
+     */
+    OperationResult changeBalance(String accountId, Money sum, @Nullable RecordWrites records);
+
+    OperationResult addAccount(Account account);
+
+    OperationResult deleteAccount(String accountId);
+}
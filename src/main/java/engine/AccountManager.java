@@ -1,91 +1,267 @@
 package engine;
 
 
+import config.EngineSettings;
+import fx.FxRates;
+import fx.FxSnapshot;
 import httpserver.OperationResult;
+import logging.AsyncLog;
+import logging.AsyncLogger;
 import model.Account;
 import model.AccountSerializer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import store.RocksDbStore;
+import model.Money;
+import model.Transfer;
+import model.TransferEvent;
+import org.jetbrains.annotations.Nullable;
+import store.RecordWrites;
 import store.Store;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 
 /**
  * Implementation of API methods (add, get, changeBalance, transferMoney, delete)
+ * synchronized by account locks of LockManager.
+ * A split account (see SplitAccounts) is credited to a random part under the lock of that part only,
+ * and debited from a random part; when the part has not enough money, the debit takes locks of all parts
+ * and borrows from them.
+ * Reads take the locks of their accounts or no locks at all, depending on ReadMode
  */
-public class AccountManager {
+public class AccountManager implements AccountEngine {
 
-    private static final Logger LOG = LoggerFactory.getLogger(RocksDbStore.class);
+    private static final AsyncLogger LOG = AsyncLog.getLogger(AccountManager.class);
+
+    /**
+     * Maximal number of transfers of a batch executed under one set of locks and written in one store batch
+     */
+    private static final int MAX_TRANSFERS_PER_CHUNK = 256;
+
+    /**
+     * Returned (compared by identity) when a part of a split account can not pay the sum by itself
+     */
+    private static final OperationResult PART_IS_SHORT = OperationResult.fixedError("Part of the account is short.");
 
     private final Store store;
     private final LockManager lockManager;
     private final AccountSerializer accountSerializer;
+    private final SplitAccounts splitAccounts;
+    private final FxRates fxRates;
+    private final ReadMode readMode;
 
     public AccountManager(Store store) {
+        this(store, new MapLockManager());
+    }
+
+    public AccountManager(Store store, EngineSettings engineSettings) {
+        this(store, engineSettings, new FxRates(FxSnapshot.NONE));
+    }
+
+    public AccountManager(Store store, EngineSettings engineSettings, FxRates fxRates) {
+        this(store, LockManager.create(engineSettings.lockStripes()),
+                SplitAccounts.fromConfig(engineSettings.splitAccounts()), fxRates,
+                ReadMode.fromConfig(engineSettings.readMode()));
+    }
+
+    AccountManager(Store store, LockManager lockManager) {
+        this(store, lockManager, SplitAccounts.NONE);
+    }
+
+    AccountManager(Store store, LockManager lockManager, SplitAccounts splitAccounts) {
+        this(store, lockManager, splitAccounts, new FxRates(FxSnapshot.NONE));
+    }
+
+    AccountManager(Store store, LockManager lockManager, SplitAccounts splitAccounts, FxRates fxRates) {
+        this(store, lockManager, splitAccounts, fxRates, ReadMode.LOCKED);
+    }
+
+    AccountManager(Store store, LockManager lockManager, SplitAccounts splitAccounts, FxRates fxRates,
+                   ReadMode readMode) {
         this.store = store;
-        this.lockManager = new LockManager();
+        this.lockManager = lockManager;
         this.accountSerializer = new AccountSerializer();
+        this.splitAccounts = splitAccounts;
+        this.fxRates = fxRates;
+        this.readMode = readMode;
     }
 
+    @Override
     public OperationResult transferMoney(String accountFromId, String accountToId,
-                                         BigDecimal sum) {
+                                         Money sum) {
+        return transferMoney(accountFromId, accountToId, sum, null);
+    }
+
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum,
+                                         @Nullable RecordWrites records) {
         if (accountFromId.equals(accountToId)) {
-            return OperationResult.error("Same source and destination account.");
+            return AccountOperations.SAME_ACCOUNT;
+        }
+        String debitKey = splitAccounts.randomPartKey(accountFromId);
+        String creditKey = splitAccounts.randomPartKey(accountToId);
+        OperationResult result = lockManager.executeOnTwoLocks(debitKey, creditKey,
+                () -> transferBetweenParts(accountFromId, debitKey, accountToId, creditKey, sum, records));
+        if (result != PART_IS_SHORT) {
+            return result;
         }
-        return lockManager.executeOnTwoLocks(accountFromId, accountToId, () -> {
-            Account accountFrom = store.get(accountFromId);
-            Account accountTo = store.get(accountToId);
-            if (accountFrom == null) {
-                return OperationResult.error("Source account does not exist.");
+        List<String> lockIds = new ArrayList<>(splitAccounts.partKeys(accountFromId));
+        lockIds.add(creditKey);
+        return lockManager.executeOnLocks(lockIds,
+                () -> transferFromAllParts(accountFromId, accountToId, creditKey, sum, records));
+    }
+
+    /**
+     * Executes transfers in chunks: all accounts of a chunk are locked at once, every account is read once,
+     * transfers are applied in order and changed accounts are written in one store batch.
+     * A chunk which fails stops the batch, results of the written chunks are kept
+     */
+    @Override
+    public List<OperationResult> transferBatch(List<Transfer> transfers) {
+        List<OperationResult> results = new ArrayList<>(transfers.size());
+        try {
+            executeBatch(transfers, results);
+        } catch (RuntimeException e) {
+            LOG.error("Transfer batch stopped after {} transfers.", results.size(), e);
+            return AccountOperations.stoppedBatch(results, transfers.size());
+        }
+        return results;
+    }
+
+    private void executeBatch(List<Transfer> transfers, List<OperationResult> results) {
+        int start = 0;
+        while (start < transfers.size()) {
+            // transfers of split accounts lock parts of their own, they are executed one by one
+            if (isSplit(transfers.get(start))) {
+                Transfer transfer = transfers.get(start++);
+                results.add(transferMoney(transfer.getFrom(), transfer.getTo(), transfer.getAmount()));
+                continue;
             }
-            if (accountTo == null) {
-                return OperationResult.error("Destination account does not exist.");
+            int end = start + 1;
+            while (end < transfers.size() && end - start < MAX_TRANSFERS_PER_CHUNK && !isSplit(transfers.get(end))) {
+                end++;
             }
-            if (accountFrom.getBalance().subtract(sum).compareTo(BigDecimal.ZERO) < 0) {
-                return OperationResult.error("Can not withdraw to negative value.");
+            List<Transfer> chunk = transfers.subList(start, end);
+            start = end;
+            Set<String> accountIds = new LinkedHashSet<>();
+            for (Transfer transfer : chunk) {
+                accountIds.add(transfer.getFrom());
+                accountIds.add(transfer.getTo());
             }
-
-            accountFrom.setBalance(accountFrom.getBalance().subtract(sum));
-            accountTo.setBalance(accountTo.getBalance().add(sum));
-            store.put(accountFromId, accountFrom);
-            store.put(accountToId, accountTo);
-            LOG.info("Transferring money {} from account {} to account {}.", sum, accountFromId, accountToId);
-            return OperationResult.success();
-        });
+            FxSnapshot rates = fxRates.snapshot();
+            lockManager.executeOnLocks(accountIds, () -> {
+                Map<String, Account> accounts = new HashMap<>();
+                for (String accountId : accountIds) {
+                    Account account = store.get(accountId);
+                    if (account != null) {
+                        accounts.put(accountId, account);
+                    }
+                }
+                Map<String, Account> changedAccounts = new LinkedHashMap<>();
+                List<TransferEvent> events = new ArrayList<>();
+                List<OperationResult> chunkResults = new ArrayList<>(chunk.size());
+                for (Transfer transfer : chunk) {
+                    OperationResult result = AccountOperations.applyTransfer(transfer, accounts, changedAccounts, rates);
+                    if (!result.isError()) {
+                        events.add(new TransferEvent(transfer.getFrom(), transfer.getTo(), transfer.getAmount()));
+                    }
+                    chunkResults.add(result);
+                }
+                if (!changedAccounts.isEmpty()) {
+                    store.putAll(changedAccounts, events);
+                }
+                results.addAll(chunkResults);
+                LOG.info("Transferred money in a batch of {} transfers.", chunk.size());
+                return OperationResult.success();
+            });
+        }
     }
 
+    /**
+     * A lock-free read of a split account reads all its parts from one snapshot of the store,
+     * since money moves between parts when a debit borrows from them
+     */
+    @Override
     public OperationResult getAccount(String accountId) {
-        return lockManager.executeOnOneLock(accountId, () -> {
-            Account account = store.get(accountId);
-            if (account == null) {
-                return OperationResult.error("The account does not exist.");
+        if (splitAccounts.isSplit(accountId)) {
+            if (readMode == ReadMode.LOCK_FREE) {
+                return sendSplitAccount(accountId, store.getAll(splitAccounts.partKeys(accountId)));
             }
-            LOG.info("Sending account {} to client.", accountId);
-            return OperationResult.success(accountSerializer.serialize(account));
+            return lockManager.executeOnLocks(splitAccounts.partKeys(accountId), () -> getSplitAccount(accountId));
+        }
+        if (readMode == ReadMode.LOCK_FREE) {
+            return sendAccount(accountId, store.getUnlocked(accountId));
+        }
+        return lockManager.executeOnOneLock(accountId, () -> sendAccount(accountId, store.get(accountId)));
+    }
+
+    /**
+     * Reads the accounts (all parts of split accounts) under the locks of all of them,
+     * or without locks from one snapshot of the store
+     */
+    @Override
+    public OperationResult getAccounts(List<String> accountIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String accountId : accountIds) {
+            keys.addAll(splitAccounts.partKeys(accountId));
+        }
+        if (readMode == ReadMode.LOCK_FREE) {
+            return sendAccounts(accountIds, store.getAll(keys));
+        }
+        return lockManager.executeOnLocks(keys, () -> {
+            Map<String, Account> accounts = new HashMap<>();
+            for (String key : keys) {
+                Account account = store.get(key);
+                if (account != null) {
+                    accounts.put(key, account);
+                }
+            }
+            return sendAccounts(accountIds, accounts);
         });
     }
 
-    public OperationResult changeBalance(String accountId, BigDecimal sum) {
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum) {
+        return changeBalance(accountId, sum, null);
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum, @Nullable RecordWrites records) {
+        if (splitAccounts.isSplit(accountId)) {
+            String partKey = splitAccounts.randomPartKey(accountId);
+            OperationResult result = lockManager.executeOnOneLock(partKey,
+                    () -> changePartBalance(accountId, partKey, sum, records));
+            if (result != PART_IS_SHORT) {
+                return result;
+            }
+            return lockManager.executeOnLocks(splitAccounts.partKeys(accountId),
+                    () -> withdrawFromAllParts(accountId, sum, records));
+        }
         return lockManager.executeOnOneLock(accountId, () -> {
             Account account = store.get(accountId);
-            BigDecimal balance = account.getBalance();
-            if (balance.add(sum).compareTo(BigDecimal.ZERO) < 0) {
-                return OperationResult.error("Can not withdraw to negative balance.");
+            OperationResult checkResult = AccountOperations.checkChangeBalance(account, sum);
+            if (checkResult != null) {
+                return checkResult;
             }
-            account.setBalance(balance.add((sum)));
-            store.put(accountId, account);
+            account.add(sum);
+            putAccount(accountId, account, records);
             LOG.info("Changing balance {} to account {}.", sum, accountId);
             return OperationResult.success();
         });
     }
 
+    @Override
     public OperationResult addAccount(Account account) {
         String accountId = UUID.randomUUID().toString();
         account.setId(accountId);
-        account.setBalance(BigDecimal.ZERO);
+        account.setBalance(0, 0);
         return lockManager.executeOnOneLock(accountId, () -> {
             store.put(accountId, account);
             LOG.info("Account was added {}.", account.getName());
@@ -93,24 +269,321 @@ public class AccountManager {
         });
     }
 
+    @Override
     public OperationResult deleteAccount(String accountId) {
-       return lockManager.executeOnOneLock(accountId, () -> {
+        if (splitAccounts.isSplit(accountId)) {
+            return lockManager.executeOnLocks(splitAccounts.partKeys(accountId), () -> deleteSplitAccount(accountId));
+        }
+        return lockManager.executeOnOneLock(accountId, () -> {
             Account account = store.get(accountId);
             if (account == null) {
-                return OperationResult.error("Account does not exist.");
+                return AccountOperations.NO_ACCOUNT_TO_DELETE;
             }
-            if (!account.getBalance().equals(BigDecimal.ZERO)) {
-                return OperationResult.error("Account balance is not 0.");
+            if (!account.isBalanceZero()) {
+                return AccountOperations.BALANCE_NOT_ZERO;
             }
             store.delete(accountId);
             LOG.info("Account {} was deleted.", accountId);
             return OperationResult.success();
         });
     }
-}
 
+    private OperationResult transferBetweenParts(String accountFromId, String debitKey, String accountToId,
+                                                 String creditKey, Money sum, @Nullable RecordWrites records) {
+        Account accountFrom = readPart(accountFromId, debitKey);
+        Account accountTo = readPart(accountToId, creditKey);
+        if (accountFrom == null) {
+            return AccountOperations.NO_SOURCE_ACCOUNT;
+        }
+        if (accountTo == null) {
+            return AccountOperations.NO_DESTINATION_ACCOUNT;
+        }
+        Money credit = AccountOperations.creditAmount(accountFrom, accountTo, sum, fxRates.snapshot());
+        if (credit == null) {
+            return AccountOperations.NO_EXCHANGE_RATE;
+        }
+        OperationResult checkResult = AccountOperations.checkTransfer(accountFrom, accountTo, sum, credit);
+        if (checkResult != null) {
+            boolean partIsShort = splitAccounts.isSplit(accountFromId)
+                    && AccountOperations.checkWithdraw(accountFrom, sum) != null;
+            return partIsShort ? PART_IS_SHORT : checkResult;
+        }
+
+        accountFrom.subtract(sum);
+        accountTo.add(credit);
+        // both accounts are written in one batch, so a failure can not leave the money half-transferred
+        Map<String, Account> changedAccounts = new LinkedHashMap<>();
+        changedAccounts.put(debitKey, accountFrom);
+        changedAccounts.put(creditKey, accountTo);
+        putAccounts(changedAccounts, Collections.singletonList(new TransferEvent(accountFromId, accountToId, sum)),
+                records);
+        LOG.info("Transferring money {} from account {} to account {}.", sum, accountFromId, accountToId);
+        return OperationResult.success();
+    }
+
+    /**
+     * Transfers from a split account whose locks of all parts are held
+     */
+    private OperationResult transferFromAllParts(String accountFromId, String accountToId, String creditKey,
+                                                 Money sum, @Nullable RecordWrites records) {
+        Map<String, Account> parts = readParts(accountFromId);
+        Account accountTo = readPart(accountToId, creditKey);
+        if (parts == null) {
+            return AccountOperations.NO_SOURCE_ACCOUNT;
+        }
+        if (accountTo == null) {
+            return AccountOperations.NO_DESTINATION_ACCOUNT;
+        }
+        Money credit = AccountOperations.creditAmount(parts.get(accountFromId), accountTo, sum, fxRates.snapshot());
+        if (credit == null) {
+            return AccountOperations.NO_EXCHANGE_RATE;
+        }
+        OperationResult creditResult = AccountOperations.checkChangeBalance(accountTo, credit);
+        if (creditResult != null) {
+            return creditResult;
+        }
+        Map<String, Account> changedAccounts = new LinkedHashMap<>();
+        OperationResult withdrawResult = withdrawFromParts(parts, sum, changedAccounts);
+        if (withdrawResult != null) {
+            return withdrawResult;
+        }
+        accountTo.add(credit);
+        changedAccounts.put(creditKey, accountTo);
+        putAccounts(changedAccounts, Collections.singletonList(new TransferEvent(accountFromId, accountToId, sum)),
+                records);
+        LOG.info("Transferring money {} from parts of account {} to account {}.", sum, accountFromId, accountToId);
+        return OperationResult.success();
+    }
+
+    private OperationResult changePartBalance(String accountId, String partKey, Money sum,
+                                              @Nullable RecordWrites records) {
+        Account part = readPart(accountId, partKey);
+        if (part == null) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        OperationResult checkResult = AccountOperations.checkChangeBalance(part, sum);
+        if (checkResult != null) {
+            return sum.getUnits() < 0 ? PART_IS_SHORT : checkResult;
+        }
+        part.add(sum);
+        putAccount(partKey, part, records);
+        LOG.info("Changing balance {} to account {}.", sum, accountId);
+        return OperationResult.success();
+    }
 
+    /**
+     * Subtracts the negative sum from a split account whose locks of all parts are held
+     */
+    private OperationResult withdrawFromAllParts(String accountId, Money sum, @Nullable RecordWrites records) {
+        Map<String, Account> parts = readParts(accountId);
+        if (parts == null) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        Money amount;
+        try {
+            amount = Money.ofUnits(Math.negateExact(sum.getUnits()), sum.getScale());
+        } catch (ArithmeticException e) {
+            return AccountOperations.BALANCE_OUT_OF_RANGE;
+        }
+        Map<String, Account> changedAccounts = new LinkedHashMap<>();
+        OperationResult withdrawResult = withdrawFromParts(parts, amount, changedAccounts);
+        if (withdrawResult != null) {
+            return withdrawResult;
+        }
+        putAccounts(changedAccounts, Collections.emptyList(), records);
+        LOG.info("Changing balance {} to parts of account {}.", sum, accountId);
+        return OperationResult.success();
+    }
 
+    /**
+     * Takes the sum from parts in order, every part gives at most its balance, so no part becomes negative
+     * @return an error if all parts together have less than the sum, then no part is changed
+     */
+    @Nullable
+    private static OperationResult withdrawFromParts(Map<String, Account> parts, Money sum,
+                                                     Map<String, Account> changedAccounts) {
+        if (sum.getUnits() < 0) {
+            return AccountOperations.BALANCE_OUT_OF_RANGE;
+        }
+        BigDecimal remaining = sum.toBigDecimal();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account part : parts.values()) {
+            total = total.add(part.getBalance());
+        }
+        if (total.compareTo(remaining) < 0) {
+            return AccountOperations.NEGATIVE_BALANCE;
+        }
+        for (Map.Entry<String, Account> entry : parts.entrySet()) {
+            BigDecimal taken = entry.getValue().getBalance().min(remaining);
+            if (taken.signum() > 0) {
+                entry.getValue().subtract(Money.of(taken));
+                changedAccounts.put(entry.getKey(), entry.getValue());
+                remaining = remaining.subtract(taken);
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Writes the account, together with the records of the operation if there are any
+     */
+    private void putAccount(String accountId, Account account, @Nullable RecordWrites records) {
+        if (records == null) {
+            store.put(accountId, account);
+        } else {
+            store.putAll(Collections.singletonMap(accountId, account), Collections.emptyList(), records);
+        }
+    }
+
+    /**
+     * Writes the accounts and the events in one batch, together with the records of the operation if there are any
+     */
+    private void putAccounts(Map<String, Account> accounts, List<TransferEvent> events,
+                             @Nullable RecordWrites records) {
+        if (records != null) {
+            store.putAll(accounts, events, records);
+        } else if (events.isEmpty()) {
+            store.putAll(accounts);
+        } else {
+            store.putAll(accounts, events);
+        }
+    }
+
+    private OperationResult sendAccount(String accountId, Account account) {
+        if (account == null) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        LOG.info("Sending account {} to client.", accountId);
+        return OperationResult.success(accountSerializer.serialize(account));
+    }
 
+    private OperationResult getSplitAccount(String accountId) {
+        Map<String, Account> parts = readParts(accountId);
+        if (parts == null) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        return sendSplitAccount(accountId, parts);
+    }
 
+    /**
+     * @param parts stored parts of the account keyed by part key, missing parts have no balance
+     */
+    private OperationResult sendSplitAccount(String accountId, Map<String, Account> parts) {
+        if (!parts.containsKey(accountId)) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        Account account;
+        try {
+            account = sumParts(accountId, parts);
+        } catch (ArithmeticException e) {
+            return AccountOperations.BALANCE_OUT_OF_RANGE;
+        }
+        LOG.info("Sending account {} to client.", accountId);
+        return OperationResult.success(accountSerializer.serialize(account));
+    }
+
+    /**
+     * @param accounts stored accounts and parts of split accounts keyed by their keys
+     */
+    private OperationResult sendAccounts(List<String> accountIds, Map<String, Account> accounts) {
+        for (String accountId : new LinkedHashSet<>(accountIds)) {
+            if (splitAccounts.isSplit(accountId) && accounts.containsKey(accountId)) {
+                try {
+                    accounts.put(accountId, sumParts(accountId, accounts));
+                } catch (ArithmeticException e) {
+                    return AccountOperations.BALANCE_OUT_OF_RANGE;
+                }
+            }
+        }
+        LOG.info("Sending {} accounts to client.", accountIds.size());
+        return AccountOperations.accountsResult(accountIds, accounts, accountSerializer);
+    }
+
+    /**
+     * @return the account with the balances of all its parts added to its own one
+     * @throws ArithmeticException if the sum is out of range
+     */
+    private Account sumParts(String accountId, Map<String, Account> parts) {
+        Account account = parts.get(accountId);
+        for (String partKey : splitAccounts.partKeys(accountId)) {
+            Account part = parts.get(partKey);
+            if (part != null && !partKey.equals(accountId)) {
+                account.add(Money.ofUnits(part.getBalanceUnits(), part.getBalanceScale()));
+            }
+        }
+        return account;
+    }
+
+    private OperationResult deleteSplitAccount(String accountId) {
+        Map<String, Account> parts = readParts(accountId);
+        if (parts == null) {
+            return AccountOperations.NO_ACCOUNT_TO_DELETE;
+        }
+        for (Account part : parts.values()) {
+            if (!part.isBalanceZero()) {
+                return AccountOperations.BALANCE_NOT_ZERO;
+            }
+        }
+        // the account itself is deleted last, so that parts left by a failure still belong to an account
+        List<String> partKeys = splitAccounts.partKeys(accountId);
+        for (int i = partKeys.size() - 1; i >= 0; i--) {
+            store.delete(partKeys.get(i));
+        }
+        LOG.info("Account {} was deleted.", accountId);
+        return OperationResult.success();
+    }
+
+    /**
+     * Reads a part of an account, a part which was never credited is a new part with zero balance
+     * @return null if the account does not exist
+     */
+    @Nullable
+    private Account readPart(String accountId, String partKey) {
+        Account part = store.get(partKey);
+        if (part != null || partKey.equals(accountId)) {
+            return part;
+        }
+        // the lock of the part is held, so the account can not be deleted concurrently
+        Account account = store.get(accountId);
+        if (account == null) {
+            return null;
+        }
+        return newPart(partKey, account.getCurrency());
+    }
+
+    /**
+     * @return all parts keyed by their keys starting from the account itself, null if the account does not exist
+     */
+    @Nullable
+    private Map<String, Account> readParts(String accountId) {
+        Account account = store.get(accountId);
+        if (account == null) {
+            return null;
+        }
+        Map<String, Account> parts = new LinkedHashMap<>();
+        parts.put(accountId, account);
+        for (String partKey : splitAccounts.partKeys(accountId)) {
+            if (!partKey.equals(accountId)) {
+                Account part = store.get(partKey);
+                parts.put(partKey, part == null ? newPart(partKey, account.getCurrency()) : part);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Parts keep the currency of their account
+     */
+    private static Account newPart(String partKey, String currency) {
+        Account part = new Account();
+        part.setId(partKey);
+        part.setCurrency(currency);
+        part.setBalance(0, 0);
+        return part;
+    }
+
+    private boolean isSplit(Transfer transfer) {
+        return !splitAccounts.isEmpty()
+                && (splitAccounts.isSplit(transfer.getFrom()) || splitAccounts.isSplit(transfer.getTo()));
+    }
+}
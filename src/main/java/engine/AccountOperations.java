@@ -0,0 +1,159 @@
+package engine;
+
+
+import fx.FxSnapshot;
+import httpserver.OperationResult;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.Transfer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks and changes of balances shared by engines.
+ * Checks are done before changing accounts, so that a failed operation leaves them intact
+ */
+final class AccountOperations {
+
+    static final OperationResult BALANCE_OUT_OF_RANGE = OperationResult.fixedError("Balance is out of range.");
+    static final OperationResult NO_EXCHANGE_RATE = OperationResult.fixedError(
+            "Can not convert the amount to the currency of the destination account.");
+    static final OperationResult SAME_ACCOUNT = OperationResult.fixedError("Same source and destination account.");
+    static final OperationResult NO_SOURCE_ACCOUNT = OperationResult.fixedError("Source account does not exist.");
+    static final OperationResult NO_DESTINATION_ACCOUNT = OperationResult.fixedError(
+            "Destination account does not exist.");
+    static final OperationResult NO_ACCOUNT = OperationResult.fixedError("The account does not exist.");
+    static final OperationResult NO_ACCOUNT_TO_DELETE = OperationResult.fixedError("Account does not exist.");
+    static final OperationResult BALANCE_NOT_ZERO = OperationResult.fixedError("Account balance is not 0.");
+    static final OperationResult NEGATIVE_BALANCE = OperationResult.fixedError("Can not withdraw to negative value.");
+    static final OperationResult NEGATIVE_BALANCE_CHANGE = OperationResult.fixedError(
+            "Can not withdraw to negative balance.");
+    static final OperationResult NOT_EXECUTED = OperationResult.fixedError(
+            "Not executed, the batch was stopped by an internal error.");
+
+    private AccountOperations() {
+    }
+
+    /**
+     * @param accounts accounts read together, keyed by account id
+     * @return a json array of the accounts in the order of ids, an error if one of them does not exist
+     */
+    static OperationResult accountsResult(List<String> accountIds, Map<String, Account> accounts,
+                                          AccountSerializer accountSerializer) {
+        StringBuilder builder = new StringBuilder().append('[');
+        for (String accountId : accountIds) {
+            Account account = accounts.get(accountId);
+            if (account == null) {
+                return OperationResult.error("Account " + accountId + " does not exist.");
+            }
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(accountSerializer.serialize(account));
+        }
+        return OperationResult.success(builder.append(']').toString());
+    }
+
+    /**
+     * Completes the results of a batch stopped by an exception: results of executed transfers are kept,
+     * the other transfers are not executed
+     */
+    static List<OperationResult> stoppedBatch(List<OperationResult> results, int numOfTransfers) {
+        List<OperationResult> allResults = new ArrayList<>(results);
+        while (allResults.size() < numOfTransfers) {
+            allResults.add(NOT_EXECUTED);
+        }
+        return allResults;
+    }
+
+    /**
+     * Applies the transfer to accounts already read from the store and collects changed accounts
+     */
+    static OperationResult applyTransfer(Transfer transfer, Map<String, Account> accounts,
+                                        Map<String, Account> changedAccounts, FxSnapshot rates) {
+        if (transfer.getFrom().equals(transfer.getTo())) {
+            return SAME_ACCOUNT;
+        }
+        Account accountFrom = accounts.get(transfer.getFrom());
+        Account accountTo = accounts.get(transfer.getTo());
+        if (accountFrom == null) {
+            return NO_SOURCE_ACCOUNT;
+        }
+        if (accountTo == null) {
+            return NO_DESTINATION_ACCOUNT;
+        }
+        Money sum = transfer.getAmount();
+        Money credit = creditAmount(accountFrom, accountTo, sum, rates);
+        if (credit == null) {
+            return NO_EXCHANGE_RATE;
+        }
+        OperationResult checkResult = checkTransfer(accountFrom, accountTo, sum, credit);
+        if (checkResult != null) {
+            return checkResult;
+        }
+        accountFrom.subtract(sum);
+        accountTo.add(credit);
+        changedAccounts.put(transfer.getFrom(), accountFrom);
+        changedAccounts.put(transfer.getTo(), accountTo);
+        return OperationResult.success();
+    }
+
+    /**
+     * @return the sum in the currency of the destination account, null if it can not be converted
+     */
+    @Nullable
+    static Money creditAmount(Account accountFrom, Account accountTo, Money sum, FxSnapshot rates) {
+        return rates.convert(sum, accountFrom.getCurrency(), accountTo.getCurrency());
+    }
+
+    /**
+     * Checks that the transfer neither makes any of balances negative nor overflows them.
+     * A negative sum is checked against the destination like a change of its balance
+     * @param credit the sum in the currency of the destination account
+     * @return an error or null if the transfer is possible
+     */
+    @Nullable
+    static OperationResult checkTransfer(Account accountFrom, Account accountTo, Money sum, Money credit) {
+        OperationResult withdrawResult = checkWithdraw(accountFrom, sum);
+        if (withdrawResult != null) {
+            return withdrawResult;
+        }
+        return checkChangeBalance(accountTo, credit);
+    }
+
+    /**
+     * Checks that subtracting the amount neither makes the balance negative nor overflows it
+     * @return an error or null if the withdrawal is possible
+     */
+    @Nullable
+    static OperationResult checkWithdraw(Account account, Money sum) {
+        try {
+            if (!account.canSubtract(sum)) {
+                return NEGATIVE_BALANCE;
+            }
+            return null;
+        } catch (ArithmeticException e) {
+            return BALANCE_OUT_OF_RANGE;
+        }
+    }
+
+    /**
+     * Checks that adding the amount neither makes the balance negative nor overflows it
+     * @return an error or null if the change is possible
+     */
+    @Nullable
+    static OperationResult checkChangeBalance(Account account, Money sum) {
+        try {
+            if (!account.canAdd(sum)) {
+                return NEGATIVE_BALANCE_CHANGE;
+            }
+            return null;
+        } catch (ArithmeticException e) {
+            return BALANCE_OUT_OF_RANGE;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package engine;
+
+/**
+ * The way concurrent operations on the same accounts are isolated
+ */
+public enum EngineMode {
+
+    /**
+     * AccountManager: operations of any thread take account locks of LockManager
+     */
+    LOCKING("locking"),
+
+    /**
+     * ShardedAccountManager: accounts are partitioned between single-threaded shards, no locks are taken
+     */
+    SHARDED("sharded"),
+
+    /**
+     * OptimisticAccountManager: operations run as optimistic RocksDb transactions without locks,
+     * and are retried when their commit conflicts
+     */
+    OPTIMISTIC("optimistic");
+
+    private final String configName;
+
+    EngineMode(String configName) {
+        this.configName = configName;
+    }
+
+    public static EngineMode fromConfig(String configName) {
+        for (EngineMode engineMode : values()) {
+            if (engineMode.configName.equals(configName)) {
+                return engineMode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine mode " + configName);
+    }
+}
@@ -0,0 +1,181 @@
+package engine;
+
+
+import httpserver.OperationResult;
+import metrics.LatencyRecorder;
+import metrics.Metrics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MapLockManager synchronizes access to the same accounts from multiple threads.
+ * It maintains a map "account id -> lock for this account"
+ * which guarantees that no more than one thread can access the same account simultaneously.
+ * Account locks are ReentrantLocks, so virtual threads do not pin their carriers while waiting for them;
+ * the map itself is guarded by a monitor held only for a map lookup
+ */
+class MapLockManager implements LockManager {
+
+    private static final LatencyRecorder LOCK_WAIT = Metrics.latency("lock_wait_seconds",
+            "Time spent acquiring account locks", Metrics.label("manager", "map"));
+
+    private final Map<String, Lock> accountIdLockMap = new HashMap<>();
+
+    MapLockManager() {
+        Metrics.gauge("lock_map_size", "Number of account locks in the map of MapLockManager", this::size);
+    }
+
+    @Override
+    public OperationResult executeOnTwoLocks(String id1, String id2, Callable<OperationResult> resultCallable) {
+        long start = System.nanoTime();
+        // obtaining locks for both accounts
+        Lock lock1 = getLock(id1);
+        Lock lock2 = getLock(id2);
+
+        // in order to prevent a deadlock, we always lock the locks in order ascending by account id
+        int comp = id1.compareTo(id2);
+        if (comp > 0) {
+            Lock temp = lock1;
+            lock1 = lock2;
+            lock2 = temp;
+        }
+
+        // performing the operation synchronized by both locks
+        try {
+            lock2.lock();
+            try {
+                lock1.lock();
+                try {
+                    LOCK_WAIT.recordSince(start);
+                    return resultCallable.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    lock1.unlock();
+                }
+            } finally {
+                lock2.unlock();
+            }
+        } finally {
+            // removing the locks (in case they are not in use by other threads)
+            removeLock(id1);
+            removeLock(id2);
+        }
+    }
+
+
+    @Override
+    public OperationResult executeOnOneLock(String id, Callable<OperationResult> resultCallable) {
+        long start = System.nanoTime();
+        // obtaining a lock for this account
+        Lock lock = getLock(id);
+
+        // performing an operation synchronized by this lock
+        try {
+            lock.lock();
+            try {
+                LOCK_WAIT.recordSince(start);
+                return resultCallable.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            // removing the lock (in case it is not in use by other threads)
+            removeLock(id);
+        }
+    }
+
+    @Override
+    public OperationResult executeOnLocks(Collection<String> ids, Callable<OperationResult> resultCallable) {
+        long start = System.nanoTime();
+        // in order to prevent a deadlock, we always lock the locks in order ascending by account id
+        String[] sortedIds = new TreeSet<>(ids).toArray(new String[0]);
+        Lock[] locks = new Lock[sortedIds.length];
+        for (int i = 0; i < sortedIds.length; i++) {
+            locks[i] = getLock(sortedIds[i]);
+        }
+
+        try {
+            return executeOnLocks(locks, 0, start, resultCallable);
+        } finally {
+            for (String id : sortedIds) {
+                removeLock(id);
+            }
+        }
+    }
+
+    private OperationResult executeOnLocks(Lock[] locks, int index, long start,
+                                           Callable<OperationResult> resultCallable) {
+        if (index == locks.length) {
+            LOCK_WAIT.recordSince(start);
+            try {
+                return resultCallable.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        locks[index].lock();
+        try {
+            return executeOnLocks(locks, index + 1, start, resultCallable);
+        } finally {
+            locks[index].unlock();
+        }
+    }
+
+    /**
+     * Creates a lock (or reuses the one created by another thread) for a given account id.
+     * The method is synchronized(this).
+     * @param accountId
+     * @return
+     */
+    private synchronized Lock getLock(String accountId) {
+        Lock lock = accountIdLockMap.get(accountId);
+        if (lock == null) {
+            lock = new Lock();
+            accountIdLockMap.put(accountId, lock);
+        }
+        lock.incWaiters();
+        return lock;
+    }
+
+    /**
+     * Removes a lock (or decrements its counter in case it is used by another thread) for a given account id.
+     * The method is synchronized(this).
+     * @param accountId
+     * @return
+     */
+    private synchronized void removeLock(String accountId) {
+        Lock lock = accountIdLockMap.get(accountId);
+        if (lock.numOfWaiters == 1) {
+            accountIdLockMap.remove(accountId);
+        } else {
+            lock.decWaiters();
+        }
+    }
+
+    synchronized int size() {
+        return accountIdLockMap.size();
+    }
+
+    private static class Lock extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        int numOfWaiters;
+
+        void incWaiters() {
+            numOfWaiters++;
+        }
+
+        void decWaiters() {
+            numOfWaiters--;
+        }
+    }
+
+}
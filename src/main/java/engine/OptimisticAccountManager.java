@@ -0,0 +1,288 @@
+package engine;
+
+
+import fx.FxRates;
+import fx.FxSnapshot;
+import httpserver.OperationResult;
+import logging.AsyncLog;
+import logging.AsyncLogger;
+import metrics.Counter;
+import metrics.Metrics;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.Transfer;
+import model.TransferEvent;
+import org.jetbrains.annotations.Nullable;
+import store.RecordWrites;
+import store.StoreTransaction;
+import store.TransactionConflictException;
+import store.TransactionalStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+
+/**
+ * Implementation of API methods without locks: every operation reads its accounts for update
+ * in an optimistic transaction of the store and commits its changes. If another operation changed
+ * the same accounts meanwhile, the commit fails and the operation is repeated from the beginning after
+ * a random exponential backoff, at most maxRetries times.
+ * Operations on different accounts never wait for each other, operations on the same account
+ * pay for a conflict with a repeated execution instead of a lock handoff
+ */
+public class OptimisticAccountManager implements AccountEngine {
+
+    private static final AsyncLogger LOG = AsyncLog.getLogger(OptimisticAccountManager.class);
+
+    private static final Counter CONFLICTS = Metrics.counter("optimistic_conflicts_total",
+            "Commits of optimistic transactions failed because of concurrent changes of their accounts");
+    private static final Counter RETRIES_EXHAUSTED = Metrics.counter("optimistic_retries_exhausted_total",
+            "Operations failed after all retries of their conflicting transactions");
+
+    /**
+     * Maximal number of transfers of a batch executed in one transaction
+     */
+    private static final int MAX_TRANSFERS_PER_CHUNK = 256;
+    private static final long MIN_BACKOFF_NANOS = 10_000;
+    private static final long MAX_BACKOFF_NANOS = 1_000_000;
+    private static final OperationResult BUSY = OperationResult.fixedError("The accounts are busy, try again.");
+
+    private final TransactionalStore store;
+    private final int maxRetries;
+    private final AccountSerializer accountSerializer;
+    private final FxRates fxRates;
+
+    public OptimisticAccountManager(TransactionalStore store, int maxRetries) {
+        this(store, maxRetries, new FxRates(FxSnapshot.NONE));
+    }
+
+    public OptimisticAccountManager(TransactionalStore store, int maxRetries, FxRates fxRates) {
+        this.store = store;
+        this.maxRetries = maxRetries;
+        this.accountSerializer = new AccountSerializer();
+        this.fxRates = fxRates;
+    }
+
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum) {
+        return transferMoney(accountFromId, accountToId, sum, null);
+    }
+
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum,
+                                         @Nullable RecordWrites records) {
+        if (accountFromId.equals(accountToId)) {
+            return AccountOperations.SAME_ACCOUNT;
+        }
+        OperationResult result = executeInTransaction(transaction -> {
+            Account accountFrom = transaction.getForUpdate(accountFromId);
+            Account accountTo = transaction.getForUpdate(accountToId);
+            if (accountFrom == null) {
+                return AccountOperations.NO_SOURCE_ACCOUNT;
+            }
+            if (accountTo == null) {
+                return AccountOperations.NO_DESTINATION_ACCOUNT;
+            }
+            Money credit = AccountOperations.creditAmount(accountFrom, accountTo, sum, fxRates.snapshot());
+            if (credit == null) {
+                return AccountOperations.NO_EXCHANGE_RATE;
+            }
+            OperationResult checkResult = AccountOperations.checkTransfer(accountFrom, accountTo, sum, credit);
+            if (checkResult != null) {
+                return checkResult;
+            }
+            accountFrom.subtract(sum);
+            accountTo.add(credit);
+            transaction.put(accountFromId, accountFrom);
+            transaction.put(accountToId, accountTo);
+            commit(transaction, Collections.singletonList(new TransferEvent(accountFromId, accountToId, sum)), records);
+            LOG.info("Transferring money {} from account {} to account {}.", sum, accountFromId, accountToId);
+            return OperationResult.success();
+        });
+        return result == null ? BUSY : result;
+    }
+
+    /**
+     * Executes transfers in chunks, every chunk is one transaction: its accounts are read once,
+     * transfers are applied in order and changed accounts are committed together.
+     * A chunk which fails stops the batch, results of the committed chunks are kept
+     */
+    @Override
+    public List<OperationResult> transferBatch(List<Transfer> transfers) {
+        List<OperationResult> results = new ArrayList<>(transfers.size());
+        for (int start = 0; start < transfers.size(); start += MAX_TRANSFERS_PER_CHUNK) {
+            List<Transfer> chunk = transfers.subList(start, Math.min(transfers.size(), start + MAX_TRANSFERS_PER_CHUNK));
+            List<OperationResult> chunkResults;
+            try {
+                chunkResults = executeInTransaction(transaction -> transferChunk(transaction, chunk));
+            } catch (RuntimeException e) {
+                LOG.error("Transfer batch stopped after {} transfers.", results.size(), e);
+                return AccountOperations.stoppedBatch(results, transfers.size());
+            }
+            if (chunkResults == null) {
+                chunkResults = Collections.nCopies(chunk.size(), BUSY);
+            }
+            results.addAll(chunkResults);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the latest committed account, a read conflicts with nothing
+     */
+    @Override
+    public OperationResult getAccount(String accountId) {
+        Account account = store.get(accountId);
+        if (account == null) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        LOG.info("Sending account {} to client.", accountId);
+        return OperationResult.success(accountSerializer.serialize(account));
+    }
+
+    /**
+     * Reads the accounts from one snapshot of the store, transactions are committed atomically
+     */
+    @Override
+    public OperationResult getAccounts(List<String> accountIds) {
+        return AccountOperations.accountsResult(accountIds, store.getAll(accountIds), accountSerializer);
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum) {
+        return changeBalance(accountId, sum, null);
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum, @Nullable RecordWrites records) {
+        OperationResult result = executeInTransaction(transaction -> {
+            Account account = transaction.getForUpdate(accountId);
+            if (account == null) {
+                return AccountOperations.NO_ACCOUNT;
+            }
+            OperationResult checkResult = AccountOperations.checkChangeBalance(account, sum);
+            if (checkResult != null) {
+                return checkResult;
+            }
+            account.add(sum);
+            transaction.put(accountId, account);
+            commit(transaction, Collections.emptyList(), records);
+            LOG.info("Changing balance {} to account {}.", sum, accountId);
+            return OperationResult.success();
+        });
+        return result == null ? BUSY : result;
+    }
+
+    /**
+     * The id is a new random UUID, so the account is written without a transaction
+     */
+    @Override
+    public OperationResult addAccount(Account account) {
+        String accountId = UUID.randomUUID().toString();
+        account.setId(accountId);
+        account.setBalance(0, 0);
+        store.put(accountId, account);
+        LOG.info("Account was added {}.", account.getName());
+        return OperationResult.success(accountSerializer.serialize(account));
+    }
+
+    @Override
+    public OperationResult deleteAccount(String accountId) {
+        OperationResult result = executeInTransaction(transaction -> {
+            Account account = transaction.getForUpdate(accountId);
+            if (account == null) {
+                return AccountOperations.NO_ACCOUNT_TO_DELETE;
+            }
+            if (!account.isBalanceZero()) {
+                return AccountOperations.BALANCE_NOT_ZERO;
+            }
+            transaction.delete(accountId);
+            transaction.commit(Collections.emptyList());
+            LOG.info("Account {} was deleted.", accountId);
+            return OperationResult.success();
+        });
+        return result == null ? BUSY : result;
+    }
+
+    private List<OperationResult> transferChunk(StoreTransaction transaction, List<Transfer> chunk) {
+        Set<String> accountIds = new LinkedHashSet<>();
+        for (Transfer transfer : chunk) {
+            accountIds.add(transfer.getFrom());
+            accountIds.add(transfer.getTo());
+        }
+        Map<String, Account> accounts = new HashMap<>();
+        for (String accountId : accountIds) {
+            Account account = transaction.getForUpdate(accountId);
+            if (account != null) {
+                accounts.put(accountId, account);
+            }
+        }
+        FxSnapshot rates = fxRates.snapshot();
+        List<OperationResult> results = new ArrayList<>(chunk.size());
+        Map<String, Account> changedAccounts = new LinkedHashMap<>();
+        List<TransferEvent> events = new ArrayList<>();
+        for (Transfer transfer : chunk) {
+            OperationResult result = AccountOperations.applyTransfer(transfer, accounts, changedAccounts, rates);
+            if (!result.isError()) {
+                events.add(new TransferEvent(transfer.getFrom(), transfer.getTo(), transfer.getAmount()));
+            }
+            results.add(result);
+        }
+        if (!changedAccounts.isEmpty()) {
+            changedAccounts.forEach(transaction::put);
+            transaction.commit(events);
+        }
+        LOG.info("Transferred money in a batch of {} transfers.", chunk.size());
+        return results;
+    }
+
+    private static void commit(StoreTransaction transaction, List<TransferEvent> events,
+                               @Nullable RecordWrites records) {
+        if (records == null) {
+            transaction.commit(events);
+        } else {
+            transaction.commit(events, records);
+        }
+    }
+
+    /**
+     * Executes the operation in a new transaction until its commit succeeds. The operation commits
+     * the transaction itself, an operation which returns without commit changes nothing
+     * @return result of the operation, null if it still conflicted after all retries
+     */
+    @Nullable
+    private <T> T executeInTransaction(Function<StoreTransaction, T> operation) {
+        for (int attempt = 0; ; attempt++) {
+            try (StoreTransaction transaction = store.beginTransaction()) {
+                return operation.apply(transaction);
+            } catch (TransactionConflictException e) {
+                CONFLICTS.increment();
+                if (attempt >= maxRetries) {
+                    RETRIES_EXHAUSTED.increment();
+                    return null;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Sleeps a random time up to an exponentially growing bound, so that conflicting operations
+     * do not meet again at the next attempt
+     */
+    private static void backoff(int attempt) {
+        long bound = Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(attempt, 20));
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(bound / 2, bound + 1));
+    }
+}
@@ -0,0 +1,35 @@
+package engine;
+
+/**
+ * The way AccountManager reads accounts for getAccount and getAccounts
+ */
+public enum ReadMode {
+
+    /**
+     * Reads take the locks of their accounts, so a read waits for operations in progress on the account
+     * and operations wait for reads
+     */
+    LOCKED("locked"),
+
+    /**
+     * Reads take no locks: a single account is read as one stored value (the cache keeps copies and
+     * the store writes accounts atomically), several accounts are read from one snapshot of the store.
+     * A read sees an account as before or after an operation in progress, never partly changed
+     */
+    LOCK_FREE("lock-free");
+
+    private final String configName;
+
+    ReadMode(String configName) {
+        this.configName = configName;
+    }
+
+    public static ReadMode fromConfig(String configName) {
+        for (ReadMode readMode : values()) {
+            if (readMode.configName.equals(configName)) {
+                return readMode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown read mode " + configName);
+    }
+}
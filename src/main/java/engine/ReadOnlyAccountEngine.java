@@ -0,0 +1,82 @@
+package engine;
+
+
+import httpserver.OperationResult;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.Transfer;
+import org.jetbrains.annotations.Nullable;
+import store.RecordWrites;
+import store.Store;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * API methods of a read-only follower: accounts are read from the replicated store without locks,
+ * every change is rejected, since the store is written by replication from the leader only
+ */
+public class ReadOnlyAccountEngine implements AccountEngine {
+
+    private static final OperationResult READ_ONLY = OperationResult.fixedError(
+            "The node is a read-only follower, send changes to the leader.");
+
+    private final Store store;
+    private final AccountSerializer accountSerializer;
+
+    public ReadOnlyAccountEngine(Store store) {
+        this.store = store;
+        this.accountSerializer = new AccountSerializer();
+    }
+
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum) {
+        return READ_ONLY;
+    }
+
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum,
+                                         @Nullable RecordWrites records) {
+        return READ_ONLY;
+    }
+
+    @Override
+    public List<OperationResult> transferBatch(List<Transfer> transfers) {
+        return Collections.nCopies(transfers.size(), READ_ONLY);
+    }
+
+    @Override
+    public OperationResult getAccount(String accountId) {
+        Account account = store.get(accountId);
+        if (account == null) {
+            return AccountOperations.NO_ACCOUNT;
+        }
+        return OperationResult.success(accountSerializer.serialize(account));
+    }
+
+    @Override
+    public OperationResult getAccounts(List<String> accountIds) {
+        return AccountOperations.accountsResult(accountIds, store.getAll(accountIds), accountSerializer);
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum) {
+        return READ_ONLY;
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum, @Nullable RecordWrites records) {
+        return READ_ONLY;
+    }
+
+    @Override
+    public OperationResult addAccount(Account account) {
+        return READ_ONLY;
+    }
+
+    @Override
+    public OperationResult deleteAccount(String accountId) {
+        return READ_ONLY;
+    }
+}
@@ -0,0 +1,358 @@
+package engine;
+
+
+import fx.FxRates;
+import fx.FxSnapshot;
+import httpserver.OperationResult;
+import logging.AsyncLog;
+import logging.AsyncLogger;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.PendingTransfer;
+import model.Transfer;
+import model.TransferEvent;
+import org.jetbrains.annotations.Nullable;
+import store.PendingTransferStore;
+import store.RecordWrites;
+import store.Store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+
+/**
+ * Implementation of API methods on single-writer shards.
+ * Accounts are partitioned between shards by id hash, every shard is a single thread
+ * executing all operations on its accounts one by one, so no locks are needed.
+ *
+ * A transfer between accounts of different shards is done in two phases:
+ * the source shard debits the source account, then the destination shard credits the destination account.
+ * If the credit fails (the destination account was deleted meanwhile), the source shard refunds the debit.
+ * Between the phases the transferred sum belongs to neither of accounts, it is kept by a pending transfer
+ * written together with the debit and deleted together with the credit or the refund. Pending transfers
+ * left by a stop between the phases are finished at the start, and an account with pending transfers
+ * can not be deleted, so that there is always an account to refund to.
+ */
+public final class ShardedAccountManager implements AccountEngine {
+
+    private static final AsyncLogger LOG = AsyncLog.getLogger(ShardedAccountManager.class);
+    static final OperationResult PENDING_TRANSFERS = OperationResult.fixedError(
+            "Account has transfers in progress, try again.");
+
+    private final Store store;
+    private final ExecutorService[] shards;
+    private final AccountSerializer accountSerializer;
+    private final FxRates fxRates;
+    // numbers of pending transfers by source account id
+    private final Map<String, Integer> pendingTransferCounts = new ConcurrentHashMap<>();
+
+    public ShardedAccountManager(Store store, PendingTransferStore pendingTransferStore, int numOfShards) {
+        this(store, pendingTransferStore, numOfShards, new FxRates(FxSnapshot.NONE));
+    }
+
+    public ShardedAccountManager(Store store, PendingTransferStore pendingTransferStore, int numOfShards,
+                                 FxRates fxRates) {
+        this.store = store;
+        this.fxRates = fxRates;
+        this.accountSerializer = new AccountSerializer();
+        shards = new ExecutorService[numOfShards];
+        for (int i = 0; i < numOfShards; i++) {
+            String threadName = "account-shard-thread-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(t -> new Thread(t, threadName));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (ExecutorService shard : shards) {
+                shard.shutdown();
+            }
+        }));
+        finishPendingTransfers(pendingTransferStore.readPendingTransfers());
+    }
+
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum) {
+        return transferMoney(accountFromId, accountToId, sum, null);
+    }
+
+    /**
+     * The records of a transfer between shards are written with the debit
+     */
+    @Override
+    public OperationResult transferMoney(String accountFromId, String accountToId, Money sum,
+                                         @Nullable RecordWrites records) {
+        if (accountFromId.equals(accountToId)) {
+            return AccountOperations.SAME_ACCOUNT;
+        }
+        int shardFrom = shardOf(accountFromId);
+        int shardTo = shardOf(accountToId);
+        // both phases convert with the same version of rates
+        FxSnapshot rates = fxRates.snapshot();
+        if (shardFrom == shardTo) {
+            return executeOnShard(shardFrom, () -> transferOnShard(accountFromId, accountToId, sum, rates, records));
+        }
+
+        // the destination is checked first, so that a transfer to a missing account does not debit the source.
+        // Its currency never changes, so the credit can be converted before the destination shard is visited again
+        Account destination = executeOnShard(shardTo, () -> store.get(accountToId));
+        if (destination == null) {
+            return AccountOperations.NO_DESTINATION_ACCOUNT;
+        }
+        PendingTransfer[] pending = new PendingTransfer[1];
+
+        // phase 1: debit on the source shard, written together with the pending transfer
+        OperationResult debitResult = executeOnShard(shardFrom, () -> {
+            Account accountFrom = store.get(accountFromId);
+            if (accountFrom == null) {
+                return AccountOperations.NO_SOURCE_ACCOUNT;
+            }
+            Money credit = AccountOperations.creditAmount(accountFrom, destination, sum, rates);
+            if (credit == null) {
+                return AccountOperations.NO_EXCHANGE_RATE;
+            }
+            OperationResult checkResult = AccountOperations.checkWithdraw(accountFrom, sum);
+            if (checkResult != null) {
+                return checkResult;
+            }
+            accountFrom.subtract(sum);
+            PendingTransfer transfer = new PendingTransfer(UUID.randomUUID().toString(), System.currentTimeMillis(),
+                    accountFromId, accountToId, sum, credit);
+            RecordWrites debitRecords = new RecordWrites().putPendingTransfer(transfer);
+            if (records != null) {
+                debitRecords.putAll(records);
+            }
+            store.putAll(Collections.singletonMap(accountFromId, accountFrom), Collections.emptyList(), debitRecords);
+            pendingTransferCounts.merge(accountFromId, 1, Integer::sum);
+            pending[0] = transfer;
+            return OperationResult.success();
+        });
+        if (debitResult.isError()) {
+            return debitResult;
+        }
+
+        // phase 2: credit on the destination shard
+        OperationResult creditResult = executeOnShard(shardTo, () -> credit(pending[0]));
+        if (creditResult.isError()) {
+            executeOnShard(shardFrom, () -> refund(pending[0]));
+            return creditResult;
+        }
+        LOG.info("Transferring money {} from account {} to account {}.", sum, accountFromId, accountToId);
+        return creditResult;
+    }
+
+    /**
+     * Transfers are executed one by one in order, a transfer which fails stops the batch
+     */
+    @Override
+    public List<OperationResult> transferBatch(List<Transfer> transfers) {
+        List<OperationResult> results = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            try {
+                results.add(transferMoney(transfer.getFrom(), transfer.getTo(), transfer.getAmount()));
+            } catch (RuntimeException e) {
+                LOG.error("Transfer batch stopped after {} transfers.", results.size(), e);
+                return AccountOperations.stoppedBatch(results, transfers.size());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public OperationResult getAccount(String accountId) {
+        return executeOnShard(shardOf(accountId), () -> {
+            Account account = store.get(accountId);
+            if (account == null) {
+                return AccountOperations.NO_ACCOUNT;
+            }
+            LOG.info("Sending account {} to client.", accountId);
+            return OperationResult.success(accountSerializer.serialize(account));
+        });
+    }
+
+    /**
+     * Reads the accounts from one snapshot of the store without passing through the shards.
+     * Transfers within a shard are one write; a transfer between shards may be seen between its phases
+     */
+    @Override
+    public OperationResult getAccounts(List<String> accountIds) {
+        return AccountOperations.accountsResult(accountIds, store.getAll(accountIds), accountSerializer);
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum) {
+        return changeBalance(accountId, sum, null);
+    }
+
+    @Override
+    public OperationResult changeBalance(String accountId, Money sum, @Nullable RecordWrites records) {
+        return executeOnShard(shardOf(accountId), () -> {
+            Account account = store.get(accountId);
+            OperationResult checkResult = AccountOperations.checkChangeBalance(account, sum);
+            if (checkResult != null) {
+                return checkResult;
+            }
+            account.add(sum);
+            if (records == null) {
+                store.put(accountId, account);
+            } else {
+                store.putAll(Collections.singletonMap(accountId, account), Collections.emptyList(), records);
+            }
+            LOG.info("Changing balance {} to account {}.", sum, accountId);
+            return OperationResult.success();
+        });
+    }
+
+    @Override
+    public OperationResult addAccount(Account account) {
+        String accountId = UUID.randomUUID().toString();
+        account.setId(accountId);
+        account.setBalance(0, 0);
+        return executeOnShard(shardOf(accountId), () -> {
+            store.put(accountId, account);
+            LOG.info("Account was added {}.", account.getName());
+            return OperationResult.success(accountSerializer.serialize(account));
+        });
+    }
+
+    @Override
+    public OperationResult deleteAccount(String accountId) {
+        return executeOnShard(shardOf(accountId), () -> {
+            Account account = store.get(accountId);
+            if (account == null) {
+                return AccountOperations.NO_ACCOUNT_TO_DELETE;
+            }
+            if (!account.isBalanceZero()) {
+                return AccountOperations.BALANCE_NOT_ZERO;
+            }
+            if (pendingTransferCounts.containsKey(accountId)) {
+                return PENDING_TRANSFERS;
+            }
+            store.delete(accountId);
+            LOG.info("Account {} was deleted.", accountId);
+            return OperationResult.success();
+        });
+    }
+
+    int shardOf(String accountId) {
+        int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    private OperationResult transferOnShard(String accountFromId, String accountToId, Money sum, FxSnapshot rates,
+                                            @Nullable RecordWrites records) {
+        Account accountFrom = store.get(accountFromId);
+        Account accountTo = store.get(accountToId);
+        if (accountFrom == null) {
+            return AccountOperations.NO_SOURCE_ACCOUNT;
+        }
+        if (accountTo == null) {
+            return AccountOperations.NO_DESTINATION_ACCOUNT;
+        }
+        Money credit = AccountOperations.creditAmount(accountFrom, accountTo, sum, rates);
+        if (credit == null) {
+            return AccountOperations.NO_EXCHANGE_RATE;
+        }
+        OperationResult checkResult = AccountOperations.checkTransfer(accountFrom, accountTo, sum, credit);
+        if (checkResult != null) {
+            return checkResult;
+        }
+        accountFrom.subtract(sum);
+        accountTo.add(credit);
+        Map<String, Account> changedAccounts = new LinkedHashMap<>();
+        changedAccounts.put(accountFromId, accountFrom);
+        changedAccounts.put(accountToId, accountTo);
+        List<TransferEvent> events = Collections.singletonList(new TransferEvent(accountFromId, accountToId, sum));
+        if (records == null) {
+            store.putAll(changedAccounts, events);
+        } else {
+            store.putAll(changedAccounts, events, records);
+        }
+        LOG.info("Transferring money {} from account {} to account {}.", sum, accountFromId, accountToId);
+        return OperationResult.success();
+    }
+
+    /**
+     * Credits the destination account of the pending transfer, executed on the destination shard.
+     * The transfer is journaled with the credit, when it is complete
+     */
+    private OperationResult credit(PendingTransfer transfer) {
+        Account accountTo = store.get(transfer.getTo());
+        if (accountTo == null) {
+            return AccountOperations.NO_DESTINATION_ACCOUNT;
+        }
+        OperationResult checkResult = AccountOperations.checkChangeBalance(accountTo, transfer.getCredit());
+        if (checkResult != null) {
+            return checkResult;
+        }
+        accountTo.add(transfer.getCredit());
+        store.putAll(Collections.singletonMap(transfer.getTo(), accountTo),
+                Collections.singletonList(new TransferEvent(TransferEvent.NO_SEQUENCE, transfer.getTimestamp(),
+                        transfer.getFrom(), transfer.getTo(), transfer.getAmount())),
+                new RecordWrites().deletePendingTransfer(transfer.getId()));
+        finishPendingTransfer(transfer);
+        return OperationResult.success();
+    }
+
+    /**
+     * Returns the debited sum to the source account after a failed credit, executed on the source shard.
+     * The source account can not be deleted while the transfer is pending
+     * @return false if the source account does not exist, then the pending transfer is kept
+     */
+    private boolean refund(PendingTransfer transfer) {
+        Account accountFrom = store.get(transfer.getFrom());
+        if (accountFrom == null) {
+            LOG.error("Can not refund money {} to missing account {}, pending transfer {} is kept.",
+                    transfer.getAmount(), transfer.getFrom(), transfer.getId());
+            return false;
+        }
+        accountFrom.add(transfer.getAmount());
+        store.putAll(Collections.singletonMap(transfer.getFrom(), accountFrom), Collections.emptyList(),
+                new RecordWrites().deletePendingTransfer(transfer.getId()));
+        finishPendingTransfer(transfer);
+        LOG.info("Refunding money {} to account {}.", transfer.getAmount(), transfer.getFrom());
+        return true;
+    }
+
+    private void finishPendingTransfer(PendingTransfer transfer) {
+        pendingTransferCounts.computeIfPresent(transfer.getFrom(), (accountId, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Credits or refunds transfers left pending by the last stop, before the engine serves operations
+     */
+    private void finishPendingTransfers(List<PendingTransfer> transfers) {
+        for (PendingTransfer transfer : transfers) {
+            pendingTransferCounts.merge(transfer.getFrom(), 1, Integer::sum);
+        }
+        for (PendingTransfer transfer : transfers) {
+            OperationResult creditResult = executeOnShard(shardOf(transfer.getTo()), () -> credit(transfer));
+            if (!creditResult.isError()) {
+                LOG.info("Pending transfer {} from account {} to account {} was completed.",
+                        transfer.getId(), transfer.getFrom(), transfer.getTo());
+            } else if (executeOnShard(shardOf(transfer.getFrom()), () -> refund(transfer))) {
+                LOG.info("Pending transfer {} was refunded to account {}: {}",
+                        transfer.getId(), transfer.getFrom(), creditResult.getText());
+            }
+        }
+    }
+
+    /**
+     * Executes the operation on the shard thread and waits for its result
+     */
+    private <T> T executeOnShard(int shard, Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, shards[shard]).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
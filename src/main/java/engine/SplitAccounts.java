@@ -0,0 +1,82 @@
+package engine;
+
+import model.AccountIds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Accounts whose balance is spread across several sub-balances (parts), each stored under its own key
+ * and guarded by its own lock, so that concurrent transfers into a hot account do not wait for each other.
+ * Part 0 is the account itself (its record keeps the name and the part 0 balance),
+ * part k > 0 is stored under "[account id]#k" and is created by the first credit to it.
+ * The separator is reserved (see AccountIds), so part keys never collide with account ids
+ */
+final class SplitAccounts {
+
+    static final SplitAccounts NONE = new SplitAccounts(Collections.emptyMap());
+
+    private final Map<String, Integer> numOfParts;
+
+    SplitAccounts(Map<String, Integer> numOfParts) {
+        this.numOfParts = numOfParts;
+    }
+
+    /**
+     * @param config comma-separated "[account id]:[number of parts]", an empty string splits no accounts
+     */
+    static SplitAccounts fromConfig(String config) {
+        Map<String, Integer> numOfParts = new HashMap<>();
+        for (String item : config.split(",")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            int separator = item.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid split account " + item);
+            }
+            int parts = Integer.parseInt(item.substring(separator + 1).trim());
+            if (parts < 1) {
+                throw new IllegalArgumentException("Invalid number of parts of split account " + item);
+            }
+            numOfParts.put(item.substring(0, separator).trim(), parts);
+        }
+        return numOfParts.isEmpty() ? NONE : new SplitAccounts(numOfParts);
+    }
+
+    boolean isEmpty() {
+        return numOfParts.isEmpty();
+    }
+
+    boolean isSplit(String accountId) {
+        return numOfParts.getOrDefault(accountId, 1) > 1;
+    }
+
+    /**
+     * @return key of a random part of a split account, the account id itself for other accounts
+     */
+    String randomPartKey(String accountId) {
+        int parts = numOfParts.getOrDefault(accountId, 1);
+        return parts > 1 ? partKey(accountId, ThreadLocalRandom.current().nextInt(parts)) : accountId;
+    }
+
+    /**
+     * @return keys of all parts of the account starting from the account id itself
+     */
+    List<String> partKeys(String accountId) {
+        int parts = numOfParts.getOrDefault(accountId, 1);
+        List<String> keys = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            keys.add(partKey(accountId, i));
+        }
+        return keys;
+    }
+
+    static String partKey(String accountId, int part) {
+        return part == 0 ? accountId : accountId + AccountIds.PART_SEPARATOR + part;
+    }
+}
@@ -0,0 +1,114 @@
+package engine;
+
+
+import httpserver.OperationResult;
+import metrics.LatencyRecorder;
+import metrics.Metrics;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StripedLockManager synchronizes access to accounts with a fixed table of locks (stripes).
+ * An account is guarded by the stripe chosen by the hash of its id, so several accounts may share a stripe.
+ * Unlike MapLockManager it neither takes a global lock nor allocates anything per operation.
+ * Stripes are ReentrantLocks rather than monitors, so a virtual thread waiting for a stripe
+ * or holding it during a store write does not pin its carrier thread
+ */
+class StripedLockManager implements LockManager {
+
+    private static final LatencyRecorder LOCK_WAIT = Metrics.latency("lock_wait_seconds",
+            "Time spent acquiring account locks", Metrics.label("manager", "striped"));
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    StripedLockManager(int numOfStripes) {
+        // rounding up to a power of two, so that a stripe index is a mask of the hash
+        int size = numOfStripes <= 1 ? 1 : Integer.highestOneBit(numOfStripes - 1) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    @Override
+    public OperationResult executeOnTwoLocks(String id1, String id2, Callable<OperationResult> resultCallable) {
+        int index1 = stripeIndex(id1);
+        int index2 = stripeIndex(id2);
+        long start = System.nanoTime();
+
+        // both accounts are guarded by the same stripe
+        if (index1 == index2) {
+            return executeOnStripe(stripes[index1], start, resultCallable);
+        }
+
+        // in order to prevent a deadlock, we always lock the stripes in order ascending by stripe index
+        ReentrantLock lock1 = stripes[Math.min(index1, index2)];
+        ReentrantLock lock2 = stripes[Math.max(index1, index2)];
+        lock1.lock();
+        try {
+            return executeOnStripe(lock2, start, resultCallable);
+        } finally {
+            lock1.unlock();
+        }
+    }
+
+    @Override
+    public OperationResult executeOnOneLock(String id, Callable<OperationResult> resultCallable) {
+        return executeOnStripe(stripes[stripeIndex(id)], System.nanoTime(), resultCallable);
+    }
+
+    @Override
+    public OperationResult executeOnLocks(Collection<String> ids, Callable<OperationResult> resultCallable) {
+        // in order to prevent a deadlock, we always lock the stripes in order ascending by stripe index
+        int[] indices = ids.stream()
+                .mapToInt(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+        return executeOnStripes(indices, 0, System.nanoTime(), resultCallable);
+    }
+
+    private OperationResult executeOnStripes(int[] indices, int position, long start,
+                                             Callable<OperationResult> resultCallable) {
+        if (position == indices.length) {
+            LOCK_WAIT.recordSince(start);
+            return call(resultCallable);
+        }
+        ReentrantLock lock = stripes[indices[position]];
+        lock.lock();
+        try {
+            return executeOnStripes(indices, position + 1, start, resultCallable);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static OperationResult executeOnStripe(ReentrantLock lock, long start,
+                                                   Callable<OperationResult> resultCallable) {
+        lock.lock();
+        try {
+            LOCK_WAIT.recordSince(start);
+            return call(resultCallable);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int stripeIndex(String accountId) {
+        int hash = accountId.hashCode();
+        // spreading higher bits of the hash to lower ones, since only lower bits are used by the mask
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static OperationResult call(Callable<OperationResult> resultCallable) {
+        try {
+            return resultCallable.call();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,12 +1,37 @@
 package entrypoint;
 
+import binaryserver.BinaryServer;
 import config.ConfigKeeper;
+import config.EngineSettings;
+import config.ReplicationSettings;
+import config.StoreSettings;
+import engine.AccountEngine;
 import engine.AccountManager;
+import engine.EngineMode;
+import engine.OptimisticAccountManager;
+import engine.ReadOnlyAccountEngine;
+import engine.ShardedAccountManager;
+import fx.FxRates;
 import httpserver.MoneyTransferHttpServer;
 import httpserver.MoneyTransferServerRoutes;
+import logging.AsyncLog;
 import model.AccountSerializer;
+import store.AccountBulkLoader;
+import store.CachingStore;
+import store.GroupCommitStore;
+import store.ReplicationFollower;
+import store.ReplicationServer;
 import store.RocksDbStore;
 import store.Store;
+import store.SyncPolicy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Entry point with all main objects creation
@@ -14,16 +39,64 @@ import store.Store;
 public class MoneyTransferFactory {
 
     private MoneyTransferHttpServer moneyTransferHttpServer;
+    private BinaryServer binaryServer;
+    private ReplicationServer replicationServer;
+    private ReplicationFollower replicationFollower;
 
     public void launch(String configName) {
         ConfigKeeper configKeeper = new ConfigKeeper(configName);
+        AsyncLog.start(configKeeper.getLoggingSettings());
+        if (!configKeeper.getReplicationSettings().leader().trim().isEmpty()) {
+            launchFollower(configKeeper);
+            return;
+        }
         AccountSerializer accountSerializer = new AccountSerializer();
-        Store store = new RocksDbStore(accountSerializer, configKeeper.getStoreSettings());
-        AccountManager accountManager = new AccountManager(store);
+        EngineMode engineMode = EngineMode.fromConfig(configKeeper.getEngineSettings().mode());
+        RocksDbStore rocksDbStore = new RocksDbStore(accountSerializer, configKeeper.getStoreSettings(),
+                engineMode == EngineMode.OPTIMISTIC);
+        FxRates fxRates = new FxRates(configKeeper.getFxSettings());
+        AccountEngine accountEngine = createAccountEngine(rocksDbStore, configKeeper.getStoreSettings(),
+                configKeeper.getEngineSettings(), fxRates);
         int numOfThreads = getMaxThreads();
-        MoneyTransferServerRoutes moneyTransferServerRoutes = new MoneyTransferServerRoutes(accountManager, accountSerializer, numOfThreads);
+        AccountBulkLoader accountBulkLoader = new AccountBulkLoader(rocksDbStore, accountSerializer,
+                AccountBulkLoader.DEFAULT_CHUNK_SIZE, configKeeper.getReplicationSettings().port() > 0);
+        MoneyTransferServerRoutes moneyTransferServerRoutes = new MoneyTransferServerRoutes(accountEngine, rocksDbStore,
+                rocksDbStore, rocksDbStore, accountBulkLoader, accountSerializer, fxRates, configKeeper.getHttpSettings(),
+                numOfThreads);
         moneyTransferHttpServer = new MoneyTransferHttpServer(moneyTransferServerRoutes, configKeeper.getHttpSettings(), numOfThreads);
         moneyTransferHttpServer.start();
+        if (configKeeper.getBinarySettings().port() > 0) {
+            binaryServer = new BinaryServer(accountEngine, configKeeper.getBinarySettings(), numOfThreads);
+            binaryServer.start();
+        }
+        if (configKeeper.getReplicationSettings().port() > 0) {
+            replicationServer = new ReplicationServer(rocksDbStore, configKeeper.getReplicationSettings());
+            replicationServer.start();
+        }
+    }
+
+    /**
+     * Launches a read-only follower of the leader of the replication settings. On the first launch the store
+     * is bootstrapped from a checkpoint of the leader, then it applies the leader's updates. Reads are served
+     * from the store without locks and cache, and no route or listener of the write path is started
+     */
+    private void launchFollower(ConfigKeeper configKeeper) {
+        ReplicationSettings replicationSettings = configKeeper.getReplicationSettings();
+        ReplicationFollower.bootstrap(replicationSettings, configKeeper.getStoreSettings().path());
+        AccountSerializer accountSerializer = new AccountSerializer();
+        RocksDbStore rocksDbStore = new RocksDbStore(accountSerializer, configKeeper.getStoreSettings());
+        replicationFollower = new ReplicationFollower(rocksDbStore, replicationSettings);
+        replicationFollower.start();
+        FxRates fxRates = new FxRates(configKeeper.getFxSettings());
+        int numOfThreads = getMaxThreads();
+        AccountBulkLoader accountBulkLoader = new AccountBulkLoader(rocksDbStore, accountSerializer,
+                AccountBulkLoader.DEFAULT_CHUNK_SIZE);
+        MoneyTransferServerRoutes moneyTransferServerRoutes = new MoneyTransferServerRoutes(
+                new ReadOnlyAccountEngine(rocksDbStore), rocksDbStore, rocksDbStore, rocksDbStore, accountBulkLoader,
+                accountSerializer, fxRates, configKeeper.getHttpSettings(), numOfThreads);
+        moneyTransferHttpServer = new MoneyTransferHttpServer(moneyTransferServerRoutes, configKeeper.getHttpSettings(),
+                numOfThreads, true);
+        moneyTransferHttpServer.start();
     }
 
     public void stop() {
@@ -31,14 +104,94 @@ public class MoneyTransferFactory {
             return;
         }
         moneyTransferHttpServer.stop();
+        if (binaryServer != null) {
+            binaryServer.stop();
+        }
+        if (replicationServer != null) {
+            replicationServer.stop();
+        }
+        if (replicationFollower != null) {
+            replicationFollower.stop();
+        }
+        AsyncLog.stop();
+    }
+
+    private static Store createStore(RocksDbStore rocksDbStore, StoreSettings storeSettings) {
+        Store store = createPersistentStore(rocksDbStore, storeSettings);
+        if (storeSettings.cacheSize() <= 0) {
+            return store;
+        }
+        return new CachingStore(store, storeSettings.cacheSize());
+    }
+
+    private static Store createPersistentStore(RocksDbStore rocksDbStore, StoreSettings storeSettings) {
+        SyncPolicy syncPolicy = SyncPolicy.fromConfig(storeSettings.syncPolicy());
+        if (syncPolicy == SyncPolicy.SYNC_PER_OP || storeSettings.groupCommitMaxBatch() <= 1) {
+            return rocksDbStore;
+        }
+        return new GroupCommitStore(rocksDbStore, storeSettings);
+    }
+
+    /**
+     * Transactions of the optimistic mode are committed by RocksDb itself, so that mode uses neither the cache
+     * nor group commit
+     */
+    private static AccountEngine createAccountEngine(RocksDbStore rocksDbStore, StoreSettings storeSettings,
+                                                     EngineSettings engineSettings, FxRates fxRates) {
+        EngineMode engineMode = EngineMode.fromConfig(engineSettings.mode());
+        if (engineMode != EngineMode.LOCKING && !engineSettings.splitAccounts().trim().isEmpty()) {
+            throw new IllegalArgumentException("Split accounts are supported in locking mode only");
+        }
+        if (engineMode == EngineMode.OPTIMISTIC) {
+            return new OptimisticAccountManager(rocksDbStore, engineSettings.optimisticRetries(), fxRates);
+        }
+        Store store = createStore(rocksDbStore, storeSettings);
+        if (engineMode == EngineMode.SHARDED) {
+            int numOfShards = engineSettings.shards() > 0 ? engineSettings.shards() : getMaxThreads();
+            return new ShardedAccountManager(store, rocksDbStore, numOfShards, fxRates);
+        }
+        return new AccountManager(store, engineSettings, fxRates);
     }
 
     private static int getMaxThreads() {
         return Runtime.getRuntime().availableProcessors();
     }
 
-    public static void main(String[] args) {
+    /**
+     * Imports accounts from a file ("import") or exports them to a new file ("export") without starting the server.
+     * The server must be stopped, since RocksDb is opened by one process at a time
+     */
+    private static void runBulkCommand(String configName, String command, String file) throws IOException {
+        ConfigKeeper configKeeper = new ConfigKeeper(configName);
+        AccountSerializer accountSerializer = new AccountSerializer();
+        RocksDbStore rocksDbStore = new RocksDbStore(accountSerializer, configKeeper.getStoreSettings());
+        AccountBulkLoader accountBulkLoader = new AccountBulkLoader(rocksDbStore, accountSerializer,
+                AccountBulkLoader.DEFAULT_CHUNK_SIZE, configKeeper.getReplicationSettings().port() > 0);
+        if ("import".equals(command)) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                AccountBulkLoader.ImportResult result = accountBulkLoader.importAccounts(reader);
+                System.out.println("Imported " + result.getImported() + " accounts, skipped "
+                        + result.getSkipped() + " existing, " + result.getInvalid() + " invalid");
+            }
+        } else if ("export".equals(command)) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE_NEW)) {
+                System.out.println("Exported " + accountBulkLoader.exportAccounts(writer) + " accounts");
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown command " + command);
+        }
+    }
+
+    /**
+     * Arguments: [config file] to launch the server, [config file] import|export [accounts file] for bulk commands
+     */
+    public static void main(String[] args) throws IOException {
         String filename = args.length == 0 ? "config.yaml" : args[0];
+        if (args.length == 3) {
+            runBulkCommand(filename, args[1], args[2]);
+            return;
+        }
         MoneyTransferFactory  moneyTransferFactory = new MoneyTransferFactory();
         moneyTransferFactory.launch(filename);
     }
@@ -0,0 +1,113 @@
+package fx;
+
+import config.FxSettings;
+import metrics.Metrics;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current exchange rates. A transfer takes the current FxSnapshot with one volatile read and never waits;
+ * a reload parses the rates file into a new snapshot aside and replaces the reference (copy-on-write),
+ * so transfers in progress keep converting with the version they started with
+ */
+public final class FxRates {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FxRates.class);
+
+    @Nullable
+    private final Path ratesFile;
+    private final String defaultCurrency;
+    private volatile FxSnapshot snapshot;
+    // modification time of the loaded file, changed under the monitor by reloads only
+    private long loadedModifiedMillis;
+
+    /**
+     * Fixed rates, which are never reloaded
+     */
+    public FxRates(FxSnapshot snapshot) {
+        this.ratesFile = null;
+        this.defaultCurrency = snapshot.getDefaultCurrency();
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Loads the rates file and starts checking it for changes every reloadIntervalMillis
+     * @throws RuntimeException if the file can not be loaded
+     */
+    public FxRates(FxSettings fxSettings) {
+        this.defaultCurrency = fxSettings.defaultCurrency();
+        this.ratesFile = fxSettings.ratesFile().isEmpty() ? null : Paths.get(fxSettings.ratesFile());
+        this.snapshot = new FxSnapshot(0, defaultCurrency,
+                Collections.singletonMap(defaultCurrency, BigDecimal.ONE), Collections.emptyMap());
+        if (ratesFile != null) {
+            try {
+                reload();
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.error(e.getMessage(), e);
+                throw new RuntimeException("Can not load exchange rates from " + ratesFile);
+            }
+            if (fxSettings.reloadIntervalMillis() > 0) {
+                startReloading(fxSettings.reloadIntervalMillis());
+            }
+        }
+        Metrics.gauge("fx_rates_version", "Version of the exchange rates in use, incremented by every reload",
+                () -> snapshot.getVersion());
+    }
+
+    public FxSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Loads the rates file if it was modified since the last load
+     * @return whether a new version of rates was loaded
+     * @throws IllegalArgumentException if the file is invalid, then the previous rates stay in use
+     */
+    public synchronized boolean reload() throws IOException {
+        if (ratesFile == null) {
+            return false;
+        }
+        long modifiedMillis = Files.getLastModifiedTime(ratesFile).toMillis();
+        if (modifiedMillis == loadedModifiedMillis) {
+            return false;
+        }
+        // a file which fails to load is not loaded again until it is modified
+        loadedModifiedMillis = modifiedMillis;
+        FxSnapshot loaded;
+        try (Reader reader = Files.newBufferedReader(ratesFile, StandardCharsets.UTF_8)) {
+            loaded = FxSnapshot.parse(snapshot.getVersion() + 1, defaultCurrency, reader);
+        }
+        snapshot = loaded;
+        LOG.info("Loaded version {} of {} exchange rates", loaded.getVersion(), loaded.getRates().size());
+        return true;
+    }
+
+    private void startReloading(int reloadIntervalMillis) {
+        ScheduledExecutorService reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fx-reload-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloadExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Can not reload exchange rates: {}", e.getMessage());
+            }
+        }, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(reloadExecutor::shutdown));
+    }
+}
@@ -0,0 +1,156 @@
+package fx;
+
+import model.Money;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable table of exchange rates of one version. Rates of all pairs of currencies are computed
+ * when the table is created, so a conversion is two map lookups, one multiplication and rounding.
+ * A rate is the value of one unit of a currency in the default currency
+ */
+public final class FxSnapshot {
+
+    /**
+     * No rates: only amounts of the same currency can be "converted"
+     */
+    public static final FxSnapshot NONE = new FxSnapshot(0, null, Collections.emptyMap(), Collections.emptyMap());
+
+    private static final int DEFAULT_SCALE = 2;
+
+    private final long version;
+    @Nullable
+    private final String defaultCurrency;
+    private final Map<String, BigDecimal> rates;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int[] scales;
+    private final BigDecimal[][] crossRates;
+
+    /**
+     * @param rates values of one unit of currencies in the default currency
+     * @param scales fractional digits of amounts of currencies, DEFAULT_SCALE for currencies missing here
+     */
+    FxSnapshot(long version, @Nullable String defaultCurrency, Map<String, BigDecimal> rates,
+               Map<String, Integer> scales) {
+        this.version = version;
+        this.defaultCurrency = defaultCurrency;
+        this.rates = Collections.unmodifiableMap(new LinkedHashMap<>(rates));
+        this.scales = new int[rates.size()];
+        this.crossRates = new BigDecimal[rates.size()][rates.size()];
+        for (String currency : rates.keySet()) {
+            int index = indexes.size();
+            indexes.put(currency, index);
+            this.scales[index] = scales.getOrDefault(currency, DEFAULT_SCALE);
+        }
+        for (Map.Entry<String, BigDecimal> from : rates.entrySet()) {
+            for (Map.Entry<String, BigDecimal> to : rates.entrySet()) {
+                crossRates[indexes.get(from.getKey())][indexes.get(to.getKey())] =
+                        from.getValue().divide(to.getValue(), MathContext.DECIMAL128);
+            }
+        }
+    }
+
+    /**
+     * Parses lines "[currency] [rate] [fractional digits, 2 if omitted]", lines starting with '#' are comments.
+     * The default currency gets rate 1 if it is not listed
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    public static FxSnapshot parse(long version, String defaultCurrency, Reader reader) throws IOException {
+        Map<String, BigDecimal> rates = new LinkedHashMap<>();
+        Map<String, Integer> scales = new HashMap<>();
+        rates.put(defaultCurrency, BigDecimal.ONE);
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            try {
+                if (fields.length < 2 || fields.length > 3 || !isCurrencyCode(fields[0])) {
+                    throw new IllegalArgumentException();
+                }
+                BigDecimal rate = new BigDecimal(fields[1]);
+                int scale = fields.length == 3 ? Integer.parseInt(fields[2]) : DEFAULT_SCALE;
+                if (rate.signum() <= 0 || scale < 0 || scale > Money.MAX_SCALE
+                        || (fields[0].equals(defaultCurrency) && rate.compareTo(BigDecimal.ONE) != 0)) {
+                    throw new IllegalArgumentException();
+                }
+                rates.put(fields[0], rate);
+                scales.put(fields[0], scale);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid exchange rate " + line);
+            }
+        }
+        return new FxSnapshot(version, defaultCurrency, rates, scales);
+    }
+
+    /**
+     * @return whether the code is three latin capital letters, as ISO 4217 codes are
+     */
+    public static boolean isCurrencyCode(String code) {
+        if (code.length() != 3) {
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) < 'A' || code.charAt(i) > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Nullable
+    public String getDefaultCurrency() {
+        return defaultCurrency;
+    }
+
+    /**
+     * @return values of one unit of currencies in the default currency
+     */
+    public Map<String, BigDecimal> getRates() {
+        return rates;
+    }
+
+    /**
+     * Converts the amount rounding down to the fractional digits of the target currency,
+     * so a conversion never creates money. Null currencies are the default currency
+     * @return the amount itself for the same currency, null if there is no rate
+     * or the converted amount is out of range
+     */
+    @Nullable
+    public Money convert(Money amount, @Nullable String fromCurrency, @Nullable String toCurrency) {
+        String from = fromCurrency == null ? defaultCurrency : fromCurrency;
+        String to = toCurrency == null ? defaultCurrency : toCurrency;
+        if (Objects.equals(from, to)) {
+            return amount;
+        }
+        Integer fromIndex = from == null ? null : indexes.get(from);
+        Integer toIndex = to == null ? null : indexes.get(to);
+        if (fromIndex == null || toIndex == null) {
+            return null;
+        }
+        try {
+            return Money.of(amount.toBigDecimal().multiply(crossRates[fromIndex][toIndex])
+                    .setScale(scales[toIndex], RoundingMode.DOWN));
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package httpserver;
+
+import metrics.Counter;
+import metrics.Metrics;
+import model.IdempotencyRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import store.IdempotencyStore;
+import store.RecordWrites;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recently used idempotency keys with the outcomes of their requests.
+ * Keys are kept in memory for the TTL (or until maxKeys newer keys push them out) and in the store,
+ * so a retried request is answered without executing it again and without taking account locks.
+ * A retry arriving while the first request is still executing waits for its outcome, so keys of requests
+ * in progress are never evicted. A successful outcome is written by the request in the same atomic write
+ * as the accounts it changes, so that a retry after a restart never executes the request again
+ */
+public final class IdempotencyIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdempotencyIndex.class);
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+    private static final long STORE_SWEEP_INTERVAL_MILLIS = 60_000;
+
+    private static final Counter HITS = Metrics.counter("idempotency_hits_total",
+            "Requests answered from the idempotency index");
+
+    private final IdempotencyStore store;
+    private final long ttlMillis;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, CompletableFuture<IdempotencyRecord>> entries = new ConcurrentHashMap<>();
+    // keys in the order of reservation, which is also the order of their expiry as the TTL is the same for all keys
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService sweeper;
+    private long lastStoreSweep = System.currentTimeMillis();
+
+    public IdempotencyIndex(IdempotencyStore store, long ttlMillis, int maxKeys) {
+        this.store = store;
+        this.ttlMillis = ttlMillis;
+        this.maxKeys = maxKeys;
+        Metrics.gauge("idempotency_keys", "Idempotency keys kept in memory", entries::size);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "idempotency-sweeper-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(sweeper::shutdown));
+    }
+
+    /**
+     * Reserves the key for the caller, who then must either complete or release it
+     * @return null if the key was reserved, otherwise the outcome of the request which used the key first
+     */
+    public CompletableFuture<IdempotencyRecord> reserve(String key) {
+        CompletableFuture<IdempotencyRecord> reservation = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> previous = entries.putIfAbsent(key, reservation);
+        if (previous != null) {
+            HITS.increment();
+            return previous;
+        }
+        order.add(new Entry(key, reservation, System.currentTimeMillis() + ttlMillis));
+        evictOverflow();
+
+        IdempotencyRecord stored = store.getRecord(key);
+        if (stored != null && !stored.isExpired(System.currentTimeMillis())) {
+            // the key was evicted from memory or used before a restart
+            HITS.increment();
+            reservation.complete(stored);
+            return reservation;
+        }
+        return null;
+    }
+
+    /**
+     * @return the record of a successful outcome (OperationResult.success()) of the request which reserved the key,
+     * for the request to write together with the accounts it changes
+     */
+    public RecordWrites successRecords(String key, String fingerprint) {
+        return new RecordWrites().putIdempotencyRecord(key, new IdempotencyRecord(fingerprint, false,
+                OperationResult.success().getText(), System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Remembers the outcome of the request which reserved the key and passes it to the waiting retries.
+     * An error outcome changed no account, so it is stored here; a successful outcome was stored with the accounts
+     */
+    public void complete(String key, String fingerprint, OperationResult result) {
+        IdempotencyRecord record = new IdempotencyRecord(fingerprint, result.isError(), result.getText(),
+                System.currentTimeMillis() + ttlMillis);
+        CompletableFuture<IdempotencyRecord> reservation = entries.get(key);
+        if (reservation != null) {
+            reservation.complete(record);
+        }
+        if (!result.isError()) {
+            return;
+        }
+        try {
+            store.putRecord(key, record);
+        } catch (RuntimeException e) {
+            // the key is still known in memory, only a retry after a restart may execute again
+            LOG.error("Can not store idempotency key", e);
+        }
+    }
+
+    /**
+     * Forgets the key of a request which failed without an outcome, so that it can be retried.
+     * Retries waiting for the outcome fail with the same cause
+     */
+    public void release(String key, Throwable cause) {
+        CompletableFuture<IdempotencyRecord> reservation = entries.remove(key);
+        if (reservation != null) {
+            reservation.completeExceptionally(cause);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts keys expired by nowMillis from memory, except keys of requests in progress
+     */
+    void evictExpired(long nowMillis) {
+        for (Iterator<Entry> iterator = order.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt > nowMillis) {
+                return;
+            }
+            evict(iterator, entry);
+        }
+    }
+
+    /**
+     * Evicts the oldest keys over maxKeys, except keys of requests in progress.
+     * So the index may exceed maxKeys by the number of requests in progress
+     */
+    private void evictOverflow() {
+        for (Iterator<Entry> iterator = order.iterator(); entries.size() > maxKeys && iterator.hasNext(); ) {
+            evict(iterator, iterator.next());
+        }
+    }
+
+    private void evict(Iterator<Entry> iterator, Entry entry) {
+        // a retry waits for the outcome of a reservation in progress, it is kept until completed
+        if (entry.reservation.isDone()) {
+            iterator.remove();
+            // the key may have been released and reserved again by now
+            entries.remove(entry.key, entry.reservation);
+        }
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            evictExpired(now);
+            if (now - lastStoreSweep >= STORE_SWEEP_INTERVAL_MILLIS) {
+                lastStoreSweep = now;
+                int deleted = store.deleteExpiredRecords(now);
+                LOG.debug("Deleted {} expired idempotency keys", deleted);
+            }
+        } catch (Throwable e) {
+            LOG.error(e.getMessage(), e);
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final CompletableFuture<IdempotencyRecord> reservation;
+        private final long expiresAt;
+
+        Entry(String key, CompletableFuture<IdempotencyRecord> reservation, long expiresAt) {
+            this.key = key;
+            this.reservation = reservation;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
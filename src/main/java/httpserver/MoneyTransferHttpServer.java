@@ -26,13 +26,28 @@ public class MoneyTransferHttpServer {
     public MoneyTransferHttpServer(MoneyTransferServerRoutes moneyTransferServerRoutes,
                                    HttpSettings httpSettings,
                                    int numOfThreads) {
+        this(moneyTransferServerRoutes, httpSettings, numOfThreads, false);
+    }
+
+    /**
+     * @param readOnly whether only routes reading accounts are served, as by a follower
+     */
+    public MoneyTransferHttpServer(MoneyTransferServerRoutes moneyTransferServerRoutes,
+                                   HttpSettings httpSettings,
+                                   int numOfThreads,
+                                   boolean readOnly) {
 
         this.moneyTransferServerRoutes = moneyTransferServerRoutes;
         QueuedThreadPool javalinThreadPool = new QueuedThreadPool(numOfThreads, 2, IDLE_TIMEOUT);
         app = Javalin.create()
                 .port(httpSettings.port())
                 .embeddedServer(new EmbeddedJettyFactory(() -> new Server(javalinThreadPool)));
-        routes();
+        if (readOnly) {
+            readOnlyRoutes();
+        } else {
+            routes();
+        }
+        app.after(ctx -> QueryParameters.release());
         Runtime.getRuntime().addShutdownHook(new Thread(() -> app.stop()));
     }
 
@@ -45,15 +60,39 @@ public class MoneyTransferHttpServer {
     }
 
     private void routes() {
-        app.routes(() ->
+        app.routes(() -> {
+                get("metrics", ctx -> moneyTransferServerRoutes.metrics(ctx));
+                get("journal", ctx -> moneyTransferServerRoutes.journal(ctx));
+                get("fx", ctx -> moneyTransferServerRoutes.fx(ctx));
+                path("admin", () -> {
+                    post("import", ctx -> moneyTransferServerRoutes.importAccounts(ctx));
+                    post("export", ctx -> moneyTransferServerRoutes.exportAccounts(ctx));
+                });
                 path("accounts", () -> {
                     get("changeBalance", ctx -> moneyTransferServerRoutes.changeBalance(ctx));
                     get("transferMoney", ctx -> moneyTransferServerRoutes.moneyTransfer(ctx));
+                    post("transferBatch", ctx -> moneyTransferServerRoutes.transferBatch(ctx));
                     get("delete", ctx -> moneyTransferServerRoutes.delete(ctx));
                     get("add", ctx -> moneyTransferServerRoutes.add(ctx));
                     get("get", ctx -> moneyTransferServerRoutes.get(ctx));
-                })
-        );
+                    get("getMany", ctx -> moneyTransferServerRoutes.getMany(ctx));
+                    get("list", ctx -> moneyTransferServerRoutes.list(ctx));
+                    get("total", ctx -> moneyTransferServerRoutes.total(ctx));
+                });
+        });
     }
 
+    private void readOnlyRoutes() {
+        app.routes(() -> {
+                get("metrics", ctx -> moneyTransferServerRoutes.metrics(ctx));
+                get("journal", ctx -> moneyTransferServerRoutes.journal(ctx));
+                get("fx", ctx -> moneyTransferServerRoutes.fx(ctx));
+                path("accounts", () -> {
+                    get("get", ctx -> moneyTransferServerRoutes.get(ctx));
+                    get("getMany", ctx -> moneyTransferServerRoutes.getMany(ctx));
+                    get("list", ctx -> moneyTransferServerRoutes.list(ctx));
+                    get("total", ctx -> moneyTransferServerRoutes.total(ctx));
+                });
+        });
+    }
 }
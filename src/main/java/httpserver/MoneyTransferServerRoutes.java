@@ -1,137 +1,625 @@
 package httpserver;
 
-import engine.AccountManager;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import concurrent.WaitStrategy;
+import config.HttpSettings;
+import engine.AccountEngine;
+import fx.FxRates;
+import fx.FxSnapshot;
 import io.javalin.Context;
+import logging.AsyncLog;
+import logging.AsyncLogger;
+import metrics.LatencyRecorder;
+import metrics.Metrics;
 import model.Account;
+import model.AccountIds;
 import model.AccountSerializer;
+import model.BalanceTotal;
+import model.IdempotencyRecord;
+import model.Money;
+import model.MoneyTypeAdapter;
+import model.Transfer;
+import model.TransferEvent;
 import org.jetbrains.annotations.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import store.AccountBulkLoader;
+import store.AccountScanner;
+import store.IdempotencyStore;
+import store.RecordWrites;
+import store.TransferJournal;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.math.BigDecimal;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 
 public class MoneyTransferServerRoutes {
 
-    private static final Logger LOG = LoggerFactory.getLogger(MoneyTransferServerRoutes.class);
+    private static final AsyncLogger LOG = AsyncLog.getLogger(MoneyTransferServerRoutes.class);
 
     private static final int HTTP_CODE_SUCCESS = 200;
     private static final int HTTP_CODE_BAD_REQUEST = 400;
     private static final int HTTP_CODE_UNPROCESSABLE_ENTITY = 422;
     private static final int HTTP_CODE_SERVER_ERROR = 500;
+    private static final int HTTP_CODE_SERVICE_UNAVAILABLE = 503;
 
+    private static final String DISPATCH_MODE_RING = "ring";
+    private static final String DISPATCH_MODE_VIRTUAL = "virtual";
+    private static final int DEFAULT_JOURNAL_LIMIT = 1000;
+    private static final int MAX_JOURNAL_LIMIT = 10_000;
+    private static final int DEFAULT_LIST_LIMIT = 100;
+    private static final int MAX_LIST_LIMIT = 1000;
+    private static final int MAX_GET_MANY_IDS = 100;
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENCY_KEY_PARAMETER = "idempotencyKey";
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson; charset=utf-8";
+    private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final LatencyRecorder GET_LATENCY = routeLatency("get");
+    private static final LatencyRecorder GET_MANY_LATENCY = routeLatency("getMany");
+    private static final LatencyRecorder ADD_LATENCY = routeLatency("add");
+    private static final LatencyRecorder CHANGE_BALANCE_LATENCY = routeLatency("changeBalance");
+    private static final LatencyRecorder TRANSFER_MONEY_LATENCY = routeLatency("transferMoney");
+    private static final LatencyRecorder TRANSFER_BATCH_LATENCY = routeLatency("transferBatch");
+    private static final LatencyRecorder DELETE_LATENCY = routeLatency("delete");
+    private static final LatencyRecorder JOURNAL_LATENCY = routeLatency("journal");
+    private static final LatencyRecorder LIST_LATENCY = routeLatency("list");
+    private static final LatencyRecorder TOTAL_LATENCY = routeLatency("total");
+    private static final LatencyRecorder IMPORT_LATENCY = routeLatency("import");
+    private static final LatencyRecorder EXPORT_LATENCY = routeLatency("export");
+    private static final LatencyRecorder DISPATCH_WAIT = Metrics.latency("dispatch_wait_seconds",
+            "Time requests wait for a worker thread");
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Money.class, new MoneyTypeAdapter())
+            .create();
     private final AccountSerializer accountSerializer;
-    private final AccountManager accountManager;
+    private final AccountEngine accountEngine;
+    private final TransferJournal transferJournal;
+    private final AccountScanner accountScanner;
     private final ExecutorService executorService;
+    private final RingBufferDispatcher ringBufferDispatcher;
+    private final AtomicInteger virtualActionsInProgress;
+    private final IdempotencyIndex idempotencyIndex;
+    private final AccountBulkLoader accountBulkLoader;
+    private final FxRates fxRates;
+    // bulk operations run one at a time, apart from the threads executing account requests
+    private final ExecutorService adminExecutor = Executors.newSingleThreadExecutor(
+            t -> new Thread(t, "admin-thread"));
 
-    public MoneyTransferServerRoutes(AccountManager accountManager, AccountSerializer accountSerializer, int numOfThreads) {
-        this.accountManager = accountManager;
+    public MoneyTransferServerRoutes(AccountEngine accountEngine, TransferJournal transferJournal,
+                                     AccountScanner accountScanner, IdempotencyStore idempotencyStore, AccountBulkLoader accountBulkLoader,
+                                     AccountSerializer accountSerializer, FxRates fxRates, HttpSettings httpSettings,
+                                     int numOfThreads) {
+        this.accountEngine = accountEngine;
+        this.transferJournal = transferJournal;
+        this.accountScanner = accountScanner;
+        this.accountBulkLoader = accountBulkLoader;
         this.accountSerializer = accountSerializer;
-        executorService = Executors.newFixedThreadPool(numOfThreads,
-                t -> new Thread(t, "account-actions-thread"));
+        this.fxRates = fxRates;
+        this.idempotencyIndex = httpSettings.idempotencyTtlSeconds() > 0
+                ? new IdempotencyIndex(idempotencyStore, TimeUnit.SECONDS.toMillis(httpSettings.idempotencyTtlSeconds()),
+                httpSettings.idempotencyMaxKeys())
+                : null;
+        if (DISPATCH_MODE_RING.equals(httpSettings.dispatchMode())) {
+            executorService = null;
+            virtualActionsInProgress = null;
+            ringBufferDispatcher = new RingBufferDispatcher(httpSettings.ringSize(), numOfThreads,
+                    WaitStrategy.fromConfig(httpSettings.waitStrategy()), this::executeAction);
+            Metrics.gauge("dispatch_queue_depth", "Requests waiting for or being executed by worker threads",
+                    ringBufferDispatcher::queueDepth);
+        } else if (DISPATCH_MODE_VIRTUAL.equals(httpSettings.dispatchMode())) {
+            // every request is executed on a new virtual thread, so requests blocked on RocksDb or on account locks
+            // occupy no platform threads and the number of requests in progress is not limited by a pool size
+            ringBufferDispatcher = null;
+            virtualActionsInProgress = new AtomicInteger();
+            executorService = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("account-actions-virtual-thread-", 0).factory());
+            Metrics.gauge("dispatch_queue_depth", "Requests being executed by virtual threads",
+                    virtualActionsInProgress::get);
+        } else {
+            ringBufferDispatcher = null;
+            virtualActionsInProgress = null;
+            ThreadPoolExecutor executorService = new ThreadPoolExecutor(numOfThreads, numOfThreads,
+                    0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), t -> new Thread(t, "account-actions-thread"));
+            Metrics.gauge("dispatch_queue_depth", "Requests waiting for a worker thread",
+                    () -> executorService.getQueue().size());
+            this.executorService = executorService;
+        }
+        if (executorService != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                    () -> executorService.shutdown()));
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(
-                () -> executorService.shutdown()));
+                () -> adminExecutor.shutdown()));
+    }
+
+    void metrics(Context ctx) {
+        ctx.contentType(METRICS_CONTENT_TYPE);
+        ctx.result(Metrics.scrape());
     }
 
     void get(Context ctx) {
-        String accountId = getIdFromRequest(ctx.request());
-        if (accountId == null) {
+        String accountId = QueryParameters.of(ctx.request()).get("id");
+        if (!AccountIds.isValid(accountId)) {
             sendValidationException(ctx, "Invalid get account request");
         } else {
-            submitAction(ctx, () -> accountManager.getAccount(accountId));
+            submitAction(ctx, GET_LATENCY, () -> accountEngine.getAccount(accountId));
+        }
+    }
+
+    /**
+     * Responds with a json array of the accounts of comma-separated "ids", all read at one moment
+     */
+    void getMany(Context ctx) {
+        String ids = QueryParameters.of(ctx.request()).get("ids");
+        List<String> accountIds = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids.split(",")) {
+                if (!id.trim().isEmpty()) {
+                    accountIds.add(id.trim());
+                }
+            }
+        }
+        if (accountIds.isEmpty() || accountIds.size() > MAX_GET_MANY_IDS
+                || !accountIds.stream().allMatch(AccountIds::isValid)) {
+            sendValidationException(ctx, "Invalid get accounts request");
+        } else {
+            submitAction(ctx, GET_MANY_LATENCY, () -> accountEngine.getAccounts(accountIds));
         }
     }
 
     void add(Context ctx) {
-        String accountsSer = ctx.request().getParameter("account");
+        String accountsSer = QueryParameters.of(ctx.request()).get("account");
         if (accountsSer == null) {
             sendValidationException(ctx, "Invalid add account request");
         } else {
             LOG.info("Add account request {}", accountsSer);
             Account account = accountSerializer.deserialize(accountsSer);
-            submitAction(ctx, () -> accountManager.addAccount(account));
+            if (account.getCurrency() != null && !FxSnapshot.isCurrencyCode(account.getCurrency())) {
+                sendValidationException(ctx, "Invalid currency " + account.getCurrency());
+                return;
+            }
+            submitAction(ctx, ADD_LATENCY, () -> accountEngine.addAccount(account));
         }
     }
 
     void changeBalance(Context ctx) {
-        HttpServletRequest request = ctx.request();
-        String accountId = getIdFromRequest(request);
-        BigDecimal sum = getAmountFromRequest(request);
-        if (accountId == null || sum == null) {
+        QueryParameters parameters = QueryParameters.of(ctx.request());
+        String accountId = parameters.get("id");
+        Money sum = parameters.getMoney("amount");
+        if (!AccountIds.isValid(accountId) || sum == null) {
             sendValidationException(ctx, "Invalid change balance request");
         } else {
             LOG.info("Change balance request id {}  sum {}", accountId, sum);
-            submitAction(ctx, () -> accountManager.changeBalance(accountId, sum));
+            submitIdempotentAction(ctx, CHANGE_BALANCE_LATENCY, fingerprint("changeBalance", accountId, sum),
+                    records -> accountEngine.changeBalance(accountId, sum, records));
         }
     }
 
     void moneyTransfer(Context ctx) {
-        HttpServletRequest request = ctx.request();
-        String accountFrom = request.getParameter("from");
-        String accountTo = request.getParameter("to");
-        BigDecimal sumToTransfer = getAmountFromRequest(request);
-        if (accountFrom == null || accountTo == null || sumToTransfer == null) {
+        QueryParameters parameters = QueryParameters.of(ctx.request());
+        String accountFrom = parameters.get("from");
+        String accountTo = parameters.get("to");
+        Money sumToTransfer = parameters.getMoney("amount");
+        if (!AccountIds.isValid(accountFrom) || !AccountIds.isValid(accountTo) || sumToTransfer == null) {
             sendValidationException(ctx, "Invalid transfer money request");
         } else {
             LOG.info("Transfer money request from {} to {} sum {}", accountFrom, accountTo, sumToTransfer);
-            submitAction(ctx, () -> accountManager.transferMoney(accountFrom, accountTo,
-                    sumToTransfer));
+            submitIdempotentAction(ctx, TRANSFER_MONEY_LATENCY,
+                    fingerprint("transferMoney", accountFrom, accountTo, sumToTransfer),
+                    records -> accountEngine.transferMoney(accountFrom, accountTo, sumToTransfer, records));
+        }
+    }
+
+    /**
+     * Reads transfers as newline-delimited json (one transfer {"from":..,"to":..,"amount":..} per line)
+     * and responds with newline-delimited json results {"index":..,"error":..,"text":..} in the same order
+     */
+    void transferBatch(Context ctx) {
+        OperationResult[] results;
+        List<Transfer> transfers = new ArrayList<>();
+        List<Integer> transferIndices = new ArrayList<>();
+        try {
+            results = readTransfers(ctx.request().getReader(), transfers, transferIndices);
+        } catch (IOException e) {
+            sendValidationException(ctx, "Invalid transfer batch request");
+            return;
+        }
+        if (results.length == 0) {
+            sendValidationException(ctx, "Invalid transfer batch request");
+            return;
+        }
+        LOG.info("Transfer batch request of {} transfers", results.length);
+        submitAction(ctx, TRANSFER_BATCH_LATENCY, () -> {
+            List<OperationResult> transferResults = accountEngine.transferBatch(transfers);
+            for (int i = 0; i < transferResults.size(); i++) {
+                results[transferIndices.get(i)] = transferResults.get(i);
+            }
+            return OperationResult.success(serializeBatchResults(results));
+        });
+    }
+
+    /**
+     * Responds with newline-delimited json transfer events starting from the "from" sequence number,
+     * at most "limit" events
+     */
+    void journal(Context ctx) {
+        QueryParameters parameters = QueryParameters.of(ctx.request());
+        Long fromSequence = getLongParameter(parameters, "from", 1);
+        Long limit = getLongParameter(parameters, "limit", DEFAULT_JOURNAL_LIMIT);
+        if (fromSequence == null || limit == null || limit <= 0) {
+            sendValidationException(ctx, "Invalid journal request");
+            return;
         }
+        int maxEvents = (int) Math.min(limit, MAX_JOURNAL_LIMIT);
+        submitAction(ctx, JOURNAL_LATENCY, () -> {
+            StringBuilder builder = new StringBuilder();
+            for (TransferEvent event : transferJournal.readEvents(fromSequence, maxEvents)) {
+                builder.append(gson.toJson(event)).append('\n');
+            }
+            return OperationResult.success(builder.toString());
+        });
+    }
+
+    /**
+     * Responds with up to "limit" accounts in the order of ids: {"accounts":[..],"cursor":..}.
+     * The cursor is passed to get the next page, it is null after the last page
+     */
+    void list(Context ctx) {
+        QueryParameters parameters = QueryParameters.of(ctx.request());
+        Long limit = getLongParameter(parameters, "limit", DEFAULT_LIST_LIMIT);
+        String cursor = parameters.get("cursor");
+        String fromAccountId = cursor == null ? null : decodeCursor(cursor);
+        if (limit == null || limit <= 0 || (cursor != null && fromAccountId == null)) {
+            sendValidationException(ctx, "Invalid list request");
+            return;
+        }
+        int pageSize = (int) Math.min(limit, MAX_LIST_LIMIT);
+        submitAction(ctx, LIST_LATENCY, () -> {
+            // one more account is read, it is the start of the next page
+            List<Account> accounts = accountScanner.scanAccounts(fromAccountId, pageSize + 1);
+            StringBuilder builder = new StringBuilder("{\"accounts\":[");
+            for (int i = 0; i < Math.min(pageSize, accounts.size()); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(accountSerializer.serialize(accounts.get(i)));
+            }
+            builder.append("],\"cursor\":");
+            builder.append(accounts.size() > pageSize
+                    ? gson.toJson(encodeCursor(accounts.get(pageSize).getId()))
+                    : "null");
+            return OperationResult.success(builder.append('}').toString());
+        });
+    }
+
+    /**
+     * Responds with the number of accounts and the sum of their balances of one snapshot:
+     * {"accounts":..,"total":..}, where the total is of the default currency, and sums of other currencies
+     * "currencies":{"EUR":{"accounts":..,"total":..}} if there are any.
+     * Runs on the admin thread, since it reads all accounts
+     */
+    void total(Context ctx) {
+        submitAdminAction(ctx, TOTAL_LATENCY, () -> {
+            BalanceTotal total = accountScanner.totalBalance();
+            StringBuilder builder = new StringBuilder("{\"accounts\":").append(total.getNumOfAccounts())
+                    .append(",\"total\":").append(total.toBigDecimal().toPlainString());
+            if (!total.getCurrencyTotals().isEmpty()) {
+                builder.append(",\"currencies\":{");
+                String separator = "";
+                for (Map.Entry<String, BalanceTotal> entry : total.getCurrencyTotals().entrySet()) {
+                    builder.append(separator).append(gson.toJson(entry.getKey()))
+                            .append(":{\"accounts\":").append(entry.getValue().getNumOfAccounts())
+                            .append(",\"total\":").append(entry.getValue().toBigDecimal().toPlainString()).append('}');
+                    separator = ",";
+                }
+                builder.append('}');
+            }
+            return OperationResult.success(builder.append('}').toString());
+        });
+    }
+
+    /**
+     * Responds with the exchange rates in use: {"version":..,"defaultCurrency":..,"rates":{"EUR":..}},
+     * a rate is the value of one unit of a currency in the default currency
+     */
+    void fx(Context ctx) {
+        FxSnapshot rates = fxRates.snapshot();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", rates.getVersion());
+        body.put("defaultCurrency", rates.getDefaultCurrency());
+        body.put("rates", rates.getRates());
+        ctx.result(gson.toJson(body));
+    }
+
+    /**
+     * Imports newline-delimited json accounts of the request body, see AccountBulkLoader.
+     * Responds with the numbers of imported, skipped and invalid accounts
+     */
+    void importAccounts(Context ctx) {
+        LOG.info("Import accounts request");
+        submitAdminAction(ctx, IMPORT_LATENCY, () -> OperationResult.success(
+                gson.toJson(accountBulkLoader.importAccounts(ctx.request().getReader()))));
+    }
+
+    /**
+     * Streams all accounts of a snapshot as newline-delimited json in the response body.
+     * Runs on the admin thread, which writes the accounts into the response as they are read
+     */
+    void exportAccounts(Context ctx) {
+        LOG.info("Export accounts request");
+        long submittedNanos = System.nanoTime();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        setFutureResult(ctx, future);
+        adminExecutor.execute(() -> {
+            HttpServletResponse response = ResponseWriter.jettyResponse(ctx.response());
+            try {
+                response.setContentType(NDJSON_CONTENT_TYPE);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(),
+                        StandardCharsets.UTF_8));
+                accountBulkLoader.exportAccounts(writer);
+                future.complete(null);
+                EXPORT_LATENCY.recordSince(submittedNanos);
+            } catch (Throwable e) {
+                LOG.error(e.getMessage(), e);
+                // accounts written so far are sent already, the client sees a truncated body
+                if (!response.isCommitted()) {
+                    response.setStatus(HTTP_CODE_SERVER_ERROR);
+                }
+                future.completeExceptionally(e);
+            }
+        });
     }
 
     void delete(Context ctx) {
-        HttpServletRequest request = ctx.request();
-        String accountId = getIdFromRequest(request);
-        if (accountId == null) {
+        String accountId = QueryParameters.of(ctx.request()).get("id");
+        if (!AccountIds.isValid(accountId)) {
             sendValidationException(ctx, "Invalid delete account request");
         } else {
             LOG.info("Delete account request : account id {}", accountId);
-            submitAction(ctx, () -> accountManager.deleteAccount(accountId));
+            submitAction(ctx, DELETE_LATENCY, () -> accountEngine.deleteAccount(accountId));
         }
     }
 
     @Nullable
-    private BigDecimal getAmountFromRequest(HttpServletRequest request) {
-        String str = request.getParameter("amount");
+    private Long getLongParameter(QueryParameters parameters, String name, long defaultValue) {
+        String str = parameters.get(name);
         if (str == null) {
-            return null;
+            return defaultValue;
         }
         try {
-            return new BigDecimal(str);
-        } catch (Exception e) {
+            return Long.parseLong(str);
+        } catch (NumberFormatException e) {
             return null;
         }
     }
 
     /**
-     * Schedules asynchronous execution of the request on executorService thread pool,
-     * and supplies the HTTP server with a future via which it will figure out that the request is executed
+     * Parses transfers line by line. Invalid lines get an error result right away,
+     * valid transfers are collected together with their positions in the batch
+     * @return results array with errors for invalid lines
      */
-    private void submitAction(Context context, Callable<OperationResult> resultCallable) {
-        CompletableFuture<String> future = new CompletableFuture<>();
-        context.result(future);
+    private OperationResult[] readTransfers(BufferedReader reader, List<Transfer> transfers,
+                                            List<Integer> transferIndices) throws IOException {
+        List<OperationResult> results = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Transfer transfer = parseTransfer(line);
+            if (transfer == null) {
+                results.add(OperationResult.error("Invalid transfer"));
+            } else {
+                transferIndices.add(results.size());
+                transfers.add(transfer);
+                results.add(null);
+            }
+        }
+        return results.toArray(new OperationResult[0]);
+    }
+
+    @Nullable
+    private Transfer parseTransfer(String line) {
+        try {
+            Transfer transfer = gson.fromJson(line, Transfer.class);
+            if (transfer == null || !AccountIds.isValid(transfer.getFrom()) || !AccountIds.isValid(transfer.getTo())
+                    || transfer.getAmount() == null) {
+                return null;
+            }
+            return transfer;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private String serializeBatchResults(OperationResult[] results) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < results.length; i++) {
+            builder.append(gson.toJson(new BatchItemResult(i, results[i]))).append('\n');
+        }
+        return builder.toString();
+    }
 
-        executorService.submit(() -> {
+    /**
+     * Submits the request like submitAction, unless the request has an idempotency key which was already used.
+     * Then the outcome of the first request with the key is sent instead, after it is known.
+     * The action gets the records of its successful outcome to write with the accounts, null without a key
+     */
+    private void submitIdempotentAction(Context context, LatencyRecorder routeLatency, String fingerprint,
+                                        Function<RecordWrites, OperationResult> action) {
+        String key = getIdempotencyKey(context.request());
+        if (key == null || idempotencyIndex == null) {
+            submitAction(context, routeLatency, () -> action.apply(null));
+            return;
+        }
+        CompletableFuture<IdempotencyRecord> previous = idempotencyIndex.reserve(key);
+        if (previous != null) {
+            setFutureResult(context, previous.handle((record, e) -> previousResult(context, fingerprint, record, e)));
+            return;
+        }
+        boolean submitted = submitAction(context, routeLatency, () -> {
+            OperationResult result;
             try {
-                OperationResult result = resultCallable.call();
-                context.response().setStatus(result.isError() ? HTTP_CODE_UNPROCESSABLE_ENTITY : HTTP_CODE_SUCCESS);
-                future.complete(result.getText());
+                result = action.apply(idempotencyIndex.successRecords(key, fingerprint));
             } catch (Throwable e) {
-                LOG.error(e.getMessage(), e);
-                context.response().setStatus(HTTP_CODE_SERVER_ERROR);
-                future.completeExceptionally(e);
+                idempotencyIndex.release(key, e);
+                throw e;
             }
+            idempotencyIndex.complete(key, fingerprint, result);
+            return result;
         });
+        if (!submitted) {
+            idempotencyIndex.release(key, new IllegalStateException("Server is overloaded"));
+        }
     }
 
-    private String getIdFromRequest(HttpServletRequest request) {
-        return request.getParameter("id");
+    private String previousResult(Context context, String fingerprint, IdempotencyRecord record, Throwable e) {
+        if (e != null) {
+            context.response().setStatus(HTTP_CODE_SERVER_ERROR);
+            return "Request with the same idempotency key failed";
+        }
+        if (!fingerprint.equals(record.getFingerprint())) {
+            context.response().setStatus(HTTP_CODE_UNPROCESSABLE_ENTITY);
+            return "Idempotency key is already used by another request";
+        }
+        context.response().setStatus(record.isError() ? HTTP_CODE_UNPROCESSABLE_ENTITY : HTTP_CODE_SUCCESS);
+        return record.getText();
+    }
+
+    /**
+     * Schedules asynchronous execution of the request on executorService thread pool (on ring buffer workers
+     * or on a virtual thread),
+     * and supplies the HTTP server with a future via which it will figure out that the request is executed
+     * @return false if the request was rejected because the ring buffer is full
+     */
+    private boolean submitAction(Context context, LatencyRecorder routeLatency,
+                                 Callable<OperationResult> resultCallable) {
+        long submittedNanos = System.nanoTime();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        setFutureResult(context, future);
+
+        if (ringBufferDispatcher != null) {
+            if (!ringBufferDispatcher.tryDispatch(context, resultCallable, future, routeLatency, submittedNanos)) {
+                context.response().setStatus(HTTP_CODE_SERVICE_UNAVAILABLE);
+                context.result("Server is overloaded");
+                return false;
+            }
+            return true;
+        }
+
+        if (virtualActionsInProgress != null) {
+            virtualActionsInProgress.incrementAndGet();
+            executorService.execute(() -> {
+                try {
+                    executeAction(context, resultCallable, future, routeLatency, submittedNanos);
+                } finally {
+                    virtualActionsInProgress.decrementAndGet();
+                }
+            });
+            return true;
+        }
+
+        executorService.execute(() -> executeAction(context, resultCallable, future, routeLatency, submittedNanos));
+        return true;
+    }
+
+    private void submitAdminAction(Context context, LatencyRecorder routeLatency,
+                                   Callable<OperationResult> resultCallable) {
+        long submittedNanos = System.nanoTime();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        setFutureResult(context, future);
+        adminExecutor.execute(() -> executeAction(context, resultCallable, future, routeLatency, submittedNanos));
+    }
+
+    private void executeAction(Context context, Callable<OperationResult> resultCallable,
+                               CompletableFuture<String> future, LatencyRecorder routeLatency, long submittedNanos) {
+        DISPATCH_WAIT.recordSince(submittedNanos);
+        try {
+            OperationResult result = resultCallable.call();
+            context.response().setStatus(result.isError() ? HTTP_CODE_UNPROCESSABLE_ENTITY : HTTP_CODE_SUCCESS);
+            // a written response is complete, Javalin has nothing to write for the future
+            future.complete(ResponseWriter.write(context.response(), result) ? null : result.getText());
+            routeLatency.recordSince(submittedNanos);
+        } catch (Throwable e) {
+            LOG.error(e.getMessage(), e);
+            context.response().setStatus(HTTP_CODE_SERVER_ERROR);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Javalin 1.7 deprecates future results as an experimental feature, but they are its only asynchronous result
+     */
+    @SuppressWarnings("deprecation")
+    private static void setFutureResult(Context context, CompletableFuture<?> future) {
+        context.result(future);
+    }
+
+    private static LatencyRecorder routeLatency(String route) {
+        return Metrics.latency("http_request_duration_seconds", "Time from accepting a request to its result",
+                Metrics.label("route", route));
+    }
+
+    /**
+     * @return the key from the Idempotency-Key header or from the idempotencyKey parameter, null if there is none
+     */
+    @Nullable
+    private String getIdempotencyKey(HttpServletRequest request) {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key == null || key.isEmpty()) {
+            key = QueryParameters.of(request).get(IDEMPOTENCY_KEY_PARAMETER);
+        }
+        return key == null || key.isEmpty() ? null : key;
+    }
+
+    /**
+     * @return identity of the request, a key reused with a request of another identity is rejected
+     */
+    private static String fingerprint(String route, Object... arguments) {
+        StringBuilder builder = new StringBuilder(route);
+        for (Object argument : arguments) {
+            builder.append('\n').append(argument);
+        }
+        return builder.toString();
+    }
+
+    private static String encodeCursor(String accountId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(accountId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the account id the cursor starts from, null if the cursor is invalid
+     */
+    @Nullable
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     private void sendValidationException(Context context, String errorMessage) {
@@ -141,4 +629,16 @@ public class MoneyTransferServerRoutes {
         LOG.info(errorMessage);
     }
 
+    private static class BatchItemResult {
+        private final int index;
+        private final boolean error;
+        private final String text;
+
+        BatchItemResult(int index, OperationResult result) {
+            this.index = index;
+            this.error = result.isError();
+            this.text = result.getText();
+        }
+    }
+
 }
@@ -1,28 +1,44 @@
 package httpserver;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
 /**
  * Callback class for HttpServer
  */
 public class OperationResult {
 
+    private static final OperationResult SUCCESS = new OperationResult(false, "Operation completed", true);
+
     private final boolean isError;
     private final String text;
+    // UTF-8 text of results kept in constants, encoded once
+    private final byte[] encodedText;
 
-    private OperationResult(boolean isError, String text) {
+    private OperationResult(boolean isError, String text, boolean encode) {
         this.text = text;
         this.isError = isError;
+        this.encodedText = encode ? text.getBytes(StandardCharsets.UTF_8) : null;
     }
 
     public static OperationResult success() {
-        return new OperationResult(false, "Operation completed");
+        return SUCCESS;
     }
 
     public static OperationResult success(String text) {
-        return new OperationResult(false, text);
+        return new OperationResult(false, text, false);
     }
 
     public static OperationResult error(String text) {
-        return new OperationResult(true, text);
+        return new OperationResult(true, text, false);
+    }
+
+    /**
+     * Error with a fixed text for constants, the HTTP server writes its encoded text as it is
+     */
+    public static OperationResult fixedError(String text) {
+        return new OperationResult(true, text, true);
     }
 
     public boolean isError() {
@@ -33,4 +49,9 @@ public class OperationResult {
         return text;
     }
 
+    @Nullable
+    byte[] getEncodedText() {
+        return encodedText;
+    }
+
 }
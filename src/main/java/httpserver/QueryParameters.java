@@ -0,0 +1,179 @@
+package httpserver;
+
+import model.Money;
+import org.jetbrains.annotations.Nullable;
+
+import javax.servlet.http.HttpServletRequest;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads parameters of account requests straight from the query string: HttpServletRequest.getParameter
+ * builds a map of all parameters of every request. Parameters are located by offsets into the query string,
+ * kept by a parser reused by the Jetty thread handling the request, so that only values are allocated,
+ * and plain decimal amounts are parsed into Money without BigDecimal.
+ * A parameter which is not in the query string as it is (e.g. an escaped name, or a form parameter)
+ * is read by getParameter
+ */
+final class QueryParameters {
+
+    private static final int MAX_PARAMETERS = 16;
+    // digits of a long which never overflow
+    private static final int MAX_AMOUNT_DIGITS = 18;
+    private static final ThreadLocal<QueryParameters> PARSERS = ThreadLocal.withInitial(QueryParameters::new);
+
+    private final int[] nameStarts = new int[MAX_PARAMETERS];
+    private final int[] nameEnds = new int[MAX_PARAMETERS];
+    private final int[] valueStarts = new int[MAX_PARAMETERS];
+    private final int[] valueEnds = new int[MAX_PARAMETERS];
+    private HttpServletRequest request;
+    private String query;
+    private int numOfParameters;
+
+    private QueryParameters() {
+    }
+
+    /**
+     * @return parameters of the request, valid until the thread parses the next request or calls release()
+     */
+    static QueryParameters of(HttpServletRequest request) {
+        QueryParameters parameters = PARSERS.get();
+        parameters.parse(request);
+        return parameters;
+    }
+
+    /**
+     * Drops the request parsed by this thread, so that the parser does not keep it alive
+     * until the thread handles the next request. Called after every request
+     */
+    static void release() {
+        QueryParameters parameters = PARSERS.get();
+        parameters.request = null;
+        parameters.query = null;
+        parameters.numOfParameters = 0;
+    }
+
+    @Nullable
+    String get(String name) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return request.getParameter(name);
+        }
+        int start = valueStarts[index];
+        int end = valueEnds[index];
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '+') {
+                return decode(name, start, end);
+            }
+        }
+        return query.substring(start, end);
+    }
+
+    /**
+     * Parses the amount, amounts with more than Money.MAX_SCALE fractional digits or out of long range are invalid
+     * @return null if there is no amount or it is invalid
+     */
+    @Nullable
+    Money getMoney(String name) {
+        int index = indexOf(name);
+        if (index >= 0) {
+            Money amount = parsePlainAmount(valueStarts[index], valueEnds[index]);
+            if (amount != null) {
+                return amount;
+            }
+        }
+        String str = get(name);
+        if (str == null) {
+            return null;
+        }
+        try {
+            return Money.of(new BigDecimal(str));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void parse(HttpServletRequest request) {
+        this.request = request;
+        query = request.getQueryString();
+        numOfParameters = 0;
+        if (query == null) {
+            return;
+        }
+        int length = query.length();
+        int start = 0;
+        while (start < length && numOfParameters < MAX_PARAMETERS) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int separator = query.indexOf('=', start);
+            if (separator < 0 || separator > end) {
+                separator = end;
+            }
+            nameStarts[numOfParameters] = start;
+            nameEnds[numOfParameters] = separator;
+            valueStarts[numOfParameters] = Math.min(separator + 1, end);
+            valueEnds[numOfParameters] = end;
+            numOfParameters++;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return index of the first parameter with the name, -1 if there is none
+     */
+    private int indexOf(String name) {
+        for (int i = 0; i < numOfParameters; i++) {
+            if (nameEnds[i] - nameStarts[i] == name.length() && query.startsWith(name, nameStarts[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the amount of the form [-]digits[.digits], null if it has another form
+     */
+    @Nullable
+    private Money parsePlainAmount(int start, int end) {
+        int i = start;
+        boolean negative = i < end && query.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long units = 0;
+        int numOfDigits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '.' && scale < 0 && numOfDigits > 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && numOfDigits < MAX_AMOUNT_DIGITS) {
+                units = units * 10 + (c - '0');
+                numOfDigits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (numOfDigits == 0 || scale == 0 || scale > Money.MAX_SCALE) {
+            return null;
+        }
+        return Money.ofUnits(negative ? -units : units, Math.max(scale, 0));
+    }
+
+    @Nullable
+    private String decode(String name, int start, int end) {
+        try {
+            return URLDecoder.decode(query.substring(start, end), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // left to Jetty, as a request with the parameter map
+            return request.getParameter(name);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package httpserver;
+
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Writes results of account requests to the Jetty response on the thread executing the request. A String result
+ * of Javalin is encoded, copied through a new 8 KB buffer and into the response copy Javalin keeps for request
+ * logging. Fixed texts are written as encoded once, other ASCII texts are encoded into a buffer reused by the worker
+ * thread. Texts Javalin would gzip and other non-ASCII texts are left to Javalin
+ */
+final class ResponseWriter {
+
+    // Javalin gzips results of more bytes for clients accepting gzip
+    private static final int GZIP_MIN_BYTES = 1500;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[GZIP_MIN_BYTES]);
+
+    private ResponseWriter() {
+    }
+
+    /**
+     * @return false if the text was not written and is left to Javalin
+     */
+    static boolean write(HttpServletResponse response, OperationResult result) throws IOException {
+        byte[] bytes = result.getEncodedText();
+        int length;
+        if (bytes != null) {
+            length = bytes.length;
+        } else {
+            String text = result.getText();
+            length = text.length();
+            if (length > GZIP_MIN_BYTES) {
+                return false;
+            }
+            // a virtual thread runs one request, its buffer would not be reused
+            bytes = Thread.currentThread().isVirtual() ? new byte[length] : BUFFERS.get();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    return false;
+                }
+                bytes[i] = (byte) c;
+            }
+        }
+        HttpServletResponse jettyResponse = jettyResponse(response);
+        // the response is complete and committed when the whole content length is written
+        jettyResponse.setContentLength(length);
+        jettyResponse.getOutputStream().write(bytes, 0, length);
+        return true;
+    }
+
+    /**
+     * @return the response of Jetty under the Javalin wrapper, which copies written content for request logging
+     */
+    static HttpServletResponse jettyResponse(HttpServletResponse response) {
+        return response instanceof ServletResponseWrapper
+                ? (HttpServletResponse) ((ServletResponseWrapper) response).getResponse()
+                : response;
+    }
+}
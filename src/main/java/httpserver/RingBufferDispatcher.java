@@ -0,0 +1,129 @@
+package httpserver;
+
+import concurrent.SlotRing;
+import concurrent.WaitStrategy;
+import io.javalin.Context;
+import metrics.LatencyRecorder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Passes requests from HTTP server threads to worker threads via a bounded ring of preallocated request slots.
+ * A worker takes one request at a time from the ring and executes it in place, so a request blocked on the store
+ * holds up no other request, and the ring depth limits the number of queued and executing requests;
+ * when the ring is full, a request is rejected at once. Requests left in the ring on shutdown get an error
+ */
+class RingBufferDispatcher {
+
+    private static final int HTTP_CODE_SERVICE_UNAVAILABLE = 503;
+
+    private final SlotRing<RequestSlot> ring;
+    private final RequestHandler requestHandler;
+    private final WaitStrategy waitStrategy;
+    private volatile boolean running = true;
+
+    RingBufferDispatcher(int ringSize, int numOfThreads, WaitStrategy waitStrategy, RequestHandler requestHandler) {
+        this.ring = new SlotRing<>(ringSize, RequestSlot::new);
+        this.requestHandler = requestHandler;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < numOfThreads; i++) {
+            Thread thread = new Thread(this::consume, "account-actions-thread");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+    }
+
+    /**
+     * @return false if the ring is full and the request was not accepted
+     */
+    boolean tryDispatch(Context context, Callable<OperationResult> resultCallable, CompletableFuture<String> future,
+                        LatencyRecorder routeLatency, long submittedNanos) {
+        if (!running) {
+            return false;
+        }
+        long position = ring.tryClaim();
+        if (position < 0) {
+            return false;
+        }
+        RequestSlot slot = ring.slot(position);
+        slot.context = context;
+        slot.resultCallable = resultCallable;
+        slot.future = future;
+        slot.routeLatency = routeLatency;
+        slot.submittedNanos = submittedNanos;
+        ring.publish(position);
+        if (!running) {
+            // published after the stop, no worker takes it
+            rejectQueued();
+        }
+        return true;
+    }
+
+    int queueDepth() {
+        return ring.size();
+    }
+
+    private void stop() {
+        running = false;
+        rejectQueued();
+    }
+
+    private void consume() {
+        while (running) {
+            // one request per claim, a run of requests taken by one worker would wait for each other
+            if (ring.drain(1, this::handle) == 0) {
+                waitStrategy.idle();
+            }
+        }
+    }
+
+    private void rejectQueued() {
+        int rejected;
+        do {
+            // a rejection does not block, so all published requests are taken at once
+            rejected = ring.drain(ring.capacity(), this::reject);
+        } while (rejected > 0);
+    }
+
+    private void handle(RequestSlot slot) {
+        Context context = slot.context;
+        Callable<OperationResult> resultCallable = slot.resultCallable;
+        CompletableFuture<String> future = slot.future;
+        LatencyRecorder routeLatency = slot.routeLatency;
+        clear(slot);
+        requestHandler.handle(context, resultCallable, future, routeLatency, slot.submittedNanos);
+    }
+
+    private void reject(RequestSlot slot) {
+        Context context = slot.context;
+        CompletableFuture<String> future = slot.future;
+        clear(slot);
+        context.response().setStatus(HTTP_CODE_SERVICE_UNAVAILABLE);
+        future.complete("Server is stopping");
+    }
+
+    /**
+     * Clears the slot, so that it does not keep the request until the next lap
+     */
+    private static void clear(RequestSlot slot) {
+        slot.context = null;
+        slot.resultCallable = null;
+        slot.future = null;
+        slot.routeLatency = null;
+    }
+
+    interface RequestHandler {
+        void handle(Context context, Callable<OperationResult> resultCallable, CompletableFuture<String> future,
+                    LatencyRecorder routeLatency, long submittedNanos);
+    }
+
+    private static class RequestSlot {
+        Context context;
+        Callable<OperationResult> resultCallable;
+        CompletableFuture<String> future;
+        LatencyRecorder routeLatency;
+        long submittedNanos;
+    }
+}
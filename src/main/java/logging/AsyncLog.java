@@ -0,0 +1,63 @@
+package logging;
+
+import config.LoggingSettings;
+import metrics.Counter;
+import metrics.Metrics;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the logging layer. Loggers are created statically and may be used before start():
+ * until then (and in "sync" mode) they write lines synchronously, like plain slf4j loggers
+ */
+public final class AsyncLog {
+
+    private static final String MODE_ASYNC = "async";
+
+    static final Counter RATE_LIMITED_LINES = Metrics.counter("log_lines_dropped_total",
+            "Info lines not written because of rate limits or a full queue", Metrics.label("reason", "rate-limit"));
+    static final Counter QUEUE_FULL_LINES = Metrics.counter("log_lines_dropped_total",
+            "Info lines not written because of rate limits or a full queue", Metrics.label("reason", "queue-full"));
+
+    private static volatile AsyncLogWriter writer;
+    private static volatile int maxInfoLinesPerSecond;
+    private static boolean shutdownHookAdded;
+
+    private AsyncLog() {
+    }
+
+    public static AsyncLogger getLogger(Class<?> clazz) {
+        return new AsyncLogger(LoggerFactory.getLogger(clazz));
+    }
+
+    public static synchronized void start(LoggingSettings loggingSettings) {
+        stop();
+        maxInfoLinesPerSecond = loggingSettings.maxInfoLinesPerSecond();
+        if (MODE_ASYNC.equals(loggingSettings.mode())) {
+            writer = new AsyncLogWriter(loggingSettings.queueSize(),
+                    DropPolicy.fromConfig(loggingSettings.dropPolicy()), QUEUE_FULL_LINES);
+        }
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::stop));
+            shutdownHookAdded = true;
+        }
+    }
+
+    /**
+     * Writes all queued lines and switches loggers back to synchronous writing
+     */
+    public static synchronized void stop() {
+        AsyncLogWriter currentWriter = writer;
+        writer = null;
+        if (currentWriter != null) {
+            currentWriter.stop();
+        }
+    }
+
+    static AsyncLogWriter writer() {
+        return writer;
+    }
+
+    static int maxInfoLinesPerSecond() {
+        return maxInfoLinesPerSecond;
+    }
+}
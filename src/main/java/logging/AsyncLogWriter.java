@@ -0,0 +1,104 @@
+package logging;
+
+import concurrent.SlotRing;
+import concurrent.WaitStrategy;
+import metrics.Counter;
+import org.slf4j.Logger;
+
+/**
+ * Background writer of log lines. Callers put a logger, a format and arguments into a preallocated slot
+ * of a lock-free ring, and the writer thread formats and writes the lines
+ */
+class AsyncLogWriter {
+
+    private static final int MAX_DRAIN_BATCH = 256;
+
+    private final SlotRing<LogEvent> ring;
+    private final DropPolicy dropPolicy;
+    private final Counter droppedLines;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    AsyncLogWriter(int queueSize, DropPolicy dropPolicy, Counter droppedLines) {
+        this.ring = new SlotRing<>(queueSize, LogEvent::new);
+        this.dropPolicy = dropPolicy;
+        this.droppedLines = droppedLines;
+        thread = new Thread(this::consume, "async-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void enqueue(Logger logger, String format, int argCount, Object arg1, Object arg2, Object arg3) {
+        long position;
+        // a caller may still hold the writer after stop(), then nothing frees slots of the ring anymore
+        while (!running || (position = ring.tryClaim()) < 0) {
+            if (!running) {
+                AsyncLogger.write(logger, format, argCount, arg1, arg2, arg3);
+                return;
+            }
+            switch (dropPolicy) {
+                case DROP:
+                    droppedLines.increment();
+                    return;
+                case WRITE_THROUGH:
+                    AsyncLogger.write(logger, format, argCount, arg1, arg2, arg3);
+                    return;
+                default:
+                    Thread.yield();
+            }
+        }
+        LogEvent event = ring.slot(position);
+        event.logger = logger;
+        event.format = format;
+        event.argCount = argCount;
+        event.arg1 = arg1;
+        event.arg2 = arg2;
+        event.arg3 = arg3;
+        ring.publish(position);
+    }
+
+    /**
+     * Stops the writer after it has written all queued lines
+     */
+    void stop() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        while (running) {
+            if (ring.drain(MAX_DRAIN_BATCH, this::write) == 0) {
+                WaitStrategy.PARK.idle();
+            }
+        }
+        while (ring.drain(MAX_DRAIN_BATCH, this::write) > 0) {
+            // writing lines queued before the stop
+        }
+    }
+
+    private void write(LogEvent event) {
+        try {
+            AsyncLogger.write(event.logger, event.format, event.argCount, event.arg1, event.arg2, event.arg3);
+        } catch (RuntimeException e) {
+            event.logger.error("Can not write log line " + event.format, e);
+        } finally {
+            // clearing the slot, so that it does not keep the arguments until the next lap
+            event.arg1 = null;
+            event.arg2 = null;
+            event.arg3 = null;
+        }
+    }
+
+    private static class LogEvent {
+        Logger logger;
+        String format;
+        int argCount;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+    }
+}
@@ -0,0 +1,100 @@
+package logging;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger for hot paths. Info lines are rate limited and, in async mode, formatted and written by a background
+ * thread, so arguments should not be changed after logging. Warnings and errors are always written synchronously
+ */
+public class AsyncLogger {
+
+    private static final long NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger;
+    private final AtomicLong rateLimitSecond = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger linesInSecond = new AtomicInteger();
+
+    AsyncLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    public void info(String message) {
+        info(message, 0, null, null, null);
+    }
+
+    public void info(String format, Object arg) {
+        info(format, 1, arg, null, null);
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        info(format, 2, arg1, arg2, null);
+    }
+
+    public void info(String format, Object arg1, Object arg2, Object arg3) {
+        info(format, 3, arg1, arg2, arg3);
+    }
+
+    public void warn(String format, Object... args) {
+        logger.warn(format, args);
+    }
+
+    public void error(String message, Throwable throwable) {
+        logger.error(message, throwable);
+    }
+
+    public void error(String format, Object... args) {
+        logger.error(format, args);
+    }
+
+    private void info(String format, int argCount, Object arg1, Object arg2, Object arg3) {
+        if (!logger.isInfoEnabled() || !tryAcquire()) {
+            return;
+        }
+        AsyncLogWriter writer = AsyncLog.writer();
+        if (writer == null) {
+            write(logger, format, argCount, arg1, arg2, arg3);
+        } else {
+            writer.enqueue(logger, format, argCount, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Counts lines in the current second, the counter is reset by the first line of the next second
+     */
+    private boolean tryAcquire() {
+        int maxLinesPerSecond = AsyncLog.maxInfoLinesPerSecond();
+        if (maxLinesPerSecond <= 0) {
+            return true;
+        }
+        long second = System.nanoTime() / NANOS_IN_SECOND;
+        long currentSecond = rateLimitSecond.get();
+        if (second != currentSecond && rateLimitSecond.compareAndSet(currentSecond, second)) {
+            linesInSecond.set(0);
+        }
+        if (linesInSecond.incrementAndGet() > maxLinesPerSecond) {
+            AsyncLog.RATE_LIMITED_LINES.increment();
+            return false;
+        }
+        return true;
+    }
+
+    static void write(Logger logger, String format, int argCount, Object arg1, Object arg2, Object arg3) {
+        switch (argCount) {
+            case 0:
+                logger.info(format);
+                break;
+            case 1:
+                logger.info(format, arg1);
+                break;
+            case 2:
+                logger.info(format, arg1, arg2);
+                break;
+            default:
+                logger.info(format, arg1, arg2, arg3);
+        }
+    }
+}
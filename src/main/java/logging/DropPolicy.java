@@ -0,0 +1,37 @@
+package logging;
+
+/**
+ * What the async log does with a line when its queue is full
+ */
+public enum DropPolicy {
+
+    /**
+     * The line is discarded and counted in log_lines_dropped_total
+     */
+    DROP("drop"),
+
+    /**
+     * The calling thread waits until the writer frees a slot
+     */
+    BLOCK("block"),
+
+    /**
+     * The calling thread writes the line itself
+     */
+    WRITE_THROUGH("write-through");
+
+    private final String configName;
+
+    DropPolicy(String configName) {
+        this.configName = configName;
+    }
+
+    public static DropPolicy fromConfig(String configName) {
+        for (DropPolicy dropPolicy : values()) {
+            if (dropPolicy.configName.equals(configName)) {
+                return dropPolicy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown drop policy " + configName);
+    }
+}
@@ -0,0 +1,28 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically growing counter. Increments from many threads do not contend on one memory location
+ */
+public class Counter implements MetricValue {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public void write(String name, String labels, StringBuilder out) {
+        Metrics.writeSample(out, name, labels, get());
+    }
+}
@@ -0,0 +1,52 @@
+package metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution in nanoseconds, exported as a Prometheus summary in seconds.
+ * Recording is wait-free and does not allocate: values go to an HdrHistogram Recorder with preallocated buckets.
+ * Quantiles are calculated over the interval since the previous scrape, count and sum are totals since the start
+ */
+public class LatencyRecorder implements MetricValue {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private Histogram intervalHistogram;
+
+    public void record(long nanos) {
+        // values out of the histogram range are clamped rather than resizing the histogram on the hot path
+        long value = Math.min(Math.max(nanos, 0), MAX_LATENCY_NANOS);
+        recorder.recordValue(value);
+        count.increment();
+        sum.add(value);
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public synchronized void write(String name, String labels, StringBuilder out) {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            long nanos = intervalHistogram.getTotalCount() == 0 ? 0
+                    : intervalHistogram.getValueAtPercentile(quantile * 100);
+            out.append(name).append('{').append(labels).append(separator)
+                    .append("quantile=\"").append(quantile).append("\"} ")
+                    .append(nanos / NANOS_IN_SECOND).append('\n');
+        }
+        Metrics.writeSample(out, name + "_sum", labels, sum.sum() / NANOS_IN_SECOND);
+        Metrics.writeSample(out, name + "_count", labels, count.sum());
+    }
+}
@@ -0,0 +1,9 @@
+package metrics;
+
+/**
+ * A metric registered in Metrics, writes its samples in Prometheus text format
+ */
+interface MetricValue {
+
+    void write(String name, String labels, StringBuilder out);
+}
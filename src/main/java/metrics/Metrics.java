@@ -0,0 +1,103 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the service metrics. Metrics are registered once (usually into static fields)
+ * and then updated without locks; all of them are rendered in Prometheus text format by scrape()
+ */
+public final class Metrics {
+
+    private static final String TYPE_COUNTER = "counter";
+    private static final String TYPE_GAUGE = "gauge";
+    private static final String TYPE_SUMMARY = "summary";
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static LatencyRecorder latency(String name, String help) {
+        return latency(name, help, "");
+    }
+
+    /**
+     * @param labels labels of this metric in the family, made by label(), for example route="add"
+     */
+    public static LatencyRecorder latency(String name, String help, String labels) {
+        return (LatencyRecorder) family(name, help, TYPE_SUMMARY).values
+                .computeIfAbsent(labels, l -> new LatencyRecorder());
+    }
+
+    public static Counter counter(String name, String help) {
+        return counter(name, help, "");
+    }
+
+    public static Counter counter(String name, String help, String labels) {
+        return (Counter) family(name, help, TYPE_COUNTER).values
+                .computeIfAbsent(labels, l -> new Counter());
+    }
+
+    /**
+     * Registers a counter kept outside of the registry. A counter registered again under the same name replaces the old one
+     */
+    public static void counter(String name, String help, LongSupplier supplier) {
+        family(name, help, TYPE_COUNTER).values.put("", new SuppliedValue(supplier));
+    }
+
+    /**
+     * Registers a gauge. A gauge registered again under the same name replaces the old one
+     */
+    public static void gauge(String name, String help, LongSupplier supplier) {
+        family(name, help, TYPE_GAUGE).values.put("", new SuppliedValue(supplier));
+    }
+
+    public static String label(String name, String value) {
+        return name + "=\"" + value + "\"";
+    }
+
+    /**
+     * @return all metrics in Prometheus text exposition format
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            out.append("# HELP ").append(entry.getKey()).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, MetricValue> value : family.values.entrySet()) {
+                value.getValue().write(entry.getKey(), value.getKey(), out);
+            }
+        }
+        return out.toString();
+    }
+
+    static void writeSample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static class Family {
+        final String help;
+        final String type;
+        final Map<String, MetricValue> values = new ConcurrentSkipListMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Value which is kept elsewhere (queue sizes, RocksDb statistics) and is read only when metrics are scraped
+ */
+class SuppliedValue implements MetricValue {
+
+    private final LongSupplier supplier;
+
+    SuppliedValue(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public void write(String name, String labels, StringBuilder out) {
+        Metrics.writeSample(out, name, labels, supplier.getAsLong());
+    }
+}
@@ -2,11 +2,18 @@ package model;
 
 import java.math.BigDecimal;
 
+/**
+ * Account with a fixed-point balance (see Money) in its currency, an account without a currency
+ * keeps the default currency of the exchange rates (see fx.FxSnapshot).
+ * Balance arithmetic is overflow-checked and throws ArithmeticException before changing the balance
+ */
 public class Account {
 
     private String id;
     private String name;
-    private BigDecimal balance;
+    private String currency;
+    private long balanceUnits;
+    private int balanceScale;
 
     public String getName() {
         return name;
@@ -24,12 +31,92 @@ public class Account {
         this.id = id;
     }
 
+    /**
+     * @return ISO 4217 code of the currency, null for the default currency
+     */
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
     public BigDecimal getBalance() {
-        return balance;
+        return BigDecimal.valueOf(balanceUnits, balanceScale);
     }
 
     public void setBalance(BigDecimal balance) {
-        this.balance = balance;
+        setBalance(Money.of(balance));
+    }
+
+    public void setBalance(Money balance) {
+        setBalance(balance.getUnits(), balance.getScale());
+    }
+
+    public void setBalance(long units, int scale) {
+        Money.checkScale(scale);
+        this.balanceUnits = units;
+        this.balanceScale = scale;
+    }
+
+    public long getBalanceUnits() {
+        return balanceUnits;
+    }
+
+    public int getBalanceScale() {
+        return balanceScale;
+    }
+
+    public boolean isBalanceZero() {
+        return balanceUnits == 0;
+    }
+
+    /**
+     * @return true if adding the amount does not make the balance negative
+     */
+    public boolean canAdd(Money amount) {
+        return sumWithBalance(amount.getUnits(), amount.getScale()) >= 0;
+    }
+
+    /**
+     * @return true if subtracting the amount does not make the balance negative
+     */
+    public boolean canSubtract(Money amount) {
+        return sumWithBalance(Math.negateExact(amount.getUnits()), amount.getScale()) >= 0;
+    }
+
+    public void add(Money amount) {
+        addUnits(amount.getUnits(), amount.getScale());
+    }
+
+    public void subtract(Money amount) {
+        addUnits(Math.negateExact(amount.getUnits()), amount.getScale());
+    }
+
+    private void addUnits(long units, int scale) {
+        long sum = sumWithBalance(units, scale);
+        balanceScale = Math.max(balanceScale, scale);
+        balanceUnits = sum;
+    }
+
+    /**
+     * @return balance + units in the greater of two scales
+     */
+    private long sumWithBalance(long units, int scale) {
+        int commonScale = Math.max(balanceScale, scale);
+        return Math.addExact(Money.rescale(balanceUnits, balanceScale, commonScale),
+                Money.rescale(units, scale, commonScale));
+    }
+
+    public Account copy() {
+        Account account = new Account();
+        account.setId(id);
+        account.setName(name);
+        account.setCurrency(currency);
+        account.balanceUnits = balanceUnits;
+        account.balanceScale = balanceScale;
+        return account;
     }
 
 }
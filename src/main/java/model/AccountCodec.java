@@ -0,0 +1,28 @@
+package model;
+
+/**
+ * Encoding of accounts kept in a store
+ */
+public interface AccountCodec {
+
+    byte[] encode(Account account);
+
+    /**
+     * Decodes an account written by any of the codecs
+     */
+    Account decode(byte[] bytes);
+
+    /**
+     * @param name "json" or "binary"
+     */
+    static AccountCodec create(String name, AccountSerializer accountSerializer) {
+        switch (name) {
+            case "json":
+                return new JsonAccountCodec(accountSerializer);
+            case "binary":
+                return new BinaryAccountCodec(accountSerializer);
+            default:
+                throw new IllegalArgumentException("Unknown account codec " + name);
+        }
+    }
+}
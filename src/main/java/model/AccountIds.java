@@ -0,0 +1,34 @@
+package model;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The part separator is reserved in account ids: a stored key containing it is a part "[account id]#k"
+ * of a split account, never an account of its own. Ids sent by clients or imported may not contain it
+ */
+public final class AccountIds {
+
+    public static final char PART_SEPARATOR = '#';
+
+    private AccountIds() {
+    }
+
+    /**
+     * @return false for null and for ids containing the part separator
+     */
+    public static boolean isValid(@Nullable String accountId) {
+        return accountId != null && accountId.indexOf(PART_SEPARATOR) < 0;
+    }
+
+    /**
+     * @param key UTF-8 bytes of a stored key, the separator byte is never a part of a multi-byte character
+     */
+    public static boolean isPartKey(byte[] key) {
+        for (byte b : key) {
+            if (b == PART_SEPARATOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,10 +1,21 @@
 package model;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
 
 public class AccountSerializer {
 
-    private final Gson gson = new Gson();
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Account.class, new AccountTypeAdapter())
+            .create();
 
     public Account deserialize(String json){
         return gson.fromJson(json, Account.class);
@@ -14,4 +25,70 @@ public class AccountSerializer {
         return gson.toJson(account);
     }
 
+    /**
+     * Keeps the json form of an account {"id":..,"name":..,"currency":..,"balance":..} with the balance
+     * as a decimal number, the currency is omitted for the default currency
+     */
+    private static class AccountTypeAdapter extends TypeAdapter<Account> {
+
+        @Override
+        public void write(JsonWriter out, Account account) throws IOException {
+            if (account == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (account.getId() != null) {
+                out.name("id").value(account.getId());
+            }
+            if (account.getName() != null) {
+                out.name("name").value(account.getName());
+            }
+            if (account.getCurrency() != null) {
+                out.name("currency").value(account.getCurrency());
+            }
+            out.name("balance").value(account.getBalance());
+            out.endObject();
+        }
+
+        @Override
+        public Account read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Account account = new Account();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        account.setId(in.nextString());
+                        break;
+                    case "name":
+                        account.setName(in.nextString());
+                        break;
+                    case "currency":
+                        account.setCurrency(in.nextString());
+                        break;
+                    case "balance":
+                        try {
+                            account.setBalance(new BigDecimal(in.nextString()));
+                        } catch (ArithmeticException | NumberFormatException e) {
+                            throw new JsonParseException("Invalid balance", e);
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return account;
+        }
+    }
+
 }
@@ -0,0 +1,96 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sum of balances of any number of accounts kept in constant memory: units are summed per scale
+ * with long math, and a sum which would overflow is moved into a BigDecimal.
+ * Balances of accounts of the default currency are summed here, balances of other currencies
+ * are summed separately per currency
+ */
+public final class BalanceTotal {
+
+    private final long[] unitsPerScale = new long[Money.MAX_SCALE + 1];
+    private BigDecimal overflow = BigDecimal.ZERO;
+    private long numOfAccounts;
+    private final Map<String, BalanceTotal> currencyTotals = new TreeMap<>();
+
+    public void add(Account account) {
+        BalanceTotal total = addBalance(account);
+        if (total != this) {
+            total.numOfAccounts++;
+        }
+        numOfAccounts++;
+    }
+
+    /**
+     * Adds the balance of a part of a split account, which is not an account of its own
+     */
+    public void addPart(Account part) {
+        addBalance(part);
+    }
+
+    /**
+     * Adds the sum of another part of accounts
+     */
+    public void merge(BalanceTotal other) {
+        for (int scale = 0; scale <= Money.MAX_SCALE; scale++) {
+            addUnits(other.unitsPerScale[scale], scale);
+        }
+        overflow = overflow.add(other.overflow);
+        numOfAccounts += other.numOfAccounts;
+        for (Map.Entry<String, BalanceTotal> entry : other.currencyTotals.entrySet()) {
+            currencyTotals.computeIfAbsent(entry.getKey(), c -> new BalanceTotal()).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * @return number of accounts of all currencies
+     */
+    public long getNumOfAccounts() {
+        return numOfAccounts;
+    }
+
+    /**
+     * @return totals of accounts of currencies other than the default one, in the order of currency codes
+     */
+    public Map<String, BalanceTotal> getCurrencyTotals() {
+        return Collections.unmodifiableMap(currencyTotals);
+    }
+
+    /**
+     * @return sum of balances of accounts of the default currency
+     */
+    public BigDecimal toBigDecimal() {
+        BigDecimal total = overflow;
+        for (int scale = 0; scale <= Money.MAX_SCALE; scale++) {
+            if (unitsPerScale[scale] != 0) {
+                total = total.add(BigDecimal.valueOf(unitsPerScale[scale], scale));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the total of the currency of the account the balance was added to
+     */
+    private BalanceTotal addBalance(Account account) {
+        BalanceTotal total = account.getCurrency() == null
+                ? this
+                : currencyTotals.computeIfAbsent(account.getCurrency(), c -> new BalanceTotal());
+        total.addUnits(account.getBalanceUnits(), account.getBalanceScale());
+        return total;
+    }
+
+    private void addUnits(long units, int scale) {
+        try {
+            unitsPerScale[scale] = Math.addExact(unitsPerScale[scale], units);
+        } catch (ArithmeticException e) {
+            overflow = overflow.add(BigDecimal.valueOf(unitsPerScale[scale], scale));
+            unitsPerScale[scale] = units;
+        }
+    }
+}
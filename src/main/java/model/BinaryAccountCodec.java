@@ -0,0 +1,83 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+import static model.BinaryFormat.*;
+
+/**
+ * Encodes accounts in a compact versioned binary format:
+ * <pre>
+ * version      1 byte (FORMAT_V1 or FORMAT_V2)
+ * id           varint length + 1 (0 for null), UTF-8 bytes
+ * name         varint length + 1 (0 for null), UTF-8 bytes
+ * currency     varint length + 1, UTF-8 bytes, only in FORMAT_V2
+ * scale        zigzag varint
+ * unscaled     varint length (0 for zero balance), two's-complement big-endian bytes
+ * </pre>
+ * Accounts of the default currency are still written in FORMAT_V1.
+ * Values starting with '{' are json written by JsonAccountCodec and are decoded as json
+ */
+public class BinaryAccountCodec implements AccountCodec {
+
+    static final byte FORMAT_V1 = 1;
+    static final byte FORMAT_V2 = 2;
+    private static final byte JSON_START = '{';
+
+    private final AccountSerializer accountSerializer;
+
+    public BinaryAccountCodec(AccountSerializer accountSerializer) {
+        this.accountSerializer = accountSerializer;
+    }
+
+    @Override
+    public byte[] encode(Account account) {
+        byte[] id = toBytes(account.getId());
+        byte[] name = toBytes(account.getName());
+        byte[] currency = toBytes(account.getCurrency());
+        long unscaled = account.getBalanceUnits();
+        int scale = account.getBalanceScale();
+        int unscaledSize = longSize(unscaled);
+
+        Writer writer = new Writer(1
+                + stringSize(id)
+                + stringSize(name)
+                + (currency == null ? 0 : stringSize(currency))
+                + varIntSize(zigZag(scale))
+                + varIntSize(unscaledSize) + unscaledSize);
+        writer.writeByte(currency == null ? FORMAT_V1 : FORMAT_V2);
+        writer.writeString(id);
+        writer.writeString(name);
+        if (currency != null) {
+            writer.writeString(currency);
+        }
+        writer.writeVarInt(zigZag(scale));
+        writer.writeVarInt(unscaledSize);
+        writer.writeLong(unscaled, unscaledSize);
+        return writer.bytes();
+    }
+
+    @Override
+    public Account decode(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            return accountSerializer.deserialize(new String(bytes, StandardCharsets.UTF_8));
+        }
+        if (bytes[0] != FORMAT_V1 && bytes[0] != FORMAT_V2) {
+            throw new IllegalArgumentException("Unknown account format version " + bytes[0]);
+        }
+        Reader reader = new Reader(bytes, 1);
+        Account account = new Account();
+        account.setId(reader.readString());
+        account.setName(reader.readString());
+        if (bytes[0] == FORMAT_V2) {
+            account.setCurrency(reader.readString());
+        }
+        int scale = unZigZag(reader.readVarInt());
+        long unscaled = reader.readLong(reader.readVarInt());
+        account.setBalance(unscaled, scale);
+        return account;
+    }
+
+    static boolean isBinary(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] != JSON_START;
+    }
+}
@@ -0,0 +1,173 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitives of the compact binary formats: varints, zigzag encoding, minimal two's-complement longs
+ * and length-prefixed UTF-8 strings (length + 1, 0 for null)
+ */
+final class BinaryFormat {
+
+    private BinaryFormat() {
+    }
+
+    static byte[] toBytes(String str) {
+        return str == null ? null : str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int stringSize(byte[] str) {
+        return str == null ? 1 : varIntSize(str.length + 1) + str.length;
+    }
+
+    /**
+     * @return minimal number of bytes keeping the value in two's-complement form, 0 for zero
+     */
+    static int longSize(long value) {
+        if (value == 0) {
+            return 0;
+        }
+        int size = 1;
+        while (size < Long.BYTES && (value >> (size * Byte.SIZE - 1)) != 0 && (value >> (size * Byte.SIZE - 1)) != -1) {
+            size++;
+        }
+        return size;
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static class Writer {
+
+        private final byte[] bytes;
+        private int position;
+
+        Writer(int size) {
+            bytes = new byte[size];
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        void writeByte(byte value) {
+            bytes[position++] = value;
+        }
+
+        void writeBytes(byte[] value) {
+            System.arraycopy(value, 0, bytes, position, value.length);
+            position += value.length;
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        void writeLong(long value, int size) {
+            for (int i = size - 1; i >= 0; i--) {
+                bytes[position++] = (byte) (value >> (i * Byte.SIZE));
+            }
+        }
+
+        void writeString(byte[] str) {
+            if (str == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(str.length + 1);
+                writeBytes(str);
+            }
+        }
+    }
+
+    static class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readLong(int size) {
+            if (size > Long.BYTES) {
+                throw new ArithmeticException("Value does not fit into long");
+            }
+            long value = 0;
+            for (int i = 0; i < size; i++) {
+                // the first byte keeps the sign, so it is sign-extended
+                value = (value << Byte.SIZE) | (i == 0 ? bytes[position] : bytes[position] & 0xFF);
+                position++;
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            String str = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return str;
+        }
+    }
+}
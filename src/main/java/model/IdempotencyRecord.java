@@ -0,0 +1,43 @@
+package model;
+
+/**
+ * Outcome of a request made with an idempotency key. The fingerprint identifies the request the key
+ * was first used with, so that reusing a key for a different request can be detected
+ */
+public final class IdempotencyRecord {
+
+    private final String fingerprint;
+    private final boolean error;
+    private final String text;
+    private final long expiresAt;
+
+    public IdempotencyRecord(String fingerprint, boolean error, String text, long expiresAt) {
+        this.fingerprint = fingerprint;
+        this.error = error;
+        this.text = text;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return time in milliseconds since the epoch after which the key may be forgotten
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAt <= nowMillis;
+    }
+}
@@ -0,0 +1,51 @@
+package model;
+
+import static model.BinaryFormat.*;
+
+/**
+ * Encodes idempotency records in a versioned binary format:
+ * <pre>
+ * version      1 byte (FORMAT_V1)
+ * expiresAt    varlong milliseconds since the epoch
+ * error        varint, 1 for an error result
+ * fingerprint  varint length + 1 (0 for null), UTF-8 bytes
+ * text         varint length + 1 (0 for null), UTF-8 bytes
+ * </pre>
+ */
+public final class IdempotencyRecordCodec {
+
+    static final byte FORMAT_V1 = 1;
+
+    private IdempotencyRecordCodec() {
+    }
+
+    public static byte[] encode(IdempotencyRecord record) {
+        byte[] fingerprint = toBytes(record.getFingerprint());
+        byte[] text = toBytes(record.getText());
+
+        Writer writer = new Writer(1
+                + varLongSize(record.getExpiresAt())
+                + 1
+                + stringSize(fingerprint)
+                + stringSize(text));
+        writer.writeByte(FORMAT_V1);
+        writer.writeVarLong(record.getExpiresAt());
+        writer.writeVarInt(record.isError() ? 1 : 0);
+        writer.writeString(fingerprint);
+        writer.writeString(text);
+        return writer.bytes();
+    }
+
+    public static IdempotencyRecord decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != FORMAT_V1) {
+            throw new IllegalArgumentException("Unknown idempotency record format version "
+                    + (bytes.length == 0 ? "(empty)" : bytes[0]));
+        }
+        Reader reader = new Reader(bytes, 1);
+        long expiresAt = reader.readVarLong();
+        boolean error = reader.readVarInt() == 1;
+        String fingerprint = reader.readString();
+        String text = reader.readString();
+        return new IdempotencyRecord(fingerprint, error, text, expiresAt);
+    }
+}
@@ -0,0 +1,30 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes accounts as UTF-8 json
+ */
+public class JsonAccountCodec implements AccountCodec {
+
+    private final AccountSerializer accountSerializer;
+    private final BinaryAccountCodec binaryAccountCodec;
+
+    public JsonAccountCodec(AccountSerializer accountSerializer) {
+        this.accountSerializer = accountSerializer;
+        this.binaryAccountCodec = new BinaryAccountCodec(accountSerializer);
+    }
+
+    @Override
+    public byte[] encode(Account account) {
+        return accountSerializer.serialize(account).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Account decode(byte[] bytes) {
+        if (BinaryAccountCodec.isBinary(bytes)) {
+            return binaryAccountCodec.decode(bytes);
+        }
+        return accountSerializer.deserialize(new String(bytes, StandardCharsets.UTF_8));
+    }
+}
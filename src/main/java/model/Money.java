@@ -0,0 +1,88 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amount of money: a long number of units with a decimal scale,
+ * i.e. the amount is units * 10^-scale (units = 1050, scale = 2 is 10.50).
+ * BigDecimal is used only to convert amounts from and to their text form,
+ * arithmetic on balances is done with overflow-checked long math
+ */
+public final class Money {
+
+    /**
+     * Maximal number of fractional digits of an amount
+     */
+    public static final int MAX_SCALE = 8;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long units;
+    private final int scale;
+
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    public static Money ofUnits(long units, int scale) {
+        checkScale(scale);
+        return new Money(units, scale);
+    }
+
+    /**
+     * Trailing zeros are dropped only beyond MAX_SCALE, so 10.50 keeps its scale and 10.000000000 is 10
+     * @throws ArithmeticException if the amount has more than MAX_SCALE significant fractional digits
+     * or does not fit into long
+     */
+    public static Money of(BigDecimal amount) {
+        BigDecimal normalized = amount.scale() > MAX_SCALE ? amount.stripTrailingZeros() : amount;
+        if (normalized.scale() < 0) {
+            normalized = normalized.setScale(0, RoundingMode.UNNECESSARY);
+        }
+        checkScale(normalized.scale());
+        return new Money(normalized.unscaledValue().longValueExact(), normalized.scale());
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    /**
+     * Converts units of fromScale to units of a greater or equal toScale
+     * @throws ArithmeticException on overflow
+     */
+    static long rescale(long units, int fromScale, int toScale) {
+        if (fromScale == toScale) {
+            return units;
+        }
+        return Math.multiplyExact(units, POWERS_OF_TEN[toScale - fromScale]);
+    }
+
+    static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new ArithmeticException("Unsupported scale " + scale);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,38 @@
+package model;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads and writes Money as a json number
+ */
+public class MoneyTypeAdapter extends TypeAdapter<Money> {
+
+    @Override
+    public void write(JsonWriter out, Money money) throws IOException {
+        if (money == null) {
+            out.nullValue();
+        } else {
+            out.value(money.toBigDecimal());
+        }
+    }
+
+    @Override
+    public Money read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return Money.of(new BigDecimal(in.nextString()));
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new JsonParseException("Invalid amount", e);
+        }
+    }
+}
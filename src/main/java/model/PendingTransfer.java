@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * A transfer between shards whose source account is debited and whose destination account is not credited yet.
+ * The record is written together with the debit and deleted together with the credit or the refund,
+ * so that a transfer interrupted by a restart is finished from it
+ */
+public final class PendingTransfer {
+
+    private final String id;
+    private final long timestamp;
+    private final String from;
+    private final String to;
+    private final Money amount;
+    private final Money credit;
+
+    /**
+     * @param amount the sum debited from the source account
+     * @param credit the sum to credit to the destination account, converted to its currency
+     */
+    public PendingTransfer(String id, long timestamp, String from, String to, Money amount, Money credit) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+        this.credit = credit;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return time of the debit in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public Money getCredit() {
+        return credit;
+    }
+}
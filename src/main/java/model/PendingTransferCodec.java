@@ -0,0 +1,74 @@
+package model;
+
+import static model.BinaryFormat.*;
+
+/**
+ * Encodes pending transfers in a versioned binary format:
+ * <pre>
+ * version      1 byte (FORMAT_V1)
+ * timestamp    varlong milliseconds since the epoch
+ * from         varint length + 1 (0 for null), UTF-8 bytes
+ * to           varint length + 1 (0 for null), UTF-8 bytes
+ * amount       zigzag varint scale, varint length + two's-complement big-endian bytes of units
+ * credit       the same as amount
+ * </pre>
+ * The id is not a part of the value, it is the key
+ */
+public final class PendingTransferCodec {
+
+    static final byte FORMAT_V1 = 1;
+
+    private PendingTransferCodec() {
+    }
+
+    public static byte[] encode(PendingTransfer transfer) {
+        byte[] from = toBytes(transfer.getFrom());
+        byte[] to = toBytes(transfer.getTo());
+
+        Writer writer = new Writer(1
+                + varLongSize(transfer.getTimestamp())
+                + stringSize(from)
+                + stringSize(to)
+                + moneySize(transfer.getAmount())
+                + moneySize(transfer.getCredit()));
+        writer.writeByte(FORMAT_V1);
+        writer.writeVarLong(transfer.getTimestamp());
+        writer.writeString(from);
+        writer.writeString(to);
+        writeMoney(writer, transfer.getAmount());
+        writeMoney(writer, transfer.getCredit());
+        return writer.bytes();
+    }
+
+    public static PendingTransfer decode(String id, byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != FORMAT_V1) {
+            throw new IllegalArgumentException("Unknown pending transfer format version "
+                    + (bytes.length == 0 ? "(empty)" : bytes[0]));
+        }
+        Reader reader = new Reader(bytes, 1);
+        long timestamp = reader.readVarLong();
+        String from = reader.readString();
+        String to = reader.readString();
+        Money amount = readMoney(reader);
+        Money credit = readMoney(reader);
+        return new PendingTransfer(id, timestamp, from, to, amount, credit);
+    }
+
+    private static int moneySize(Money money) {
+        int unitsSize = longSize(money.getUnits());
+        return varIntSize(zigZag(money.getScale())) + varIntSize(unitsSize) + unitsSize;
+    }
+
+    private static void writeMoney(Writer writer, Money money) {
+        int unitsSize = longSize(money.getUnits());
+        writer.writeVarInt(zigZag(money.getScale()));
+        writer.writeVarInt(unitsSize);
+        writer.writeLong(money.getUnits(), unitsSize);
+    }
+
+    private static Money readMoney(Reader reader) {
+        int scale = unZigZag(reader.readVarInt());
+        long units = reader.readLong(reader.readVarInt());
+        return Money.ofUnits(units, scale);
+    }
+}
@@ -0,0 +1,51 @@
+package model;
+
+/**
+ * A completed transfer recorded in the transfer journal.
+ * The sequence number is assigned by the store when the event is written, until then it is NO_SEQUENCE
+ */
+public final class TransferEvent {
+
+    public static final long NO_SEQUENCE = -1;
+
+    private final long sequence;
+    private final long timestamp;
+    private final String from;
+    private final String to;
+    private final Money amount;
+
+    public TransferEvent(String from, String to, Money amount) {
+        this(NO_SEQUENCE, System.currentTimeMillis(), from, to, amount);
+    }
+
+    public TransferEvent(long sequence, long timestamp, String from, String to, Money amount) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return time of the transfer in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,79 @@
+package model;
+
+import static model.BinaryFormat.*;
+
+/**
+ * Encodes transfer events of the journal in a compact versioned binary format:
+ * <pre>
+ * version      1 byte (FORMAT_V1)
+ * timestamp    varlong milliseconds since the epoch
+ * from         varint length + 1 (0 for null), UTF-8 bytes
+ * to           varint length + 1 (0 for null), UTF-8 bytes
+ * scale        zigzag varint
+ * units        varint length (0 for zero amount), two's-complement big-endian bytes
+ * </pre>
+ * The sequence number is not a part of the value, it is the journal key
+ */
+public final class TransferEventCodec {
+
+    static final byte FORMAT_V1 = 1;
+
+    private TransferEventCodec() {
+    }
+
+    public static byte[] encode(TransferEvent event) {
+        byte[] from = toBytes(event.getFrom());
+        byte[] to = toBytes(event.getTo());
+        long units = event.getAmount().getUnits();
+        int scale = event.getAmount().getScale();
+        int unitsSize = longSize(units);
+
+        Writer writer = new Writer(1
+                + varLongSize(event.getTimestamp())
+                + stringSize(from)
+                + stringSize(to)
+                + varIntSize(zigZag(scale))
+                + varIntSize(unitsSize) + unitsSize);
+        writer.writeByte(FORMAT_V1);
+        writer.writeVarLong(event.getTimestamp());
+        writer.writeString(from);
+        writer.writeString(to);
+        writer.writeVarInt(zigZag(scale));
+        writer.writeVarInt(unitsSize);
+        writer.writeLong(units, unitsSize);
+        return writer.bytes();
+    }
+
+    public static TransferEvent decode(long sequence, byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != FORMAT_V1) {
+            throw new IllegalArgumentException("Unknown transfer event format version "
+                    + (bytes.length == 0 ? "(empty)" : bytes[0]));
+        }
+        Reader reader = new Reader(bytes, 1);
+        long timestamp = reader.readVarLong();
+        String from = reader.readString();
+        String to = reader.readString();
+        int scale = unZigZag(reader.readVarInt());
+        long units = reader.readLong(reader.readVarInt());
+        return new TransferEvent(sequence, timestamp, from, to, Money.ofUnits(units, scale));
+    }
+
+    /**
+     * @return big-endian bytes of the sequence number, so that keys are ordered by sequence number
+     */
+    public static byte[] encodeSequence(long sequence) {
+        byte[] key = new byte[Long.BYTES];
+        for (int i = 0; i < Long.BYTES; i++) {
+            key[i] = (byte) (sequence >>> ((Long.BYTES - 1 - i) * Byte.SIZE));
+        }
+        return key;
+    }
+
+    public static long decodeSequence(byte[] key) {
+        long sequence = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            sequence = (sequence << Byte.SIZE) | (key[i] & 0xFF);
+        }
+        return sequence;
+    }
+}
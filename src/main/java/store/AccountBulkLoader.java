@@ -0,0 +1,205 @@
+package store;
+
+import model.Account;
+import model.AccountIds;
+import model.AccountSerializer;
+import org.jetbrains.annotations.Nullable;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.SstFileWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Bulk import of accounts through table files ingested into RocksDb, and export of all accounts
+ * of a consistent snapshot. Both read or write newline-delimited json accounts as a stream,
+ * at most chunkSize accounts are kept in memory by an import.
+ * Imported accounts keep their ids and balances; accounts without an id get a new one.
+ * An account whose id is already stored is skipped, so an import never overwrites accounts,
+ * and cached accounts stay valid.
+ * Ingested table files bypass the WAL, which followers tail, so a store with followers gets chunks as write batches
+ */
+public class AccountBulkLoader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 100_000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccountBulkLoader.class);
+
+    private final RocksDbStore rocksDbStore;
+    private final AccountSerializer accountSerializer;
+    private final int chunkSize;
+    private final boolean replicated;
+
+    public AccountBulkLoader(RocksDbStore rocksDbStore, AccountSerializer accountSerializer, int chunkSize) {
+        this(rocksDbStore, accountSerializer, chunkSize, false);
+    }
+
+    /**
+     * @param replicated whether followers replicate the store, then chunks are written through the WAL
+     */
+    public AccountBulkLoader(RocksDbStore rocksDbStore, AccountSerializer accountSerializer, int chunkSize,
+                             boolean replicated) {
+        this.rocksDbStore = rocksDbStore;
+        this.accountSerializer = accountSerializer;
+        this.chunkSize = chunkSize;
+        this.replicated = replicated;
+    }
+
+    /**
+     * Reads accounts line by line, every chunkSize accounts are written sorted into a table file
+     * which is ingested before the next chunk is read, or written as one write batch if the store is replicated
+     */
+    public ImportResult importAccounts(BufferedReader reader) throws IOException {
+        Path directory = Files.createTempDirectory("money_transfer_import");
+        // table files need keys in the bytewise order of RocksDb
+        TreeMap<byte[], byte[]> chunk = new TreeMap<>(Arrays::compareUnsigned);
+        ImportResult result = new ImportResult();
+        int numOfFiles = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Account account = parseAccount(line);
+                byte[] value = account == null ? null : encode(account);
+                if (value == null) {
+                    result.invalid++;
+                    continue;
+                }
+                byte[] key = rocksDbStore.toKey(account.getId());
+                if (chunk.containsKey(key) || rocksDbStore.containsAccount(key)) {
+                    result.skipped++;
+                    continue;
+                }
+                chunk.put(key, value);
+                if (chunk.size() == chunkSize) {
+                    ingest(chunk, directory.resolve("accounts-" + numOfFiles++ + ".sst"));
+                    result.imported += chunkSize;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                result.imported += chunk.size();
+                ingest(chunk, directory.resolve("accounts-" + numOfFiles + ".sst"));
+            }
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not import accounts into RocksDb");
+        } finally {
+            deleteDirectory(directory);
+        }
+        LOG.info("Imported {} accounts, skipped {} existing, {} invalid",
+                result.imported, result.skipped, result.invalid);
+        return result;
+    }
+
+    /**
+     * Writes all accounts of a snapshot as newline-delimited json in the order of their ids
+     * @return number of exported accounts
+     */
+    public long exportAccounts(Writer writer) throws IOException {
+        long[] count = new long[1];
+        rocksDbStore.scanAccounts((accountId, account) -> {
+            writer.write(accountSerializer.serialize(account));
+            writer.write('\n');
+            count[0]++;
+        });
+        writer.flush();
+        LOG.info("Exported {} accounts", count[0]);
+        return count[0];
+    }
+
+    @Nullable
+    private Account parseAccount(String line) {
+        try {
+            Account account = accountSerializer.deserialize(line);
+            if (account == null || account.getBalance().signum() < 0) {
+                return null;
+            }
+            if (account.getId() == null) {
+                account.setId(UUID.randomUUID().toString());
+            }
+            // an id with the part separator would be read as a part of a split account
+            return AccountIds.isValid(account.getId()) ? account : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return encoded account, null if the codec can not keep it
+     */
+    @Nullable
+    private byte[] encode(Account account) {
+        try {
+            return rocksDbStore.toValue(account);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void ingest(TreeMap<byte[], byte[]> chunk, Path file) throws RocksDBException {
+        if (replicated) {
+            rocksDbStore.writeAccounts(chunk);
+            chunk.clear();
+            return;
+        }
+        try (EnvOptions envOptions = new EnvOptions();
+             Options options = new Options();
+             SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+            writer.open(file.toString());
+            for (Map.Entry<byte[], byte[]> entry : chunk.entrySet()) {
+                writer.put(entry.getKey(), entry.getValue());
+            }
+            writer.finish();
+        }
+        rocksDbStore.ingestAccounts(Collections.singletonList(file.toString()));
+        chunk.clear();
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    public static class ImportResult {
+        private long imported;
+        private long skipped;
+        private long invalid;
+
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * @return number of accounts whose id was already stored or repeated in the input
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return number of lines which are not accounts or have a negative balance
+         */
+        public long getInvalid() {
+            return invalid;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package store;
+
+import model.Account;
+import model.BalanceTotal;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Reads of many accounts in the order of their ids. Accounts are read from a consistent snapshot
+ * of the store, without account locks
+ */
+public interface AccountScanner {
+
+    /**
+     * @param fromAccountId the first account id to read, null to start from the first account
+     * @return up to limit accounts with ids greater or equal to fromAccountId, in the order of ids
+     */
+    List<Account> scanAccounts(@Nullable String fromAccountId, int limit);
+
+    /**
+     * @return sum of balances and number of all accounts of one snapshot
+     */
+    BalanceTotal totalBalance();
+}
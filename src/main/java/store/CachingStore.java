@@ -0,0 +1,167 @@
+package store;
+
+import metrics.Metrics;
+import model.Account;
+import model.TransferEvent;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-through cache of accounts in front of another store.
+ * The cache is split into segments by account id hash, each segment is a bounded LRU map with its own monitor.
+ * Accounts are copied on the way in and out, so callers modifying returned accounts
+ * do not change the cache until they put the account back
+ */
+public class CachingStore implements Store {
+
+    private static final int NUM_OF_SEGMENTS = 16;
+
+    private final Store store;
+    private final Segment[] segments = new Segment[NUM_OF_SEGMENTS];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingStore(Store store, int maxSize) {
+        this.store = store;
+        int segmentSize = Math.max(1, maxSize / NUM_OF_SEGMENTS);
+        for (int i = 0; i < NUM_OF_SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        Metrics.counter("account_cache_hits_total", "Account reads answered by the account cache", hits::sum);
+        Metrics.counter("account_cache_misses_total", "Account reads which missed the account cache", misses::sum);
+        Metrics.counter("account_cache_evictions_total", "Accounts evicted from the account cache", evictions::sum);
+    }
+
+    @Override
+    public void put(String accountId, Account account) {
+        store.put(accountId, account);
+        segment(accountId).put(accountId, account.copy());
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts) {
+        store.putAll(accounts);
+        for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+            segment(entry.getKey()).put(entry.getKey(), entry.getValue().copy());
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+        store.putAll(accounts, events);
+        for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+            segment(entry.getKey()).put(entry.getKey(), entry.getValue().copy());
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+        store.putAll(accounts, events, records);
+        for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+            segment(entry.getKey()).put(entry.getKey(), entry.getValue().copy());
+        }
+    }
+
+    @Override
+    public Account get(String accountId) {
+        Segment segment = segment(accountId);
+        Account account = segment.get(accountId);
+        if (account != null) {
+            hits.increment();
+            return account.copy();
+        }
+        misses.increment();
+        account = store.get(accountId);
+        if (account != null) {
+            // a value written meanwhile by a concurrent put is newer than the loaded one
+            segment.putIfAbsent(accountId, account.copy());
+        }
+        return account;
+    }
+
+    @Override
+    public Account getUnlocked(String accountId) {
+        Account account = segment(accountId).get(accountId);
+        if (account != null) {
+            hits.increment();
+            return account.copy();
+        }
+        misses.increment();
+        return store.getUnlocked(accountId);
+    }
+
+    /**
+     * Cached accounts of one write are replaced one by one after the write, so they are not read together:
+     * accounts are read from the underlying store
+     */
+    @Override
+    public Map<String, Account> getAll(Collection<String> accountIds) {
+        return store.getAll(accountIds);
+    }
+
+    @Override
+    public void delete(String accountId) {
+        store.delete(accountId);
+        segment(accountId).remove(accountId);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment segment(String accountId) {
+        int hash = accountId.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (NUM_OF_SEGMENTS - 1)];
+    }
+
+    /**
+     * LRU map of a limited size, all methods are synchronized(this)
+     */
+    private class Segment {
+
+        private final Map<String, Account> accounts;
+
+        Segment(int maxSize) {
+            accounts = new LinkedHashMap<String, Account>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Account> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Account get(String accountId) {
+            return accounts.get(accountId);
+        }
+
+        synchronized void put(String accountId, Account account) {
+            accounts.put(accountId, account);
+        }
+
+        synchronized void putIfAbsent(String accountId, Account account) {
+            accounts.putIfAbsent(accountId, account);
+        }
+
+        synchronized void remove(String accountId) {
+            accounts.remove(accountId);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package store;
+
+import config.StoreSettings;
+import model.Account;
+import model.TransferEvent;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit stage in front of RocksDbStore.
+ * Writes of concurrent operations are collected by a single committer thread
+ * (up to groupCommitMaxBatch writes or during groupCommitWindowMicros after the first one)
+ * and committed as one WriteBatch, so many operations share one WAL append and one fsync.
+ * A writing thread returns only after the batch with its write is committed; writes which are not committed
+ * when the store stops fail
+ */
+public final class GroupCommitStore implements Store {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GroupCommitStore.class);
+    private static final IllegalStateException STOPPED = new IllegalStateException("Group commit is stopped");
+
+    private final RocksDbStore rocksDbStore;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final int maxBatch;
+    private final long windowNanos;
+    private final Thread committerThread;
+    private volatile boolean running = true;
+
+    public GroupCommitStore(RocksDbStore rocksDbStore, StoreSettings storeSettings) {
+        this.rocksDbStore = rocksDbStore;
+        this.maxBatch = storeSettings.groupCommitMaxBatch();
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(storeSettings.groupCommitWindowMicros());
+        committerThread = new Thread(this::commitLoop, "store-group-commit-thread");
+        committerThread.setDaemon(true);
+        committerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> stop()));
+    }
+
+    /**
+     * Stops the committer after the batch it is writing, waiting writes fail
+     */
+    public void stop() {
+        running = false;
+        committerThread.interrupt();
+    }
+
+    @Override
+    public void put(String accountId, Account account) {
+        submit(new PendingWrite(new byte[][]{rocksDbStore.toKey(accountId)},
+                new byte[][]{rocksDbStore.toValue(account)}));
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts) {
+        putAll(accounts, Collections.emptyList());
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+        submit(pendingWrite(accounts, events, null));
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+        submit(pendingWrite(accounts, events, records));
+    }
+
+    @Override
+    public Account get(String accountId) {
+        return rocksDbStore.get(accountId);
+    }
+
+    @Override
+    public Account getUnlocked(String accountId) {
+        return rocksDbStore.get(accountId);
+    }
+
+    @Override
+    public Map<String, Account> getAll(Collection<String> accountIds) {
+        return rocksDbStore.getAll(accountIds);
+    }
+
+    @Override
+    public void delete(String accountId) {
+        submit(new PendingWrite(new byte[][]{rocksDbStore.toKey(accountId)}, new byte[1][]));
+    }
+
+    private PendingWrite pendingWrite(Map<String, Account> accounts, List<TransferEvent> events,
+                                      @Nullable RecordWrites records) {
+        byte[][] keys = new byte[accounts.size()][];
+        byte[][] values = new byte[accounts.size()][];
+        int i = 0;
+        for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+            keys[i] = rocksDbStore.toKey(entry.getKey());
+            values[i] = rocksDbStore.toValue(entry.getValue());
+            i++;
+        }
+        return new PendingWrite(keys, values, events, records);
+    }
+
+    /**
+     * Enqueues the write and waits until the batch containing it is committed
+     */
+    private void submit(PendingWrite pendingWrite) {
+        queue.add(pendingWrite);
+        if (!running) {
+            // the committer may have failed the queue before the write was added
+            failQueued();
+        }
+        try {
+            pendingWrite.getCompletion().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Can not write data into rocksdb", e.getCause());
+        }
+    }
+
+    private void commitLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                rocksDbStore.write(batch);
+                for (PendingWrite pendingWrite : batch) {
+                    pendingWrite.getCompletion().complete(null);
+                }
+            } catch (Throwable e) {
+                LOG.error(e.getMessage(), e);
+                fail(batch, e);
+            }
+            batch.clear();
+        }
+        // a batch being collected when the committer was interrupted
+        fail(batch, STOPPED);
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<PendingWrite> pendingWrites = new ArrayList<>();
+        queue.drainTo(pendingWrites);
+        fail(pendingWrites, STOPPED);
+    }
+
+    private static void fail(List<PendingWrite> pendingWrites, Throwable e) {
+        for (PendingWrite pendingWrite : pendingWrites) {
+            pendingWrite.getCompletion().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Waits for the first write, then collects more writes until the batch is full or the window is over
+     */
+    private void collectBatch(List<PendingWrite> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatch) {
+            if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingWrite pendingWrite = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (pendingWrite == null) {
+                break;
+            }
+            batch.add(pendingWrite);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package store;
+
+import model.IdempotencyRecord;
+
+/**
+ * Durable storage of idempotency keys, so that retries are recognised after a restart
+ */
+public interface IdempotencyStore {
+
+    void putRecord(String key, IdempotencyRecord record);
+
+    /**
+     * @return the record stored for the key, null if there is none. Expired records may still be returned
+     * until they are deleted
+     */
+    IdempotencyRecord getRecord(String key);
+
+    /**
+     * Deletes records expired by nowMillis
+     * @return number of deleted records
+     */
+    int deleteExpiredRecords(long nowMillis);
+}
@@ -0,0 +1,14 @@
+package store;
+
+import model.PendingTransfer;
+
+import java.util.List;
+
+/**
+ * Reads transfers between shards which were debited and not finished before the last stop.
+ * Pending transfers are written and deleted by Store.putAll together with the accounts they change
+ */
+public interface PendingTransferStore {
+
+    List<PendingTransfer> readPendingTransfers();
+}
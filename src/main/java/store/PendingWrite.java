@@ -0,0 +1,58 @@
+package store;
+
+import model.TransferEvent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A write waiting in GroupCommitStore queue.
+ * Keys and values are already encoded, a null value means deletion of the key.
+ * Journal events are encoded by the committer, since their sequence numbers are assigned at commit
+ */
+class PendingWrite {
+
+    private final byte[][] keys;
+    private final byte[][] values;
+    private final List<TransferEvent> events;
+    private final RecordWrites records;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    PendingWrite(byte[][] keys, byte[][] values) {
+        this(keys, values, Collections.emptyList());
+    }
+
+    PendingWrite(byte[][] keys, byte[][] values, List<TransferEvent> events) {
+        this(keys, values, events, null);
+    }
+
+    PendingWrite(byte[][] keys, byte[][] values, List<TransferEvent> events, @Nullable RecordWrites records) {
+        this.keys = keys;
+        this.values = values;
+        this.events = events;
+        this.records = records;
+    }
+
+    byte[][] getKeys() {
+        return keys;
+    }
+
+    byte[][] getValues() {
+        return values;
+    }
+
+    List<TransferEvent> getEvents() {
+        return events;
+    }
+
+    @Nullable
+    RecordWrites getRecords() {
+        return records;
+    }
+
+    CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+}
@@ -0,0 +1,56 @@
+package store;
+
+import model.IdempotencyRecord;
+import model.PendingTransfer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records which Store.putAll writes in the same atomic write as the accounts.
+ * A null value deletes the record
+ */
+public final class RecordWrites {
+
+    private final Map<String, PendingTransfer> pendingTransfers = new LinkedHashMap<>();
+    private final Map<String, IdempotencyRecord> idempotencyRecords = new LinkedHashMap<>();
+
+    public RecordWrites putPendingTransfer(PendingTransfer pendingTransfer) {
+        pendingTransfers.put(pendingTransfer.getId(), pendingTransfer);
+        return this;
+    }
+
+    public RecordWrites deletePendingTransfer(String transferId) {
+        pendingTransfers.put(transferId, null);
+        return this;
+    }
+
+    public RecordWrites putIdempotencyRecord(String key, IdempotencyRecord record) {
+        idempotencyRecords.put(key, record);
+        return this;
+    }
+
+    /**
+     * Adds all records of the other writes
+     */
+    public RecordWrites putAll(RecordWrites other) {
+        pendingTransfers.putAll(other.pendingTransfers);
+        idempotencyRecords.putAll(other.idempotencyRecords);
+        return this;
+    }
+
+    /**
+     * @return pending transfers keyed by transfer id
+     */
+    public Map<String, PendingTransfer> getPendingTransfers() {
+        return Collections.unmodifiableMap(pendingTransfers);
+    }
+
+    /**
+     * @return idempotency records keyed by idempotency key
+     */
+    public Map<String, IdempotencyRecord> getIdempotencyRecords() {
+        return Collections.unmodifiableMap(idempotencyRecords);
+    }
+}
@@ -0,0 +1,237 @@
+package store;
+
+import config.ReplicationSettings;
+import metrics.Counter;
+import metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Follower side of replication (see ReplicationProtocol): applies write batches of the leader's WAL
+ * to a store bootstrapped from a checkpoint of the leader. The store of a follower is written by
+ * replication only, account operations of the follower just read it.
+ * The follower reconnects after the poll interval when the connection breaks, and stops replicating
+ * when the leader no longer has the batches it needs, then its store has to be bootstrapped again.
+ * The stop is reported by the replication_stopped gauge, lag gauges keep growing after it
+ */
+public final class ReplicationFollower {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationFollower.class);
+    private static final Counter APPLIED_BYTES = Metrics.counter("replication_applied_bytes_total",
+            "Bytes of write batches applied by the follower");
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final RocksDbStore store;
+    private final ReplicationSettings replicationSettings;
+    private final InetSocketAddress leaderAddress;
+    // leader sequence number of the next batch to apply, written by the replication thread only
+    private volatile long nextSequence;
+    private volatile long leaderSequence;
+    // when the follower was last known to have every batch of the leader
+    private volatile long syncedAtMillis;
+    private volatile boolean running;
+    // set when the leader refused to send further batches
+    private volatile boolean stopped;
+    private volatile Socket socket;
+    private Thread replicationThread;
+
+    public ReplicationFollower(RocksDbStore store, ReplicationSettings replicationSettings) {
+        this.store = store;
+        this.replicationSettings = replicationSettings;
+        this.leaderAddress = ReplicationProtocol.parseAddress(replicationSettings.leader());
+        this.nextSequence = store.nextReplicatedSequence();
+        this.leaderSequence = nextSequence - 1;
+        this.syncedAtMillis = System.currentTimeMillis();
+        Metrics.gauge("replication_applied_sequence", "Leader sequence number of the last applied batch",
+                this::appliedSequence);
+        Metrics.gauge("replication_lag_sequences", "Sequence numbers of the leader not applied by the follower yet",
+                this::lagSequences);
+        Metrics.gauge("replication_lag_millis",
+                "Time since the follower was last known to have applied every batch of the leader",
+                this::lagMillis);
+        Metrics.gauge("replication_stopped",
+                "1 if the leader no longer has the batches the follower needs and the store has to be bootstrapped again",
+                () -> stopped ? 1 : 0);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> stop()));
+    }
+
+    /**
+     * Downloads a checkpoint of the leader into the store directory, unless it already has a store:
+     * then the follower continues after the batches the store has
+     */
+    public static void bootstrap(ReplicationSettings replicationSettings, String path) {
+        Path storeDirectory = Paths.get(path);
+        if (Files.exists(storeDirectory.resolve("CURRENT"))) {
+            LOG.info("Store {} exists, continuing replication", path);
+            return;
+        }
+        // files are downloaded aside, so that an interrupted download is not taken for a store
+        Path downloadDirectory = Paths.get(path + ".bootstrap");
+        try {
+            ReplicationProtocol.deleteDirectory(downloadDirectory);
+            Files.createDirectories(downloadDirectory);
+            int numOfFiles = 0;
+            try (Socket leader = connect(ReplicationProtocol.parseAddress(replicationSettings.leader()));
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(leader.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(leader.getOutputStream()))) {
+                out.writeByte(ReplicationProtocol.BOOTSTRAP);
+                out.flush();
+                for (byte type = in.readByte(); type != ReplicationProtocol.END; type = in.readByte()) {
+                    if (type == ReplicationProtocol.ERROR) {
+                        throw new IOException(in.readUTF());
+                    }
+                    if (type != ReplicationProtocol.FILE) {
+                        throw new IOException("Unexpected message " + type);
+                    }
+                    String name = in.readUTF();
+                    if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+                        throw new IOException("Invalid checkpoint file name " + name);
+                    }
+                    copy(in, in.readLong(), downloadDirectory.resolve(name));
+                    numOfFiles++;
+                }
+            }
+            ReplicationProtocol.deleteDirectory(storeDirectory);
+            Files.move(downloadDirectory, storeDirectory);
+            LOG.info("Store {} bootstrapped from {} files of leader {}", path, numOfFiles, replicationSettings.leader());
+        } catch (IOException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not bootstrap the store from leader " + replicationSettings.leader());
+        }
+    }
+
+    public void start() {
+        running = true;
+        replicationThread = new Thread(this::replicate, "replication-follower-thread");
+        replicationThread.setDaemon(true);
+        replicationThread.start();
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Socket currentSocket = socket;
+        if (currentSocket != null) {
+            try {
+                currentSocket.close();
+            } catch (IOException e) {
+                LOG.warn(e.getMessage(), e);
+            }
+        }
+        replicationThread.interrupt();
+    }
+
+    public long appliedSequence() {
+        return nextSequence - 1;
+    }
+
+    public long lagSequences() {
+        return Math.max(0, leaderSequence - appliedSequence());
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public long lagMillis() {
+        return lagSequences() == 0 && socket != null ? 0 : System.currentTimeMillis() - syncedAtMillis;
+    }
+
+    private void replicate() {
+        while (running) {
+            try (Socket leader = connect(leaderAddress);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(leader.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(leader.getOutputStream()))) {
+                socket = leader;
+                out.writeByte(ReplicationProtocol.TAIL);
+                out.writeLong(nextSequence);
+                out.flush();
+                LOG.info("Replicating from leader {} since sequence {}", replicationSettings.leader(), nextSequence);
+                while (running) {
+                    byte type = in.readByte();
+                    if (type == ReplicationProtocol.BATCH) {
+                        long batchEnd = in.readLong();
+                        long latestSequence = in.readLong();
+                        byte[] batch = ReplicationProtocol.readBatch(in);
+                        store.applyReplicated(batch, batchEnd);
+                        APPLIED_BYTES.add(batch.length);
+                        nextSequence = batchEnd;
+                        updateLeaderSequence(latestSequence);
+                    } else if (type == ReplicationProtocol.HEARTBEAT) {
+                        updateLeaderSequence(in.readLong());
+                    } else if (type == ReplicationProtocol.ERROR) {
+                        LOG.error("Replication stopped by leader {}: {}", replicationSettings.leader(), in.readUTF());
+                        stopped = true;
+                        running = false;
+                    } else {
+                        throw new IOException("Unexpected message " + type);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    LOG.warn("Replication from leader {} interrupted: {}", replicationSettings.leader(), e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                LOG.error(e.getMessage(), e);
+            } finally {
+                socket = null;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(replicationSettings.pollIntervalMillis());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void updateLeaderSequence(long latestSequence) {
+        leaderSequence = latestSequence;
+        if (nextSequence > latestSequence) {
+            syncedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    private static Socket connect(InetSocketAddress address) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    private static void copy(DataInputStream in, long size, Path file) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Checkpoint file " + file.getFileName() + " is incomplete");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Messages between a leader (ReplicationServer) and a follower (ReplicationFollower) over one TCP connection.
+ * <pre>
+ * request      opcode byte, then:
+ *              BOOTSTRAP   nothing, the leader answers with FILE messages of a new checkpoint and END
+ *              TAIL        8-byte leader sequence number of the next batch the follower needs,
+ *                          the leader answers with BATCH and HEARTBEAT messages until the connection is closed
+ * FILE         name, 8-byte size, content of a checkpoint file
+ * BATCH        8-byte sequence number following the batch, 8-byte latest sequence number of the leader,
+ *              4-byte size, serialized RocksDb WriteBatch
+ * HEARTBEAT    8-byte latest sequence number of the leader, sent when the follower has every batch
+ * ERROR        message, the leader closes the connection after it
+ * string       modified UTF-8 of DataOutput.writeUTF
+ * </pre>
+ * Numbers are big-endian
+ */
+final class ReplicationProtocol {
+
+    static final byte BOOTSTRAP = 1;
+    static final byte TAIL = 2;
+
+    static final byte FILE = 1;
+    static final byte END = 2;
+    static final byte BATCH = 3;
+    static final byte HEARTBEAT = 4;
+    static final byte ERROR = 5;
+
+    static final int MAX_BATCH_BYTES = 64 * 1024 * 1024;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeBatch(DataOutputStream out, long nextSequence, long leaderSequence, byte[] batch)
+            throws IOException {
+        out.writeByte(BATCH);
+        out.writeLong(nextSequence);
+        out.writeLong(leaderSequence);
+        out.writeInt(batch.length);
+        out.write(batch);
+    }
+
+    static byte[] readBatch(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > MAX_BATCH_BYTES) {
+            throw new IOException("Invalid batch size " + size);
+        }
+        byte[] batch = new byte[size];
+        in.readFully(batch);
+        return batch;
+    }
+
+    static void writeHeartbeat(DataOutputStream out, long leaderSequence) throws IOException {
+        out.writeByte(HEARTBEAT);
+        out.writeLong(leaderSequence);
+    }
+
+    static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    /**
+     * @param address "host:port"
+     */
+    static InetSocketAddress parseAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid leader address " + address);
+        }
+        return new InetSocketAddress(address.substring(0, separator).trim(),
+                Integer.parseInt(address.substring(separator + 1).trim()));
+    }
+
+    /**
+     * Deletes a checkpoint directory with its files, nothing if it does not exist
+     */
+    static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
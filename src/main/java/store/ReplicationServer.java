@@ -0,0 +1,216 @@
+package store;
+
+import config.ReplicationSettings;
+import metrics.Counter;
+import metrics.Metrics;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.TransactionLogIterator;
+import org.rocksdb.WriteBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Leader side of replication (see ReplicationProtocol). A follower first downloads a checkpoint of the store,
+ * then tails the write batches of the WAL from the sequence number it has, read with getUpdatesSince.
+ * Batches are read from WAL files, not from the write path: every follower has its own thread,
+ * and account operations never wait for followers
+ */
+public final class ReplicationServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationServer.class);
+    private static final Counter SENT_BYTES = Metrics.counter("replication_sent_bytes_total",
+            "Bytes of checkpoint files and write batches sent to followers");
+
+    private final RocksDbStore store;
+    private final ReplicationSettings replicationSettings;
+    private final ExecutorService followerExecutor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger numOfFollowers = new AtomicInteger();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationServer(RocksDbStore store, ReplicationSettings replicationSettings) {
+        this.store = store;
+        this.replicationSettings = replicationSettings;
+        this.followerExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "replication-sender-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Metrics.gauge("replication_followers", "Followers connected to the leader", numOfFollowers::get);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> stop()));
+    }
+
+    public void start() {
+        try {
+            serverSocket = new ServerSocket(replicationSettings.port());
+        } catch (IOException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not start replication server");
+        }
+        running = true;
+        Thread acceptThread = new Thread(this::acceptFollowers, "replication-accept-thread");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOG.info("Replication server started on port {}", getPort());
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            LOG.warn(e.getMessage(), e);
+        }
+        followerExecutor.shutdownNow();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptFollowers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                followerExecutor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    LOG.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        numOfFollowers.incrementAndGet();
+        try (Socket follower = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(follower.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(follower.getOutputStream()))) {
+            byte opcode = in.readByte();
+            if (opcode == ReplicationProtocol.BOOTSTRAP) {
+                sendCheckpoint(out);
+            } else if (opcode == ReplicationProtocol.TAIL) {
+                sendUpdates(in.readLong(), out);
+            } else {
+                ReplicationProtocol.writeError(out, "Unknown request " + opcode);
+            }
+        } catch (IOException e) {
+            if (running) {
+                LOG.info("Follower {} disconnected: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } catch (RocksDBException | RuntimeException e) {
+            LOG.error(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(socket);
+            numOfFollowers.decrementAndGet();
+        }
+    }
+
+    private void sendCheckpoint(DataOutputStream out) throws IOException {
+        Path checkpoint = Paths.get(store.createCheckpoint());
+        try {
+            List<Path> files;
+            try (Stream<Path> paths = Files.list(checkpoint)) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                long size = Files.size(file);
+                out.writeByte(ReplicationProtocol.FILE);
+                out.writeUTF(file.getFileName().toString());
+                out.writeLong(size);
+                Files.copy(file, out);
+                SENT_BYTES.add(size);
+            }
+            out.writeByte(ReplicationProtocol.END);
+            out.flush();
+            LOG.info("Sent checkpoint of {} files to a follower", files.size());
+        } finally {
+            ReplicationProtocol.deleteDirectory(checkpoint);
+        }
+    }
+
+    /**
+     * Sends batches from the WAL while there are any, then a heartbeat, and looks for new batches
+     * after the poll interval. A follower needing batches which are not in the WAL gets an error
+     */
+    private void sendUpdates(long nextSequence, DataOutputStream out)
+            throws IOException, RocksDBException, InterruptedException {
+        while (running) {
+            long latestSequence = store.latestSequenceNumber();
+            if (nextSequence > latestSequence + 1) {
+                ReplicationProtocol.writeError(out, "The follower is ahead of the leader at sequence "
+                        + latestSequence + ", bootstrap it again");
+                return;
+            }
+            if (nextSequence <= latestSequence) {
+                boolean missing = true;
+                try (TransactionLogIterator iterator = store.updatesSince(nextSequence)) {
+                    for (; iterator.isValid(); iterator.next()) {
+                        TransactionLogIterator.BatchResult result = iterator.getBatch();
+                        try (WriteBatch writeBatch = result.writeBatch()) {
+                            // a gap: the WAL file was deleted, or table files were ingested past the WAL
+                            missing = result.sequenceNumber() > nextSequence;
+                            if (missing) {
+                                break;
+                            }
+                            long batchEnd = result.sequenceNumber() + writeBatch.count();
+                            if (batchEnd <= nextSequence) {
+                                continue;
+                            }
+                            byte[] data = writeBatch.data();
+                            ReplicationProtocol.writeBatch(out, batchEnd,
+                                    Math.max(batchEnd - 1, store.latestSequenceNumber()), data);
+                            SENT_BYTES.add(data.length);
+                            nextSequence = batchEnd;
+                        }
+                    }
+                } catch (RocksDBException e) {
+                    LOG.warn(e.getMessage(), e);
+                }
+                if (missing) {
+                    ReplicationProtocol.writeError(out, "Updates since sequence " + nextSequence
+                            + " are not in the WAL, bootstrap the follower again");
+                    return;
+                }
+            }
+            latestSequence = store.latestSequenceNumber();
+            if (nextSequence > latestSequence) {
+                ReplicationProtocol.writeHeartbeat(out, latestSequence);
+                out.flush();
+                Thread.sleep(replicationSettings.pollIntervalMillis());
+            } else {
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package store;
+
+import config.StoreSettings;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksObject;
+import org.rocksdb.Statistics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates RocksDb options from the tuning settings of StoreSettings and keeps the native objects
+ * (block cache, bloom filter, options) they refer to, so that they are closed with the database
+ */
+class RocksDbOptions implements AutoCloseable {
+
+    private static final long MB = 1024 * 1024;
+
+    private final StoreSettings storeSettings;
+    private final Cache blockCache;
+    private final BloomFilter bloomFilter;
+    // column families may be created later by concurrent writers
+    private final List<RocksObject> options = new CopyOnWriteArrayList<>();
+
+    RocksDbOptions(StoreSettings storeSettings) {
+        this.storeSettings = storeSettings;
+        this.blockCache = storeSettings.blockCacheSizeMb() > 0
+                ? new LRUCache(storeSettings.blockCacheSizeMb() * MB)
+                : null;
+        this.bloomFilter = storeSettings.bloomFilterBitsPerKey() > 0
+                ? new BloomFilter(storeSettings.bloomFilterBitsPerKey(), false)
+                : null;
+    }
+
+    DBOptions createDbOptions(Statistics statistics) {
+        DBOptions dbOptions = new DBOptions()
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true)
+                .setStatistics(statistics)
+                .setUseDirectReads(storeSettings.useDirectReads())
+                .setUseDirectIoForFlushAndCompaction(storeSettings.useDirectIoForFlushAndCompaction());
+        if (storeSettings.maxBackgroundJobs() > 0) {
+            dbOptions.setMaxBackgroundJobs(storeSettings.maxBackgroundJobs());
+        }
+        if (storeSettings.walTtlSeconds() > 0) {
+            dbOptions.setWalTtlSeconds(storeSettings.walTtlSeconds());
+        }
+        options.add(dbOptions);
+        return dbOptions;
+    }
+
+    /**
+     * @param pointLookup whether the column family is read by single keys and gets point lookup tuning
+     */
+    ColumnFamilyOptions createColumnFamilyOptions(boolean pointLookup) {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        if (blockCache != null) {
+            tableConfig.setBlockCache(blockCache);
+        }
+        if (bloomFilter != null) {
+            tableConfig.setFilter(bloomFilter);
+        }
+        boolean optimizeForPointLookup = pointLookup && storeSettings.optimizeForPointLookup();
+        if (optimizeForPointLookup) {
+            tableConfig.setCacheIndexAndFilterBlocks(true)
+                    .setPinL0FilterAndIndexBlocksInCache(true);
+        }
+
+        ColumnFamilyOptions columnFamilyOptions = new ColumnFamilyOptions()
+                .setTableFormatConfig(tableConfig)
+                .setCompactionStyle(compactionStyle(storeSettings.compactionStyle()))
+                .setOptimizeFiltersForHits(optimizeForPointLookup && bloomFilter != null);
+        if (storeSettings.writeBufferSizeMb() > 0) {
+            columnFamilyOptions.setWriteBufferSize(storeSettings.writeBufferSizeMb() * MB);
+        }
+        if (storeSettings.maxWriteBufferNumber() > 0) {
+            columnFamilyOptions.setMaxWriteBufferNumber(storeSettings.maxWriteBufferNumber());
+        }
+        options.add(columnFamilyOptions);
+        return columnFamilyOptions;
+    }
+
+    @Override
+    public void close() {
+        for (RocksObject option : options) {
+            option.close();
+        }
+        if (bloomFilter != null) {
+            bloomFilter.close();
+        }
+        if (blockCache != null) {
+            blockCache.close();
+        }
+    }
+
+    /**
+     * FIFO compaction is not offered: it drops the oldest table files, and accounts must never expire
+     */
+    private static CompactionStyle compactionStyle(String name) {
+        switch (name) {
+            case "level":
+                return CompactionStyle.LEVEL;
+            case "universal":
+                return CompactionStyle.UNIVERSAL;
+            default:
+                throw new IllegalArgumentException("Unknown compaction style " + name);
+        }
+    }
+}
@@ -1,24 +1,74 @@
 package store;
 
 import config.StoreSettings;
+import metrics.Counter;
+import metrics.LatencyRecorder;
+import metrics.Metrics;
 import model.Account;
+import model.AccountCodec;
+import model.AccountIds;
 import model.AccountSerializer;
+import model.BalanceTotal;
+import model.IdempotencyRecord;
+import model.IdempotencyRecordCodec;
+import model.Money;
+import model.PendingTransfer;
+import model.PendingTransferCodec;
+import model.TransferEvent;
+import model.TransferEventCodec;
+import org.jetbrains.annotations.Nullable;
 import org.rocksdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 
 
-public class RocksDbStore implements Store {
+public class RocksDbStore implements TransactionalStore, TransferJournal, IdempotencyStore, AccountScanner,
+        PendingTransferStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(RocksDbStore.class);
     private static final String COLUMN_FAMILY = "accounts";
+    private static final String JOURNAL_COLUMN_FAMILY = "journal";
+    private static final String IDEMPOTENCY_COLUMN_FAMILY = "idempotency";
+    private static final String PENDING_TRANSFER_COLUMN_FAMILY = "pending_transfers";
+    private static final String DEFAULT_COLUMN_FAMILY = new String(RocksDB.DEFAULT_COLUMN_FAMILY);
+    // kept by followers in the otherwise unused default column family
+    private static final byte[] REPLICATED_SEQUENCE_KEY = "replicated_sequence".getBytes();
+    private static final long SCAN_READAHEAD_BYTES = 2 * 1024 * 1024;
 
-    private final AccountSerializer accountSerializer;
+    private static final LatencyRecorder GET_LATENCY = Metrics.latency("store_get_seconds",
+            "Latency of reading an account from RocksDb");
+    private static final LatencyRecorder WRITE_LATENCY = Metrics.latency("store_write_seconds",
+            "Latency of writes (single or batched) to RocksDb");
+    private static final Counter BYTES_READ = Metrics.counter("store_read_bytes_total",
+            "Bytes of accounts read from RocksDb");
+    private static final Counter BYTES_WRITTEN = Metrics.counter("store_written_bytes_total",
+            "Bytes of keys and accounts written to RocksDb");
+
+    private final AccountCodec accountCodec;
+    private final String path;
     private final RocksDB db;
+    @Nullable
+    private final OptimisticTransactionDB transactionDb;
+    private final ReadOptions transactionReadOptions = new ReadOptions();
     private final Map<String, ColumnFamilyHandle> handles = new ConcurrentHashMap<>();
+    private final WriteOptions writeOptions;
+    private final Statistics statistics = new Statistics();
+    private final RocksDbOptions rocksDbOptions;
+    // writes with journal events are serialized, so that sequence numbers are committed in order.
+    // Not a monitor: it is held during the write, and a virtual thread blocked on a monitor pins its carrier
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private volatile long lastSequence;
+    private final int numOfScanRanges;
+    private final ExecutorService scanExecutor;
 
     static {
         RocksDB.loadLibrary();
@@ -26,15 +76,47 @@ public class RocksDbStore implements Store {
 
 
     public RocksDbStore(AccountSerializer accountSerializer, StoreSettings storeSettings) {
-        this.accountSerializer = accountSerializer;
+        this(accountSerializer, storeSettings, false);
+    }
+
+    /**
+     * @param optimisticTransactions whether to open RocksDb as OptimisticTransactionDB, which is required
+     *                               by beginTransaction
+     */
+    public RocksDbStore(AccountSerializer accountSerializer, StoreSettings storeSettings,
+                        boolean optimisticTransactions) {
+        this.accountCodec = AccountCodec.create(storeSettings.codec(), accountSerializer);
+        this.path = storeSettings.path();
+        this.rocksDbOptions = new RocksDbOptions(storeSettings);
+        this.writeOptions = new WriteOptions()
+                .setSync(SyncPolicy.fromConfig(storeSettings.syncPolicy()).isSync());
         List<ColumnFamilyDescriptor> familyList = createFamilyColumns(storeSettings.path());
         List<ColumnFamilyHandle> columns = new ArrayList<>();
-        db = startDb(familyList, columns, storeSettings.path());
+        db = startDb(familyList, columns, storeSettings.path(), optimisticTransactions);
+        transactionDb = optimisticTransactions ? (OptimisticTransactionDB) db : null;
         initColumnHandlesMap(familyList, columns);
+        // all column families exist from the start, so that a checkpoint has every family later updates write to
+        getHandle(COLUMN_FAMILY);
+        getHandle(JOURNAL_COLUMN_FAMILY);
+        getHandle(IDEMPOTENCY_COLUMN_FAMILY);
+        getHandle(PENDING_TRANSFER_COLUMN_FAMILY);
+        lastSequence = readLastSequence();
+        registerStatistics();
+        numOfScanRanges = storeSettings.scanThreads() > 0
+                ? storeSettings.scanThreads()
+                : Runtime.getRuntime().availableProcessors();
+        scanExecutor = Executors.newFixedThreadPool(numOfScanRanges, r -> {
+            Thread thread = new Thread(r, "store-scan-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            scanExecutor.shutdown();
             for ( ColumnFamilyHandle columnFamilyHandle : handles.values()) {
                 columnFamilyHandle.close();
             }
+            writeOptions.close();
+            transactionReadOptions.close();
         }));
     }
 
@@ -43,9 +125,33 @@ public class RocksDbStore implements Store {
         ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
 
         try {
-            db.put(columnFamilyHandle, new WriteOptions(),
-                    accountId.getBytes(),
-                    accountSerializer.serialize(account).getBytes());
+            long start = System.nanoTime();
+            byte[] key = toKey(accountId);
+            byte[] value = toValue(account);
+            db.put(columnFamilyHandle, writeOptions, key, value);
+            WRITE_LATENCY.recordSince(start);
+            BYTES_WRITTEN.add(key.length + value.length);
+
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not insert data into rocksdb");
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts) {
+        ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
+
+        try (WriteBatch writeBatch = new WriteBatch()) {
+            long start = System.nanoTime();
+            for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+                writeBatch.put(columnFamilyHandle,
+                        toKey(entry.getKey()),
+                        toValue(entry.getValue()));
+            }
+            db.write(writeOptions, writeBatch);
+            WRITE_LATENCY.recordSince(start);
+            BYTES_WRITTEN.add(writeBatch.getDataSize());
 
         } catch (RocksDBException e) {
             LOG.error(e.getMessage(), e);
@@ -53,30 +159,589 @@ public class RocksDbStore implements Store {
         }
     }
 
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+        if (events.isEmpty()) {
+            putAll(accounts);
+            return;
+        }
+        writeAll(accounts, events, null);
+    }
+
+    @Override
+    public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+        writeAll(accounts, events, records);
+    }
+
     @Override
     public Account get(String accountId) {
         ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
         try {
+            long start = System.nanoTime();
             byte[] val = db.get(columnFamilyHandle, accountId.getBytes());
+            GET_LATENCY.recordSince(start);
             if (val == null || val.length == 0) {
                 return null;
             }
-            return accountSerializer.deserialize(new String(val));
+            BYTES_READ.add(val.length);
+            return accountCodec.decode(val);
+
+        } catch (Throwable e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not get data from RocksDb");
+        }
+    }
 
+    @Override
+    public Account getUnlocked(String accountId) {
+        return get(accountId);
+    }
+
+    /**
+     * Reads the accounts from one snapshot. Account writes of one operation are one WriteBatch,
+     * so a snapshot contains all of them or none
+     */
+    @Override
+    public Map<String, Account> getAll(Collection<String> accountIds) {
+        ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
+        Map<String, Account> accounts = new HashMap<>();
+        Snapshot snapshot = db.getSnapshot();
+        try (ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot)) {
+            long start = System.nanoTime();
+            for (String accountId : accountIds) {
+                byte[] val = db.get(columnFamilyHandle, readOptions, toKey(accountId));
+                if (val != null && val.length > 0) {
+                    BYTES_READ.add(val.length);
+                    accounts.put(accountId, accountCodec.decode(val));
+                }
+            }
+            GET_LATENCY.recordSince(start);
+            return accounts;
         } catch (Throwable e) {
             LOG.error(e.getMessage(), e);
             throw new RuntimeException("Can not get data from RocksDb");
+        } finally {
+            db.releaseSnapshot(snapshot);
         }
     }
 
     @Override
     public void delete(String accountId) {
         try {
-            db.delete(accountId.getBytes());
+            long start = System.nanoTime();
+            db.delete(getHandle(COLUMN_FAMILY), writeOptions, toKey(accountId));
+            WRITE_LATENCY.recordSince(start);
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not delete data in RocksDb");
+        }
+    }
+
+    /**
+     * RocksDb detects conflicts at commit by sequence numbers of the keys read for update,
+     * so writes made outside of transactions are detected as well
+     */
+    @Override
+    public StoreTransaction beginTransaction() {
+        if (transactionDb == null) {
+            throw new RuntimeException("RocksDb is not opened with optimistic transactions");
+        }
+        return new RocksDbTransaction(transactionDb.beginTransaction(writeOptions));
+    }
+
+    @Override
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public List<TransferEvent> readEvents(long fromSequence, int maxEvents) {
+        List<TransferEvent> events = new ArrayList<>();
+        try (RocksIterator iterator = db.newIterator(getHandle(JOURNAL_COLUMN_FAMILY))) {
+            iterator.seek(TransferEventCodec.encodeSequence(Math.max(1, fromSequence)));
+            while (iterator.isValid() && events.size() < maxEvents) {
+                events.add(TransferEventCodec.decode(TransferEventCodec.decodeSequence(iterator.key()),
+                        iterator.value()));
+                iterator.next();
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Reads one page with an iterator, which sees an implicit snapshot of the moment it was created.
+     * Balances of parts of split accounts are added to their accounts
+     */
+    @Override
+    public List<Account> scanAccounts(@Nullable String fromAccountId, int limit) {
+        List<Account> accounts = new ArrayList<>();
+        try (ReadOptions readOptions = new ReadOptions().setFillCache(false);
+             RocksIterator iterator = db.newIterator(getHandle(COLUMN_FAMILY), readOptions)) {
+            if (fromAccountId == null) {
+                iterator.seekToFirst();
+            } else {
+                iterator.seek(toKey(fromAccountId));
+            }
+            while (iterator.isValid() && accounts.size() < limit) {
+                if (AccountIds.isPartKey(iterator.key())) {
+                    iterator.next();
+                } else {
+                    accounts.add(readWithParts(iterator, readOptions));
+                }
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Splits the accounts of one snapshot into key ranges which are summed in parallel by scan threads,
+     * every range is streamed by its own iterator without filling the block cache
+     */
+    @Override
+    public BalanceTotal totalBalance() {
+        Snapshot snapshot = db.getSnapshot();
+        try {
+            List<byte[]> lowerBounds = splitKeyRanges(snapshot);
+            List<CompletableFuture<BalanceTotal>> futures = new ArrayList<>();
+            for (int i = 0; i < lowerBounds.size(); i++) {
+                byte[] from = lowerBounds.get(i);
+                byte[] to = i + 1 < lowerBounds.size() ? lowerBounds.get(i + 1) : null;
+                futures.add(CompletableFuture.supplyAsync(() -> sumBalances(snapshot, from, to), scanExecutor));
+            }
+            // allOf completes after every range, so that the snapshot is not released under a running iterator
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            BalanceTotal total = new BalanceTotal();
+            for (CompletableFuture<BalanceTotal> future : futures) {
+                total.merge(future.join());
+            }
+            return total;
+        } catch (RuntimeException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not get data from RocksDb");
+        } finally {
+            db.releaseSnapshot(snapshot);
+        }
+    }
+
+    @Override
+    public void putRecord(String key, IdempotencyRecord record) {
+        try {
+            db.put(getHandle(IDEMPOTENCY_COLUMN_FAMILY), writeOptions, toKey(key), IdempotencyRecordCodec.encode(record));
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not insert data into rocksdb");
+        }
+    }
+
+    @Override
+    public IdempotencyRecord getRecord(String key) {
+        try {
+            byte[] val = db.get(getHandle(IDEMPOTENCY_COLUMN_FAMILY), toKey(key));
+            return val == null ? null : IdempotencyRecordCodec.decode(val);
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not get data from RocksDb");
+        }
+    }
+
+    /**
+     * The Java API has no compaction filters, so expired keys are found by a scan of the column family
+     * and deleted in one batch
+     */
+    @Override
+    public int deleteExpiredRecords(long nowMillis) {
+        ColumnFamilyHandle handle = getHandle(IDEMPOTENCY_COLUMN_FAMILY);
+        int deleted = 0;
+        try (WriteBatch writeBatch = new WriteBatch();
+             RocksIterator iterator = db.newIterator(handle)) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                if (IdempotencyRecordCodec.decode(iterator.value()).isExpired(nowMillis)) {
+                    writeBatch.delete(handle, iterator.key());
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                db.write(writeOptions, writeBatch);
+            }
         } catch (RocksDBException e) {
             LOG.error(e.getMessage(), e);
             throw new RuntimeException("Can not delete data in RocksDb");
         }
+        return deleted;
+    }
+
+    @Override
+    public List<PendingTransfer> readPendingTransfers() {
+        List<PendingTransfer> transfers = new ArrayList<>();
+        try (RocksIterator iterator = db.newIterator(getHandle(PENDING_TRANSFER_COLUMN_FAMILY))) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                transfers.add(PendingTransferCodec.decode(new String(iterator.key()), iterator.value()));
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * Commits writes collected by GroupCommitStore as one WriteBatch
+     */
+    void write(List<PendingWrite> pendingWrites) throws RocksDBException {
+        ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
+
+        journalLock.lock();
+        try {
+            try (WriteBatch writeBatch = new WriteBatch()) {
+                long sequence = lastSequence;
+                long start = System.nanoTime();
+                for (PendingWrite pendingWrite : pendingWrites) {
+                    byte[][] keys = pendingWrite.getKeys();
+                    byte[][] values = pendingWrite.getValues();
+                    for (int i = 0; i < keys.length; i++) {
+                        if (values[i] == null) {
+                            writeBatch.delete(columnFamilyHandle, keys[i]);
+                        } else {
+                            writeBatch.put(columnFamilyHandle, keys[i], values[i]);
+                        }
+                    }
+                    sequence = appendEvents(writeBatch, pendingWrite.getEvents(), sequence);
+                    putRecords(batchWriter(writeBatch), pendingWrite.getRecords());
+                }
+                db.write(writeOptions, writeBatch);
+                lastSequence = sequence;
+                WRITE_LATENCY.recordSince(start);
+                BYTES_WRITTEN.add(writeBatch.getDataSize());
+            }
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * @return whether an account is stored under the key
+     */
+    boolean containsAccount(byte[] key) throws RocksDBException {
+        return db.get(getHandle(COLUMN_FAMILY), key) != null;
+    }
+
+    /**
+     * Moves table files built by SstFileWriter into the accounts column family.
+     * Keys of the files get a sequence number newer than any existing write
+     */
+    void ingestAccounts(List<String> files) throws RocksDBException {
+        try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions(true, true, true, true)) {
+            db.ingestExternalFile(getHandle(COLUMN_FAMILY), files, ingestOptions);
+        }
+    }
+
+    /**
+     * Writes encoded accounts keyed by their keys in one write batch, which goes through the WAL
+     */
+    void writeAccounts(Map<byte[], byte[]> accounts) throws RocksDBException {
+        ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
+        try (WriteBatch writeBatch = new WriteBatch()) {
+            for (Map.Entry<byte[], byte[]> entry : accounts.entrySet()) {
+                writeBatch.put(columnFamilyHandle, entry.getKey(), entry.getValue());
+            }
+            db.write(writeOptions, writeBatch);
+        }
+    }
+
+    /**
+     * Passes all accounts of a consistent snapshot to the consumer in key order, split accounts
+     * with the balances of their parts added.
+     * Accounts are read without filling the block cache, so a scan does not evict hot accounts
+     */
+    void scanAccounts(AccountConsumer consumer) throws IOException {
+        Snapshot snapshot = db.getSnapshot();
+        try (ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot).setFillCache(false);
+             RocksIterator iterator = db.newIterator(getHandle(COLUMN_FAMILY), readOptions)) {
+            iterator.seekToFirst();
+            while (iterator.isValid()) {
+                if (AccountIds.isPartKey(iterator.key())) {
+                    iterator.next();
+                } else {
+                    Account account = readWithParts(iterator, readOptions);
+                    consumer.accept(account.getId(), account);
+                }
+            }
+        } finally {
+            db.releaseSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Creates a checkpoint (hard links of table files and a copy of the WAL) in a new directory next to the store
+     * @return path of the checkpoint directory, which the caller deletes
+     */
+    String createCheckpoint() {
+        String checkpointPath = path + ".checkpoint-" + System.nanoTime();
+        try (Checkpoint checkpoint = Checkpoint.create(db)) {
+            checkpoint.createCheckpoint(checkpointPath);
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not create a checkpoint of RocksDb");
+        }
+        return checkpointPath;
+    }
+
+    long latestSequenceNumber() {
+        return db.getLatestSequenceNumber();
+    }
+
+    /**
+     * @return iterator over write batches of the WAL, starting from the batch with the sequence number
+     */
+    TransactionLogIterator updatesSince(long sequence) throws RocksDBException {
+        return db.getUpdatesSince(sequence);
+    }
+
+    /**
+     * Writes a batch of the leader's WAL together with the leader sequence number following it,
+     * so that after a restart the follower continues exactly after the batches it has
+     */
+    void applyReplicated(byte[] batch, long nextSequence) {
+        try (WriteBatch writeBatch = new WriteBatch(batch)) {
+            long start = System.nanoTime();
+            writeBatch.put(getHandle(DEFAULT_COLUMN_FAMILY), REPLICATED_SEQUENCE_KEY,
+                    ByteBuffer.allocate(Long.BYTES).putLong(nextSequence).array());
+            db.write(writeOptions, writeBatch);
+            WRITE_LATENCY.recordSince(start);
+            BYTES_WRITTEN.add(batch.length);
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not apply replicated updates to RocksDb");
+        }
+    }
+
+    /**
+     * @return leader sequence number of the next batch to apply. A store opened from a checkpoint
+     * has not applied any batch yet and continues after the last sequence number of the checkpoint
+     */
+    long nextReplicatedSequence() {
+        try {
+            byte[] val = db.get(getHandle(DEFAULT_COLUMN_FAMILY), REPLICATED_SEQUENCE_KEY);
+            return val == null ? db.getLatestSequenceNumber() + 1 : ByteBuffer.wrap(val).getLong();
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not get data from RocksDb");
+        }
+    }
+
+    /**
+     * Flushes memtables of all column families to table files, used by benchmarks to read from table files
+     */
+    void flush() {
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+            for (ColumnFamilyHandle handle : handles.values()) {
+                db.flush(flushOptions, handle);
+            }
+        } catch (RocksDBException e) {
+            LOG.error(e.getMessage(), e);
+            throw new RuntimeException("Can not flush RocksDb");
+        }
+    }
+
+    byte[] toKey(String accountId) {
+        return accountId.getBytes();
+    }
+
+    byte[] toValue(Account account) {
+        return accountCodec.encode(account);
+    }
+
+    /**
+     * Finds distinct first bytes of account keys by one seek per byte, and divides them into
+     * at most numOfScanRanges ranges with the same number of first bytes. The Java API has no approximate
+     * sizes of key ranges; ids are random UUIDs (or ids of imported systems), so first bytes spread
+     * accounts evenly enough
+     * @return lower bounds of ranges in key order, null for the first range
+     */
+    private List<byte[]> splitKeyRanges(Snapshot snapshot) {
+        List<Integer> firstBytes = new ArrayList<>();
+        try (ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot).setFillCache(false);
+             RocksIterator iterator = db.newIterator(getHandle(COLUMN_FAMILY), readOptions)) {
+            iterator.seekToFirst();
+            while (iterator.isValid()) {
+                byte[] key = iterator.key();
+                int firstByte = key.length == 0 ? -1 : key[0] & 0xFF;
+                if (firstByte >= 0) {
+                    firstBytes.add(firstByte);
+                }
+                if (firstByte == 0xFF) {
+                    break;
+                }
+                iterator.seek(new byte[]{(byte) (firstByte + 1)});
+            }
+        }
+        int numOfRanges = Math.max(1, Math.min(numOfScanRanges, firstBytes.size()));
+        List<byte[]> lowerBounds = new ArrayList<>(numOfRanges);
+        lowerBounds.add(null);
+        for (int i = 1; i < numOfRanges; i++) {
+            lowerBounds.add(new byte[]{(byte) (int) firstBytes.get(i * firstBytes.size() / numOfRanges)});
+        }
+        return lowerBounds;
+    }
+
+    /**
+     * @param from the first key of the range, null for the first key of the column family
+     * @param to the key after the range, null for the end of the column family
+     */
+    private BalanceTotal sumBalances(Snapshot snapshot, @Nullable byte[] from, @Nullable byte[] to) {
+        BalanceTotal total = new BalanceTotal();
+        try (Slice upperBound = to == null ? null : new Slice(to);
+             ReadOptions readOptions = new ReadOptions()
+                     .setSnapshot(snapshot)
+                     .setFillCache(false)
+                     .setReadaheadSize(SCAN_READAHEAD_BYTES)) {
+            if (upperBound != null) {
+                readOptions.setIterateUpperBound(upperBound);
+            }
+            try (RocksIterator iterator = db.newIterator(getHandle(COLUMN_FAMILY), readOptions)) {
+                if (from == null) {
+                    iterator.seekToFirst();
+                } else {
+                    iterator.seek(from);
+                }
+                for (; iterator.isValid(); iterator.next()) {
+                    Account account = accountCodec.decode(iterator.value());
+                    if (AccountIds.isPartKey(iterator.key())) {
+                        total.addPart(account);
+                    } else {
+                        total.add(account);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Reads the account at the iterator and adds the balances of its parts "[account id]#k".
+     * Parts usually follow the account, they are read by another iterator only if an id starting with the account id
+     * and a character before the separator lies between them
+     * @return the account, the iterator is left after it and its following parts
+     */
+    private Account readWithParts(RocksIterator iterator, ReadOptions readOptions) {
+        byte[] key = iterator.key();
+        byte[] value = iterator.value();
+        BYTES_READ.add(value.length);
+        Account account = accountCodec.decode(value);
+        iterator.next();
+        if (addParts(iterator, key, account) || !iterator.isValid()) {
+            return account;
+        }
+        byte[] nextKey = iterator.key();
+        if (startsWith(nextKey, key) && nextKey.length > key.length && nextKey[key.length] < AccountIds.PART_SEPARATOR) {
+            try (RocksIterator partIterator = db.newIterator(getHandle(COLUMN_FAMILY), readOptions)) {
+                byte[] firstPart = Arrays.copyOf(key, key.length + 1);
+                firstPart[key.length] = AccountIds.PART_SEPARATOR;
+                partIterator.seek(firstPart);
+                addParts(partIterator, key, account);
+            }
+        }
+        return account;
+    }
+
+    /**
+     * @return true if the iterator was at a part of the account, it is left after the parts
+     */
+    private boolean addParts(RocksIterator iterator, byte[] accountKey, Account account) {
+        boolean added = false;
+        while (iterator.isValid() && isPartOf(iterator.key(), accountKey)) {
+            byte[] value = iterator.value();
+            BYTES_READ.add(value.length);
+            Account part = accountCodec.decode(value);
+            account.add(Money.ofUnits(part.getBalanceUnits(), part.getBalanceScale()));
+            added = true;
+            iterator.next();
+        }
+        return added;
+    }
+
+    private static boolean isPartOf(byte[] key, byte[] accountKey) {
+        return key.length > accountKey.length && key[accountKey.length] == AccountIds.PART_SEPARATOR
+                && startsWith(key, accountKey);
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private void writeAll(Map<String, Account> accounts, List<TransferEvent> events, @Nullable RecordWrites records) {
+        ColumnFamilyHandle columnFamilyHandle = getHandle(COLUMN_FAMILY);
+
+        journalLock.lock();
+        try {
+            try (WriteBatch writeBatch = new WriteBatch()) {
+                long start = System.nanoTime();
+                for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+                    writeBatch.put(columnFamilyHandle,
+                            toKey(entry.getKey()),
+                            toValue(entry.getValue()));
+                }
+                long sequence = appendEvents(writeBatch, events, lastSequence);
+                putRecords(batchWriter(writeBatch), records);
+                db.write(writeOptions, writeBatch);
+                lastSequence = sequence;
+                WRITE_LATENCY.recordSince(start);
+                BYTES_WRITTEN.add(writeBatch.getDataSize());
+
+            } catch (RocksDBException e) {
+                LOG.error(e.getMessage(), e);
+                throw new RuntimeException("Can not insert data into rocksdb");
+            }
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the events to the journal column family of the batch, numbering them after lastSequence
+     * @return sequence number of the last added event
+     */
+    private long appendEvents(WriteBatch writeBatch, List<TransferEvent> events, long lastSequence)
+            throws RocksDBException {
+        ColumnFamilyHandle journalHandle = getHandle(JOURNAL_COLUMN_FAMILY);
+        long sequence = lastSequence;
+        for (TransferEvent event : events) {
+            sequence++;
+            writeBatch.put(journalHandle, TransferEventCodec.encodeSequence(sequence), TransferEventCodec.encode(event));
+        }
+        return sequence;
+    }
+
+    /**
+     * Adds the records to their column families, through the writer of a WriteBatch or of a transaction
+     */
+    private void putRecords(KeyWriter writer, @Nullable RecordWrites records) throws RocksDBException {
+        if (records == null) {
+            return;
+        }
+        ColumnFamilyHandle pendingHandle = getHandle(PENDING_TRANSFER_COLUMN_FAMILY);
+        for (Map.Entry<String, PendingTransfer> entry : records.getPendingTransfers().entrySet()) {
+            writer.write(pendingHandle, toKey(entry.getKey()),
+                    entry.getValue() == null ? null : PendingTransferCodec.encode(entry.getValue()));
+        }
+        ColumnFamilyHandle idempotencyHandle = getHandle(IDEMPOTENCY_COLUMN_FAMILY);
+        for (Map.Entry<String, IdempotencyRecord> entry : records.getIdempotencyRecords().entrySet()) {
+            writer.write(idempotencyHandle, toKey(entry.getKey()), IdempotencyRecordCodec.encode(entry.getValue()));
+        }
+    }
+
+    private static KeyWriter batchWriter(WriteBatch writeBatch) {
+        return (handle, key, value) -> {
+            if (value == null) {
+                writeBatch.delete(handle, key);
+            } else {
+                writeBatch.put(handle, key, value);
+            }
+        };
+    }
+
+    private long readLastSequence() {
+        try (RocksIterator iterator = db.newIterator(getHandle(JOURNAL_COLUMN_FAMILY))) {
+            iterator.seekToLast();
+            return iterator.isValid() ? TransferEventCodec.decodeSequence(iterator.key()) : 0;
+        }
     }
 
     private ColumnFamilyHandle getHandle(String family) {
@@ -85,7 +750,8 @@ public class RocksDbStore implements Store {
             ColumnFamilyHandle handle = null;
             try {
                 byte[] bytes = familyKey.getBytes();
-                ColumnFamilyDescriptor descriptor = new ColumnFamilyDescriptor(bytes);
+                ColumnFamilyDescriptor descriptor = new ColumnFamilyDescriptor(bytes,
+                        rocksDbOptions.createColumnFamilyOptions(isPointLookupFamily(familyKey)));
                 handle = db.createColumnFamily(descriptor);
             } catch (Exception ex) {
                 LOG.error(ex.getMessage(), ex);
@@ -95,19 +761,45 @@ public class RocksDbStore implements Store {
         });
     }
 
-    private static DBOptions createDbOptions() {
-        return new DBOptions()
-                .setCreateIfMissing(true)
-                .setCreateMissingColumnFamilies(true);
+    /**
+     * Accounts are read by single keys and almost always exist. The journal is read by ranges,
+     * and most looked up idempotency keys are new, so they need filters of the last level
+     */
+    private static boolean isPointLookupFamily(String family) {
+        return COLUMN_FAMILY.equals(family);
+    }
+
+    /**
+     * Exports RocksDb internal tickers, they are read from the native statistics only when metrics are scraped
+     */
+    private void registerStatistics() {
+        Metrics.counter("rocksdb_block_cache_hit_total", "Block cache hits",
+                () -> statistics.getTickerCount(TickerType.BLOCK_CACHE_HIT));
+        Metrics.counter("rocksdb_block_cache_miss_total", "Block cache misses",
+                () -> statistics.getTickerCount(TickerType.BLOCK_CACHE_MISS));
+        Metrics.counter("rocksdb_bytes_written_total", "Bytes written by RocksDb",
+                () -> statistics.getTickerCount(TickerType.BYTES_WRITTEN));
+        Metrics.counter("rocksdb_bytes_read_total", "Bytes read by RocksDb",
+                () -> statistics.getTickerCount(TickerType.BYTES_READ));
+        Metrics.counter("rocksdb_compaction_read_bytes_total", "Bytes read by compactions",
+                () -> statistics.getTickerCount(TickerType.COMPACT_READ_BYTES));
+        Metrics.counter("rocksdb_compaction_write_bytes_total", "Bytes written by compactions",
+                () -> statistics.getTickerCount(TickerType.COMPACT_WRITE_BYTES));
+        Metrics.counter("rocksdb_stall_micros_total", "Time writes were stalled because of compactions and flushes",
+                () -> statistics.getTickerCount(TickerType.STALL_MICROS));
     }
 
     private List<ColumnFamilyDescriptor> createFamilyColumns(String path) {
         List<ColumnFamilyDescriptor> familyList = new ArrayList<>();
-        familyList.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY));
+        familyList.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY,
+                rocksDbOptions.createColumnFamilyOptions(false)));
 
         try {
             List<byte[]> families = RocksDB.listColumnFamilies(new Options(), path);
-            families.forEach(familyName -> familyList.add(new ColumnFamilyDescriptor(familyName)));
+            families.stream()
+                    .filter(familyName -> !Arrays.equals(familyName, RocksDB.DEFAULT_COLUMN_FAMILY))
+                    .forEach(familyName -> familyList.add(new ColumnFamilyDescriptor(familyName,
+                            rocksDbOptions.createColumnFamilyOptions(isPointLookupFamily(new String(familyName))))));
 
         } catch (RocksDBException e) {
             LOG.error(e.getMessage(), e);
@@ -116,17 +808,21 @@ public class RocksDbStore implements Store {
         return familyList;
     }
 
-    private RocksDB startDb(List<ColumnFamilyDescriptor> familyList, List<ColumnFamilyHandle> columns, String path) {
-        DBOptions dbOptions = createDbOptions();
+    private RocksDB startDb(List<ColumnFamilyDescriptor> familyList, List<ColumnFamilyHandle> columns, String path,
+                            boolean optimisticTransactions) {
+        DBOptions dbOptions = rocksDbOptions.createDbOptions(statistics);
         RocksDB db;
         try {
-            db = RocksDB.open(dbOptions, path,
+            db = optimisticTransactions
+                    ? OptimisticTransactionDB.open(dbOptions, path, familyList, columns)
+                    : RocksDB.open(dbOptions, path,
                     familyList,
                     columns);
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                dbOptions.close();
                 db.close();
+                rocksDbOptions.close();
+                statistics.close();
             }));
         } catch (RocksDBException e) {
 
@@ -143,4 +839,132 @@ public class RocksDbStore implements Store {
         }
     }
 
+    private final class RocksDbTransaction implements StoreTransaction {
+
+        private final Transaction transaction;
+        private boolean committed;
+
+        RocksDbTransaction(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public Account getForUpdate(String accountId) {
+            try {
+                long start = System.nanoTime();
+                byte[] val = transaction.getForUpdate(transactionReadOptions, getHandle(COLUMN_FAMILY),
+                        toKey(accountId), true);
+                GET_LATENCY.recordSince(start);
+                if (val == null || val.length == 0) {
+                    return null;
+                }
+                BYTES_READ.add(val.length);
+                return accountCodec.decode(val);
+
+            } catch (RocksDBException e) {
+                LOG.error(e.getMessage(), e);
+                throw new RuntimeException("Can not get data from RocksDb");
+            }
+        }
+
+        @Override
+        public void put(String accountId, Account account) {
+            try {
+                transaction.put(getHandle(COLUMN_FAMILY), toKey(accountId), toValue(account));
+            } catch (RocksDBException e) {
+                LOG.error(e.getMessage(), e);
+                throw new RuntimeException("Can not insert data into rocksdb");
+            }
+        }
+
+        @Override
+        public void delete(String accountId) {
+            try {
+                transaction.delete(getHandle(COLUMN_FAMILY), toKey(accountId));
+            } catch (RocksDBException e) {
+                LOG.error(e.getMessage(), e);
+                throw new RuntimeException("Can not delete data in RocksDb");
+            }
+        }
+
+        /**
+         * Commits with events are serialized by the journal lock like other writes with events.
+         * Journal keys are new, so they are written untracked and never cause conflicts
+         */
+        @Override
+        public void commit(List<TransferEvent> events) {
+            commitWrites(events, null);
+        }
+
+        @Override
+        public void commit(List<TransferEvent> events, RecordWrites records) {
+            commitWrites(events, records);
+        }
+
+        /**
+         * Records are written untracked like journal events, their keys are never read for update
+         */
+        private void commitWrites(List<TransferEvent> events, @Nullable RecordWrites records) {
+            if (!events.isEmpty()) {
+                journalLock.lock();
+            }
+            try {
+                long start = System.nanoTime();
+                long sequence = lastSequence;
+                ColumnFamilyHandle journalHandle = getHandle(JOURNAL_COLUMN_FAMILY);
+                for (TransferEvent event : events) {
+                    sequence++;
+                    transaction.putUntracked(journalHandle, TransferEventCodec.encodeSequence(sequence),
+                            TransferEventCodec.encode(event));
+                }
+                putRecords((handle, key, value) -> {
+                    if (value == null) {
+                        transaction.deleteUntracked(handle, key);
+                    } else {
+                        transaction.putUntracked(handle, key, value);
+                    }
+                }, records);
+                transaction.commit();
+                committed = true;
+                lastSequence = sequence;
+                WRITE_LATENCY.recordSince(start);
+
+            } catch (RocksDBException e) {
+                Status.Code code = e.getStatus() == null ? null : e.getStatus().getCode();
+                // TryAgain: memtables no longer hold enough history to validate the reads
+                if (code == Status.Code.Busy || code == Status.Code.TryAgain) {
+                    throw new TransactionConflictException(e.getMessage());
+                }
+                LOG.error(e.getMessage(), e);
+                throw new RuntimeException("Can not insert data into rocksdb");
+            } finally {
+                if (!events.isEmpty()) {
+                    journalLock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!committed) {
+                try {
+                    transaction.rollback();
+                } catch (RocksDBException e) {
+                    LOG.error(e.getMessage(), e);
+                }
+            }
+            transaction.close();
+        }
+    }
+
+    interface AccountConsumer {
+        void accept(String accountId, Account account) throws IOException;
+    }
+
+    /**
+     * Writes a key to a WriteBatch or to a transaction, a null value deletes the key
+     */
+    private interface KeyWriter {
+        void write(ColumnFamilyHandle handle, byte[] key, @Nullable byte[] value) throws RocksDBException;
+    }
 }
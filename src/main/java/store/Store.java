@@ -1,6 +1,11 @@
 package store;
 
 import model.Account;
+import model.TransferEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Database for keeping accounts
@@ -8,7 +13,43 @@ import model.Account;
 public interface Store {
 
     void put(String accountId, Account account);
+
+    /**
+     * Writes all given accounts atomically: either every account is stored or none of them
+     * @param accounts accounts keyed by account id
+     */
+    void putAll(Map<String, Account> accounts);
+
+    /**
+     * Writes all given accounts and appends the events to the transfer journal atomically
+     * @param accounts accounts keyed by account id
+     * @param events transfers which changed the accounts, in order
+     */
+    void putAll(Map<String, Account> accounts, List<TransferEvent> events);
+
+    /**
+     * Writes all given accounts, appends the events to the transfer journal and writes the records atomically
+     * @param accounts accounts keyed by account id
+     * @param events transfers which changed the accounts, in order
+     * @param records records written together with the accounts
+     */
+    void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records);
+
     Account get(String accountId);
+
+    /**
+     * Reads an account without holding its lock. Unlike get, the read never fills a cache:
+     * a loaded account cached after a concurrent write or delete would be older than the stored one
+     */
+    Account getUnlocked(String accountId);
+
+    /**
+     * Reads the accounts as of one moment: accounts written together by putAll are seen
+     * either all before or all after the write
+     * @return found accounts keyed by account id, missing accounts are absent
+     */
+    Map<String, Account> getAll(Collection<String> accountIds);
+
     void delete(String accountId);
 
 }
@@ -0,0 +1,39 @@
+package store;
+
+import model.Account;
+import model.TransferEvent;
+
+import java.util.List;
+
+/**
+ * Writes of a transaction are not visible to others until commit.
+ * Closing a transaction which was not committed discards its writes
+ */
+public interface StoreTransaction extends AutoCloseable {
+
+    /**
+     * Reads the account and tracks it, so that the commit fails if the account is changed by someone else
+     * after this read
+     * @return null if the account does not exist
+     */
+    Account getForUpdate(String accountId);
+
+    void put(String accountId, Account account);
+
+    void delete(String accountId);
+
+    /**
+     * Writes accounts of the transaction and appends the events to the transfer journal atomically
+     * @throws TransactionConflictException if an account read for update was changed meanwhile,
+     * then nothing is written and the transaction may be retried from the beginning
+     */
+    void commit(List<TransferEvent> events);
+
+    /**
+     * Commits like commit(events) and writes the records in the same atomic write
+     */
+    void commit(List<TransferEvent> events, RecordWrites records);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,41 @@
+package store;
+
+/**
+ * Durability policy for writes to RocksDb
+ */
+public enum SyncPolicy {
+
+    /**
+     * Writes go to the WAL without fsync, they may be lost on a machine crash
+     */
+    NO_SYNC("no-sync"),
+
+    /**
+     * Writes are grouped into batches, each batch is fsync-ed once
+     */
+    SYNC_PER_BATCH("sync-per-batch"),
+
+    /**
+     * Every write is fsync-ed on its own
+     */
+    SYNC_PER_OP("sync-per-op");
+
+    private final String configName;
+
+    SyncPolicy(String configName) {
+        this.configName = configName;
+    }
+
+    public boolean isSync() {
+        return this != NO_SYNC;
+    }
+
+    public static SyncPolicy fromConfig(String configName) {
+        for (SyncPolicy syncPolicy : values()) {
+            if (syncPolicy.configName.equals(configName)) {
+                return syncPolicy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sync policy " + configName);
+    }
+}
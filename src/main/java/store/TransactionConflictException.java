@@ -0,0 +1,13 @@
+package store;
+
+/**
+ * Commit of an optimistic transaction failed because accounts it read were changed by another writer
+ */
+public class TransactionConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TransactionConflictException(String message) {
+        super(message);
+    }
+}
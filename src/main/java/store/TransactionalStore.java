@@ -0,0 +1,10 @@
+package store;
+
+/**
+ * Store with optimistic transactions: nothing is locked while a transaction runs,
+ * accounts read for update are validated when it commits
+ */
+public interface TransactionalStore extends Store {
+
+    StoreTransaction beginTransaction();
+}
@@ -0,0 +1,22 @@
+package store;
+
+import model.TransferEvent;
+
+import java.util.List;
+
+/**
+ * Append-only log of transfers. Events are numbered by consecutive sequence numbers starting from 1
+ * in the order they are committed, and are written atomically with the balances they changed
+ */
+public interface TransferJournal {
+
+    /**
+     * @return sequence number of the last committed event, 0 if the journal is empty
+     */
+    long lastSequence();
+
+    /**
+     * @return up to maxEvents committed events with sequence numbers starting from fromSequence, in order
+     */
+    List<TransferEvent> readEvents(long fromSequence, int maxEvents);
+}
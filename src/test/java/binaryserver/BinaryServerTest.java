@@ -0,0 +1,164 @@
+package binaryserver;
+
+import config.BinarySettings;
+import engine.AccountEngine;
+import httpserver.OperationResult;
+import model.Money;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BinaryServerTest {
+
+    private static final int MAX_PIPELINED_REQUESTS = 16;
+
+    private static final AccountEngine accountEngine = mock(AccountEngine.class);
+    private static BinaryServer binaryServer;
+
+    @BeforeClass
+    public static void setUp() {
+        when(accountEngine.getAccount(anyString()))
+                .thenAnswer(invocation -> OperationResult.success((String) invocation.getArguments()[0]));
+        when(accountEngine.transferMoney(anyString(), anyString(), any(Money.class)))
+                .thenReturn(OperationResult.error("Source account does not exist."));
+        binaryServer = new BinaryServer(accountEngine, settings(), 4);
+        binaryServer.start();
+    }
+
+    private static BinarySettings settings() {
+        return new BinarySettings() {
+            @Override
+            public int port() {
+                return 0;
+            }
+
+            @Override
+            public int maxFrameBytes() {
+                return 1024;
+            }
+
+            @Override
+            public int maxPipelinedRequests() {
+                return MAX_PIPELINED_REQUESTS;
+            }
+        };
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        binaryServer.stop();
+    }
+
+    @Test
+    public void testPipelinedResponsesAreInRequestOrder() throws IOException {
+        // more requests than the pipelining limit, so that reading pauses and resumes
+        int numOfRequests = MAX_PIPELINED_REQUESTS * 20;
+        try (BinaryClient client = new BinaryClient("127.0.0.1", binaryServer.getPort())) {
+            for (int i = 0; i < numOfRequests; i++) {
+                client.getAccount("account-" + i);
+            }
+            for (int i = 0; i < numOfRequests; i++) {
+                BinaryClient.Response response = client.readResponse();
+                Assert.assertTrue(response.isSuccess());
+                Assert.assertEquals("account-" + i, response.getText());
+            }
+        }
+    }
+
+    @Test
+    public void testTransferIsPassedToEngine() throws IOException {
+        try (BinaryClient client = new BinaryClient("127.0.0.1", binaryServer.getPort())) {
+            client.transferMoney("from", "to", Money.of(new BigDecimal("10.25")));
+            BinaryClient.Response response = client.readResponse();
+            Assert.assertTrue(response.isError());
+            Assert.assertEquals("Source account does not exist.", response.getText());
+        }
+        verify(accountEngine).transferMoney(eq("from"), eq("to"), any(Money.class));
+    }
+
+    @Test
+    public void testInvalidRequestIsAnsweredAndConnectionStaysOpen() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", binaryServer.getPort()))) {
+            // an unknown opcode followed by a valid GET
+            ByteBuffer requests = ByteBuffer.allocate(64);
+            requests.putInt(1).put((byte) 42);
+            BinaryProtocol.writeRequest(requests, BinaryProtocol.GET, "account", null, null);
+            requests.flip();
+            channel.write(requests);
+
+            ByteBuffer responses = ByteBuffer.allocate(64);
+            while (responses.position() < 2 * (BinaryProtocol.LENGTH_BYTES + 1) + "Invalid request".length()
+                    + "account".length()) {
+                channel.read(responses);
+            }
+            responses.flip();
+            Assert.assertEquals(1 + "Invalid request".length(), responses.getInt());
+            Assert.assertEquals(BinaryProtocol.STATUS_BAD_REQUEST, responses.get());
+            responses.position(responses.position() + "Invalid request".length());
+            Assert.assertEquals(1 + "account".length(), responses.getInt());
+            Assert.assertEquals(BinaryProtocol.STATUS_SUCCESS, responses.get());
+        }
+    }
+
+    @Test
+    public void testOversizedFrameClosesConnection() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", binaryServer.getPort()))) {
+            ByteBuffer request = ByteBuffer.allocate(BinaryProtocol.LENGTH_BYTES);
+            request.putInt(1_000_000).flip();
+            channel.write(request);
+            Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        }
+    }
+
+    @Test
+    public void testStopAnswersRequestsAlreadyRead() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AccountEngine slowEngine = mock(AccountEngine.class);
+        when(slowEngine.getAccount(anyString())).thenAnswer(invocation -> {
+            executing.countDown();
+            release.await();
+            return OperationResult.success((String) invocation.getArguments()[0]);
+        });
+        BinaryServer server = new BinaryServer(slowEngine, settings(), 1);
+        server.start();
+        try (BinaryClient client = new BinaryClient("127.0.0.1", server.getPort())) {
+            for (int i = 0; i < 3; i++) {
+                client.getAccount("account-" + i);
+            }
+            client.flush();
+            executing.await();
+            Thread stopping = new Thread(server::stop);
+            stopping.start();
+            while (stopping.isAlive() && stopping.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals("account-" + i, client.readResponse().getText());
+            }
+            stopping.join();
+            try {
+                client.readResponse();
+                Assert.fail();
+            } catch (EOFException e) {
+                // the connection is closed after the last response
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SlotRingTest {
+
+    @Test
+    public void testRingIsBounded() {
+        SlotRing<long[]> ring = new SlotRing<>(4, () -> new long[1]);
+        for (int i = 0; i < 4; i++) {
+            long position = ring.tryClaim();
+            Assert.assertEquals(i, position);
+            ring.slot(position)[0] = i;
+            ring.publish(position);
+        }
+        Assert.assertEquals(-1, ring.tryClaim());
+
+        List<Long> values = new ArrayList<>();
+        Assert.assertEquals(3, ring.drain(3, slot -> values.add(slot[0])));
+        Assert.assertEquals(1, ring.drain(3, slot -> values.add(slot[0])));
+        Assert.assertEquals(0, ring.drain(3, slot -> values.add(slot[0])));
+        Assert.assertEquals(4, ring.tryClaim());
+        Assert.assertEquals("[0, 1, 2, 3]", values.toString());
+    }
+
+    @Test
+    public void testUnpublishedSlotIsNotDrained() {
+        SlotRing<long[]> ring = new SlotRing<>(4, () -> new long[1]);
+        long first = ring.tryClaim();
+        long second = ring.tryClaim();
+        ring.publish(second);
+
+        Assert.assertEquals(0, ring.drain(4, slot -> {}));
+        ring.publish(first);
+        Assert.assertEquals(2, ring.drain(4, slot -> {}));
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        int numOfThreads = 4;
+        int valuesPerProducer = 100000;
+        SlotRing<long[]> ring = new SlotRing<>(64, () -> new long[1]);
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        long total = (long) numOfThreads * valuesPerProducer;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numOfThreads; i++) {
+            threads.add(new Thread(() -> {
+                for (int value = 1; value <= valuesPerProducer; value++) {
+                    long position;
+                    while ((position = ring.tryClaim()) < 0) {
+                        Thread.yield();
+                    }
+                    ring.slot(position)[0] = value;
+                    ring.publish(position);
+                }
+            }));
+            threads.add(new Thread(() -> {
+                while (count.get() < total) {
+                    if (ring.drain(8, slot -> {
+                        sum.addAndGet(slot[0]);
+                        count.incrementAndGet();
+                    }) == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(total, count.get());
+        Assert.assertEquals(numOfThreads * (long) valuesPerProducer * (valuesPerProducer + 1) / 2, sum.get());
+    }
+}
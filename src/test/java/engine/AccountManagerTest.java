@@ -1,12 +1,29 @@
 package engine;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import fx.FxRates;
+import fx.FxSnapshot;
 import httpserver.OperationResult;
 import model.Account;
 import model.AccountSerializer;
+import model.IdempotencyRecord;
+import model.Money;
+import model.Transfer;
+import model.TransferEvent;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import store.RecordWrites;
 import store.Store;
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 
@@ -38,8 +55,12 @@ public class AccountManagerTest {
         when(store.get(id)).thenReturn(account);
         when(store.get(id1)).thenReturn(account1);
 
+        Map<String, Account> changedAccounts = new HashMap<>();
+        changedAccounts.put(id, account);
+        changedAccounts.put(id1, account1);
+
         OperationResult operationResult = accountManager
-                .transferMoney(id, id1, new BigDecimal(50));
+                .transferMoney(id, id1, Money.of(new BigDecimal(50)));
 
         try {
             Assert.assertFalse(operationResult.isError());
@@ -47,14 +68,84 @@ public class AccountManagerTest {
             Assert.assertEquals(account.getBalance().intValue(), 50);
             verify(store).get(id);
             verify(store).get(id1);
-            verify(store).put(id, account);
-            verify(store).put(id1, account1);
+            List<TransferEvent> events = verifyPutAll(changedAccounts);
+            Assert.assertEquals(1, events.size());
+            Assert.assertEquals(id, events.get(0).getFrom());
+            Assert.assertEquals(id1, events.get(0).getTo());
+            Assert.assertEquals(50, events.get(0).getAmount().toBigDecimal().intValue());
             verifyNoMoreInteractions(store);
         } catch (Exception e) {
             Assert.fail();
         }
     }
 
+    @Test
+    public void testTransferBatch() {
+        String id = "1234";
+        Account account = new Account();
+        account.setName("Alice");
+        account.setId(id);
+        account.setBalance(new BigDecimal(100));
+
+        String id1 = "5678";
+        Account account1 = new Account();
+        account1.setName("Bob");
+        account1.setId(id1);
+        account1.setBalance(new BigDecimal(500));
+
+        when(store.get(id)).thenReturn(account);
+        when(store.get(id1)).thenReturn(account1);
+
+        List<OperationResult> results = accountManager.transferBatch(Arrays.asList(
+                createTransfer(id, id1, 80),
+                createTransfer(id, id1, 80),
+                createTransfer(id1, id, 200),
+                createTransfer(id, "unknown", 1)));
+
+        Map<String, Account> changedAccounts = new HashMap<>();
+        changedAccounts.put(id, account);
+        changedAccounts.put(id1, account1);
+
+        Assert.assertEquals(4, results.size());
+        Assert.assertFalse(results.get(0).isError());
+        Assert.assertTrue(results.get(1).isError());
+        Assert.assertFalse(results.get(2).isError());
+        Assert.assertTrue(results.get(3).isError());
+        Assert.assertEquals(220, account.getBalance().intValue());
+        Assert.assertEquals(380, account1.getBalance().intValue());
+        verify(store).get(id);
+        verify(store).get(id1);
+        verify(store).get("unknown");
+        // only successful transfers are journaled
+        List<TransferEvent> events = verifyPutAll(changedAccounts);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(id1, events.get(1).getFrom());
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void testFailedChunkKeepsResultsOfWrittenChunks() {
+        Account from = new Account();
+        from.setId("from");
+        from.setBalance(new BigDecimal(1000));
+        Account to = new Account();
+        to.setId("to");
+        to.setBalance(BigDecimal.ZERO);
+        when(store.get("from")).thenReturn(from);
+        when(store.get("to")).thenReturn(to);
+        // the first chunk of 256 transfers is written, the write of the second one fails
+        doNothing().doThrow(new RuntimeException("Can not write data into rocksdb"))
+                .when(store).putAll(anyMapOf(String.class, Account.class), anyListOf(TransferEvent.class));
+
+        List<OperationResult> results = accountManager.transferBatch(
+                Collections.nCopies(300, createTransfer("from", "to", 1)));
+
+        Assert.assertEquals(300, results.size());
+        Assert.assertEquals(OperationResult.success(), results.get(255));
+        Assert.assertSame(AccountOperations.NOT_EXECUTED, results.get(256));
+        Assert.assertSame(AccountOperations.NOT_EXECUTED, results.get(299));
+    }
+
     @Test
     public void testGetAccount() {
 
@@ -84,7 +175,7 @@ public class AccountManagerTest {
         account.setBalance(BigDecimal.ZERO);
 
         when(store.get(id)).thenReturn(account);
-        OperationResult operationResult = accountManager.changeBalance(id, BigDecimal.TEN);
+        OperationResult operationResult = accountManager.changeBalance(id, Money.of(BigDecimal.TEN));
 
         try {
             Assert.assertFalse(operationResult.isError());
@@ -98,6 +189,25 @@ public class AccountManagerTest {
     }
 
 
+    @Test
+    public void testRecordsAreWrittenWithChangedAccount() {
+        String id = "1234";
+        Account account = new Account();
+        account.setName("Bob");
+        account.setId(id);
+        account.setBalance(BigDecimal.ZERO);
+        when(store.get(id)).thenReturn(account);
+        RecordWrites records = new RecordWrites().putIdempotencyRecord("key",
+                new IdempotencyRecord("changeBalance", false, "Operation completed", Long.MAX_VALUE));
+
+        Assert.assertFalse(accountManager.changeBalance(id, Money.of(BigDecimal.TEN), records).isError());
+        Assert.assertTrue(accountManager.changeBalance(id, Money.of(new BigDecimal(-20)), records).isError());
+
+        // only the successful change writes the records
+        verify(store).putAll(Collections.singletonMap(id, account), Collections.emptyList(), records);
+        verify(store, never()).put(anyString(), any(Account.class));
+    }
+
     @Test
     public void testChangeBalanceToMinusFail() {
         String id = "1234";
@@ -107,7 +217,7 @@ public class AccountManagerTest {
         account.setBalance(BigDecimal.ZERO);
 
         when(store.get(id)).thenReturn(account);
-        OperationResult operationResult =  accountManager.changeBalance(id, new BigDecimal(-10));
+        OperationResult operationResult =  accountManager.changeBalance(id, Money.of(new BigDecimal(-10)));
 
         try {
             Assert.assertTrue(operationResult.isError());
@@ -120,6 +230,52 @@ public class AccountManagerTest {
     }
 
 
+    @Test
+    public void testTransferNegativeAmountFail() {
+        String id = "1234";
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(new BigDecimal(100));
+        String id1 = "5678";
+        Account account1 = new Account();
+        account1.setId(id1);
+        account1.setBalance(new BigDecimal(10));
+        when(store.get(id)).thenReturn(account);
+        when(store.get(id1)).thenReturn(account1);
+
+        // a negative amount would take money from the destination account below zero
+        OperationResult operationResult = accountManager.transferMoney(id, id1, Money.of(new BigDecimal(-50)));
+
+        Assert.assertTrue(operationResult.isError());
+        Assert.assertEquals(100, account.getBalance().intValue());
+        Assert.assertEquals(10, account1.getBalance().intValue());
+        verify(store).get(id);
+        verify(store).get(id1);
+        verifyNoMoreInteractions(store);
+    }
+
+
+    @Test
+    public void testChangeBalanceOverflowFail() {
+        String id = "1234";
+        Account account = new Account();
+        account.setName("Bob");
+        account.setId(id);
+        account.setBalance(Long.MAX_VALUE, 0);
+
+        when(store.get(id)).thenReturn(account);
+        OperationResult operationResult =  accountManager.changeBalance(id, Money.of(new BigDecimal("0.1")));
+
+        try {
+            Assert.assertTrue(operationResult.isError());
+            Assert.assertEquals(Long.MAX_VALUE, account.getBalanceUnits());
+        } catch (Exception e) {
+            Assert.fail();
+        }
+        verify(store).get(id);
+        verifyNoMoreInteractions(store);
+    }
+
     @Test
     public void testAddAccount() {
         Account account = new Account();
@@ -168,4 +324,76 @@ public class AccountManagerTest {
             Assert.fail();
         }
     }
+
+    @Test
+    public void testCrossCurrencyTransfer() throws IOException {
+        FxRates fxRates = new FxRates(FxSnapshot.parse(1, "USD", new StringReader("EUR 1.25\nJPY 0.008 0")));
+        AccountManager fxAccountManager = new AccountManager(store, new MapLockManager(), SplitAccounts.NONE, fxRates);
+        Account euroAccount = new Account();
+        euroAccount.setId("eur");
+        euroAccount.setCurrency("EUR");
+        euroAccount.setBalance(new BigDecimal(100));
+        Account dollarAccount = new Account();
+        dollarAccount.setId("usd");
+        dollarAccount.setBalance(BigDecimal.ZERO);
+        Account gbpAccount = new Account();
+        gbpAccount.setId("gbp");
+        gbpAccount.setCurrency("GBP");
+        gbpAccount.setBalance(BigDecimal.ZERO);
+        when(store.get("eur")).thenReturn(euroAccount);
+        when(store.get("usd")).thenReturn(dollarAccount);
+        when(store.get("gbp")).thenReturn(gbpAccount);
+
+        Assert.assertFalse(fxAccountManager.transferMoney("eur", "usd", Money.of(new BigDecimal("10.01"))).isError());
+        Assert.assertEquals(new BigDecimal("89.99"), euroAccount.getBalance());
+        // 12.5125 is rounded down to cents of the destination currency
+        Assert.assertEquals(new BigDecimal("12.51"), dollarAccount.getBalance());
+
+        OperationResult noRate = fxAccountManager.transferMoney("eur", "gbp", Money.of(BigDecimal.ONE));
+        Assert.assertTrue(noRate.isError());
+        Assert.assertEquals(new BigDecimal("89.99"), euroAccount.getBalance());
+    }
+
+    @Test
+    public void testLockFreeReadsTakeNoLocks() {
+        LockManager lockManager = mock(LockManager.class);
+        AccountManager lockFreeAccountManager = new AccountManager(store, lockManager, SplitAccounts.NONE,
+                new FxRates(FxSnapshot.NONE), ReadMode.LOCK_FREE);
+        Account from = new Account();
+        from.setId("from");
+        from.setBalance(new BigDecimal(10));
+        Account to = new Account();
+        to.setId("to");
+        to.setBalance(new BigDecimal(20));
+        Map<String, Account> accounts = new HashMap<>();
+        accounts.put("from", from);
+        accounts.put("to", to);
+        when(store.getUnlocked("from")).thenReturn(from);
+        when(store.getAll(anyCollectionOf(String.class))).thenReturn(accounts);
+
+        Assert.assertFalse(lockFreeAccountManager.getAccount("from").isError());
+        OperationResult result = lockFreeAccountManager.getAccounts(Arrays.asList("to", "from"));
+        Assert.assertFalse(result.isError());
+        JsonArray array = new JsonParser().parse(result.getText()).getAsJsonArray();
+        Assert.assertEquals(2, array.size());
+        Assert.assertEquals("to", accountSerializer.deserialize(array.get(0).toString()).getId());
+        Assert.assertEquals(0, BigDecimal.TEN.compareTo(accountSerializer.deserialize(array.get(1).toString()).getBalance()));
+        Assert.assertTrue(lockFreeAccountManager.getAccounts(Arrays.asList("from", "missing")).isError());
+        verifyZeroInteractions(lockManager);
+    }
+
+    private static Transfer createTransfer(String from, String to, int amount) {
+        Transfer transfer = new Transfer();
+        transfer.setFrom(from);
+        transfer.setTo(to);
+        transfer.setAmount(Money.of(new BigDecimal(amount)));
+        return transfer;
+    }
+
+    private List<TransferEvent> verifyPutAll(Map<String, Account> changedAccounts) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransferEvent>> events = ArgumentCaptor.forClass((Class<List<TransferEvent>>) (Class<?>) List.class);
+        verify(store).putAll(eq(changedAccounts), events.capture());
+        return events.getValue();
+    }
 }
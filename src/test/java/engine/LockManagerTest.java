@@ -1,7 +1,9 @@
 package engine;
 
 import httpserver.OperationResult;
+import org.junit.Assert;
 import org.junit.Test;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -9,7 +11,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class LockManagerTest {
 
-    private LockManager lockManager = new LockManager();
+    private LockManager lockManager = new MapLockManager();
     private Callable<OperationResult> callable = mock(Callable.class);
 
     @Test
@@ -28,4 +30,26 @@ public class LockManagerTest {
         verify(callable).call();
         verifyNoMoreInteractions(callable);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void failedOperationKeepsCauseAndRemovesLocks() {
+        MapLockManager mapLockManager = new MapLockManager();
+        IllegalStateException failure = new IllegalStateException("Write failed");
+        Callable<OperationResult> failing = () -> {
+            throw failure;
+        };
+        try {
+            mapLockManager.executeOnLocks(Arrays.asList("23", "56", "78"), failing);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+        try {
+            mapLockManager.executeOnTwoLocks("23", "56", failing);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+        Assert.assertEquals(0, mapLockManager.size());
+    }
+}
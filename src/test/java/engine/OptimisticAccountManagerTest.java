@@ -0,0 +1,246 @@
+package engine;
+
+import httpserver.OperationResult;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.Transfer;
+import model.TransferEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import store.RecordWrites;
+import store.StoreTransaction;
+import store.TransactionConflictException;
+import store.TransactionalStore;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class OptimisticAccountManagerTest {
+
+    private static final int NUM_OF_ACCOUNTS = 4;
+
+    private final AccountSerializer accountSerializer = new AccountSerializer();
+    private final VersionedStore store = new VersionedStore();
+
+    @Test
+    public void testConflictingTransfersAreRetried() throws Exception {
+        OptimisticAccountManager accountManager = new OptimisticAccountManager(store, 10_000);
+        for (int i = 0; i < NUM_OF_ACCOUNTS; i++) {
+            putAccount("account-" + i, "1000");
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<OperationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String from = "account-" + i % NUM_OF_ACCOUNTS;
+            String to = "account-" + (i + 1) % NUM_OF_ACCOUNTS;
+            futures.add(executorService.submit(() -> accountManager.transferMoney(from, to, Money.of(BigDecimal.ONE))));
+        }
+        for (Future<OperationResult> future : futures) {
+            Assert.assertFalse(future.get().isError());
+        }
+        executorService.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < NUM_OF_ACCOUNTS; i++) {
+            total = total.add(getBalance(accountManager, "account-" + i));
+        }
+        Assert.assertEquals(0, new BigDecimal(1000 * NUM_OF_ACCOUNTS).compareTo(total));
+        Assert.assertEquals(2000, store.events.size());
+    }
+
+    @Test
+    public void testOperationFailsAfterAllRetries() {
+        OptimisticAccountManager accountManager = new OptimisticAccountManager(store, 3);
+        putAccount("from", "10");
+        putAccount("to", "0");
+        store.alwaysConflict = true;
+
+        Assert.assertTrue(accountManager.transferMoney("from", "to", Money.of(BigDecimal.ONE)).isError());
+        Assert.assertTrue(accountManager.changeBalance("from", Money.of(BigDecimal.ONE)).isError());
+        Assert.assertEquals(4 * 2, store.commits);
+        Assert.assertEquals(0, new BigDecimal(10).compareTo(getBalance(accountManager, "from")));
+    }
+
+    @Test
+    public void testTransferNegativeAmountFail() {
+        OptimisticAccountManager accountManager = new OptimisticAccountManager(store, 3);
+        putAccount("from", "10");
+        putAccount("to", "5");
+
+        Assert.assertTrue(accountManager.transferMoney("from", "to", Money.of(new BigDecimal(-7))).isError());
+        Assert.assertEquals(0, new BigDecimal(5).compareTo(getBalance(accountManager, "to")));
+        Assert.assertTrue(store.events.isEmpty());
+    }
+
+    @Test
+    public void testBatchAndDelete() {
+        OptimisticAccountManager accountManager = new OptimisticAccountManager(store, 3);
+        putAccount("from", "10");
+        putAccount("to", "0");
+        List<OperationResult> results = accountManager.transferBatch(Arrays.asList(
+                transfer("from", "to", 7), transfer("from", "to", 7), transfer("from", "to", 3)));
+
+        Assert.assertFalse(results.get(0).isError());
+        Assert.assertTrue(results.get(1).isError());
+        Assert.assertFalse(results.get(2).isError());
+        Assert.assertEquals(2, store.events.size());
+        Assert.assertTrue(accountManager.deleteAccount("to").isError());
+        Assert.assertFalse(accountManager.deleteAccount("from").isError());
+        Assert.assertTrue(accountManager.getAccount("from").isError());
+    }
+
+    private static Transfer transfer(String from, String to, int amount) {
+        Transfer transfer = new Transfer();
+        transfer.setFrom(from);
+        transfer.setTo(to);
+        transfer.setAmount(Money.of(new BigDecimal(amount)));
+        return transfer;
+    }
+
+    private void putAccount(String accountId, String balance) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setBalance(new BigDecimal(balance));
+        store.put(accountId, account);
+    }
+
+    private BigDecimal getBalance(AccountEngine accountEngine, String accountId) {
+        OperationResult result = accountEngine.getAccount(accountId);
+        Assert.assertFalse(result.isError());
+        return accountSerializer.deserialize(result.getText()).getBalance();
+    }
+
+    /**
+     * Every write increments the version of the account, a commit fails if a version read for update has changed
+     */
+    private static class VersionedStore implements TransactionalStore {
+
+        private final Map<String, Account> accounts = new HashMap<>();
+        private final Map<String, Long> versions = new HashMap<>();
+        private final List<TransferEvent> events = new ArrayList<>();
+        private volatile boolean alwaysConflict;
+        private int commits;
+
+        @Override
+        public synchronized void put(String accountId, Account account) {
+            accounts.put(accountId, account.copy());
+            versions.merge(accountId, 1L, Long::sum);
+        }
+
+        @Override
+        public synchronized void putAll(Map<String, Account> accounts) {
+            accounts.forEach(this::put);
+        }
+
+        @Override
+        public synchronized void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+            accounts.forEach(this::put);
+            this.events.addAll(events);
+        }
+
+        /**
+         * Records are not kept
+         */
+        @Override
+        public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+            putAll(accounts, events);
+        }
+
+        @Override
+        public synchronized Account get(String accountId) {
+            Account account = accounts.get(accountId);
+            return account == null ? null : account.copy();
+        }
+
+        @Override
+        public Account getUnlocked(String accountId) {
+            return get(accountId);
+        }
+
+        @Override
+        public synchronized Map<String, Account> getAll(Collection<String> accountIds) {
+            Map<String, Account> found = new HashMap<>();
+            for (String accountId : accountIds) {
+                Account account = get(accountId);
+                if (account != null) {
+                    found.put(accountId, account);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public synchronized void delete(String accountId) {
+            accounts.remove(accountId);
+            versions.merge(accountId, 1L, Long::sum);
+        }
+
+        @Override
+        public StoreTransaction beginTransaction() {
+            return new StoreTransaction() {
+                private final Map<String, Long> readVersions = new HashMap<>();
+                private final Map<String, Account> writes = new LinkedHashMap<>();
+
+                @Override
+                public Account getForUpdate(String accountId) {
+                    synchronized (VersionedStore.this) {
+                        readVersions.put(accountId, versions.getOrDefault(accountId, 0L));
+                        return get(accountId);
+                    }
+                }
+
+                @Override
+                public void put(String accountId, Account account) {
+                    writes.put(accountId, account.copy());
+                }
+
+                @Override
+                public void delete(String accountId) {
+                    writes.put(accountId, null);
+                }
+
+                @Override
+                public void commit(List<TransferEvent> events) {
+                    synchronized (VersionedStore.this) {
+                        commits++;
+                        for (Map.Entry<String, Long> entry : readVersions.entrySet()) {
+                            if (alwaysConflict || !versions.getOrDefault(entry.getKey(), 0L).equals(entry.getValue())) {
+                                throw new TransactionConflictException("Account " + entry.getKey() + " was changed");
+                            }
+                        }
+                        writes.forEach((accountId, account) -> {
+                            if (account == null) {
+                                VersionedStore.this.delete(accountId);
+                            } else {
+                                VersionedStore.this.put(accountId, account);
+                            }
+                        });
+                        VersionedStore.this.events.addAll(events);
+                    }
+                }
+
+                /**
+                 * Records are not kept
+                 */
+                @Override
+                public void commit(List<TransferEvent> events, RecordWrites records) {
+                    commit(events);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
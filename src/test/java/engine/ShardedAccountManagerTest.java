@@ -0,0 +1,234 @@
+package engine;
+
+import httpserver.OperationResult;
+import model.Account;
+import model.Money;
+import model.PendingTransfer;
+import model.TransferEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import store.PendingTransferStore;
+import store.RecordWrites;
+import store.Store;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+
+public class ShardedAccountManagerTest {
+
+    private Store store = mock(Store.class);
+    private PendingTransferStore pendingTransferStore = mock(PendingTransferStore.class);
+    private ShardedAccountManager accountManager = new ShardedAccountManager(store, pendingTransferStore, 2);
+
+    @Test
+    public void testTransferMoneyBetweenShards() {
+        String id = "1234";
+        String id1 = findAccountId(accountManager.shardOf(id), false);
+        Account account = createAccount(id, 100);
+        Account account1 = createAccount(id1, 500);
+        when(store.get(id)).thenReturn(account);
+        when(store.get(id1)).thenReturn(account1);
+
+        OperationResult operationResult = accountManager.transferMoney(id, id1, Money.of(new BigDecimal(50)));
+
+        Assert.assertFalse(operationResult.isError());
+        Assert.assertEquals(50, account.getBalance().intValue());
+        Assert.assertEquals(550, account1.getBalance().intValue());
+        // the pending transfer is written with the debit and deleted with the credit
+        PendingTransfer pendingTransfer = verifyPendingTransferWritten(id, account);
+        Assert.assertEquals(id1, pendingTransfer.getTo());
+        Assert.assertEquals(50, pendingTransfer.getCredit().toBigDecimal().intValue());
+        // the transfer is journaled together with the credit
+        List<TransferEvent> events = verifyPendingTransferDeleted(id1, account1, pendingTransfer.getId());
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(id, events.get(0).getFrom());
+    }
+
+    @Test
+    public void testTransferMoneyWithinShard() {
+        String id = "1234";
+        String id1 = findAccountId(accountManager.shardOf(id), true);
+        Account account = createAccount(id, 100);
+        Account account1 = createAccount(id1, 500);
+        when(store.get(id)).thenReturn(account);
+        when(store.get(id1)).thenReturn(account1);
+
+        OperationResult operationResult = accountManager.transferMoney(id, id1, Money.of(new BigDecimal(50)));
+
+        Map<String, Account> changedAccounts = new HashMap<>();
+        changedAccounts.put(id, account);
+        changedAccounts.put(id1, account1);
+
+        Assert.assertFalse(operationResult.isError());
+        Assert.assertEquals(50, account.getBalance().intValue());
+        Assert.assertEquals(550, account1.getBalance().intValue());
+        verify(store).get(id);
+        verify(store).get(id1);
+        Assert.assertEquals(1, verifyPutAll(changedAccounts).size());
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void testTransferMoneyToNegativeFail() {
+        String id = "1234";
+        String id1 = findAccountId(accountManager.shardOf(id), false);
+        Account account = createAccount(id, 100);
+        Account account1 = createAccount(id1, 500);
+        when(store.get(id)).thenReturn(account);
+        when(store.get(id1)).thenReturn(account1);
+
+        OperationResult operationResult = accountManager.transferMoney(id, id1, Money.of(new BigDecimal(150)));
+
+        Assert.assertTrue(operationResult.isError());
+        Assert.assertEquals(100, account.getBalance().intValue());
+        Assert.assertEquals(500, account1.getBalance().intValue());
+        verify(store, never()).put(anyString(), any(Account.class));
+        verify(store, never()).putAll(anyMapOf(String.class, Account.class), anyListOf(TransferEvent.class),
+                any(RecordWrites.class));
+    }
+
+    @Test
+    public void testTransferNegativeAmountFail() {
+        String id = "1234";
+        for (boolean sameShard : new boolean[]{true, false}) {
+            String id1 = findAccountId(accountManager.shardOf(id), sameShard);
+            Account account = createAccount(id, 100);
+            Account account1 = createAccount(id1, 10);
+            when(store.get(id)).thenReturn(account);
+            when(store.get(id1)).thenReturn(account1);
+
+            OperationResult operationResult = accountManager.transferMoney(id, id1, Money.of(new BigDecimal(-50)));
+
+            // the transfer fails within a shard as well as between shards, where the debit is refunded
+            Assert.assertTrue(operationResult.isError());
+            Assert.assertEquals(100, account.getBalance().intValue());
+            Assert.assertEquals(10, account1.getBalance().intValue());
+        }
+        verify(store, never()).putAll(anyMapOf(String.class, Account.class), anyListOf(TransferEvent.class));
+    }
+
+    @Test
+    public void testTransferMoneyRefundedIfDestinationDeleted() {
+        String id = "1234";
+        String id1 = findAccountId(accountManager.shardOf(id), false);
+        Account account = createAccount(id, 100);
+        Account account1 = createAccount(id1, 500);
+        when(store.get(id)).thenReturn(account);
+        // the destination account is deleted between the check and the credit
+        when(store.get(id1)).thenReturn(account1, (Account) null);
+
+        OperationResult operationResult = accountManager.transferMoney(id, id1, Money.of(new BigDecimal(50)));
+
+        Assert.assertTrue(operationResult.isError());
+        Assert.assertEquals(100, account.getBalance().intValue());
+        // the refund deletes the pending transfer written with the debit
+        ArgumentCaptor<RecordWrites> records = ArgumentCaptor.forClass(RecordWrites.class);
+        verify(store, times(2)).putAll(eq(Collections.singletonMap(id, account)),
+                eq(Collections.<TransferEvent>emptyList()), records.capture());
+        PendingTransfer pendingTransfer = records.getAllValues().get(0).getPendingTransfers().values().iterator().next();
+        Assert.assertEquals(Collections.singletonMap(pendingTransfer.getId(), null),
+                records.getAllValues().get(1).getPendingTransfers());
+    }
+
+    @Test
+    public void testDeleteRefusedWhileTransferPending() {
+        String id = "1234";
+        String id1 = findAccountId(accountManager.shardOf(id), false);
+        Account account = createAccount(id, 50);
+        Account account1 = createAccount(id1, 500);
+        when(store.get(id)).thenReturn(account);
+        when(store.get(id1)).thenReturn(account1);
+        // the credit fails, so the transfer stays pending until the next start
+        doThrow(new RuntimeException("Can not insert data into rocksdb")).when(store)
+                .putAll(eq(Collections.singletonMap(id1, account1)), anyListOf(TransferEvent.class),
+                        any(RecordWrites.class));
+
+        try {
+            accountManager.transferMoney(id, id1, Money.of(new BigDecimal(50)));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        Assert.assertEquals(0, account.getBalance().intValue());
+        Assert.assertSame(ShardedAccountManager.PENDING_TRANSFERS, accountManager.deleteAccount(id));
+        verify(store, never()).delete(id);
+    }
+
+    @Test
+    public void testPendingTransfersFinishedAtStart() {
+        Account account = createAccount("1234", 100);
+        Account account1 = createAccount("5678", 500);
+        when(store.get("1234")).thenReturn(account);
+        when(store.get("5678")).thenReturn(account1);
+        PendingTransfer credited = new PendingTransfer("transfer-1", 1000, "1234", "5678",
+                Money.of(new BigDecimal(20)), Money.of(new BigDecimal(20)));
+        // the destination of this transfer was deleted, so it is refunded
+        PendingTransfer refunded = new PendingTransfer("transfer-2", 1000, "1234", "deleted",
+                Money.of(new BigDecimal(30)), Money.of(new BigDecimal(30)));
+        when(pendingTransferStore.readPendingTransfers()).thenReturn(Arrays.asList(credited, refunded));
+
+        ShardedAccountManager restartedManager = new ShardedAccountManager(store, pendingTransferStore, 2);
+
+        Assert.assertEquals(520, account1.getBalance().intValue());
+        Assert.assertEquals(130, account.getBalance().intValue());
+        List<TransferEvent> events = verifyPendingTransferDeleted("5678", account1, "transfer-1");
+        Assert.assertEquals(1000, events.get(0).getTimestamp());
+        verify(store).putAll(eq(Collections.singletonMap("1234", account)), eq(Collections.<TransferEvent>emptyList()),
+                any(RecordWrites.class));
+        account.setBalance(BigDecimal.ZERO);
+        Assert.assertFalse(restartedManager.deleteAccount("1234").isError());
+    }
+
+    private String findAccountId(int shard, boolean sameShard) {
+        for (int i = 0; ; i++) {
+            String id = String.valueOf(i);
+            if ((accountManager.shardOf(id) == shard) == sameShard && !id.equals("1234")) {
+                return id;
+            }
+        }
+    }
+
+    private static Account createAccount(String id, int balance) {
+        Account account = new Account();
+        account.setName("Bob");
+        account.setId(id);
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+
+    private PendingTransfer verifyPendingTransferWritten(String accountId, Account account) {
+        ArgumentCaptor<RecordWrites> records = ArgumentCaptor.forClass(RecordWrites.class);
+        verify(store).putAll(eq(Collections.singletonMap(accountId, account)),
+                eq(Collections.<TransferEvent>emptyList()), records.capture());
+        Map<String, PendingTransfer> pendingTransfers = records.getValue().getPendingTransfers();
+        Assert.assertEquals(1, pendingTransfers.size());
+        PendingTransfer pendingTransfer = pendingTransfers.values().iterator().next();
+        Assert.assertEquals(accountId, pendingTransfer.getFrom());
+        return pendingTransfer;
+    }
+
+    private List<TransferEvent> verifyPendingTransferDeleted(String accountId, Account account, String transferId) {
+        ArgumentCaptor<RecordWrites> records = ArgumentCaptor.forClass(RecordWrites.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransferEvent>> events = ArgumentCaptor.forClass((Class<List<TransferEvent>>) (Class<?>) List.class);
+        verify(store).putAll(eq(Collections.singletonMap(accountId, account)), events.capture(), records.capture());
+        Assert.assertEquals(Collections.singletonMap(transferId, null), records.getValue().getPendingTransfers());
+        return events.getValue();
+    }
+
+    private List<TransferEvent> verifyPutAll(Map<String, Account> changedAccounts) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransferEvent>> events = ArgumentCaptor.forClass((Class<List<TransferEvent>>) (Class<?>) List.class);
+        verify(store).putAll(eq(changedAccounts), events.capture());
+        return events.getValue();
+    }
+}
@@ -0,0 +1,245 @@
+package engine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import fx.FxRates;
+import fx.FxSnapshot;
+import httpserver.OperationResult;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.Transfer;
+import model.TransferEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import store.RecordWrites;
+import store.Store;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SplitAccountTest {
+
+    private static final String MERCHANT = "merchant";
+
+    private final AccountSerializer accountSerializer = new AccountSerializer();
+    private final MapStore store = new MapStore();
+    private final AccountManager accountManager = new AccountManager(store, new StripedLockManager(64),
+            SplitAccounts.fromConfig("other:2, " + MERCHANT + ":4"));
+
+    @Test
+    public void testConfig() {
+        SplitAccounts splitAccounts = SplitAccounts.fromConfig(" a:3,b:1,,");
+        Assert.assertTrue(splitAccounts.isSplit("a"));
+        Assert.assertFalse(splitAccounts.isSplit("b"));
+        Assert.assertEquals(Arrays.asList("a", "a#1", "a#2"), splitAccounts.partKeys("a"));
+        Assert.assertTrue(SplitAccounts.fromConfig("").isEmpty());
+    }
+
+    @Test
+    public void testConcurrentCreditsAreSpreadAndSummed() throws Exception {
+        putAccount(MERCHANT, "0");
+        putAccount("customer", "1000");
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<OperationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            futures.add(executorService.submit(
+                    () -> accountManager.transferMoney("customer", MERCHANT, Money.of(new BigDecimal("1.5")))));
+        }
+        for (Future<OperationResult> future : futures) {
+            Assert.assertFalse(future.get().isError());
+        }
+        executorService.shutdown();
+
+        Assert.assertEquals(0, new BigDecimal(600).compareTo(getBalance(MERCHANT)));
+        Assert.assertEquals(0, new BigDecimal(400).compareTo(getBalance("customer")));
+        // credits went to several parts
+        Assert.assertTrue(store.accounts.containsKey(MERCHANT + "#1") || store.accounts.containsKey(MERCHANT + "#2"));
+    }
+
+    @Test
+    public void testDebitBorrowsFromOtherParts() {
+        putAccount(MERCHANT, "10");
+        putAccount(MERCHANT + "#2", "5");
+
+        Assert.assertTrue(accountManager.changeBalance(MERCHANT, Money.of(new BigDecimal(-20))).isError());
+        Assert.assertEquals(0, new BigDecimal(15).compareTo(getBalance(MERCHANT)));
+
+        Assert.assertFalse(accountManager.changeBalance(MERCHANT, Money.of(new BigDecimal(-12))).isError());
+        Assert.assertEquals(0, new BigDecimal(3).compareTo(getBalance(MERCHANT)));
+        for (String partKey : Arrays.asList(MERCHANT, MERCHANT + "#1", MERCHANT + "#2", MERCHANT + "#3")) {
+            Account part = store.accounts.get(partKey);
+            Assert.assertTrue(part == null || part.getBalance().signum() >= 0);
+        }
+
+        putAccount("customer", "0");
+        Assert.assertFalse(accountManager.transferMoney(MERCHANT, "customer", Money.of(new BigDecimal(3))).isError());
+        Assert.assertEquals(0, BigDecimal.ZERO.compareTo(getBalance(MERCHANT)));
+        Assert.assertEquals(0, new BigDecimal(3).compareTo(getBalance("customer")));
+        Assert.assertEquals(1, store.events.size());
+    }
+
+    @Test
+    public void testNegativeTransferKeepsPartsNonNegative() {
+        for (String partKey : Arrays.asList(MERCHANT, MERCHANT + "#1", MERCHANT + "#2", MERCHANT + "#3")) {
+            putAccount(partKey, "3");
+        }
+        putAccount("customer", "2");
+        // every part is asked, none of them has the sum
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(accountManager.transferMoney("customer", MERCHANT, Money.of(new BigDecimal(-5))).isError());
+            Assert.assertTrue(accountManager.transferMoney(MERCHANT, "customer", Money.of(new BigDecimal(-5))).isError());
+        }
+
+        for (String partKey : Arrays.asList(MERCHANT, MERCHANT + "#1", MERCHANT + "#2", MERCHANT + "#3")) {
+            Assert.assertEquals(0, new BigDecimal(3).compareTo(store.accounts.get(partKey).getBalance()));
+        }
+        Assert.assertEquals(0, new BigDecimal(2).compareTo(getBalance("customer")));
+        Assert.assertTrue(store.events.isEmpty());
+    }
+
+    @Test
+    public void testBatchWithSplitAccountsKeepsOrder() {
+        putAccount(MERCHANT, "0");
+        putAccount("customer", "10");
+        putAccount("other-customer", "0");
+        List<OperationResult> results = accountManager.transferBatch(Arrays.asList(
+                transfer("customer", MERCHANT, 4),
+                transfer("customer", "other-customer", 6),
+                transfer("customer", MERCHANT, 1),
+                transfer(MERCHANT, "other-customer", 4)));
+
+        Assert.assertFalse(results.get(0).isError());
+        Assert.assertFalse(results.get(1).isError());
+        Assert.assertTrue(results.get(2).isError());
+        Assert.assertFalse(results.get(3).isError());
+        Assert.assertEquals(0, new BigDecimal(10).compareTo(getBalance("other-customer")));
+        Assert.assertEquals(0, BigDecimal.ZERO.compareTo(getBalance(MERCHANT)));
+    }
+
+    @Test
+    public void testDeleteAndMissingSplitAccount() {
+        putAccount(MERCHANT, "0");
+        putAccount(MERCHANT + "#3", "1");
+        Assert.assertTrue(accountManager.deleteAccount(MERCHANT).isError());
+
+        store.accounts.get(MERCHANT + "#3").setBalance(BigDecimal.ZERO);
+        Assert.assertFalse(accountManager.deleteAccount(MERCHANT).isError());
+        Assert.assertTrue(store.accounts.isEmpty());
+
+        putAccount("customer", "10");
+        Assert.assertTrue(accountManager.transferMoney("customer", MERCHANT, Money.of(BigDecimal.ONE)).isError());
+        Assert.assertTrue(accountManager.getAccount(MERCHANT).isError());
+        Assert.assertEquals(1, store.accounts.size());
+    }
+
+    @Test
+    public void testLockFreeReadSumsPartsOfOneSnapshot() {
+        AccountManager lockFreeAccountManager = new AccountManager(store, new StripedLockManager(64),
+                SplitAccounts.fromConfig(MERCHANT + ":4"), new FxRates(FxSnapshot.NONE), ReadMode.LOCK_FREE);
+        putAccount(MERCHANT, "10");
+        putAccount(MERCHANT + "#3", "5");
+        putAccount("customer", "1");
+
+        OperationResult result = lockFreeAccountManager.getAccount(MERCHANT);
+        Assert.assertFalse(result.isError());
+        Assert.assertEquals(0, new BigDecimal(15).compareTo(accountSerializer.deserialize(result.getText()).getBalance()));
+        Assert.assertTrue(lockFreeAccountManager.getAccount(MERCHANT + "-missing").isError());
+
+        result = lockFreeAccountManager.getAccounts(Arrays.asList(MERCHANT, "customer", MERCHANT));
+        Assert.assertFalse(result.isError());
+        JsonArray accounts = new JsonParser().parse(result.getText()).getAsJsonArray();
+        Assert.assertEquals(3, accounts.size());
+        Assert.assertEquals(0, new BigDecimal(15).compareTo(accountSerializer.deserialize(accounts.get(0).toString()).getBalance()));
+        Assert.assertEquals("customer", accountSerializer.deserialize(accounts.get(1).toString()).getId());
+        Assert.assertEquals(0, new BigDecimal(15).compareTo(accountSerializer.deserialize(accounts.get(2).toString()).getBalance()));
+    }
+
+    private static Transfer transfer(String from, String to, int amount) {
+        Transfer transfer = new Transfer();
+        transfer.setFrom(from);
+        transfer.setTo(to);
+        transfer.setAmount(Money.of(new BigDecimal(amount)));
+        return transfer;
+    }
+
+    private void putAccount(String accountId, String balance) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setBalance(new BigDecimal(balance));
+        store.put(accountId, account);
+    }
+
+    private BigDecimal getBalance(String accountId) {
+        OperationResult result = accountManager.getAccount(accountId);
+        Assert.assertFalse(result.isError());
+        return accountSerializer.deserialize(result.getText()).getBalance();
+    }
+
+    private static class MapStore implements Store {
+
+        private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+        private final List<TransferEvent> events = new ArrayList<>();
+
+        @Override
+        public void put(String accountId, Account account) {
+            accounts.put(accountId, account.copy());
+        }
+
+        @Override
+        public void putAll(Map<String, Account> accounts) {
+            accounts.forEach(this::put);
+        }
+
+        @Override
+        public synchronized void putAll(Map<String, Account> accounts, List<TransferEvent> events) {
+            accounts.forEach(this::put);
+            this.events.addAll(events);
+        }
+
+        /**
+         * Records are not kept
+         */
+        @Override
+        public void putAll(Map<String, Account> accounts, List<TransferEvent> events, RecordWrites records) {
+            putAll(accounts, events);
+        }
+
+        @Override
+        public Account get(String accountId) {
+            Account account = accounts.get(accountId);
+            return account == null ? null : account.copy();
+        }
+
+        @Override
+        public Account getUnlocked(String accountId) {
+            return get(accountId);
+        }
+
+        @Override
+        public synchronized Map<String, Account> getAll(Collection<String> accountIds) {
+            Map<String, Account> found = new HashMap<>();
+            for (String accountId : accountIds) {
+                Account account = get(accountId);
+                if (account != null) {
+                    found.put(accountId, account);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public void delete(String accountId) {
+            accounts.remove(accountId);
+        }
+    }
+}
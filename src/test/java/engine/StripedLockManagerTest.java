@@ -0,0 +1,53 @@
+package engine;
+
+import httpserver.OperationResult;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.concurrent.Callable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class StripedLockManagerTest {
+
+    private StripedLockManager lockManager = new StripedLockManager(16);
+    @SuppressWarnings("unchecked")
+    private Callable<OperationResult> callable = mock(Callable.class);
+
+    @Test
+    public void executeOnTwoLocks() throws Exception {
+        String id1 = "23";
+        String id2 = "56";
+        lockManager.executeOnTwoLocks(id1, id2, callable);
+        verify(callable).call();
+        verifyNoMoreInteractions(callable);
+    }
+
+    @Test
+    public void executeOnTwoLocksSameStripe() throws Exception {
+        StripedLockManager singleStripeLockManager = new StripedLockManager(1);
+        String id1 = "23";
+        String id2 = "56";
+        Assert.assertEquals(singleStripeLockManager.stripeIndex(id1), singleStripeLockManager.stripeIndex(id2));
+        singleStripeLockManager.executeOnTwoLocks(id1, id2, callable);
+        verify(callable).call();
+        verifyNoMoreInteractions(callable);
+    }
+
+    @Test
+    public void executeOnOneLock() throws Exception {
+        String id1 = "23";
+        lockManager.executeOnOneLock(id1, callable);
+        verify(callable).call();
+        verifyNoMoreInteractions(callable);
+    }
+
+    @Test
+    public void numOfStripesIsRoundedToPowerOfTwo() {
+        StripedLockManager lockManager = new StripedLockManager(1000);
+        for (int i = 0; i < 10_000; i++) {
+            int index = lockManager.stripeIndex(String.valueOf(i));
+            Assert.assertTrue(index >= 0 && index < 1024);
+        }
+    }
+}
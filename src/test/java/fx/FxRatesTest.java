@@ -0,0 +1,89 @@
+package fx;
+
+import config.FxSettings;
+import model.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class FxRatesTest {
+
+    @Test
+    public void testConvertRoundsDownToCurrencyScale() throws IOException {
+        FxSnapshot rates = FxSnapshot.parse(1, "USD", new StringReader("# comment\nEUR 1.25\n\nJPY 0.008 0\n"));
+
+        Assert.assertEquals(new BigDecimal("12.51"),
+                rates.convert(Money.of(new BigDecimal("10.01")), "EUR", null).toBigDecimal());
+        Assert.assertEquals(new BigDecimal("156"),
+                rates.convert(Money.of(new BigDecimal("1.00")), "EUR", "JPY").toBigDecimal());
+        Assert.assertEquals(new BigDecimal("0.80"),
+                rates.convert(Money.of(new BigDecimal(100)), "JPY", "USD").toBigDecimal());
+        Money amount = Money.of(new BigDecimal("3.333"));
+        Assert.assertSame(amount, rates.convert(amount, "USD", null));
+        Assert.assertNull(rates.convert(amount, "EUR", "GBP"));
+        Assert.assertNull(FxSnapshot.NONE.convert(amount, "EUR", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRateIsRejected() throws IOException {
+        FxSnapshot.parse(1, "USD", new StringReader("EUR -1"));
+    }
+
+    @Test
+    public void testReloadReplacesSnapshot() throws IOException {
+        Path file = Files.createTempFile("fx_rates", ".txt");
+        Files.write(file, "EUR 1.25".getBytes(StandardCharsets.UTF_8));
+        FxRates fxRates = new FxRates(new TestFxSettings(file.toString()));
+        FxSnapshot first = fxRates.snapshot();
+        Assert.assertEquals(1, first.getVersion());
+        Assert.assertFalse(fxRates.reload());
+
+        Files.write(file, "EUR 1.5".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        Assert.assertTrue(fxRates.reload());
+        Assert.assertEquals(2, fxRates.snapshot().getVersion());
+        Assert.assertEquals(new BigDecimal("1.5"), fxRates.snapshot().getRates().get("EUR"));
+        // a snapshot taken before the reload does not change
+        Assert.assertEquals(new BigDecimal("1.25"), first.getRates().get("EUR"));
+
+        Files.write(file, "EUR x".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 20_000));
+        try {
+            fxRates.reload();
+            Assert.fail("An invalid file must not be loaded");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(2, fxRates.snapshot().getVersion());
+        }
+    }
+
+    private static class TestFxSettings implements FxSettings {
+
+        private final String ratesFile;
+
+        TestFxSettings(String ratesFile) {
+            this.ratesFile = ratesFile;
+        }
+
+        @Override
+        public String defaultCurrency() {
+            return "USD";
+        }
+
+        @Override
+        public String ratesFile() {
+            return ratesFile;
+        }
+
+        @Override
+        public int reloadIntervalMillis() {
+            return 0;
+        }
+    }
+}
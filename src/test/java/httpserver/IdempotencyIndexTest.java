@@ -0,0 +1,137 @@
+package httpserver;
+
+import model.IdempotencyRecord;
+import org.junit.Assert;
+import org.junit.Test;
+import store.IdempotencyStore;
+import store.RecordWrites;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class IdempotencyIndexTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    private final MapIdempotencyStore store = new MapIdempotencyStore();
+
+    @Test
+    public void testRetryGetsOutcomeOfFirstRequest() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(store, TTL_MILLIS, 100);
+
+        Assert.assertNull(index.reserve("key"));
+        CompletableFuture<IdempotencyRecord> retry = index.reserve("key");
+        Assert.assertNotNull(retry);
+        Assert.assertFalse(retry.isDone());
+
+        index.complete("key", "transfer", OperationResult.error("Not enough money"));
+
+        IdempotencyRecord record = retry.get();
+        Assert.assertEquals("transfer", record.getFingerprint());
+        Assert.assertTrue(record.isError());
+        Assert.assertEquals("Not enough money", record.getText());
+        Assert.assertEquals("Not enough money", store.records.get("key").getText());
+    }
+
+    @Test
+    public void testReleasedKeyCanBeReservedAgain() {
+        IdempotencyIndex index = new IdempotencyIndex(store, TTL_MILLIS, 100);
+
+        Assert.assertNull(index.reserve("key"));
+        CompletableFuture<IdempotencyRecord> retry = index.reserve("key");
+        index.release("key", new RuntimeException("Can not insert data into rocksdb"));
+
+        Assert.assertTrue(retry.isCompletedExceptionally());
+        Assert.assertNull(index.reserve("key"));
+    }
+
+    @Test
+    public void testEvictedKeyIsFoundInStore() throws ExecutionException, InterruptedException {
+        IdempotencyIndex index = new IdempotencyIndex(store, TTL_MILLIS, 2);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertNull(index.reserve("key" + i));
+            // a successful request writes its record together with the accounts
+            index.successRecords("key" + i, "transfer" + i).getIdempotencyRecords().forEach(store::putRecord);
+            index.complete("key" + i, "transfer" + i, OperationResult.success());
+        }
+        Assert.assertEquals(2, index.size());
+
+        CompletableFuture<IdempotencyRecord> retry = index.reserve("key0");
+        Assert.assertNotNull(retry);
+        Assert.assertEquals("transfer0", retry.get().getFingerprint());
+    }
+
+    @Test
+    public void testSuccessIsNotStoredByIndex() {
+        IdempotencyIndex index = new IdempotencyIndex(store, TTL_MILLIS, 100);
+        Assert.assertNull(index.reserve("key"));
+
+        RecordWrites records = index.successRecords("key", "transfer");
+        index.complete("key", "transfer", OperationResult.success());
+
+        IdempotencyRecord record = records.getIdempotencyRecords().get("key");
+        Assert.assertEquals("transfer", record.getFingerprint());
+        Assert.assertFalse(record.isError());
+        Assert.assertEquals(OperationResult.success().getText(), record.getText());
+        Assert.assertTrue(store.records.isEmpty());
+    }
+
+    @Test
+    public void testKeysInProgressAreNotEvicted() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(store, TTL_MILLIS, 1);
+        Assert.assertNull(index.reserve("first"));
+        Assert.assertNull(index.reserve("second"));
+        index.evictExpired(System.currentTimeMillis() + TTL_MILLIS + 1);
+
+        // neither request is complete, so a retry still waits for the outcome of the first one
+        Assert.assertEquals(2, index.size());
+        CompletableFuture<IdempotencyRecord> retry = index.reserve("first");
+        Assert.assertNotNull(retry);
+        index.complete("first", "transfer", OperationResult.error("Not enough money"));
+        Assert.assertEquals("Not enough money", retry.get().getText());
+
+        // the completed key is evicted by the next reservation over maxKeys
+        Assert.assertNull(index.reserve("third"));
+        Assert.assertEquals(2, index.size());
+        index.complete("second", "transfer", OperationResult.error("Not enough money"));
+        index.evictExpired(System.currentTimeMillis() + TTL_MILLIS + 1);
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testExpiredKeysAreEvicted() {
+        IdempotencyIndex index = new IdempotencyIndex(store, TTL_MILLIS, 100);
+        Assert.assertNull(index.reserve("key"));
+        index.complete("key", "transfer", OperationResult.success());
+
+        index.evictExpired(System.currentTimeMillis() + TTL_MILLIS + 1);
+        store.deleteExpiredRecords(System.currentTimeMillis() + TTL_MILLIS + 1);
+
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.reserve("key"));
+    }
+
+    private static class MapIdempotencyStore implements IdempotencyStore {
+
+        private final Map<String, IdempotencyRecord> records = new HashMap<>();
+
+        @Override
+        public synchronized void putRecord(String key, IdempotencyRecord record) {
+            records.put(key, record);
+        }
+
+        @Override
+        public synchronized IdempotencyRecord getRecord(String key) {
+            return records.get(key);
+        }
+
+        @Override
+        public synchronized int deleteExpiredRecords(long nowMillis) {
+            int size = records.size();
+            records.values().removeIf(record -> record.isExpired(nowMillis));
+            return size - records.size();
+        }
+    }
+}
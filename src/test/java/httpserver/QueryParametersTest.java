@@ -0,0 +1,72 @@
+package httpserver;
+
+import model.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.math.BigDecimal;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class QueryParametersTest {
+
+    @Test
+    public void testParametersAreReadFromQueryString() {
+        HttpServletRequest request = request("from=a-1&to=b%2F2&flag&empty=&to=ignored&name=Jean+Luc");
+        QueryParameters parameters = QueryParameters.of(request);
+
+        Assert.assertEquals("a-1", parameters.get("from"));
+        Assert.assertEquals("b/2", parameters.get("to"));
+        Assert.assertEquals("", parameters.get("flag"));
+        Assert.assertEquals("", parameters.get("empty"));
+        Assert.assertEquals("Jean Luc", parameters.get("name"));
+    }
+
+    @Test
+    public void testMissingParameterIsReadByRequest() {
+        HttpServletRequest request = request("id=1");
+        when(request.getParameter("amount")).thenReturn("5");
+
+        Assert.assertEquals(0, new BigDecimal(5).compareTo(QueryParameters.of(request).getMoney("amount").toBigDecimal()));
+        Assert.assertNull(QueryParameters.of(request("id=1")).getMoney("amount"));
+        Assert.assertNull(QueryParameters.of(request(null)).get("id"));
+    }
+
+    @Test
+    public void testAmountsAreParsedAsBigDecimal() {
+        assertAmount("0.01", 1, 2);
+        assertAmount("1000.0", 10000, 1);
+        assertAmount("-5", -5, 0);
+        assertAmount("1e3", 1000, 0);
+        assertAmount("5.", 5, 0);
+        assertAmount("12345678901234567.89", 1234567890123456789L, 2);
+        // zeros beyond Money.MAX_SCALE are dropped
+        assertAmount("10.000000000", 10, 0);
+        assertAmount("0.1000000000", 1, 1);
+
+        Assert.assertNull(amount("0.000000001"));
+        Assert.assertNull(amount("99999999999999999999"));
+        Assert.assertNull(amount("1.2.3"));
+        Assert.assertNull(amount("-"));
+        Assert.assertNull(amount(""));
+    }
+
+    private static void assertAmount(String text, long units, int scale) {
+        Money amount = amount(text);
+        Assert.assertNotNull(text, amount);
+        Assert.assertEquals(text, units, amount.getUnits());
+        Assert.assertEquals(text, scale, amount.getScale());
+    }
+
+    private static Money amount(String text) {
+        return QueryParameters.of(request("id=1&amount=" + text)).getMoney("amount");
+    }
+
+    private static HttpServletRequest request(String query) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getQueryString()).thenReturn(query);
+        return request;
+    }
+}
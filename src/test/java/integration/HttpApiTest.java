@@ -1,27 +1,48 @@
 package integration;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.Unirest;
+import binaryserver.BinaryClient;
 import entrypoint.MoneyTransferFactory;
 import model.Account;
 import model.AccountSerializer;
+import model.Money;
 import org.junit.*;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class HttpApiTest {
 
     private static final String URL_MAIN = "http://127.0.0.1:10001/accounts/";
+    private static final String URL_ADMIN = "http://127.0.0.1:10001/admin/";
+    private static final int BINARY_PORT = 10101;
+    private static final String URL_METRICS = "http://127.0.0.1:10001/metrics";
+    private static final String URL_FX = "http://127.0.0.1:10001/fx";
+    private static final String URL_FOLLOWER = "http://127.0.0.1:10002/accounts/";
+    private static final String URL_FOLLOWER_METRICS = "http://127.0.0.1:10002/metrics";
+    private static final String FOLLOWER_STORE_PATH = "money_transfer_db_follower_test";
     private static final MoneyTransferFactory moneyTransferFactory = new MoneyTransferFactory();
 
     private final AccountSerializer accountSerializer = new AccountSerializer();
@@ -50,6 +71,139 @@ public class HttpApiTest {
         assertNotNull(accountFromServer.getId());
     }
 
+    @Test
+    public void testMetrics() throws Exception {
+        Account account = new Account();
+        account.setName("Mary");
+        HttpTestUtils.createAccount(account, URL_MAIN, accountSerializer);
+
+        HttpResponse<String> response = HttpTestUtils.getMetrics(URL_METRICS);
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getBody().contains("http_request_duration_seconds_count{route=\"add\"}"));
+        assertTrue(response.getBody().contains("# TYPE rocksdb_block_cache_hit_total counter"));
+    }
+
+    @Test
+    public void testImportAndExportAccounts() throws Exception {
+        String accountId = UUID.randomUUID().toString();
+        HttpResponse<String> importResponse = HttpTestUtils.importAccounts(
+                "{\"id\":\"" + accountId + "\",\"name\":\"Alice\",\"balance\":250}\n", URL_ADMIN);
+        assertEquals(200, importResponse.getStatus());
+        assertEquals("{\"imported\":1,\"skipped\":0,\"invalid\":0}", importResponse.getBody());
+
+        Account imported = HttpTestUtils.getAccount(accountId, URL_MAIN, accountSerializer);
+        assertEquals(0, new BigDecimal(250).compareTo(imported.getBalance()));
+
+        HttpResponse<String> exportResponse = HttpTestUtils.exportAccounts(URL_ADMIN);
+        assertEquals(200, exportResponse.getStatus());
+        assertTrue(exportResponse.getHeaders().getFirst("Content-Type").startsWith("application/x-ndjson"));
+        assertTrue(Stream.of(exportResponse.getBody().split("\n"))
+                .anyMatch(line -> accountId.equals(accountSerializer.deserialize(line).getId())));
+    }
+
+    @Test
+    public void testListAccountsAndTotalBalance() throws Exception {
+        Account account = new Account();
+        account.setName("Mary");
+        Account accountFromServer = HttpTestUtils.createAccount(account, URL_MAIN, accountSerializer);
+        JsonObject totalBefore = HttpTestUtils.getTotal(URL_MAIN);
+        assertEquals(200, HttpTestUtils.updateBalance(100, URL_MAIN, accountFromServer.getId()).getStatus());
+        JsonObject totalAfter = HttpTestUtils.getTotal(URL_MAIN);
+        assertEquals(0, totalBefore.get("total").getAsBigDecimal().add(new BigDecimal(100))
+                .compareTo(totalAfter.get("total").getAsBigDecimal()));
+
+        List<String> accountIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            HttpResponse<String> response = HttpTestUtils.listAccounts(cursor, 5, URL_MAIN);
+            assertEquals(200, response.getStatus());
+            JsonObject page = new JsonParser().parse(response.getBody()).getAsJsonObject();
+            for (JsonElement item : page.getAsJsonArray("accounts")) {
+                accountIds.add(item.getAsJsonObject().get("id").getAsString());
+            }
+            cursor = page.get("cursor").isJsonNull() ? null : page.get("cursor").getAsString();
+        } while (cursor != null);
+        assertTrue(accountIds.contains(accountFromServer.getId()));
+        assertEquals(totalAfter.get("accounts").getAsLong(), accountIds.size());
+        assertEquals(400, HttpTestUtils.listAccounts("not a cursor", 5, URL_MAIN).getStatus());
+    }
+
+    @Test
+    public void testBinaryProtocolSharesAccounts() throws Exception {
+        try (BinaryClient client = new BinaryClient("127.0.0.1", BINARY_PORT)) {
+            client.addAccount("Mary");
+            BinaryClient.Response added = client.readResponse();
+            assertTrue(added.isSuccess());
+            String accountId = accountSerializer.deserialize(added.getText()).getId();
+
+            client.changeBalance(accountId, Money.of(new BigDecimal(100)));
+            client.changeBalance(accountId, Money.of(new BigDecimal(-150)));
+            client.getAccount(accountId);
+            assertTrue(client.readResponse().isSuccess());
+            assertTrue(client.readResponse().isError());
+            assertEquals(0, new BigDecimal(100).compareTo(
+                    accountSerializer.deserialize(client.readResponse().getText()).getBalance()));
+
+            Account fromHttp = HttpTestUtils.getAccount(accountId, URL_MAIN, accountSerializer);
+            assertEquals(0, new BigDecimal(100).compareTo(fromHttp.getBalance()));
+        }
+    }
+
+    @Test
+    public void testCrossCurrencyTransfer() throws Exception {
+        // rates of src/test/resources/fx_rates.txt
+        JsonObject fx = HttpTestUtils.getFx(URL_FX);
+        assertEquals("USD", fx.get("defaultCurrency").getAsString());
+        assertEquals(0, new BigDecimal("1.25").compareTo(fx.getAsJsonObject("rates").get("EUR").getAsBigDecimal()));
+
+        Account euroAccount = new Account();
+        euroAccount.setName("Jean");
+        euroAccount.setCurrency("EUR");
+        euroAccount = HttpTestUtils.createAccount(euroAccount, URL_MAIN, accountSerializer);
+        assertEquals("EUR", euroAccount.getCurrency());
+        HttpTestUtils.updateBalance(100, URL_MAIN, euroAccount.getId());
+        Account dollarAccount = HttpTestUtils.createAccount(new Account(), URL_MAIN, accountSerializer);
+
+        assertEquals(200, HttpTestUtils.transferMoney(euroAccount.getId(), dollarAccount.getId(), 10, URL_MAIN).getStatus());
+        assertEquals(0, new BigDecimal(90).compareTo(
+                HttpTestUtils.getAccount(euroAccount.getId(), URL_MAIN, accountSerializer).getBalance()));
+        assertEquals(0, new BigDecimal("12.5").compareTo(
+                HttpTestUtils.getAccount(dollarAccount.getId(), URL_MAIN, accountSerializer).getBalance()));
+
+        JsonObject euroTotal = HttpTestUtils.getTotal(URL_MAIN).getAsJsonObject("currencies").getAsJsonObject("EUR");
+        assertTrue(euroTotal.get("accounts").getAsLong() >= 1);
+    }
+
+    @Test
+    public void testFollowerServesReplicatedAccounts() throws Exception {
+        Account account = new Account();
+        account.setName("Replicated");
+        Account accountFromServer = HttpTestUtils.createAccount(account, URL_MAIN, accountSerializer);
+        HttpTestUtils.updateBalance(100, URL_MAIN, accountFromServer.getId());
+
+        deleteDirectory(Paths.get(FOLLOWER_STORE_PATH));
+        MoneyTransferFactory follower = new MoneyTransferFactory();
+        follower.launch("config_follower.yaml");
+        try {
+            // the account is in the checkpoint, the change after it comes from the WAL
+            assertEquals(0, new BigDecimal(100).compareTo(
+                    HttpTestUtils.getAccount(accountFromServer.getId(), URL_FOLLOWER, accountSerializer).getBalance()));
+            HttpTestUtils.updateBalance(50, URL_MAIN, accountFromServer.getId());
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (new BigDecimal(150).compareTo(HttpTestUtils.getAccount(accountFromServer.getId(), URL_FOLLOWER,
+                    accountSerializer).getBalance()) != 0) {
+                assertTrue("The follower did not apply the change", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            assertEquals(200, HttpTestUtils.listAccounts(null, 10, URL_FOLLOWER).getStatus());
+            assertEquals(404, HttpTestUtils.updateBalance(1, URL_FOLLOWER, accountFromServer.getId()).getStatus());
+            assertTrue(HttpTestUtils.getMetrics(URL_FOLLOWER_METRICS).getBody().contains("replication_lag_sequences"));
+        } finally {
+            follower.stop();
+        }
+    }
+
     @Test
     public void testUpdateBalanceSuccess() throws Exception {
         Account account = new Account();
@@ -99,6 +253,35 @@ public class HttpApiTest {
         assertEquals(0, new BigDecimal(4000).compareTo(updatedAccountBob.getBalance()));
     }
 
+    @Test
+    public void testRetriedTransferIsExecutedOnce() throws Exception {
+        Account account1 = new Account();
+        account1.setName("Alice");
+        Account accountFromServer1 = HttpTestUtils.createAccount(account1, URL_MAIN, accountSerializer);
+
+        Account account2 = new Account();
+        account2.setName("Bob");
+        Account accountFromServer2 = HttpTestUtils.createAccount(account2, URL_MAIN, accountSerializer);
+
+        HttpTestUtils.updateBalance(5000, URL_MAIN, accountFromServer2.getId());
+
+        String key = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> result = HttpTestUtils.transferMoney(accountFromServer2.getId(),
+                    accountFromServer1.getId(), 1000., URL_MAIN, key);
+            assertEquals(200, result.getStatus());
+        }
+        HttpResponse<String> otherRequest = HttpTestUtils.transferMoney(accountFromServer2.getId(),
+                accountFromServer1.getId(), 2000., URL_MAIN, key);
+        assertEquals(422, otherRequest.getStatus());
+
+        Account updatedAccountAlice = HttpTestUtils.getAccount(accountFromServer1.getId(), URL_MAIN, accountSerializer);
+        assertEquals(0, new BigDecimal(1000).compareTo(updatedAccountAlice.getBalance()));
+
+        Account updatedAccountBob = HttpTestUtils.getAccount(accountFromServer2.getId(), URL_MAIN, accountSerializer);
+        assertEquals(0, new BigDecimal(4000).compareTo(updatedAccountBob.getBalance()));
+    }
+
     @Test
     public void testTransferMoneyToNegativeError() throws Exception {
         Account account1 = new Account();
@@ -129,6 +312,40 @@ public class HttpApiTest {
         assertEquals(422, result.getStatus());
     }
 
+    @Test
+    public void testTransferBatch() throws Exception {
+        Account account1 = new Account();
+        account1.setName("Alice");
+        Account accountFromServer1 = HttpTestUtils.createAccount(account1, URL_MAIN, accountSerializer);
+
+        Account account2 = new Account();
+        account2.setName("Bob");
+        Account accountFromServer2 = HttpTestUtils.createAccount(account2, URL_MAIN, accountSerializer);
+
+        HttpTestUtils.updateBalance(100, URL_MAIN, accountFromServer1.getId());
+
+        String from = accountFromServer1.getId();
+        String to = accountFromServer2.getId();
+        String transfers = "{\"from\":\"" + from + "\",\"to\":\"" + to + "\",\"amount\":60}\n"
+                + "not a transfer\n"
+                + "{\"from\":\"" + from + "\",\"to\":\"" + to + "\",\"amount\":60}\n"
+                + "{\"from\":\"" + to + "\",\"to\":\"" + from + "\",\"amount\":10}\n";
+        HttpResponse<String> result = HttpTestUtils.transferBatch(transfers, URL_MAIN);
+        assertEquals(200, result.getStatus());
+
+        String[] lines = result.getBody().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].contains("\"error\":false"));
+        assertTrue(lines[1].contains("\"error\":true"));
+        assertTrue(lines[2].contains("\"error\":true"));
+        assertTrue(lines[3].contains("\"error\":false"));
+
+        Account updatedAccountAlice = HttpTestUtils.getAccount(from, URL_MAIN, accountSerializer);
+        assertEquals(0, new BigDecimal(50).compareTo(updatedAccountAlice.getBalance()));
+        Account updatedAccountBob = HttpTestUtils.getAccount(to, URL_MAIN, accountSerializer);
+        assertEquals(0, new BigDecimal(50).compareTo(updatedAccountBob.getBalance()));
+    }
+
     @Test
     public void deleteAccountSucess() throws Exception{
         Account account = new Account();
@@ -139,6 +356,19 @@ public class HttpApiTest {
         assertEquals(200, result.getStatus());
     }
 
+    @Test
+    public void testPartKeysAreNotAccountIds() throws Exception {
+        Account account = new Account();
+        account.setName("Alice");
+        Account accountFromServer = HttpTestUtils.createAccount(account, URL_MAIN, accountSerializer);
+        String partKey = accountFromServer.getId() + "#1";
+
+        assertEquals(400, HttpTestUtils.deleteAccount(partKey, URL_MAIN).getStatus());
+        assertEquals(400, HttpTestUtils.transferMoney(partKey, accountFromServer.getId(), 1, URL_MAIN).getStatus());
+        assertEquals(400, HttpTestUtils.updateBalance(1, URL_MAIN, partKey).getStatus());
+        assertEquals(400, Unirest.get(URL_MAIN + "get").queryString("id", partKey).asString().getStatus());
+    }
+
     @Test
     public void deleteAccountError() throws Exception{
         Account account = new Account();
@@ -193,6 +423,33 @@ public class HttpApiTest {
         assertEquals(resultAmount, BigDecimal.valueOf(commonAmount));
     }
 
+    @Test
+    public void testGetManySeesNoTransferHalfDone() throws Exception {
+        String first = createAndChangeBalanceAccount(1000);
+        String second = createAndChangeBalanceAccount(1000);
+        ExecutorService threadPool = Executors.newSingleThreadExecutor();
+        Future<?> transfers = threadPool.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                boolean forward = i % 2 == 0;
+                assertEquals(200, HttpTestUtils.transferMoney(forward ? first : second, forward ? second : first,
+                        1 + random.nextInt(100), URL_MAIN).getStatus());
+            }
+            return null;
+        });
+        while (!transfers.isDone()) {
+            List<Account> accounts = HttpTestUtils.getAccounts(first + "," + second, URL_MAIN, accountSerializer);
+            assertEquals(2, accounts.size());
+            assertEquals(first, accounts.get(0).getId());
+            assertEquals(0, new BigDecimal(2000).compareTo(accounts.get(0).getBalance().add(accounts.get(1).getBalance())));
+        }
+        transfers.get();
+        threadPool.shutdown();
+
+        HttpResponse<String> response = Unirest.get(URL_MAIN + "getMany").queryString("ids", first + ",missing").asString();
+        assertEquals(422, response.getStatus());
+        assertEquals(400, Unirest.get(URL_MAIN + "getMany").queryString("ids", "").asString().getStatus());
+    }
+
     private String createAndChangeBalanceAccount(double amount) {
         try {
             Account account = new Account();
@@ -206,4 +463,15 @@ public class HttpApiTest {
         }
     }
 
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
 }
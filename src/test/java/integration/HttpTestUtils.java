@@ -1,10 +1,17 @@
 package integration;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.Unirest;
+import com.mashape.unirest.request.HttpRequest;
 import model.Account;
 import model.AccountSerializer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 
@@ -33,6 +40,19 @@ public class HttpTestUtils {
         return accountSerializer.deserialize(response.getBody());
     }
 
+    public static List<Account> getAccounts(String accountIds, String urlMain, AccountSerializer accountSerializer)
+            throws Exception {
+        HttpResponse<String> response = Unirest.get(urlMain + "getMany")
+                .queryString("ids", accountIds)
+                .asString();
+        assertEquals(200, response.getStatus());
+        List<Account> accounts = new ArrayList<>();
+        for (JsonElement account : new JsonParser().parse(response.getBody()).getAsJsonArray()) {
+            accounts.add(accountSerializer.deserialize(account.toString()));
+        }
+        return accounts;
+    }
+
     public static HttpResponse<String> transferMoney(String source, String destination, double sum, String urlMain) throws Exception {
         String request = urlMain + "transferMoney";
         return Unirest.get(request)
@@ -42,6 +62,57 @@ public class HttpTestUtils {
                 .asString();
     }
 
+    public static HttpResponse<String> transferMoney(String source, String destination, double sum, String urlMain,
+                                                     String idempotencyKey) throws Exception {
+        return Unirest.get(urlMain + "transferMoney")
+                .header("Idempotency-Key", idempotencyKey)
+                .queryString("from", source)
+                .queryString("to", destination)
+                .queryString("amount", sum)
+                .asString();
+    }
+
+    public static HttpResponse<String> transferBatch(String transfers, String urlMain) throws Exception {
+        return Unirest.post(urlMain + "transferBatch")
+                .body(transfers)
+                .asString();
+    }
+
+    public static HttpResponse<String> importAccounts(String accounts, String urlAdmin) throws Exception {
+        return Unirest.post(urlAdmin + "import")
+                .body(accounts)
+                .asString();
+    }
+
+    public static HttpResponse<String> exportAccounts(String urlAdmin) throws Exception {
+        return Unirest.post(urlAdmin + "export").asString();
+    }
+
+    public static HttpResponse<String> listAccounts(String cursor, int limit, String urlMain) throws Exception {
+        HttpRequest request = Unirest.get(urlMain + "list")
+                .queryString("limit", limit);
+        if (cursor != null) {
+            request.queryString("cursor", cursor);
+        }
+        return request.asString();
+    }
+
+    public static JsonObject getTotal(String urlMain) throws Exception {
+        HttpResponse<String> response = Unirest.get(urlMain + "total").asString();
+        assertEquals(200, response.getStatus());
+        return new JsonParser().parse(response.getBody()).getAsJsonObject();
+    }
+
+    public static JsonObject getFx(String urlFx) throws Exception {
+        HttpResponse<String> response = Unirest.get(urlFx).asString();
+        assertEquals(200, response.getStatus());
+        return new JsonParser().parse(response.getBody()).getAsJsonObject();
+    }
+
+    public static HttpResponse<String> getMetrics(String urlMetrics) throws Exception {
+        return Unirest.get(urlMetrics).asString();
+    }
+
     public static HttpResponse<String> deleteAccount(String id, String urlMain) throws Exception {
         return Unirest.get(urlMain + "delete")
                 .queryString("id", id)
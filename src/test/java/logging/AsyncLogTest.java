@@ -0,0 +1,132 @@
+package logging;
+
+import config.LoggingSettings;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Mockito.*;
+
+public class AsyncLogTest {
+
+    private Logger logger = mock(Logger.class);
+    private AsyncLogger asyncLogger = new AsyncLogger(logger);
+
+    {
+        when(logger.isInfoEnabled()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        AsyncLog.stop();
+    }
+
+    @Test
+    public void testSyncMode() {
+        AsyncLog.start(settings("sync", 4, "drop", 0));
+
+        asyncLogger.info("Line {} {}", 1, 2);
+
+        verify(logger).info("Line {} {}", 1, 2);
+    }
+
+    @Test
+    public void testAsyncModeWritesAllLinesBeforeStop() {
+        AsyncLog.start(settings("async", 1024, "drop", 0));
+
+        for (int i = 0; i < 100; i++) {
+            asyncLogger.info("Line {}", i);
+        }
+        AsyncLog.stop();
+
+        verify(logger, times(100)).info(eq("Line {}"), anyInt());
+    }
+
+    @Test
+    public void testRateLimit() {
+        AsyncLog.start(settings("sync", 4, "drop", 5));
+
+        for (int i = 0; i < 100; i++) {
+            asyncLogger.info("Line {}", i);
+        }
+
+        // the limit may be reset once if the loop crosses a second boundary
+        verify(logger, atMost(10)).info(eq("Line {}"), anyInt());
+        verify(logger, atLeast(5)).info(eq("Line {}"), anyInt());
+    }
+
+    @Test
+    public void testDropWhenQueueIsFullButNeverDropErrors() {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writerBlocked.countDown();
+            release.await();
+            return null;
+        }).when(logger).info("Blocking line");
+        AsyncLog.start(settings("async", 2, "drop", 0));
+        long droppedBefore = AsyncLog.QUEUE_FULL_LINES.get();
+
+        asyncLogger.info("Blocking line");
+        awaitQuietly(writerBlocked);
+        for (int i = 0; i < 10; i++) {
+            asyncLogger.info("Line {}", i);
+        }
+        asyncLogger.error("Error {}", 1);
+
+        verify(logger).error("Error {}", new Object[]{1});
+        // the slot of the line being written is released only after it is written, so one slot is left for the lines
+        Assert.assertEquals(9, AsyncLog.QUEUE_FULL_LINES.get() - droppedBefore);
+        release.countDown();
+        AsyncLog.stop();
+        verify(logger).info("Line {}", 0);
+    }
+
+    @Test
+    public void testBlockingLinesAreWrittenSynchronouslyAfterStop() {
+        AsyncLogWriter writer = new AsyncLogWriter(2, DropPolicy.BLOCK, AsyncLog.QUEUE_FULL_LINES);
+        writer.stop();
+
+        // more lines than slots of the ring, as by a caller which got the writer before the stop
+        for (int i = 0; i < 3; i++) {
+            writer.enqueue(logger, "Line {}", 1, i, null, null);
+        }
+
+        verify(logger, times(3)).info(eq("Line {}"), anyInt());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static LoggingSettings settings(String mode, int queueSize, String dropPolicy, int maxInfoLinesPerSecond) {
+        return new LoggingSettings() {
+            @Override
+            public String mode() {
+                return mode;
+            }
+
+            @Override
+            public int queueSize() {
+                return queueSize;
+            }
+
+            @Override
+            public String dropPolicy() {
+                return dropPolicy;
+            }
+
+            @Override
+            public int maxInfoLinesPerSecond() {
+                return maxInfoLinesPerSecond;
+            }
+        };
+    }
+}
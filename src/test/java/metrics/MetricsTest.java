@@ -0,0 +1,43 @@
+package metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test
+    public void testLatencyIsScrapedAsSummary() {
+        LatencyRecorder recorder = Metrics.latency("test_latency_seconds", "Test latency", Metrics.label("route", "a"));
+        Assert.assertSame(recorder, Metrics.latency("test_latency_seconds", "Test latency", Metrics.label("route", "a")));
+        recorder.record(1_000_000);
+        recorder.record(3_000_000);
+
+        String scraped = Metrics.scrape();
+        Assert.assertTrue(scraped.contains("# TYPE test_latency_seconds summary\n"));
+        Assert.assertTrue(scraped.contains("test_latency_seconds_count{route=\"a\"} 2\n"));
+        Assert.assertTrue(scraped.contains("test_latency_seconds_sum{route=\"a\"} 0.004\n"));
+        Assert.assertTrue(scraped.contains("test_latency_seconds{route=\"a\",quantile=\"0.5\"} 0.001"));
+
+        // quantiles are calculated over the interval since the previous scrape
+        Assert.assertTrue(Metrics.scrape().contains("test_latency_seconds{route=\"a\",quantile=\"0.5\"} 0.0\n"));
+    }
+
+    @Test
+    public void testCountersAndGauges() {
+        Counter counter = Metrics.counter("test_events_total", "Test events");
+        counter.add(5);
+        counter.increment();
+        Metrics.gauge("test_depth", "Test depth", () -> 7);
+
+        String scraped = Metrics.scrape();
+        Assert.assertTrue(scraped.contains("# HELP test_events_total Test events\n# TYPE test_events_total counter\n"));
+        Assert.assertTrue(scraped.contains("test_events_total 6\n"));
+        Assert.assertTrue(scraped.contains("# TYPE test_depth gauge\ntest_depth 7\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeConflict() {
+        Metrics.counter("test_conflict", "Test conflict");
+        Metrics.gauge("test_conflict", "Test conflict", () -> 0);
+    }
+}
@@ -0,0 +1,80 @@
+package model;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class AccountCodecTest {
+
+    private AccountSerializer accountSerializer = new AccountSerializer();
+    private AccountCodec binaryCodec = new BinaryAccountCodec(accountSerializer);
+    private AccountCodec jsonCodec = new JsonAccountCodec(accountSerializer);
+
+    @Test
+    public void binaryRoundTrip() {
+        Account account = new Account();
+        account.setId("0d4c6b2e-4a9d-4d5e-9a55-7e0e0f7b2a11");
+        account.setName("\u0418\u0432\u0430\u043d");
+        account.setBalance(new BigDecimal("-1234567890123456.125"));
+        Account afterAcc = binaryCodec.decode(binaryCodec.encode(account));
+        assertEquals(account.getId(), afterAcc.getId());
+        assertEquals(account.getName(), afterAcc.getName());
+        assertEquals(account.getBalance(), afterAcc.getBalance());
+    }
+
+    @Test
+    public void binaryRoundTripWithNulls() {
+        Account account = new Account();
+        Account afterAcc = binaryCodec.decode(binaryCodec.encode(account));
+        assertNull(afterAcc.getId());
+        assertNull(afterAcc.getName());
+        assertEquals(BigDecimal.ZERO, afterAcc.getBalance());
+    }
+
+    @Test
+    public void binaryIsSmallerThanJson() {
+        Account account = new Account();
+        account.setId("0d4c6b2e-4a9d-4d5e-9a55-7e0e0f7b2a11");
+        account.setName("Ivan");
+        account.setBalance(new BigDecimal("5000.0"));
+        assertTrue(binaryCodec.encode(account).length < jsonCodec.encode(account).length);
+    }
+
+    @Test
+    public void codecsReadEachOther() {
+        Account account = new Account();
+        account.setId("3847");
+        account.setName("Ivan");
+        account.setBalance(BigDecimal.TEN);
+        assertEquals(BigDecimal.TEN, binaryCodec.decode(jsonCodec.encode(account)).getBalance());
+        assertEquals(BigDecimal.TEN, jsonCodec.decode(binaryCodec.encode(account)).getBalance());
+    }
+
+    @Test
+    public void binaryReadsLegacyJson() {
+        byte[] json = "{\"id\":\"3847\",\"name\":\"Ivan\",\"balance\":0}".getBytes(StandardCharsets.UTF_8);
+        Account account = binaryCodec.decode(json);
+        assertEquals("3847", account.getId());
+        assertEquals(BigDecimal.ZERO, account.getBalance());
+    }
+
+    @Test
+    public void currencyRoundTrip() {
+        Account account = new Account();
+        account.setId("3847");
+        account.setBalance(BigDecimal.TEN);
+        // accounts of the default currency keep the first format version
+        assertEquals(BinaryAccountCodec.FORMAT_V1, binaryCodec.encode(account)[0]);
+
+        account.setCurrency("EUR");
+        byte[] binary = binaryCodec.encode(account);
+        assertEquals(BinaryAccountCodec.FORMAT_V2, binary[0]);
+        assertEquals("EUR", binaryCodec.decode(binary).getCurrency());
+        assertEquals(BigDecimal.TEN, binaryCodec.decode(binary).getBalance());
+        assertEquals("EUR", jsonCodec.decode(jsonCodec.encode(account)).getCurrency());
+        assertNull(jsonCodec.decode("{\"id\":\"3847\",\"balance\":0}".getBytes(StandardCharsets.UTF_8)).getCurrency());
+    }
+}
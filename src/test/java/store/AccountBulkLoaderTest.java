@@ -0,0 +1,73 @@
+package store;
+
+import model.Account;
+import model.AccountSerializer;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class AccountBulkLoaderTest {
+
+    private static final AccountSerializer accountSerializer = new AccountSerializer();
+    private static RocksDbStore rocksDbStore;
+    private static AccountBulkLoader accountBulkLoader;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        String path = Files.createTempDirectory("money_transfer_bulk_test").toString();
+        rocksDbStore = new RocksDbStore(accountSerializer, new TestStoreSettings(path));
+        // small chunks, so that an import ingests several table files
+        accountBulkLoader = new AccountBulkLoader(rocksDbStore, accountSerializer, 2);
+    }
+
+    @Test
+    public void testImportSkipsExistingAndInvalidAccountsAndExportReadsAll() throws IOException {
+        Account existing = new Account();
+        existing.setId("bulk-existing");
+        existing.setName("Mary");
+        existing.setBalance(new BigDecimal("5"));
+        rocksDbStore.put(existing.getId(), existing);
+
+        String input = "{\"id\":\"bulk-1\",\"name\":\"Alice\",\"balance\":10.5}\n"
+                + "{\"id\":\"bulk-existing\",\"name\":\"Mary\",\"balance\":100}\n"
+                + "not an account\n"
+                + "\n"
+                + "{\"id\":\"bulk-3\",\"name\":\"Carol\",\"balance\":-1}\n"
+                + "{\"id\":\"bulk-2\",\"name\":\"Bob\",\"balance\":0}\n"
+                + "{\"id\":\"bulk-2#1\",\"name\":\"Part\",\"balance\":3}\n"
+                + "{\"id\":\"bulk-1\",\"name\":\"Alice\",\"balance\":99}\n"
+                + "{\"name\":\"Dave\",\"balance\":7}\n";
+        AccountBulkLoader.ImportResult result = accountBulkLoader.importAccounts(
+                new BufferedReader(new StringReader(input)));
+
+        Assert.assertEquals(3, result.getImported());
+        Assert.assertEquals(2, result.getSkipped());
+        Assert.assertEquals(3, result.getInvalid());
+        Assert.assertEquals(new BigDecimal("10.5"), rocksDbStore.get("bulk-1").getBalance());
+        Assert.assertEquals("Bob", rocksDbStore.get("bulk-2").getName());
+        Assert.assertEquals(new BigDecimal("5"), rocksDbStore.get("bulk-existing").getBalance());
+        Assert.assertNull(rocksDbStore.get("bulk-3"));
+        Assert.assertNull(rocksDbStore.get("bulk-2#1"));
+
+        StringWriter writer = new StringWriter();
+        long exported = accountBulkLoader.exportAccounts(writer);
+        String[] lines = writer.toString().split("\n");
+        Assert.assertEquals(4, exported);
+        Assert.assertEquals(4, lines.length);
+        Set<String> names = new HashSet<>();
+        for (String line : lines) {
+            names.add(accountSerializer.deserialize(line).getName());
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList("Alice", "Bob", "Mary", "Dave")), names);
+    }
+}
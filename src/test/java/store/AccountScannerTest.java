@@ -0,0 +1,123 @@
+package store;
+
+import model.Account;
+import model.AccountSerializer;
+import model.BalanceTotal;
+import model.Money;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AccountScannerTest {
+
+    private static final int NUM_OF_ACCOUNTS = 50;
+
+    private static RocksDbStore rocksDbStore;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        String path = Files.createTempDirectory("money_transfer_scan_test").toString();
+        rocksDbStore = new RocksDbStore(new AccountSerializer(), new TestStoreSettings(path));
+        for (int i = 0; i < NUM_OF_ACCOUNTS; i++) {
+            // ids start with different characters, so that the total is summed in several key ranges
+            Account account = new Account();
+            account.setId((char) ('a' + i % 26) + "-" + String.format("%03d", i));
+            account.setBalance(new BigDecimal("1.25"));
+            rocksDbStore.put(account.getId(), account);
+        }
+    }
+
+    @Test
+    public void testScanReadsPagesInIdOrder() {
+        List<String> accountIds = new ArrayList<>();
+        String fromAccountId = null;
+        while (true) {
+            List<Account> page = rocksDbStore.scanAccounts(fromAccountId, 8);
+            if (page.size() < 8) {
+                page.forEach(account -> accountIds.add(account.getId()));
+                break;
+            }
+            // the last account of a page starts the next one
+            page.subList(0, 7).forEach(account -> accountIds.add(account.getId()));
+            fromAccountId = page.get(7).getId();
+        }
+
+        Assert.assertEquals(NUM_OF_ACCOUNTS, accountIds.size());
+        List<String> sorted = new ArrayList<>(accountIds);
+        sorted.sort(String::compareTo);
+        Assert.assertEquals(sorted, accountIds);
+        Assert.assertEquals("b-001", rocksDbStore.scanAccounts("b", 1).get(0).getId());
+        Assert.assertTrue(rocksDbStore.scanAccounts("zz", 10).isEmpty());
+    }
+
+    @Test
+    public void testTotalBalanceSumsAllAccounts() {
+        BalanceTotal total = rocksDbStore.totalBalance();
+        Assert.assertEquals(NUM_OF_ACCOUNTS, total.getNumOfAccounts());
+        Assert.assertEquals(0, new BigDecimal("62.5").compareTo(total.toBigDecimal()));
+    }
+
+    @Test
+    public void testPartsOfSplitAccountsAreAddedToTheirAccounts() throws IOException {
+        String path = Files.createTempDirectory("money_transfer_scan_parts_test").toString();
+        RocksDbStore store = new RocksDbStore(new AccountSerializer(), new TestStoreSettings(path));
+        // "split!" lies between "split" and its parts
+        put(store, "split", "1");
+        put(store, "split#1", "2");
+        put(store, "split#2", "3");
+        put(store, "split!", "4");
+        put(store, "split!#1", "5");
+        put(store, "tail", "6");
+
+        List<Account> accounts = store.scanAccounts(null, 10);
+        Assert.assertEquals(3, accounts.size());
+        assertAccount("split", "6", accounts.get(0));
+        assertAccount("split!", "9", accounts.get(1));
+        assertAccount("tail", "6", accounts.get(2));
+        assertAccount("tail", "6", store.scanAccounts("split#", 10).get(0));
+
+        List<Account> exported = new ArrayList<>();
+        store.scanAccounts((accountId, account) -> exported.add(account));
+        Assert.assertEquals(3, exported.size());
+        assertAccount("split", "6", exported.get(0));
+        assertAccount("split!", "9", exported.get(1));
+
+        BalanceTotal total = store.totalBalance();
+        Assert.assertEquals(3, total.getNumOfAccounts());
+        Assert.assertEquals(0, new BigDecimal("21").compareTo(total.toBigDecimal()));
+    }
+
+    @Test
+    public void testBalanceTotalDoesNotOverflow() {
+        Account account = new Account();
+        account.setBalance(Money.ofUnits(Long.MAX_VALUE, 2));
+        BalanceTotal total = new BalanceTotal();
+        total.add(account);
+        total.add(account);
+        BalanceTotal other = new BalanceTotal();
+        other.add(account);
+        total.merge(other);
+
+        Assert.assertEquals(3, total.getNumOfAccounts());
+        Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(BigDecimal.valueOf(3)),
+                total.toBigDecimal());
+    }
+
+    private static void put(RocksDbStore store, String key, String balance) {
+        Account account = new Account();
+        account.setId(key);
+        account.setBalance(new BigDecimal(balance));
+        store.put(key, account);
+    }
+
+    private static void assertAccount(String accountId, String balance, Account account) {
+        Assert.assertEquals(accountId, account.getId());
+        Assert.assertEquals(0, new BigDecimal(balance).compareTo(account.getBalance()));
+    }
+}
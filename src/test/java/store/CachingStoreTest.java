@@ -0,0 +1,107 @@
+package store;
+
+import metrics.Metrics;
+import model.Account;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.mockito.Mockito.*;
+
+public class CachingStoreTest {
+
+    private Store store = mock(Store.class);
+    private CachingStore cachingStore = new CachingStore(store, 16);
+
+    @Test
+    public void testGetLoadsOnceAndReturnsCopies() {
+        String id = "1234";
+        Account account = createAccount(id, BigDecimal.TEN);
+        when(store.get(id)).thenReturn(account);
+
+        Account first = cachingStore.get(id);
+        first.setBalance(BigDecimal.ONE);
+        Account second = cachingStore.get(id);
+
+        Assert.assertEquals(BigDecimal.TEN, second.getBalance());
+        Assert.assertEquals(1, cachingStore.getMisses());
+        Assert.assertEquals(1, cachingStore.getHits());
+        Assert.assertTrue(Metrics.scrape().contains("account_cache_hits_total 1\n"));
+        verify(store).get(id);
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void testUnlockedReadDoesNotFillCache() {
+        String id = "1234";
+        when(store.getUnlocked(id)).thenReturn(createAccount(id, BigDecimal.TEN));
+        when(store.get(id)).thenReturn(createAccount(id, BigDecimal.ONE));
+
+        Assert.assertEquals(BigDecimal.TEN, cachingStore.getUnlocked(id).getBalance());
+        // a delete or a write may have happened meanwhile, the locked read loads the account again
+        Assert.assertEquals(BigDecimal.ONE, cachingStore.get(id).getBalance());
+        Assert.assertEquals(BigDecimal.ONE, cachingStore.getUnlocked(id).getBalance());
+        Assert.assertEquals(1, cachingStore.getHits());
+        verify(store).getUnlocked(id);
+        verify(store).get(id);
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void testPutIsWrittenThrough() {
+        String id = "1234";
+        Account account = createAccount(id, BigDecimal.TEN);
+
+        cachingStore.putAll(Collections.singletonMap(id, account));
+        account.setBalance(BigDecimal.ONE);
+
+        Assert.assertEquals(BigDecimal.TEN, cachingStore.get(id).getBalance());
+        verify(store).putAll(Collections.singletonMap(id, account));
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void testFailedPutDoesNotChangeCache() {
+        String id = "1234";
+        Account account = createAccount(id, BigDecimal.TEN);
+        cachingStore.put(id, account);
+        doThrow(new RuntimeException()).when(store).put(eq(id), any(Account.class));
+
+        try {
+            cachingStore.put(id, createAccount(id, BigDecimal.ONE));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertEquals(BigDecimal.TEN, cachingStore.get(id).getBalance());
+        }
+    }
+
+    @Test
+    public void testDeleteInvalidates() {
+        String id = "1234";
+        cachingStore.put(id, createAccount(id, BigDecimal.TEN));
+        cachingStore.delete(id);
+
+        Assert.assertNull(cachingStore.get(id));
+        verify(store).delete(id);
+        verify(store).get(id);
+    }
+
+    @Test
+    public void testEviction() {
+        for (int i = 0; i < 1000; i++) {
+            String id = String.valueOf(i);
+            cachingStore.put(id, createAccount(id, BigDecimal.ZERO));
+        }
+        Assert.assertTrue(cachingStore.getEvictions() >= 1000 - 16);
+    }
+
+    private static Account createAccount(String id, BigDecimal balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setName("Bob");
+        account.setBalance(balance);
+        return account;
+    }
+}
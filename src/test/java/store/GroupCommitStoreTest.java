@@ -0,0 +1,208 @@
+package store;
+
+import model.Account;
+import model.AccountSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.rocksdb.RocksDBException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+public class GroupCommitStoreTest {
+
+    private static final int NUM_OF_WRITERS = 8;
+
+    @Test
+    public void testWritesWaitingForCommitAreGrouped() throws Exception {
+        for (String syncPolicy : new String[]{"no-sync", "sync-per-batch"}) {
+            BlockingStore rocksDbStore = new BlockingStore(syncPolicy);
+            GroupCommitStore store = new GroupCommitStore(rocksDbStore, rocksDbStore.settings);
+            try {
+                Thread first = startWriter(store, "first", new CopyOnWriteArrayList<>());
+                rocksDbStore.awaitWriting();
+                List<Thread> writers = new ArrayList<>();
+                for (int i = 0; i < NUM_OF_WRITERS; i++) {
+                    writers.add(startWriter(store, "account-" + i, new CopyOnWriteArrayList<>()));
+                }
+                awaitWaiting(writers);
+                rocksDbStore.release.countDown();
+                first.join();
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+
+                // the writes queued behind the first batch are committed together
+                Assert.assertEquals(syncPolicy, List.of(1, NUM_OF_WRITERS), rocksDbStore.batchSizes);
+                for (int i = 0; i < NUM_OF_WRITERS; i++) {
+                    Assert.assertEquals(syncPolicy, "account-" + i, rocksDbStore.get("account-" + i).getId());
+                }
+            } finally {
+                store.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testFailedWriteFailsEveryWaiter() throws Exception {
+        BlockingStore rocksDbStore = new BlockingStore("sync-per-batch");
+        GroupCommitStore store = new GroupCommitStore(rocksDbStore, rocksDbStore.settings);
+        try {
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            Thread first = startWriter(store, "first", errors);
+            rocksDbStore.awaitWriting();
+            rocksDbStore.failing = true;
+            List<Thread> writers = new ArrayList<>();
+            for (int i = 0; i < NUM_OF_WRITERS; i++) {
+                writers.add(startWriter(store, "account-" + i, errors));
+            }
+            awaitWaiting(writers);
+            rocksDbStore.release.countDown();
+            first.join();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            Assert.assertEquals(NUM_OF_WRITERS, errors.size());
+            for (Throwable error : errors) {
+                Assert.assertTrue(error instanceof RuntimeException);
+            }
+            Assert.assertNotNull(rocksDbStore.get("first"));
+            Assert.assertNull(rocksDbStore.get("account-0"));
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testStopFailsWaitingWrites() throws Exception {
+        BlockingStore rocksDbStore = new BlockingStore("no-sync");
+        GroupCommitStore store = new GroupCommitStore(rocksDbStore, rocksDbStore.settings);
+        List<Throwable> firstErrors = new CopyOnWriteArrayList<>();
+        Thread first = startWriter(store, "first", firstErrors);
+        rocksDbStore.awaitWriting();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread waiting = startWriter(store, "waiting", errors);
+        awaitWaiting(List.of(waiting));
+
+        store.stop();
+        rocksDbStore.release.countDown();
+        first.join();
+        waiting.join();
+        Thread afterStop = startWriter(store, "after-stop", errors);
+        afterStop.join();
+
+        // the batch being written is committed, the others fail
+        Assert.assertTrue(firstErrors.isEmpty());
+        Assert.assertEquals(2, errors.size());
+        Assert.assertNull(rocksDbStore.get("waiting"));
+    }
+
+    private static Thread startWriter(GroupCommitStore store, String accountId, List<Throwable> errors) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setBalance(BigDecimal.ONE);
+        Thread thread = new Thread(() -> {
+            try {
+                store.put(accountId, account);
+            } catch (RuntimeException e) {
+                errors.add(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Waits until the writers wait for their commit, not for a lock of the queue
+     */
+    private static void awaitWaiting(List<Thread> writers) throws InterruptedException {
+        for (Thread writer : writers) {
+            while (!isWaitingForFuture(writer)) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static boolean isWaitingForFuture(Thread thread) {
+        Object blocker = LockSupport.getBlocker(thread);
+        return blocker != null && blocker.getClass().getEnclosingClass() == CompletableFuture.class;
+    }
+
+    /**
+     * Holds the first batch until it is released, so that the following writes queue up
+     */
+    private static class BlockingStore extends RocksDbStore {
+
+        private final TestStoreSettings settings;
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+
+        BlockingStore(String syncPolicy) throws IOException {
+            this(settings(syncPolicy));
+        }
+
+        private BlockingStore(TestStoreSettings settings) {
+            super(new AccountSerializer(), settings);
+            this.settings = settings;
+        }
+
+        private static TestStoreSettings settings(String syncPolicy) throws IOException {
+            String path = Files.createTempDirectory("money_transfer_group_commit_test").toString();
+            return new TestStoreSettings(path) {
+                @Override
+                public String syncPolicy() {
+                    return syncPolicy;
+                }
+
+                @Override
+                public int groupCommitWindowMicros() {
+                    return 0;
+                }
+            };
+        }
+
+        @Override
+        void write(List<PendingWrite> pendingWrites) throws RocksDBException {
+            if (writing.getCount() > 0) {
+                writing.countDown();
+                awaitRelease();
+            } else if (failing) {
+                throw new RocksDBException("Write failed");
+            }
+            batchSizes.add(pendingWrites.size());
+            super.write(pendingWrites);
+        }
+
+        void awaitWriting() throws InterruptedException {
+            writing.await();
+        }
+
+        /**
+         * Waits through the interrupt of a stop, like a write in RocksDb
+         */
+        private void awaitRelease() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
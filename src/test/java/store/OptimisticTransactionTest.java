@@ -0,0 +1,98 @@
+package store;
+
+import model.Account;
+import model.IdempotencyRecord;
+import model.AccountSerializer;
+import model.Money;
+import model.TransferEvent;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+public class OptimisticTransactionTest {
+
+    private static RocksDbStore rocksDbStore;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        String path = Files.createTempDirectory("money_transfer_transaction_test").toString();
+        rocksDbStore = new RocksDbStore(new AccountSerializer(), new TestStoreSettings(path), true);
+    }
+
+    @Test
+    public void testCommitWritesAccountsAndEvents() {
+        rocksDbStore.put("from", createAccount("from", "10"));
+        long lastSequence = rocksDbStore.lastSequence();
+        try (StoreTransaction transaction = rocksDbStore.beginTransaction()) {
+            Account from = transaction.getForUpdate("from");
+            from.subtract(Money.of(new BigDecimal(4)));
+            transaction.put("from", from);
+            transaction.put("to", createAccount("to", "4"));
+            // writes are not visible before the commit
+            Assert.assertNull(rocksDbStore.get("to"));
+            transaction.commit(Collections.singletonList(new TransferEvent("from", "to", Money.of(new BigDecimal(4)))));
+        }
+
+        Assert.assertEquals(0, new BigDecimal(6).compareTo(rocksDbStore.get("from").getBalance()));
+        Assert.assertEquals(0, new BigDecimal(4).compareTo(rocksDbStore.get("to").getBalance()));
+        Assert.assertEquals(lastSequence + 1, rocksDbStore.lastSequence());
+        List<TransferEvent> events = rocksDbStore.readEvents(lastSequence + 1, 10);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("from", events.get(0).getFrom());
+    }
+
+    @Test
+    public void testCommitWritesRecordsWithAccounts() {
+        rocksDbStore.put("recorded", createAccount("recorded", "10"));
+        IdempotencyRecord record = new IdempotencyRecord("changeBalance", false, "Operation completed",
+                System.currentTimeMillis() + 60_000);
+        try (StoreTransaction transaction = rocksDbStore.beginTransaction()) {
+            Account account = transaction.getForUpdate("recorded");
+            account.add(Money.of(BigDecimal.ONE));
+            transaction.put("recorded", account);
+            transaction.commit(Collections.emptyList(), new RecordWrites().putIdempotencyRecord("key", record));
+        }
+
+        Assert.assertEquals(0, new BigDecimal(11).compareTo(rocksDbStore.get("recorded").getBalance()));
+        Assert.assertEquals("changeBalance", rocksDbStore.getRecord("key").getFingerprint());
+    }
+
+    @Test
+    public void testConcurrentChangeFailsCommit() {
+        rocksDbStore.put("conflict", createAccount("conflict", "10"));
+        try (StoreTransaction transaction = rocksDbStore.beginTransaction()) {
+            Account account = transaction.getForUpdate("conflict");
+            rocksDbStore.put("conflict", createAccount("conflict", "20"));
+            account.add(Money.of(BigDecimal.ONE));
+            transaction.put("conflict", account);
+            try {
+                transaction.commit(Collections.emptyList());
+                Assert.fail("The commit must detect the concurrent write");
+            } catch (TransactionConflictException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(0, new BigDecimal(20).compareTo(rocksDbStore.get("conflict").getBalance()));
+    }
+
+    @Test
+    public void testTransactionWithoutCommitIsDiscarded() {
+        try (StoreTransaction transaction = rocksDbStore.beginTransaction()) {
+            transaction.put("discarded", createAccount("discarded", "1"));
+        }
+        Assert.assertNull(rocksDbStore.get("discarded"));
+    }
+
+    private static Account createAccount(String accountId, String balance) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+}
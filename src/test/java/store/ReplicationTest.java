@@ -0,0 +1,154 @@
+package store;
+
+import config.ReplicationSettings;
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.TransferEvent;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+public class ReplicationTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private static RocksDbStore leaderStore;
+    private static ReplicationServer replicationServer;
+    private static RocksDbStore followerStore;
+    private static ReplicationSettings followerSettings;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        String leaderPath = Files.createTempDirectory("money_transfer_leader_test").toString();
+        leaderStore = new RocksDbStore(new AccountSerializer(), new TestStoreSettings(leaderPath) {
+            @Override
+            public long walTtlSeconds() {
+                return 600;
+            }
+        });
+        leaderStore.put("before-bootstrap", createAccount("before-bootstrap", "10"));
+        replicationServer = new ReplicationServer(leaderStore, settings(0, ""));
+        replicationServer.start();
+
+        followerSettings = settings(0, "127.0.0.1:" + replicationServer.getPort());
+        String followerPath = Files.createTempDirectory("money_transfer_follower_test").toString();
+        ReplicationFollower.bootstrap(followerSettings, followerPath);
+        followerStore = new RocksDbStore(new AccountSerializer(), new TestStoreSettings(followerPath));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        replicationServer.stop();
+    }
+
+    @Test
+    public void testFollowerAppliesUpdatesAfterCheckpoint() throws InterruptedException {
+        Assert.assertEquals(0, BigDecimal.TEN.compareTo(followerStore.get("before-bootstrap").getBalance()));
+
+        ReplicationFollower follower = new ReplicationFollower(followerStore, followerSettings);
+        follower.start();
+        try {
+            leaderStore.put("deleted", createAccount("deleted", "0"));
+            leaderStore.putAll(Collections.singletonMap("to", createAccount("to", "5")),
+                    Collections.singletonList(new TransferEvent("from", "to", Money.of(new BigDecimal(5)))));
+            leaderStore.delete("deleted");
+            awaitCaughtUp(follower);
+
+            Assert.assertEquals(0, new BigDecimal(5).compareTo(followerStore.get("to").getBalance()));
+            Assert.assertNull(followerStore.get("deleted"));
+            List<TransferEvent> events = followerStore.readEvents(1, 10);
+            Assert.assertEquals(1, events.size());
+            Assert.assertEquals("to", events.get(0).getTo());
+            Assert.assertEquals(0, follower.lagSequences());
+        } finally {
+            follower.stop();
+        }
+    }
+
+    @Test
+    public void testRestartedFollowerContinuesAfterAppliedBatches() throws InterruptedException {
+        ReplicationFollower follower = new ReplicationFollower(followerStore, followerSettings);
+        follower.start();
+        leaderStore.put("first", createAccount("first", "1"));
+        awaitCaughtUp(follower);
+        follower.stop();
+
+        leaderStore.put("second", createAccount("second", "2"));
+        ReplicationFollower restartedFollower = new ReplicationFollower(followerStore, followerSettings);
+        Assert.assertEquals(follower.appliedSequence(), restartedFollower.appliedSequence());
+        restartedFollower.start();
+        try {
+            awaitCaughtUp(restartedFollower);
+            Assert.assertEquals(0, BigDecimal.ONE.compareTo(followerStore.get("first").getBalance()));
+            Assert.assertEquals(0, new BigDecimal(2).compareTo(followerStore.get("second").getBalance()));
+        } finally {
+            restartedFollower.stop();
+        }
+    }
+
+    @Test
+    public void testImportOfReplicatedStoreIsReplicated() throws IOException, InterruptedException {
+        ReplicationFollower follower = new ReplicationFollower(followerStore, followerSettings);
+        follower.start();
+        try {
+            AccountBulkLoader accountBulkLoader = new AccountBulkLoader(leaderStore, new AccountSerializer(), 2, true);
+            AccountBulkLoader.ImportResult result = accountBulkLoader.importAccounts(new BufferedReader(new StringReader(
+                    "{\"id\":\"imported-1\",\"balance\":1}\n"
+                            + "{\"id\":\"imported-2\",\"balance\":2}\n"
+                            + "{\"id\":\"imported-3\",\"balance\":3}\n")));
+            Assert.assertEquals(3, result.getImported());
+            leaderStore.put("after-import", createAccount("after-import", "4"));
+            awaitCaughtUp(follower);
+
+            Assert.assertFalse(follower.isStopped());
+            Assert.assertEquals(0, new BigDecimal(3).compareTo(followerStore.get("imported-3").getBalance()));
+            Assert.assertEquals(0, new BigDecimal(4).compareTo(followerStore.get("after-import").getBalance()));
+        } finally {
+            follower.stop();
+        }
+    }
+
+    private static void awaitCaughtUp(ReplicationFollower follower) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (follower.appliedSequence() < leaderStore.latestSequenceNumber()) {
+            Assert.assertTrue("The follower did not catch up", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ReplicationSettings settings(int port, String leader) {
+        return new ReplicationSettings() {
+            @Override
+            public int port() {
+                return port;
+            }
+
+            @Override
+            public String leader() {
+                return leader;
+            }
+
+            @Override
+            public int pollIntervalMillis() {
+                return 10;
+            }
+        };
+    }
+
+    private static Account createAccount(String id, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+}
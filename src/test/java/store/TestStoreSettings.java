@@ -0,0 +1,100 @@
+package store;
+
+import config.StoreSettings;
+
+/**
+ * Store settings of tests: no durability, a small group commit batch, no cache and RocksDb default options
+ */
+class TestStoreSettings implements StoreSettings {
+
+    private final String path;
+
+    TestStoreSettings(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String syncPolicy() {
+        return "no-sync";
+    }
+
+    @Override
+    public int groupCommitMaxBatch() {
+        return 16;
+    }
+
+    @Override
+    public int groupCommitWindowMicros() {
+        return 100;
+    }
+
+    @Override
+    public int cacheSize() {
+        return 0;
+    }
+
+    @Override
+    public String codec() {
+        return "binary";
+    }
+
+    @Override
+    public long blockCacheSizeMb() {
+        return 0;
+    }
+
+    @Override
+    public int bloomFilterBitsPerKey() {
+        return 0;
+    }
+
+    @Override
+    public boolean optimizeForPointLookup() {
+        return false;
+    }
+
+    @Override
+    public long writeBufferSizeMb() {
+        return 0;
+    }
+
+    @Override
+    public int maxWriteBufferNumber() {
+        return 0;
+    }
+
+    @Override
+    public String compactionStyle() {
+        return "level";
+    }
+
+    @Override
+    public int maxBackgroundJobs() {
+        return 0;
+    }
+
+    @Override
+    public boolean useDirectReads() {
+        return false;
+    }
+
+    @Override
+    public boolean useDirectIoForFlushAndCompaction() {
+        return false;
+    }
+
+    @Override
+    public int scanThreads() {
+        return 2;
+    }
+
+    @Override
+    public long walTtlSeconds() {
+        return 0;
+    }
+}
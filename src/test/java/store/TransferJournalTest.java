@@ -0,0 +1,99 @@
+package store;
+
+import model.Account;
+import model.AccountSerializer;
+import model.Money;
+import model.PendingTransfer;
+import model.TransferEvent;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TransferJournalTest {
+
+    private static RocksDbStore rocksDbStore;
+    private static GroupCommitStore groupCommitStore;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        String path = Files.createTempDirectory("money_transfer_journal_test").toString();
+        rocksDbStore = new RocksDbStore(new AccountSerializer(), new TestStoreSettings(path));
+        groupCommitStore = new GroupCommitStore(rocksDbStore, new TestStoreSettings(path));
+    }
+
+    @Test
+    public void testEventsAreWrittenWithAccountsAndReadInOrder() {
+        long lastSequence = rocksDbStore.lastSequence();
+        Account from = createAccount("from", "90");
+        Account to = createAccount("to", "10");
+        Map<String, Account> accounts = new LinkedHashMap<>();
+        accounts.put(from.getId(), from);
+        accounts.put(to.getId(), to);
+
+        rocksDbStore.putAll(accounts, Arrays.asList(
+                new TransferEvent("from", "to", Money.of(new BigDecimal("4.5"))),
+                new TransferEvent("from", "to", Money.of(new BigDecimal("5.5")))));
+        groupCommitStore.putAll(Collections.singletonMap(to.getId(), to),
+                Collections.singletonList(new TransferEvent("other", "to", Money.of(new BigDecimal("0.01")))));
+
+        Assert.assertEquals(lastSequence + 3, rocksDbStore.lastSequence());
+        Assert.assertEquals(new BigDecimal("90"), rocksDbStore.get("from").getBalance());
+
+        List<TransferEvent> events = rocksDbStore.readEvents(lastSequence + 1, 10);
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(lastSequence + 1, events.get(0).getSequence());
+        Assert.assertEquals("from", events.get(0).getFrom());
+        Assert.assertEquals("to", events.get(0).getTo());
+        Assert.assertEquals(new BigDecimal("4.5"), events.get(0).getAmount().toBigDecimal());
+        Assert.assertEquals(lastSequence + 3, events.get(2).getSequence());
+        Assert.assertEquals("other", events.get(2).getFrom());
+
+        List<TransferEvent> tail = rocksDbStore.readEvents(lastSequence + 2, 1);
+        Assert.assertEquals(1, tail.size());
+        Assert.assertEquals(new BigDecimal("5.5"), tail.get(0).getAmount().toBigDecimal());
+        Assert.assertTrue(rocksDbStore.readEvents(lastSequence + 4, 10).isEmpty());
+    }
+
+    @Test
+    public void testPendingTransfersAreWrittenWithAccounts() {
+        Account from = createAccount("pending-from", "70");
+        Account to = createAccount("pending-to", "30");
+        PendingTransfer transfer = new PendingTransfer("transfer-1", 1000, "pending-from", "pending-to",
+                Money.of(new BigDecimal("30")), Money.of(new BigDecimal("27.5")));
+
+        groupCommitStore.putAll(Collections.singletonMap(from.getId(), from), Collections.emptyList(),
+                new RecordWrites().putPendingTransfer(transfer));
+
+        Assert.assertEquals(new BigDecimal("70"), rocksDbStore.get("pending-from").getBalance());
+        List<PendingTransfer> pendingTransfers = rocksDbStore.readPendingTransfers();
+        Assert.assertEquals(1, pendingTransfers.size());
+        Assert.assertEquals("transfer-1", pendingTransfers.get(0).getId());
+        Assert.assertEquals(1000, pendingTransfers.get(0).getTimestamp());
+        Assert.assertEquals("pending-to", pendingTransfers.get(0).getTo());
+        Assert.assertEquals(new BigDecimal("30"), pendingTransfers.get(0).getAmount().toBigDecimal());
+        Assert.assertEquals(new BigDecimal("27.5"), pendingTransfers.get(0).getCredit().toBigDecimal());
+
+        rocksDbStore.putAll(Collections.singletonMap(to.getId(), to),
+                Collections.singletonList(new TransferEvent("pending-from", "pending-to", transfer.getAmount())),
+                new RecordWrites().deletePendingTransfer("transfer-1"));
+
+        Assert.assertEquals(new BigDecimal("30"), rocksDbStore.get("pending-to").getBalance());
+        Assert.assertTrue(rocksDbStore.readPendingTransfers().isEmpty());
+    }
+
+    private static Account createAccount(String id, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+}